@@ -0,0 +1,112 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.benchmark.search.aggregations;
+
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.search.aggregations.metrics.cardinality.HyperLogLogPlusPlus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how fast HyperLogLog++ counters collect and merge hashes, depending on how many buckets the hashes are spread over.
+ * With many buckets, most buckets only see a few values and stay with linear counting.
+ */
+@Fork(3)
+@Warmup(iterations = 10)
+@Measurement(iterations = 10)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@SuppressWarnings("unused") //invoked by benchmarking framework
+public class HyperLogLogPlusPlusBenchmark {
+    // Do NOT make any field final (even if it is not annotated with @Param)! See also
+    // http://hg.openjdk.java.net/code-tools/jmh/file/tip/jmh-samples/src/main/java/org/openjdk/jmh/samples/JMHSample_10_ConstantFold.java
+
+    @Param({"1", "100", "10000", "50000"})
+    public int numBuckets = 1;
+
+    @Param({"1000000"})
+    public int numValues = 1000000;
+
+    @Param({"14"})
+    public int precision = 14;
+
+    private BigArrays bigArrays;
+    private long[] hashes;
+    private long[] buckets;
+    private HyperLogLogPlusPlus collected;
+
+    @Setup
+    public void setUp() {
+        bigArrays = new BigArrays(Settings.EMPTY, null);
+        final Random random = new Random(42);
+        hashes = new long[numValues];
+        buckets = new long[numValues];
+        for (int i = 0; i < numValues; i++) {
+            hashes[i] = random.nextLong();
+            buckets[i] = random.nextInt(numBuckets);
+        }
+        collected = collect();
+    }
+
+    @TearDown
+    public void tearDown() {
+        collected.close();
+    }
+
+    private HyperLogLogPlusPlus collect() {
+        final HyperLogLogPlusPlus counts = new HyperLogLogPlusPlus(precision, bigArrays, 1);
+        for (int i = 0; i < numValues; i++) {
+            counts.collect(buckets[i], hashes[i]);
+        }
+        return counts;
+    }
+
+    @Benchmark
+    public long measureCollect() {
+        try (HyperLogLogPlusPlus counts = collect()) {
+            return counts.maxBucket();
+        }
+    }
+
+    @Benchmark
+    public long measureMerge() {
+        // like the reduction of the buckets of the shard level results into the final ones
+        try (HyperLogLogPlusPlus merged = new HyperLogLogPlusPlus(precision, bigArrays, 1)) {
+            for (long bucket = 0; bucket < numBuckets; bucket++) {
+                merged.merge(bucket, collected, bucket);
+            }
+            return merged.cardinality(0);
+        }
+    }
+}
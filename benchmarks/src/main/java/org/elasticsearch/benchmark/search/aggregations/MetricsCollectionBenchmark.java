@@ -0,0 +1,220 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.benchmark.search.aggregations;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.SortedNumericDocValues;
+import org.apache.lucene.util.Bits;
+import org.elasticsearch.common.lease.Releasable;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.index.fielddata.SortedBinaryDocValues;
+import org.elasticsearch.index.fielddata.SortedNumericDoubleValues;
+import org.elasticsearch.indices.breaker.NoneCircuitBreakerService;
+import org.elasticsearch.search.DocValueFormat;
+import org.elasticsearch.search.aggregations.BatchingLeafBucketCollector;
+import org.elasticsearch.search.aggregations.InternalAggregation;
+import org.elasticsearch.search.aggregations.LeafBucketCollector;
+import org.elasticsearch.search.aggregations.metrics.NumericMetricsAggregator;
+import org.elasticsearch.search.aggregations.metrics.max.MaxAggregator;
+import org.elasticsearch.search.aggregations.metrics.stats.StatsAggregator;
+import org.elasticsearch.search.aggregations.metrics.sum.SumAggregator;
+import org.elasticsearch.search.aggregations.support.ValuesSource;
+import org.elasticsearch.search.fetch.subphase.DocValueFieldsContext;
+import org.elasticsearch.search.internal.FilteredSearchContext;
+import org.elasticsearch.search.internal.SearchContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how fast the sum, stats and max aggregators collect docs, either one by one or in batches like top-level aggregators
+ * do, see {@link LeafBucketCollector#collect(int[], long[], int)}. The docs are spread over runs of docs that go to the same
+ * bucket, with a single bucket for top-level aggregators. Times are per doc.
+ */
+@Fork(3)
+@Warmup(iterations = 10)
+@Measurement(iterations = 10)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@SuppressWarnings("unused") //invoked by benchmarking framework
+public class MetricsCollectionBenchmark {
+    // Do NOT make any field final (even if it is not annotated with @Param)! See also
+    // http://hg.openjdk.java.net/code-tools/jmh/file/tip/jmh-samples/src/main/java/org/openjdk/jmh/samples/JMHSample_10_ConstantFold.java
+
+    private static final int NUM_DOCS = 1000000;
+
+    @Param({"sum", "stats", "max"})
+    public String aggregation = "sum";
+
+    @Param({"1", "1000"})
+    public int numBuckets = 1;
+
+    @Param({"1", "100"})
+    public int runLength = 1;
+
+    private double[] values;
+    private long[] buckets;
+    private SearchContext context;
+    private ValuesSource.Numeric valuesSource;
+
+    @Setup
+    public void setUp() {
+        final Random random = new Random(42);
+        values = new double[NUM_DOCS];
+        buckets = new long[NUM_DOCS];
+        long bucket = 0;
+        for (int doc = 0; doc < NUM_DOCS; doc++) {
+            values[doc] = random.nextGaussian() * 1000;
+            if (doc % runLength == 0) {
+                bucket = random.nextInt(numBuckets);
+            }
+            buckets[doc] = bucket;
+        }
+        final BigArrays bigArrays = new BigArrays(null, new NoneCircuitBreakerService(), false);
+        // aggregators only need big arrays from the search context
+        context = new FilteredSearchContext(null) {
+            @Override
+            public BigArrays bigArrays() {
+                return bigArrays;
+            }
+
+            @Override
+            public void addReleasable(Releasable releasable, Lifetime lifetime) {
+            }
+
+            @Override
+            public DocValueFieldsContext docValueFieldsContext() {
+                return null;
+            }
+
+            @Override
+            public SearchContext docValueFieldsContext(DocValueFieldsContext docValueFieldsContext) {
+                return this;
+            }
+        };
+        valuesSource = new ValuesSource.Numeric() {
+            @Override
+            public boolean isFloatingPoint() {
+                return true;
+            }
+
+            @Override
+            public SortedNumericDocValues longValues(LeafReaderContext context) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public SortedBinaryDocValues bytesValues(LeafReaderContext context) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public Bits docsWithValue(LeafReaderContext context) {
+                return new Bits.MatchAllBits(NUM_DOCS);
+            }
+
+            @Override
+            public SortedNumericDoubleValues doubleValues(LeafReaderContext context) {
+                return new SortedNumericDoubleValues() {
+                    private int doc;
+
+                    @Override
+                    public void setDocument(int doc) {
+                        this.doc = doc;
+                    }
+
+                    @Override
+                    public double valueAt(int index) {
+                        return values[doc];
+                    }
+
+                    @Override
+                    public int count() {
+                        return 1;
+                    }
+                };
+            }
+        };
+    }
+
+    private NumericMetricsAggregator createAggregator() throws IOException {
+        switch (aggregation) {
+            case "sum":
+                return new SumAggregator("sum", valuesSource, DocValueFormat.RAW, context, null, Collections.emptyList(), null);
+            case "stats":
+                return new StatsAggregator("stats", valuesSource, DocValueFormat.RAW, context, null, Collections.emptyList(), null);
+            case "max":
+                return new MaxAggregator("max", valuesSource, DocValueFormat.RAW, context, null, Collections.emptyList(), null);
+            default:
+                throw new IllegalArgumentException("unknown aggregation [" + aggregation + "]");
+        }
+    }
+
+    private static LeafBucketCollector leafCollector(NumericMetricsAggregator aggregator) throws IOException {
+        // the collector of the aggregator itself, without the batching of top-level aggregators
+        if (aggregator instanceof SumAggregator) {
+            return ((SumAggregator) aggregator).getLeafCollector(null, LeafBucketCollector.NO_OP_COLLECTOR);
+        } else if (aggregator instanceof StatsAggregator) {
+            return ((StatsAggregator) aggregator).getLeafCollector(null, LeafBucketCollector.NO_OP_COLLECTOR);
+        } else {
+            return ((MaxAggregator) aggregator).getLeafCollector(null, LeafBucketCollector.NO_OP_COLLECTOR);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_DOCS)
+    public InternalAggregation measureCollect() throws IOException {
+        try (NumericMetricsAggregator aggregator = createAggregator()) {
+            final LeafBucketCollector collector = leafCollector(aggregator);
+            for (int doc = 0; doc < NUM_DOCS; doc++) {
+                collector.collect(doc, buckets[doc]);
+            }
+            return aggregator.buildAggregation(0);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_DOCS)
+    public InternalAggregation measureCollectBatches() throws IOException {
+        try (NumericMetricsAggregator aggregator = createAggregator()) {
+            final BatchingLeafBucketCollector collector = new BatchingLeafBucketCollector(BatchingLeafBucketCollector.DEFAULT_BATCH_SIZE);
+            collector.reset(leafCollector(aggregator));
+            for (int doc = 0; doc < NUM_DOCS; doc++) {
+                collector.collect(doc, buckets[doc]);
+            }
+            collector.flush();
+            return aggregator.buildAggregation(0);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.benchmark.search.aggregations;
+
+import org.elasticsearch.search.aggregations.metrics.percentiles.tdigest.TDigestState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how fast t-digests add values, merge together, like when shard results are reduced, and compute quantiles, for both the
+ * AVL tree digest of the {@code tdigest} method and the merging digest of the {@code merging_tdigest} method. The values are spread
+ * over many buckets, like a percentiles aggregation under a date_histogram aggregation.
+ */
+@Fork(3)
+@Warmup(iterations = 10)
+@Measurement(iterations = 10)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@SuppressWarnings("unused") //invoked by benchmarking framework
+public class TDigestStateBenchmark {
+    // Do NOT make any field final (even if it is not annotated with @Param)! See also
+    // http://hg.openjdk.java.net/code-tools/jmh/file/tip/jmh-samples/src/main/java/org/openjdk/jmh/samples/JMHSample_10_ConstantFold.java
+
+    @Param({"1", "1000"})
+    public int numBuckets = 1;
+
+    @Param({"1000000"})
+    public int numValues = 1000000;
+
+    @Param({"100"})
+    public double compression = 100;
+
+    @Param({"random", "sorted"})
+    public String distribution = "random";
+
+    @Param({"false", "true"})
+    public boolean merging = false;
+
+    private double[] values;
+    private int[] buckets;
+    private TDigestState[] collected;
+
+    @Setup
+    public void setUp() {
+        final Random random = new Random(42);
+        values = new double[numValues];
+        buckets = new int[numValues];
+        for (int i = 0; i < numValues; i++) {
+            values[i] = "sorted".equals(distribution) ? i : random.nextGaussian() * 1000;
+            buckets[i] = random.nextInt(numBuckets);
+        }
+        collected = collect();
+    }
+
+    private TDigestState[] collect() {
+        final TDigestState[] states = new TDigestState[numBuckets];
+        for (int i = 0; i < numValues; i++) {
+            TDigestState state = states[buckets[i]];
+            if (state == null) {
+                state = states[buckets[i]] = TDigestState.create(compression, merging);
+            }
+            state.add(values[i]);
+        }
+        return states;
+    }
+
+    @Benchmark
+    public TDigestState[] measureAdd() {
+        return collect();
+    }
+
+    @Benchmark
+    public long measureMerge() {
+        // like the reduction of the results of several shards, each bucket is merged twice
+        long size = 0;
+        for (TDigestState state : collected) {
+            final TDigestState merged = TDigestState.create(compression, merging);
+            merged.add(state);
+            merged.add(state);
+            size += merged.centroidCount();
+        }
+        return size;
+    }
+
+    @Benchmark
+    public double measureQuantile() {
+        double sum = 0;
+        for (TDigestState state : collected) {
+            for (double q = 0.01; q < 1; q += 0.01) {
+                sum += state.quantile(q);
+            }
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.elasticsearch.client;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks the number of requests in flight to a host and an exponentially weighted moving average of the time it took the host
+ * to respond to the latest requests. Used to prefer less loaded and faster hosts when selecting the host to send a request to.
+ */
+final class HostStats {
+
+    // weight of the latest response time in the moving average, low enough for a single slow response not to disqualify a host
+    static final double ALPHA = 0.3;
+
+    private final AtomicInteger inFlightRequests = new AtomicInteger();
+    private final AtomicLong averageResponseNanos = new AtomicLong();
+
+    /**
+     * Called before a request is sent to the host.
+     */
+    void onRequestStarted() {
+        inFlightRequests.incrementAndGet();
+    }
+
+    /**
+     * Called once a request sent to the host completed, with the time it took, or {@code -1} if the request failed without a
+     * response so that the time should not be taken into account.
+     */
+    void onRequestCompleted(long responseNanos) {
+        inFlightRequests.decrementAndGet();
+        if (responseNanos >= 0) {
+            while (true) {
+                long average = averageResponseNanos.get();
+                long newAverage = average == 0 ? Math.max(1, responseNanos) : (long) (average + ALPHA * (responseNanos - average));
+                if (averageResponseNanos.compareAndSet(average, newAverage)) {
+                    break;
+                }
+            }
+        }
+    }
+
+    int getInFlightRequests() {
+        return inFlightRequests.get();
+    }
+
+    /**
+     * Returns the moving average of the response time of the host in nanoseconds, {@code 0} if no response was received yet.
+     */
+    long getAverageResponseNanos() {
+        return averageResponseNanos.get();
+    }
+
+    /**
+     * Returns the expected time until a new request to the host would complete, assuming that requests in flight are processed
+     * one after the other. Hosts that didn't respond yet have no expected time, which makes them be tried first.
+     */
+    long getExpectedResponseNanos() {
+        return averageResponseNanos.get() * (inFlightRequests.get() + 1);
+    }
+
+    @Override
+    public String toString() {
+        return "HostStats{" +
+                "inFlightRequests=" + inFlightRequests +
+                ", averageResponseNanos=" + averageResponseNanos +
+                '}';
+    }
+}
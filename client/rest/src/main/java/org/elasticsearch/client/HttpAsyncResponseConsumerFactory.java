@@ -62,4 +62,29 @@ public interface HttpAsyncResponseConsumerFactory {
             return new HeapBufferedAsyncResponseConsumer(bufferLimit);
         }
     }
+
+    /**
+     * Factory that creates one instance of {@link StreamingAsyncResponseConsumer} for each request attempt, all of them
+     * handing the content of successful responses to the same {@link ResponseContentListener}. The content of unsuccessful
+     * responses is buffered up to a configurable buffer limit which defaults to 100MB.
+     */
+    class StreamingResponseConsumerFactory implements HttpAsyncResponseConsumerFactory {
+
+        private final ResponseContentListener listener;
+        private final int bufferLimit;
+
+        public StreamingResponseConsumerFactory(ResponseContentListener listener) {
+            this(listener, DEFAULT_BUFFER_LIMIT);
+        }
+
+        public StreamingResponseConsumerFactory(ResponseContentListener listener, int bufferLimitBytes) {
+            this.listener = listener;
+            this.bufferLimit = bufferLimitBytes;
+        }
+
+        @Override
+        public HttpAsyncResponseConsumer<HttpResponse> createHttpAsyncResponseConsumer() {
+            return new StreamingAsyncResponseConsumer(listener, bufferLimit);
+        }
+    }
 }
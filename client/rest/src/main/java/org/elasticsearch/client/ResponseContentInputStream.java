@@ -0,0 +1,175 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.client;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.nio.IOControl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+
+/**
+ * {@link ResponseContentListener} that exposes the content of a response as a blocking {@link InputStream}, so that it can be
+ * parsed by a consumer thread while it is being received. At most about the configured number of bytes are buffered: input is
+ * suspended once the buffer is full and resumed once the consumer has read half of it.
+ * <p>
+ * The stream only learns about failures that happen while receiving the content. Failures that happen before, for instance
+ * when no host could be reached, must be passed to {@link #onContentFailed(Exception)} by the {@link ResponseListener} of the
+ * request, otherwise readers wait forever.
+ */
+public class ResponseContentInputStream extends InputStream implements ResponseContentListener {
+
+    private final int bufferLimitBytes;
+    // in write mode, holds the bytes that have been received but not read yet
+    private ByteBuffer buffer;
+    private IOControl ioControl;
+    private boolean suspended;
+    private boolean started;
+    private boolean read;
+    private boolean completed;
+    private boolean closed;
+    private Exception failure;
+
+    /**
+     * Creates a new stream that buffers up to about the provided number of bytes
+     */
+    public ResponseContentInputStream(int bufferLimit) {
+        if (bufferLimit <= 0) {
+            throw new IllegalArgumentException("bufferLimit must be greater than 0");
+        }
+        this.bufferLimitBytes = bufferLimit;
+        this.buffer = ByteBuffer.allocate(Math.min(bufferLimit, StreamingAsyncResponseConsumer.CHUNK_SIZE));
+    }
+
+    @Override
+    public synchronized void onResponseStarted(HttpResponse response) {
+        if (started && read) {
+            failure = new IOException("the request was retried after part of the previous response had been read");
+        } else {
+            // nothing was read yet, the response of the new attempt replaces whatever the previous attempts left behind
+            buffer.clear();
+            completed = false;
+            failure = null;
+            suspended = false;
+            started = true;
+        }
+        notifyAll();
+    }
+
+    @Override
+    public synchronized void onContent(ByteBuffer content, IOControl ioControl) throws IOException {
+        this.ioControl = ioControl;
+        if (closed || failure != null) {
+            // nobody is going to read the content, drain it so that the connection can be reused
+            content.position(content.limit());
+            return;
+        }
+        if (buffer.remaining() < content.remaining()) {
+            ByteBuffer newBuffer = ByteBuffer.allocate(Math.max(buffer.position() + content.remaining(),
+                Math.min(bufferLimitBytes, buffer.capacity() * 2)));
+            buffer.flip();
+            newBuffer.put(buffer);
+            buffer = newBuffer;
+        }
+        buffer.put(content);
+        if (buffer.position() >= bufferLimitBytes && suspended == false) {
+            suspended = true;
+            ioControl.suspendInput();
+        }
+        notifyAll();
+    }
+
+    @Override
+    public synchronized void onContentCompleted() {
+        completed = true;
+        notifyAll();
+    }
+
+    @Override
+    public synchronized void onContentFailed(Exception e) {
+        if (failure == null) {
+            failure = e;
+        }
+        resumeInput();
+        notifyAll();
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        int read = read(b, 0, 1);
+        return read == -1 ? -1 : b[0] & 0xFF;
+    }
+
+    @Override
+    public synchronized int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        while (buffer.position() == 0 && completed == false && failure == null && closed == false) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while waiting for the response content");
+            }
+        }
+        if (closed) {
+            throw new IOException("stream is closed");
+        }
+        if (failure != null) {
+            throw new IOException("failed to receive the response content", failure);
+        }
+        if (buffer.position() == 0) {
+            return -1;
+        }
+        buffer.flip();
+        int n = Math.min(len, buffer.remaining());
+        buffer.get(b, off, n);
+        buffer.compact();
+        read = true;
+        if (suspended && buffer.position() <= bufferLimitBytes / 2) {
+            resumeInput();
+        }
+        return n;
+    }
+
+    @Override
+    public synchronized int available() throws IOException {
+        return buffer.position();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        closed = true;
+        buffer.clear();
+        resumeInput();
+        notifyAll();
+    }
+
+    private void resumeInput() {
+        if (suspended) {
+            suspended = false;
+            ioControl.requestInput();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.client;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.nio.IOControl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Listener that receives the body of a successful response chunk by chunk, as it arrives, rather than once the whole body
+ * has been buffered. Used together with {@link StreamingAsyncResponseConsumer}. All methods are called from the I/O reactor
+ * thread and must not block; the body can be throttled by suspending input on the provided {@link IOControl}.
+ */
+public interface ResponseContentListener {
+
+    /**
+     * Called when the status line and headers of a successful response have been received, before any of its content.
+     * Called once per request attempt: if the request is retried on another host after it failed part way through the
+     * response, the content received so far is invalid and the content of the new response follows.
+     */
+    void onResponseStarted(HttpResponse response);
+
+    /**
+     * Called for each chunk of content. The buffer is only valid for the duration of the call. Input can be suspended through
+     * {@link IOControl#suspendInput()}, in which case no further chunks are received until {@link IOControl#requestInput()}
+     * is called, possibly from another thread.
+     */
+    void onContent(ByteBuffer content, IOControl ioControl) throws IOException;
+
+    /**
+     * Called once all the content of the response has been received.
+     */
+    void onContentCompleted();
+
+    /**
+     * Called if receiving the content of the response failed or was cancelled.
+     */
+    void onContentFailed(Exception e);
+}
@@ -82,6 +82,11 @@ import java.util.concurrent.atomic.AtomicReference;
  * failed (the more failures, the later they will be retried). In case of failures all of the alive nodes (or dead nodes that
  * deserve a retry) are retried until one responds or none of them does, in which case an {@link IOException} will be thrown.
  * <p>
+ * Optionally, hosts can be selected based on how fast they responded to the latest requests and on how many requests are in
+ * flight to them rather than in a round-robin fashion, see {@link RestClientBuilder#setLatencyAwareHostSelection(boolean)}.
+ * Requests that target a single document can also be sent straight to the host that holds the primary shard of the document,
+ * see {@link #setRoutingTable(RoutingTable)}.
+ * <p>
  * Requests can be either synchronous or asynchronous. The asynchronous variants all end with {@code Async}.
  * <p>
  * Requests can be traced by enabling trace logging for "tracer". The trace logger outputs requests and responses in curl format.
@@ -98,15 +103,28 @@ public class RestClient implements Closeable {
     private final AtomicInteger lastHostIndex = new AtomicInteger(0);
     private volatile HostTuple<Set<HttpHost>> hostTuple;
     private final ConcurrentMap<HttpHost, DeadHostState> blacklist = new ConcurrentHashMap<>();
+    private final ConcurrentMap<HttpHost, HostStats> hostStats = new ConcurrentHashMap<>();
+    private volatile RoutingTable routingTable;
     private final FailureListener failureListener;
+    private final boolean latencyAwareHostSelection;
+    private final int maxConnPerHost;
 
     RestClient(CloseableHttpAsyncClient client, long maxRetryTimeoutMillis, Header[] defaultHeaders,
                HttpHost[] hosts, String pathPrefix, FailureListener failureListener) {
+        this(client, maxRetryTimeoutMillis, defaultHeaders, hosts, pathPrefix, failureListener, false,
+                RestClientBuilder.DEFAULT_MAX_CONN_PER_ROUTE);
+    }
+
+    RestClient(CloseableHttpAsyncClient client, long maxRetryTimeoutMillis, Header[] defaultHeaders,
+               HttpHost[] hosts, String pathPrefix, FailureListener failureListener, boolean latencyAwareHostSelection,
+               int maxConnPerHost) {
         this.client = client;
         this.maxRetryTimeoutMillis = maxRetryTimeoutMillis;
         this.defaultHeaders = defaultHeaders;
         this.failureListener = failureListener;
         this.pathPrefix = pathPrefix;
+        this.latencyAwareHostSelection = latencyAwareHostSelection;
+        this.maxConnPerHost = maxConnPerHost;
         setHosts(hosts);
     }
 
@@ -134,6 +152,22 @@ public class RestClient implements Closeable {
         }
         this.hostTuple = new HostTuple<>(Collections.unmodifiableSet(httpHosts), authCache);
         this.blacklist.clear();
+        for (HttpHost host : httpHosts) {
+            hostStats.putIfAbsent(host, new HostStats());
+        }
+        hostStats.keySet().retainAll(httpHosts);
+    }
+
+    /**
+     * Replaces the routing table that is used to send requests that target a single document, like index, get, update or delete
+     * requests, straight to the host that holds the primary shard of the document. Requests are sent to that host only if it is
+     * one of the hosts that the client communicates with and it is not marked dead, and fall back to the usual host selection
+     * otherwise, as well as when retried. Usually kept up to date by the sniffer.
+     *
+     * @param routingTable the routing table, {@code null} to stop routing requests
+     */
+    public void setRoutingTable(RoutingTable routingTable) {
+        this.routingTable = routingTable;
     }
 
     /**
@@ -321,8 +355,10 @@ public class RestClient implements Closeable {
             HttpRequestBase request = createHttpRequest(method, uri, entity);
             setHeaders(request, headers);
             FailureTrackingResponseListener failureTrackingResponseListener = new FailureTrackingResponseListener(responseListener);
+            RoutingTable routingTable = this.routingTable;
+            HttpHost primaryHost = routingTable == null ? null : routingTable.primaryHost(endpoint, requestParams);
             long startTime = System.nanoTime();
-            performRequestAsync(startTime, nextHost(), request, ignoreErrorCodes, httpAsyncResponseConsumerFactory,
+            performRequestAsync(startTime, nextHost(primaryHost), request, ignoreErrorCodes, httpAsyncResponseConsumerFactory,
                     failureTrackingResponseListener);
         } catch (Exception e) {
             responseListener.onFailure(e);
@@ -340,9 +376,13 @@ public class RestClient implements Closeable {
             httpAsyncResponseConsumerFactory.createHttpAsyncResponseConsumer();
         final HttpClientContext context = HttpClientContext.create();
         context.setAuthCache(hostTuple.authCache);
+        final HostStats stats = getHostStats(host);
+        final long attemptStartTime = System.nanoTime();
+        stats.onRequestStarted();
         client.execute(requestProducer, asyncResponseConsumer, context, new FutureCallback<HttpResponse>() {
             @Override
             public void completed(HttpResponse httpResponse) {
+                stats.onRequestCompleted(System.nanoTime() - attemptStartTime);
                 try {
                     RequestLogger.logResponse(logger, request, host, httpResponse);
                     int statusCode = httpResponse.getStatusLine().getStatusCode();
@@ -369,6 +409,7 @@ public class RestClient implements Closeable {
 
             @Override
             public void failed(Exception failure) {
+                stats.onRequestCompleted(-1);
                 try {
                     RequestLogger.logFailedRequest(logger, request, host, failure);
                     onFailure(host);
@@ -399,6 +440,7 @@ public class RestClient implements Closeable {
 
             @Override
             public void cancelled() {
+                stats.onRequestCompleted(-1);
                 listener.onDefinitiveFailure(new ExecutionException("request was cancelled", null));
             }
         });
@@ -427,8 +469,11 @@ public class RestClient implements Closeable {
      * there are no more hosts available to retry against. The maximum total of attempts is equal to the number of hosts in the iterable.
      * The iterator returned will never be empty. In case there are no healthy hosts available, or dead ones to be be retried,
      * one dead host gets returned so that it can be retried.
+     *
+     * @param primaryHost the host that holds the primary shard that the request targets, which comes first if it is healthy,
+     *                    {@code null} if unknown
      */
-    private HostTuple<Iterator<HttpHost>> nextHost() {
+    private HostTuple<Iterator<HttpHost>> nextHost(HttpHost primaryHost) {
         final HostTuple<Set<HttpHost>> hostTuple = this.hostTuple;
         Collection<HttpHost> nextHosts = Collections.emptySet();
         do {
@@ -455,12 +500,25 @@ public class RestClient implements Closeable {
             } else {
                 List<HttpHost> rotatedHosts = new ArrayList<>(filteredHosts);
                 Collections.rotate(rotatedHosts, rotatedHosts.size() - lastHostIndex.getAndIncrement());
+                if (latencyAwareHostSelection) {
+                    //the sort is stable, hosts that are expected to respond equally fast are still selected in a round-robin fashion
+                    Collections.sort(rotatedHosts, new HostStatsComparator(rotatedHosts, hostStats, maxConnPerHost));
+                }
+                if (primaryHost != null && rotatedHosts.remove(primaryHost)) {
+                    rotatedHosts.add(0, primaryHost);
+                }
                 nextHosts = rotatedHosts;
             }
         } while(nextHosts.isEmpty());
         return new HostTuple<>(nextHosts.iterator(), hostTuple.authCache);
     }
 
+    private HostStats getHostStats(HttpHost host) {
+        HostStats stats = hostStats.get(host);
+        //the hosts may have been replaced since the host was selected, in which case its stats don't matter anymore
+        return stats == null ? new HostStats() : stats;
+    }
+
     /**
      * Called after each successful request call.
      * Receives as an argument the host that was used for the successful request.
@@ -701,6 +759,40 @@ public class RestClient implements Closeable {
         }
     }
 
+    /**
+     * Orders hosts so that the ones that have less than the maximum number of connections in use come first, and the ones that are
+     * expected to respond faster come first among them. Works on a snapshot of the stats of the hosts, as they keep changing while
+     * hosts are being sorted.
+     */
+    static class HostStatsComparator implements Comparator<HttpHost> {
+        private final Map<HttpHost, Long> expectedResponseNanos = new HashMap<>();
+        private final Set<HttpHost> saturatedHosts = new HashSet<>();
+
+        HostStatsComparator(Collection<HttpHost> hosts, Map<HttpHost, HostStats> hostStats, int maxConnPerHost) {
+            for (HttpHost host : hosts) {
+                HostStats stats = hostStats.get(host);
+                if (stats == null) {
+                    expectedResponseNanos.put(host, 0L);
+                } else {
+                    expectedResponseNanos.put(host, stats.getExpectedResponseNanos());
+                    if (stats.getInFlightRequests() >= maxConnPerHost) {
+                        saturatedHosts.add(host);
+                    }
+                }
+            }
+        }
+
+        @Override
+        public int compare(HttpHost host1, HttpHost host2) {
+            boolean saturated1 = saturatedHosts.contains(host1);
+            boolean saturated2 = saturatedHosts.contains(host2);
+            if (saturated1 != saturated2) {
+                return saturated1 ? 1 : -1;
+            }
+            return Long.compare(expectedResponseNanos.get(host1), expectedResponseNanos.get(host2));
+        }
+    }
+
     /**
      * {@code HostTuple} enables the {@linkplain HttpHost}s and {@linkplain AuthCache} to be set together in a thread
      * safe, volatile way.
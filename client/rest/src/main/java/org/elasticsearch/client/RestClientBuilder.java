@@ -52,6 +52,9 @@ public final class RestClientBuilder {
     private HttpClientConfigCallback httpClientConfigCallback;
     private RequestConfigCallback requestConfigCallback;
     private String pathPrefix;
+    private int maxConnPerHost = DEFAULT_MAX_CONN_PER_ROUTE;
+    private int maxConnTotal = DEFAULT_MAX_CONN_TOTAL;
+    private boolean latencyAwareHostSelection = false;
 
     /**
      * Creates a new builder instance and sets the hosts that the client will send requests to.
@@ -170,6 +173,49 @@ public final class RestClientBuilder {
         return this;
     }
 
+    /**
+     * Sets the maximum number of connections that the client opens to each host.
+     * {@link #DEFAULT_MAX_CONN_PER_ROUTE} if not specified. Requests to a host that has this many requests in flight wait for a
+     * connection to be released, which is why latency-aware host selection prefers hosts that have connections to spare.
+     * A {@link HttpClientConfigCallback} can still override this value.
+     *
+     * @throws IllegalArgumentException if {@code maxConnPerHost} is not greater than 0
+     * @see #setLatencyAwareHostSelection(boolean)
+     */
+    public RestClientBuilder setMaxConnPerHost(int maxConnPerHost) {
+        if (maxConnPerHost <= 0) {
+            throw new IllegalArgumentException("maxConnPerHost must be greater than 0");
+        }
+        this.maxConnPerHost = maxConnPerHost;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of connections that the client opens to all hosts together.
+     * {@link #DEFAULT_MAX_CONN_TOTAL} if not specified. A {@link HttpClientConfigCallback} can still override this value.
+     *
+     * @throws IllegalArgumentException if {@code maxConnTotal} is not greater than 0
+     */
+    public RestClientBuilder setMaxConnTotal(int maxConnTotal) {
+        if (maxConnTotal <= 0) {
+            throw new IllegalArgumentException("maxConnTotal must be greater than 0");
+        }
+        this.maxConnTotal = maxConnTotal;
+        return this;
+    }
+
+    /**
+     * Sets whether requests should be sent to the hosts that are expected to respond first, based on how fast they responded to
+     * the latest requests and on how many requests are in flight to them, rather than to all hosts in a round-robin fashion.
+     * Hosts that have as many requests in flight as the maximum number of connections per host come last. Disabled by default.
+     *
+     * @see #setMaxConnPerHost(int)
+     */
+    public RestClientBuilder setLatencyAwareHostSelection(boolean latencyAwareHostSelection) {
+        this.latencyAwareHostSelection = latencyAwareHostSelection;
+        return this;
+    }
+
     /**
      * Creates a new {@link RestClient} based on the provided configuration.
      */
@@ -178,7 +224,8 @@ public final class RestClientBuilder {
             failureListener = new RestClient.FailureListener();
         }
         CloseableHttpAsyncClient httpClient = createHttpClient();
-        RestClient restClient = new RestClient(httpClient, maxRetryTimeout, defaultHeaders, hosts, pathPrefix, failureListener);
+        RestClient restClient = new RestClient(httpClient, maxRetryTimeout, defaultHeaders, hosts, pathPrefix, failureListener,
+                latencyAwareHostSelection, maxConnPerHost);
         httpClient.start();
         return restClient;
     }
@@ -195,7 +242,7 @@ public final class RestClientBuilder {
 
         HttpAsyncClientBuilder httpClientBuilder = HttpAsyncClientBuilder.create().setDefaultRequestConfig(requestConfigBuilder.build())
                 //default settings for connection pooling may be too constraining
-                .setMaxConnPerRoute(DEFAULT_MAX_CONN_PER_ROUTE).setMaxConnTotal(DEFAULT_MAX_CONN_TOTAL);
+                .setMaxConnPerRoute(maxConnPerHost).setMaxConnTotal(maxConnTotal);
         if (httpClientConfigCallback != null) {
             httpClientBuilder = httpClientConfigCallback.customizeHttpClient(httpClientBuilder);
         }
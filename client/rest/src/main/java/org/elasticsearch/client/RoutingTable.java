@@ -0,0 +1,268 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.elasticsearch.client;
+
+import org.apache.http.HttpHost;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Holds the host that each primary shard of each index is allocated to. Allows {@link RestClient} to send a request that targets a
+ * single document straight to the node that holds the primary shard of that document, which saves the hop from a random node to
+ * that node. Documents are routed the same way Elasticsearch routes them: based on the murmur3 hash of their routing value, which
+ * defaults to their id. Usually sniffed from the cluster together with its hosts and set through
+ * {@link RestClient#setRoutingTable(RoutingTable)}.
+ * Class is immutable, a new instance should be created each time the routing of the cluster changes.
+ */
+public final class RoutingTable {
+
+    private static final Set<String> DOCUMENT_ENDPOINTS = new HashSet<>(Arrays.asList("_create", "_update", "_source"));
+
+    private final Map<String, IndexRouting> indices;
+
+    private RoutingTable(Map<String, IndexRouting> indices) {
+        this.indices = indices;
+    }
+
+    /**
+     * Returns a new {@link Builder} to help with {@link RoutingTable} creation.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns the host that holds the primary shard of the document that a request targets, {@code null} if the request doesn't
+     * target a single document of a known index. Recognizes the {@code /{index}/{type}/{id}} endpoint of the document apis
+     * optionally followed by {@code _create}, {@code _update} or {@code _source}, as well as the {@code routing} and
+     * {@code parent} parameters.
+     */
+    HttpHost primaryHost(String endpoint, Map<String, String> params) {
+        if (endpoint.indexOf('?') >= 0) {
+            return null;
+        }
+        String path = endpoint;
+        if (path.startsWith("/")) {
+            path = path.substring(1);
+        }
+        if (path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        String[] parts = path.split("/");
+        if (parts.length != 3 && (parts.length != 4 || DOCUMENT_ENDPOINTS.contains(parts[3]) == false)) {
+            return null;
+        }
+        for (int i = 0; i < 3; i++) {
+            //endpoints like /{index}/{type}/_search or /{index}/_mapping/{type} don't target a single document
+            if (parts[i].isEmpty() || parts[i].startsWith("_")) {
+                return null;
+            }
+        }
+        String routing = params.get("routing");
+        if (routing == null) {
+            //child documents are routed based on their parent id unless a routing value is provided
+            routing = params.get("parent");
+        }
+        try {
+            return primaryHost(decode(parts[0]), decode(parts[2]), routing);
+        } catch (IllegalArgumentException e) {
+            //malformed escape sequence, let elasticsearch reject the request
+            return null;
+        }
+    }
+
+    private static String decode(String pathPart) {
+        if (pathPart.indexOf('%') < 0) {
+            return pathPart;
+        }
+        try {
+            //unlike in query strings, '+' is not a space in paths
+            return URLDecoder.decode(pathPart.replace("+", "%2B"), "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Returns the host that holds the primary shard that the document with the provided id and routing belongs to, {@code null} if
+     * the index is unknown, e.g. because it is an alias, or if the shard is not assigned.
+     * @param routing the routing value of the document, {@code null} if the document is routed based on its id
+     */
+    public HttpHost primaryHost(String index, String id, String routing) {
+        IndexRouting indexRouting = indices.get(index);
+        if (indexRouting == null) {
+            return null;
+        }
+        return indexRouting.primaryHost(id, routing);
+    }
+
+    /**
+     * Returns the number of indices that this routing table holds.
+     */
+    public int size() {
+        return indices.size();
+    }
+
+    @Override
+    public String toString() {
+        return "RoutingTable{" +
+                "indices=" + indices +
+                '}';
+    }
+
+    /**
+     * Computes the hash of a routing value like Elasticsearch does it: murmur3 (x86, 32 bits, seed 0) over the UTF-16
+     * little-endian bytes of the value.
+     */
+    static int hash(String routing) {
+        final byte[] bytes = new byte[routing.length() * 2];
+        for (int i = 0; i < routing.length(); i++) {
+            final char c = routing.charAt(i);
+            bytes[i * 2] = (byte) c;
+            bytes[i * 2 + 1] = (byte) (c >>> 8);
+        }
+        final int c1 = 0xcc9e2d51;
+        final int c2 = 0x1b873593;
+        int h1 = 0;
+        // the length is always a multiple of 2, so the tail is either empty or two bytes long
+        final int roundedEnd = bytes.length & 0xfffffffc;
+        for (int i = 0; i < roundedEnd; i += 4) {
+            int k1 = (bytes[i] & 0xff) | ((bytes[i + 1] & 0xff) << 8) | ((bytes[i + 2] & 0xff) << 16) | (bytes[i + 3] << 24);
+            k1 *= c1;
+            k1 = Integer.rotateLeft(k1, 15);
+            k1 *= c2;
+            h1 ^= k1;
+            h1 = Integer.rotateLeft(h1, 13);
+            h1 = h1 * 5 + 0xe6546b64;
+        }
+        if (roundedEnd < bytes.length) {
+            int k1 = (bytes[roundedEnd] & 0xff) | ((bytes[roundedEnd + 1] & 0xff) << 8);
+            k1 *= c1;
+            k1 = Integer.rotateLeft(k1, 15);
+            k1 *= c2;
+            h1 ^= k1;
+        }
+        h1 ^= bytes.length;
+        h1 ^= h1 >>> 16;
+        h1 *= 0x85ebca6b;
+        h1 ^= h1 >>> 13;
+        h1 *= 0xc2b2ae35;
+        h1 ^= h1 >>> 16;
+        return h1;
+    }
+
+    private static int floorMod(int x, int y) {
+        final int mod = x % y;
+        return mod < 0 ? mod + y : mod;
+    }
+
+    private static final class IndexRouting {
+        private final int routingNumShards;
+        private final int routingFactor;
+        private final int routingPartitionSize;
+        private final HttpHost[] primaryHosts;
+
+        IndexRouting(int routingNumShards, int routingPartitionSize, HttpHost[] primaryHosts) {
+            this.routingNumShards = routingNumShards;
+            this.routingFactor = routingNumShards / primaryHosts.length;
+            this.routingPartitionSize = routingPartitionSize;
+            this.primaryHosts = primaryHosts;
+        }
+
+        HttpHost primaryHost(String id, String routing) {
+            final int partitionOffset;
+            if (routingPartitionSize > 1) {
+                partitionOffset = floorMod(hash(id), routingPartitionSize);
+            } else {
+                partitionOffset = 0;
+            }
+            final int hash = hash(routing == null ? id : routing) + partitionOffset;
+            return primaryHosts[floorMod(hash, routingNumShards) / routingFactor];
+        }
+
+        @Override
+        public String toString() {
+            return Arrays.toString(primaryHosts);
+        }
+    }
+
+    /**
+     * Helps creating a new {@link RoutingTable}.
+     */
+    public static final class Builder {
+        private final Map<String, IndexRouting> indices = new HashMap<>();
+
+        private Builder() {
+        }
+
+        /**
+         * Adds an index whose documents are routed to its shards based on the number of shards only, which is the case unless the
+         * index was shrunk or has a routing partition size.
+         *
+         * @param primaryHosts the host that holds each primary shard, by shard id. Unassigned shards are {@code null}.
+         */
+        public Builder addIndex(String index, HttpHost... primaryHosts) {
+            Objects.requireNonNull(primaryHosts, "primaryHosts must not be null");
+            return addIndex(index, primaryHosts.length, 1, primaryHosts);
+        }
+
+        /**
+         * Adds an index together with the settings that affect how its documents are routed to its shards.
+         *
+         * @param routingNumShards the number of shards used for routing, which differs from the number of shards if the index was
+         *                         shrunk. Must be a multiple of the number of shards.
+         * @param routingPartitionSize the value of the {@code index.routing_partition_size} setting of the index
+         * @param primaryHosts the host that holds each primary shard, by shard id. Unassigned shards are {@code null}.
+         * @throws IllegalArgumentException if the arguments are not consistent with each other
+         */
+        public Builder addIndex(String index, int routingNumShards, int routingPartitionSize, HttpHost... primaryHosts) {
+            Objects.requireNonNull(index, "index must not be null");
+            Objects.requireNonNull(primaryHosts, "primaryHosts must not be null");
+            if (primaryHosts.length == 0) {
+                throw new IllegalArgumentException("index [" + index + "] must have at least one shard");
+            }
+            if (routingNumShards < primaryHosts.length || routingNumShards % primaryHosts.length != 0) {
+                throw new IllegalArgumentException("routingNumShards [" + routingNumShards + "] of index [" + index
+                        + "] must be a multiple of the number of shards [" + primaryHosts.length + "]");
+            }
+            if (routingPartitionSize < 1) {
+                throw new IllegalArgumentException("routingPartitionSize of index [" + index + "] must be greater than 0");
+            }
+            indices.put(index, new IndexRouting(routingNumShards, routingPartitionSize, primaryHosts.clone()));
+            return this;
+        }
+
+        /**
+         * Creates a new {@link RoutingTable} holding the indices added so far.
+         */
+        public RoutingTable build() {
+            return new RoutingTable(Collections.unmodifiableMap(new HashMap<>(indices)));
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.client;
+
+import org.apache.http.ContentTooLongException;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpException;
+import org.apache.http.HttpResponse;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.entity.ContentBufferEntity;
+import org.apache.http.nio.protocol.AbstractAsyncResponseConsumer;
+import org.apache.http.nio.util.HeapByteBufferAllocator;
+import org.apache.http.nio.util.SimpleInputBuffer;
+import org.apache.http.protocol.HttpContext;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Implementation of {@link org.apache.http.nio.protocol.HttpAsyncResponseConsumer} that hands the content of successful
+ * responses to a {@link ResponseContentListener} as it arrives instead of buffering it. The response returned to the
+ * {@link ResponseListener} has no entity in that case. The content of unsuccessful responses is buffered in heap memory, up to
+ * the configured buffer limit, so that it can be reported through {@link ResponseException}.
+ */
+public class StreamingAsyncResponseConsumer extends AbstractAsyncResponseConsumer<HttpResponse> {
+
+    static final int CHUNK_SIZE = 8 * 1024;
+
+    private final ResponseContentListener listener;
+    private final int bufferLimitBytes;
+    private final ByteBuffer chunk = ByteBuffer.allocate(CHUNK_SIZE);
+    private volatile HttpResponse response;
+    private volatile SimpleInputBuffer buf;
+    private volatile boolean streaming;
+    private volatile boolean contentCompleted;
+
+    /**
+     * Creates a new instance of this consumer that streams successful responses to the provided listener and buffers
+     * unsuccessful ones up to the provided buffer limit
+     */
+    public StreamingAsyncResponseConsumer(ResponseContentListener listener, int bufferLimit) {
+        if (listener == null) {
+            throw new IllegalArgumentException("listener must not be null");
+        }
+        if (bufferLimit <= 0) {
+            throw new IllegalArgumentException("bufferLimit must be greater than 0");
+        }
+        this.listener = listener;
+        this.bufferLimitBytes = bufferLimit;
+    }
+
+    /**
+     * Get the limit of the buffer used for unsuccessful responses.
+     */
+    public int getBufferLimit() {
+        return bufferLimitBytes;
+    }
+
+    @Override
+    protected void onResponseReceived(HttpResponse response) throws HttpException, IOException {
+        this.response = response;
+        int statusCode = response.getStatusLine().getStatusCode();
+        if (statusCode >= 200 && statusCode < 300) {
+            streaming = true;
+            listener.onResponseStarted(response);
+        }
+    }
+
+    @Override
+    protected void onEntityEnclosed(HttpEntity entity, ContentType contentType) throws IOException {
+        if (streaming) {
+            // the content goes to the listener, nobody must try to read it from the response
+            response.setEntity(null);
+            return;
+        }
+        long len = entity.getContentLength();
+        if (len > bufferLimitBytes) {
+            throw new ContentTooLongException("entity content is too long [" + len +
+                    "] for the configured buffer limit [" + bufferLimitBytes + "]");
+        }
+        if (len < 0) {
+            len = 4096;
+        }
+        this.buf = new SimpleInputBuffer((int) len, HeapByteBufferAllocator.INSTANCE);
+        this.response.setEntity(new ContentBufferEntity(entity, this.buf));
+    }
+
+    @Override
+    protected void onContentReceived(ContentDecoder decoder, IOControl ioctrl) throws IOException {
+        if (streaming == false) {
+            this.buf.consumeContent(decoder);
+            return;
+        }
+        InputTrackingIOControl control = new InputTrackingIOControl(ioctrl);
+        chunk.clear();
+        // stop reading as soon as the listener suspends input, the decoder is called again once input is requested
+        while (control.inputSuspended == false && decoder.read(chunk) > 0) {
+            chunk.flip();
+            listener.onContent(chunk, control);
+            chunk.clear();
+        }
+    }
+
+    @Override
+    protected HttpResponse buildResult(HttpContext context) throws Exception {
+        if (streaming) {
+            contentCompleted = true;
+            listener.onContentCompleted();
+        }
+        return response;
+    }
+
+    @Override
+    protected void releaseResources() {
+        if (streaming && contentCompleted == false) {
+            Exception failure = getException();
+            listener.onContentFailed(failure == null ? new CancellationException("response was cancelled") : failure);
+        }
+        response = null;
+        buf = null;
+    }
+
+    /**
+     * Wraps the {@link IOControl} of the connection to know whether the listener suspended input while handling a chunk
+     */
+    private static final class InputTrackingIOControl implements IOControl {
+
+        private final IOControl delegate;
+        private volatile boolean inputSuspended;
+
+        InputTrackingIOControl(IOControl delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void requestInput() {
+            inputSuspended = false;
+            delegate.requestInput();
+        }
+
+        @Override
+        public void suspendInput() {
+            inputSuspended = true;
+            delegate.suspendInput();
+        }
+
+        @Override
+        public void requestOutput() {
+            delegate.requestOutput();
+        }
+
+        @Override
+        public void suspendOutput() {
+            delegate.suspendOutput();
+        }
+
+        @Override
+        public void shutdown() throws IOException {
+            delegate.shutdown();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.elasticsearch.client;
+
+import org.apache.http.HttpHost;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class HostStatsTests extends RestClientTestCase {
+
+    public void testStats() {
+        HostStats stats = new HostStats();
+        assertEquals(0, stats.getAverageResponseNanos());
+        assertEquals(0, stats.getExpectedResponseNanos());
+        stats.onRequestStarted();
+        stats.onRequestStarted();
+        assertEquals(2, stats.getInFlightRequests());
+        stats.onRequestCompleted(1000);
+        assertEquals(1, stats.getInFlightRequests());
+        assertEquals(1000, stats.getAverageResponseNanos());
+        assertEquals(2000, stats.getExpectedResponseNanos());
+        stats.onRequestCompleted(-1);
+        assertEquals(0, stats.getInFlightRequests());
+        assertEquals(1000, stats.getAverageResponseNanos());
+        stats.onRequestStarted();
+        stats.onRequestCompleted(2000);
+        assertEquals((long) (1000 + HostStats.ALPHA * 1000), stats.getAverageResponseNanos());
+    }
+
+    public void testComparator() {
+        HttpHost unknown = new HttpHost("unknown", 9200);
+        HttpHost fast = new HttpHost("fast", 9200);
+        HttpHost slow = new HttpHost("slow", 9200);
+        HttpHost busy = new HttpHost("busy", 9200);
+        HttpHost saturated = new HttpHost("saturated", 9200);
+        int maxConnPerHost = randomIntBetween(2, 9);
+        Map<HttpHost, HostStats> hostStats = new HashMap<>();
+        hostStats.put(unknown, new HostStats());
+        hostStats.put(fast, stats(0, 1000));
+        hostStats.put(slow, stats(0, 10000));
+        hostStats.put(busy, stats(maxConnPerHost - 1, 1000));
+        hostStats.put(saturated, stats(maxConnPerHost, 1));
+        List<HttpHost> hosts = new ArrayList<>(hostStats.keySet());
+        Collections.shuffle(hosts, getRandom());
+        Collections.sort(hosts, new RestClient.HostStatsComparator(hosts, hostStats, maxConnPerHost));
+        //the busy host is expected to respond after its requests in flight, but still before the slow host
+        assertEquals(Arrays.asList(unknown, fast, busy, slow, saturated), hosts);
+    }
+
+    private static HostStats stats(int inFlightRequests, long responseNanos) {
+        HostStats stats = new HostStats();
+        stats.onRequestStarted();
+        stats.onRequestCompleted(responseNanos);
+        for (int i = 0; i < inFlightRequests; i++) {
+            stats.onRequestStarted();
+        }
+        return stats;
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.elasticsearch.client;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.ProtocolVersion;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.message.BasicStatusLine;
+import org.apache.http.nio.IOControl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.elasticsearch.client.StreamingAsyncResponseConsumerTests.randomBytes;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ResponseContentInputStreamTests extends RestClientTestCase {
+
+    public void testReadWhileReceiving() throws Exception {
+        final int bufferLimit = randomIntBetween(1, 4096);
+        final ResponseContentInputStream stream = new ResponseContentInputStream(bufferLimit);
+        final byte[] content = randomBytes(randomIntBetween(0, 64 * 1024));
+        final ThrottledIOControl ioControl = new ThrottledIOControl();
+        // randomness is not available on other threads, so the producer uses precomputed chunk lengths
+        final int[] chunkLengths = new int[content.length];
+        for (int i = 0; i < chunkLengths.length; i++) {
+            chunkLengths[i] = randomIntBetween(1, 2048);
+        }
+        final AtomicReference<Exception> producerFailure = new AtomicReference<>();
+        final AtomicInteger maxBuffered = new AtomicInteger();
+        Thread producer = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    stream.onResponseStarted(newResponse());
+                    int offset = 0;
+                    for (int i = 0; offset < content.length; i++) {
+                        ioControl.awaitInput();
+                        int length = Math.min(content.length - offset, chunkLengths[i]);
+                        stream.onContent(ByteBuffer.wrap(content, offset, length), ioControl);
+                        maxBuffered.set(Math.max(maxBuffered.get(), stream.available()));
+                        offset += length;
+                    }
+                    stream.onContentCompleted();
+                } catch (Exception e) {
+                    producerFailure.set(e);
+                    stream.onContentFailed(e);
+                }
+            }
+        };
+        producer.start();
+        ByteArrayOutputStream read = new ByteArrayOutputStream();
+        byte[] buffer = new byte[randomIntBetween(1, 1024)];
+        int n;
+        while ((n = stream.read(buffer, 0, buffer.length)) != -1) {
+            read.write(buffer, 0, n);
+        }
+        producer.join();
+        assertNull(producerFailure.get());
+        assertArrayEquals(content, read.toByteArray());
+        assertFalse(ioControl.isSuspended());
+        // input is suspended once the limit is reached, so at most one chunk more than the limit is buffered
+        assertTrue(maxBuffered.get() < bufferLimit + 2048);
+    }
+
+    public void testFailure() throws Exception {
+        ResponseContentInputStream stream = new ResponseContentInputStream(randomIntBetween(1, 1024));
+        stream.onResponseStarted(newResponse());
+        stream.onContent(ByteBuffer.wrap(randomBytes(10)), new StreamingAsyncResponseConsumerTests.NoopIOControl());
+        IOException failure = new IOException("connection reset");
+        stream.onContentFailed(failure);
+        try {
+            stream.read(new byte[10], 0, 10);
+            fail("expected IOException");
+        } catch (IOException e) {
+            assertEquals("failed to receive the response content", e.getMessage());
+            assertSame(failure, e.getCause());
+        }
+    }
+
+    public void testRetryAfterRead() throws Exception {
+        ResponseContentInputStream stream = new ResponseContentInputStream(1024);
+        IOControl ioControl = new StreamingAsyncResponseConsumerTests.NoopIOControl();
+        stream.onResponseStarted(newResponse());
+        stream.onContent(ByteBuffer.wrap(randomBytes(10)), ioControl);
+        stream.onResponseStarted(newResponse());
+        // nothing was read yet, the retried response replaces the content received so far
+        byte[] content = randomBytes(10);
+        stream.onContent(ByteBuffer.wrap(content), ioControl);
+        assertEquals(content[0] & 0xFF, stream.read());
+
+        stream.onResponseStarted(newResponse());
+        try {
+            stream.read();
+            fail("expected IOException");
+        } catch (IOException e) {
+            assertEquals("the request was retried after part of the previous response had been read", e.getCause().getMessage());
+        }
+    }
+
+    public void testRetryAfterFailure() throws Exception {
+        ResponseContentInputStream stream = new ResponseContentInputStream(10);
+        ThrottledIOControl failedIOControl = new ThrottledIOControl();
+        // the first attempt fails while input is suspended, then the request is retried on another node
+        stream.onResponseStarted(newResponse());
+        stream.onContent(ByteBuffer.wrap(randomBytes(20)), failedIOControl);
+        assertTrue(failedIOControl.isSuspended());
+        stream.onContentFailed(new IOException("connection reset"));
+        assertFalse(failedIOControl.isSuspended());
+
+        ThrottledIOControl ioControl = new ThrottledIOControl();
+        stream.onResponseStarted(newResponse());
+        byte[] content = randomBytes(randomIntBetween(11, 30));
+        stream.onContent(ByteBuffer.wrap(content), ioControl);
+        // the new attempt suspends its own connection rather than assuming input is still suspended
+        assertTrue(ioControl.isSuspended());
+        stream.onContentCompleted();
+        ByteArrayOutputStream read = new ByteArrayOutputStream();
+        int b;
+        while ((b = stream.read()) != -1) {
+            read.write(b);
+        }
+        assertArrayEquals(content, read.toByteArray());
+        assertFalse(ioControl.isSuspended());
+    }
+
+    public void testClose() throws Exception {
+        ResponseContentInputStream stream = new ResponseContentInputStream(10);
+        ThrottledIOControl ioControl = new ThrottledIOControl();
+        stream.onResponseStarted(newResponse());
+        stream.onContent(ByteBuffer.wrap(randomBytes(20)), ioControl);
+        assertTrue(ioControl.isSuspended());
+        stream.close();
+        assertFalse(ioControl.isSuspended());
+        ByteBuffer content = ByteBuffer.wrap(randomBytes(20));
+        stream.onContent(content, ioControl);
+        assertFalse(content.hasRemaining());
+        assertEquals(0, stream.available());
+        try {
+            stream.read();
+            fail("expected IOException");
+        } catch (IOException e) {
+            assertEquals("stream is closed", e.getMessage());
+        }
+    }
+
+    private static HttpResponse newResponse() {
+        return new BasicHttpResponse(new BasicStatusLine(new ProtocolVersion("HTTP", 1, 1), 200, "OK"));
+    }
+
+    /**
+     * {@link IOControl} that blocks the producer while input is suspended, like the I/O reactor does
+     */
+    private static class ThrottledIOControl extends StreamingAsyncResponseConsumerTests.NoopIOControl {
+        private boolean suspended;
+
+        @Override
+        public synchronized void requestInput() {
+            suspended = false;
+            notifyAll();
+        }
+
+        @Override
+        public synchronized void suspendInput() {
+            suspended = true;
+        }
+
+        synchronized boolean isSuspended() {
+            return suspended;
+        }
+
+        synchronized void awaitInput() throws InterruptedException {
+            while (suspended) {
+                wait();
+            }
+        }
+    }
+}
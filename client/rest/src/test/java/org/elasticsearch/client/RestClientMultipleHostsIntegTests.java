@@ -73,6 +73,7 @@ public class RestClientMultipleHostsIntegTests extends RestClientTestCase {
             httpHosts[i] = new HttpHost(httpServer.getAddress().getHostString(), httpServer.getAddress().getPort());
         }
         RestClientBuilder restClientBuilder = RestClient.builder(httpHosts);
+        restClientBuilder.setLatencyAwareHostSelection(randomBoolean());
         if (pathPrefix.length() > 0) {
             restClientBuilder.setPathPrefix((randomBoolean() ? "/" : "") + pathPrefixWithoutLeadingSlash);
         }
@@ -86,6 +87,7 @@ public class RestClientMultipleHostsIntegTests extends RestClientTestCase {
         for (int statusCode : getAllStatusCodes()) {
             httpServer.createContext(pathPrefix + "/" + statusCode, new ResponseHandler(statusCode));
         }
+        httpServer.createContext(pathPrefix + "/index", new ResponseHandler(200));
         return httpServer;
     }
 
@@ -186,6 +188,23 @@ public class RestClientMultipleHostsIntegTests extends RestClientTestCase {
         }
     }
 
+    public void testRoutedRequests() throws IOException {
+        HttpServer httpServer = httpServers[randomInt(httpServers.length - 1)];
+        HttpHost primaryHost = new HttpHost(httpServer.getAddress().getHostString(), httpServer.getAddress().getPort());
+        restClient.setRoutingTable(RoutingTable.builder().addIndex("index", primaryHost).build());
+        try {
+            int numRequests = randomIntBetween(5, 20);
+            for (int i = 0; i < numRequests; i++) {
+                String method = RestClientTestUtil.randomHttpMethod(getRandom());
+                Response response = restClient.performRequest(method, "/index/type/" + randomAsciiOfLengthBetween(1, 10));
+                assertEquals(200, response.getStatusLine().getStatusCode());
+                assertEquals(primaryHost, response.getHost());
+            }
+        } finally {
+            restClient.setRoutingTable(null);
+        }
+    }
+
     private static class TestResponse {
         private final String method;
         private final int statusCode;
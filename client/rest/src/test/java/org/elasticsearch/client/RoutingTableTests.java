@@ -0,0 +1,145 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.elasticsearch.client;
+
+import org.apache.http.HttpHost;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class RoutingTableTests extends RestClientTestCase {
+
+    public void testHashKnownValues() {
+        //same values as the murmur3 hash function that elasticsearch routes documents with
+        assertEquals(0x5a0cb7c3, RoutingTable.hash("hell"));
+        assertEquals(0xd7c31989, RoutingTable.hash("hello"));
+        assertEquals(0x22ab2984, RoutingTable.hash("hello w"));
+        assertEquals(0xdf0ca123, RoutingTable.hash("hello wo"));
+        assertEquals(0xe7744d61, RoutingTable.hash("hello wor"));
+        assertEquals(0xe07db09c, RoutingTable.hash("The quick brown fox jumps over the lazy dog"));
+        assertEquals(0x4e63d2ad, RoutingTable.hash("The quick brown fox jumps over the lazy cog"));
+    }
+
+    public void testPrimaryHost() {
+        HttpHost[] hosts = randomHosts(randomIntBetween(1, 10));
+        RoutingTable routingTable = RoutingTable.builder().addIndex("index", hosts).build();
+        String id = randomAsciiOfLengthBetween(1, 10);
+        assertSame(hosts[floorMod(RoutingTable.hash(id), hosts.length)], routingTable.primaryHost("index", id, null));
+        String routing = randomAsciiOfLengthBetween(1, 10);
+        assertSame(hosts[floorMod(RoutingTable.hash(routing), hosts.length)], routingTable.primaryHost("index", id, routing));
+        assertNull(routingTable.primaryHost("alias", id, null));
+    }
+
+    public void testShrunkIndex() {
+        HttpHost[] hosts = randomHosts(randomIntBetween(1, 5));
+        int routingFactor = randomIntBetween(1, 4);
+        RoutingTable routingTable = RoutingTable.builder().addIndex("index", hosts.length * routingFactor, 1, hosts).build();
+        String id = randomAsciiOfLengthBetween(1, 10);
+        int shard = floorMod(RoutingTable.hash(id), hosts.length * routingFactor) / routingFactor;
+        assertSame(hosts[shard], routingTable.primaryHost("index", id, null));
+    }
+
+    public void testRoutingPartition() {
+        HttpHost[] hosts = randomHosts(randomIntBetween(2, 10));
+        int routingPartitionSize = randomIntBetween(1, hosts.length - 1);
+        RoutingTable routingTable = RoutingTable.builder().addIndex("index", hosts.length, routingPartitionSize, hosts).build();
+        String id = randomAsciiOfLengthBetween(1, 10);
+        String routing = randomAsciiOfLengthBetween(1, 10);
+        int partitionOffset = floorMod(RoutingTable.hash(id), routingPartitionSize);
+        int shard = floorMod(RoutingTable.hash(routing) + partitionOffset, hosts.length);
+        assertSame(hosts[shard], routingTable.primaryHost("index", id, routing));
+    }
+
+    public void testPrimaryHostFromEndpoint() {
+        HttpHost[] hosts = randomHosts(randomIntBetween(1, 10));
+        RoutingTable routingTable = RoutingTable.builder().addIndex("index", hosts).build();
+        Map<String, String> noParams = Collections.emptyMap();
+        HttpHost expected = routingTable.primaryHost("index", "1", null);
+        assertSame(expected, routingTable.primaryHost("/index/type/1", noParams));
+        assertSame(expected, routingTable.primaryHost("index/type/1/", noParams));
+        assertSame(expected, routingTable.primaryHost("/index/type/1/_create", noParams));
+        assertSame(expected, routingTable.primaryHost("/index/type/1/_update", noParams));
+        assertSame(expected, routingTable.primaryHost("/index/type/1/_source", noParams));
+        assertSame(routingTable.primaryHost("index", "a/b c+", null), routingTable.primaryHost("/index/type/a%2Fb%20c+", noParams));
+
+        Map<String, String> params = new HashMap<>();
+        params.put("parent", "parent");
+        assertSame(routingTable.primaryHost("index", "1", "parent"), routingTable.primaryHost("/index/type/1", params));
+        params.put("routing", "routing");
+        assertSame(routingTable.primaryHost("index", "1", "routing"), routingTable.primaryHost("/index/type/1", params));
+
+        assertNull(routingTable.primaryHost("/index/type/_search", noParams));
+        assertNull(routingTable.primaryHost("/index/_mapping/type", noParams));
+        assertNull(routingTable.primaryHost("/_bulk", noParams));
+        assertNull(routingTable.primaryHost("/index/type", noParams));
+        assertNull(routingTable.primaryHost("/index/type/1/_explain", noParams));
+        assertNull(routingTable.primaryHost("/index//1", noParams));
+        assertNull(routingTable.primaryHost("/index/type/1?refresh=true", noParams));
+        assertNull(routingTable.primaryHost("/index/type/%zz", noParams));
+        assertNull(routingTable.primaryHost("/other/type/1", noParams));
+    }
+
+    public void testUnassignedShard() {
+        RoutingTable routingTable = RoutingTable.builder().addIndex("index", new HttpHost[] {null}).build();
+        assertNull(routingTable.primaryHost("/index/type/1", Collections.<String, String>emptyMap()));
+    }
+
+    public void testBuilderValidation() {
+        RoutingTable.Builder builder = RoutingTable.builder();
+        try {
+            builder.addIndex("index");
+            fail("should have failed");
+        } catch (IllegalArgumentException e) {
+            assertEquals("index [index] must have at least one shard", e.getMessage());
+        }
+        try {
+            builder.addIndex("index", 3, 1, randomHosts(2));
+            fail("should have failed");
+        } catch (IllegalArgumentException e) {
+            assertEquals("routingNumShards [3] of index [index] must be a multiple of the number of shards [2]", e.getMessage());
+        }
+        try {
+            builder.addIndex("index", 2, 0, randomHosts(2));
+            fail("should have failed");
+        } catch (IllegalArgumentException e) {
+            assertEquals("routingPartitionSize of index [index] must be greater than 0", e.getMessage());
+        }
+        assertEquals(0, builder.build().size());
+    }
+
+    private static HttpHost[] randomHosts(int numHosts) {
+        HttpHost[] hosts = new HttpHost[numHosts];
+        for (int i = 0; i < numHosts; i++) {
+            hosts[i] = new HttpHost("host" + i, 9200);
+        }
+        return hosts;
+    }
+
+    private static int floorMod(int x, int y) {
+        return ((x % y) + y) % y;
+    }
+}
@@ -0,0 +1,275 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.elasticsearch.client;
+
+import org.apache.http.ContentTooLongException;
+import org.apache.http.HttpResponse;
+import org.apache.http.ProtocolVersion;
+import org.apache.http.StatusLine;
+import org.apache.http.entity.BasicHttpEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.message.BasicStatusLine;
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.protocol.HttpAsyncResponseConsumer;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.util.EntityUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CancellationException;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class StreamingAsyncResponseConsumerTests extends RestClientTestCase {
+
+    public void testStreamsSuccessfulResponse() throws Exception {
+        RecordingListener listener = new RecordingListener();
+        StreamingAsyncResponseConsumer consumer = new StreamingAsyncResponseConsumer(listener, randomIntBetween(1, 1024));
+        HttpResponse httpResponse = newResponse(randomIntBetween(200, 299));
+        httpResponse.setEntity(new StringEntity("ignored"));
+
+        consumer.responseReceived(httpResponse);
+        assertSame(httpResponse, listener.response);
+        assertNull(httpResponse.getEntity());
+
+        byte[] content = randomBytes(randomIntBetween(0, 3 * StreamingAsyncResponseConsumer.CHUNK_SIZE));
+        ChunkedDecoder decoder = new ChunkedDecoder(content);
+        while (decoder.isCompleted() == false) {
+            consumer.consumeContent(decoder, new NoopIOControl());
+        }
+        assertFalse(listener.completed);
+        consumer.responseCompleted(new BasicHttpContext());
+
+        assertTrue(consumer.isDone());
+        assertSame(httpResponse, consumer.getResult());
+        assertTrue(listener.completed);
+        assertNull(listener.failure);
+        assertArrayEquals(content, listener.content.toByteArray());
+    }
+
+    public void testStopsReadingOnceInputIsSuspended() throws Exception {
+        final int[] chunks = new int[1];
+        RecordingListener listener = new RecordingListener() {
+            @Override
+            public void onContent(ByteBuffer content, IOControl ioControl) {
+                super.onContent(content, ioControl);
+                chunks[0]++;
+                ioControl.suspendInput();
+            }
+        };
+        StreamingAsyncResponseConsumer consumer = new StreamingAsyncResponseConsumer(listener, 1024);
+        consumer.responseReceived(newResponse(200));
+        byte[] content = randomBytes(randomIntBetween(1, 3 * StreamingAsyncResponseConsumer.CHUNK_SIZE));
+        ChunkedDecoder decoder = new ChunkedDecoder(content);
+        while (decoder.isCompleted() == false) {
+            int before = chunks[0];
+            // the reactor calls the consumer again once input is requested, the decoder must not be drained in the meantime
+            consumer.consumeContent(decoder, new NoopIOControl());
+            assertTrue(chunks[0] - before <= 1);
+        }
+        consumer.responseCompleted(new BasicHttpContext());
+        assertTrue(listener.completed);
+        assertArrayEquals(content, listener.content.toByteArray());
+    }
+
+    public void testBuffersUnsuccessfulResponse() throws Exception {
+        RecordingListener listener = new RecordingListener();
+        StreamingAsyncResponseConsumer consumer = new StreamingAsyncResponseConsumer(listener, 1024);
+        HttpResponse httpResponse = newResponse(randomIntBetween(400, 599));
+        BasicHttpEntity entity = new BasicHttpEntity();
+        entity.setContentLength(5);
+        httpResponse.setEntity(entity);
+
+        consumer.responseReceived(httpResponse);
+        ChunkedDecoder decoder = new ChunkedDecoder("error".getBytes(StandardCharsets.UTF_8));
+        while (decoder.isCompleted() == false) {
+            consumer.consumeContent(decoder, new NoopIOControl());
+        }
+        consumer.responseCompleted(new BasicHttpContext());
+
+        assertSame(httpResponse, consumer.getResult());
+        assertEquals("error", EntityUtils.toString(httpResponse.getEntity()));
+        assertNull(listener.response);
+        assertEquals(0, listener.content.size());
+        assertFalse(listener.completed);
+        assertNull(listener.failure);
+    }
+
+    public void testUnsuccessfulResponseBufferLimit() throws Exception {
+        int bufferLimit = randomIntBetween(1, 1024);
+        StreamingAsyncResponseConsumer consumer = new StreamingAsyncResponseConsumer(new RecordingListener(), bufferLimit);
+        consumer.onResponseReceived(newResponse(500));
+        BasicHttpEntity entity = new BasicHttpEntity();
+        entity.setContentLength(randomIntBetween(bufferLimit + 1, 2048));
+        try {
+            consumer.onEntityEnclosed(entity, ContentType.APPLICATION_JSON);
+            fail("expected ContentTooLongException");
+        } catch (ContentTooLongException e) {
+            assertEquals("entity content is too long [" + entity.getContentLength() +
+                    "] for the configured buffer limit [" + bufferLimit + "]", e.getMessage());
+        }
+    }
+
+    public void testFailureWhileStreaming() throws Exception {
+        RecordingListener listener = new RecordingListener();
+        StreamingAsyncResponseConsumer consumer = new StreamingAsyncResponseConsumer(listener, 1024);
+        consumer.responseReceived(newResponse(200));
+        consumer.consumeContent(new ChunkedDecoder(randomBytes(10)), new NoopIOControl());
+        if (randomBoolean()) {
+            IOException failure = new IOException("connection reset");
+            consumer.failed(failure);
+            assertSame(failure, listener.failure);
+        } else {
+            consumer.cancel();
+            assertThat(listener.failure, instanceOf(CancellationException.class));
+        }
+        assertFalse(listener.completed);
+    }
+
+    public void testConfiguredBufferLimit() {
+        try {
+            new StreamingAsyncResponseConsumer(new RecordingListener(), randomIntBetween(Integer.MIN_VALUE, 0));
+            fail("expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            assertEquals("bufferLimit must be greater than 0", e.getMessage());
+        }
+        try {
+            new StreamingAsyncResponseConsumer(null, 1024);
+            fail("expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            assertEquals("listener must not be null", e.getMessage());
+        }
+    }
+
+    public void testStreamingResponseConsumerFactory() {
+        ResponseContentListener listener = new RecordingListener();
+        int bufferLimit = randomIntBetween(1, Integer.MAX_VALUE);
+        HttpAsyncResponseConsumerFactory factory =
+                new HttpAsyncResponseConsumerFactory.StreamingResponseConsumerFactory(listener, bufferLimit);
+        HttpAsyncResponseConsumer<HttpResponse> consumer = factory.createHttpAsyncResponseConsumer();
+        assertThat(consumer, instanceOf(StreamingAsyncResponseConsumer.class));
+        assertEquals(bufferLimit, ((StreamingAsyncResponseConsumer) consumer).getBufferLimit());
+    }
+
+    private static HttpResponse newResponse(int statusCode) {
+        ProtocolVersion protocolVersion = new ProtocolVersion("HTTP", 1, 1);
+        StatusLine statusLine = new BasicStatusLine(protocolVersion, statusCode, "");
+        return new BasicHttpResponse(statusLine);
+    }
+
+    static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        getRandom().nextBytes(bytes);
+        return bytes;
+    }
+
+    private static class RecordingListener implements ResponseContentListener {
+        private final ByteArrayOutputStream content = new ByteArrayOutputStream();
+        private HttpResponse response;
+        private boolean completed;
+        private Exception failure;
+
+        @Override
+        public void onResponseStarted(HttpResponse response) {
+            this.response = response;
+        }
+
+        @Override
+        public void onContent(ByteBuffer content, IOControl ioControl) {
+            while (content.hasRemaining()) {
+                this.content.write(content.get());
+            }
+        }
+
+        @Override
+        public void onContentCompleted() {
+            completed = true;
+        }
+
+        @Override
+        public void onContentFailed(Exception e) {
+            failure = e;
+        }
+    }
+
+    /**
+     * Decoder that hands out the provided content in randomly sized pieces, possibly over several calls
+     */
+    static class ChunkedDecoder implements ContentDecoder {
+        private final ByteBuffer content;
+
+        ChunkedDecoder(byte[] content) {
+            this.content = ByteBuffer.wrap(content);
+        }
+
+        @Override
+        public int read(ByteBuffer dst) {
+            if (content.hasRemaining() == false || randomBoolean()) {
+                return 0;
+            }
+            int length = Math.min(dst.remaining(), Math.min(content.remaining(), randomIntBetween(1, 1024)));
+            for (int i = 0; i < length; i++) {
+                dst.put(content.get());
+            }
+            return length;
+        }
+
+        @Override
+        public boolean isCompleted() {
+            return content.hasRemaining() == false;
+        }
+    }
+
+    static class NoopIOControl implements IOControl {
+        @Override
+        public void requestInput() {
+        }
+
+        @Override
+        public void suspendInput() {
+        }
+
+        @Override
+        public void requestOutput() {
+        }
+
+        @Override
+        public void suspendOutput() {
+        }
+
+        @Override
+        public void shutdown() {
+        }
+    }
+}
@@ -28,12 +28,15 @@ import org.apache.http.HttpEntity;
 import org.apache.http.HttpHost;
 import org.elasticsearch.client.Response;
 import org.elasticsearch.client.RestClient;
+import org.elasticsearch.client.RoutingTable;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -41,12 +44,19 @@ import java.util.concurrent.TimeUnit;
 
 /**
  * Class responsible for sniffing the http hosts from elasticsearch through the nodes info api and returning them back.
- * Compatible with elasticsearch 5.x and 2.x.
+ * Compatible with elasticsearch 5.x and 2.x. Can also sniff the host that holds each primary shard through the cluster state api,
+ * so that requests that target a single document can be sent straight to that host.
  */
-public final class ElasticsearchHostsSniffer implements HostsSniffer {
+public final class ElasticsearchHostsSniffer implements HostsSniffer, RoutingTableSniffer {
 
     private static final Log logger = LogFactory.getLog(ElasticsearchHostsSniffer.class);
 
+    private static final Map<String, String> ROUTING_TABLE_REQUEST_PARAMS = Collections.singletonMap("filter_path",
+            "metadata.indices.*.routing_num_shards,metadata.indices.*.settings.index.number_of_shards,"
+            + "metadata.indices.*.settings.index.routing_partition_size,metadata.indices.*.settings.index.shrink.source.name,"
+            + "routing_table.indices.*.shards.*.primary,routing_table.indices.*.shards.*.state,"
+            + "routing_table.indices.*.shards.*.node");
+
     public static final long DEFAULT_SNIFF_REQUEST_TIMEOUT = TimeUnit.SECONDS.toMillis(1);
 
     private final RestClient restClient;
@@ -90,17 +100,33 @@ public final class ElasticsearchHostsSniffer implements HostsSniffer {
      * Calls the elasticsearch nodes info api, parses the response and returns all the found http hosts
      */
     public List<HttpHost> sniffHosts() throws IOException {
+        return new ArrayList<>(sniffHostsByNodeId().values());
+    }
+
+    /**
+     * Calls the elasticsearch nodes info api and the cluster state api, parses the responses and returns the host that holds each
+     * primary shard. Indices that are only known through an alias are not part of the routing table, neither are shrunk indices
+     * if the cluster doesn't report how their documents are routed.
+     */
+    @Override
+    public RoutingTable sniffRoutingTable() throws IOException {
+        Map<String, HttpHost> hosts = sniffHostsByNodeId();
+        Response response = restClient.performRequest("get", "/_cluster/state/metadata,routing_table", ROUTING_TABLE_REQUEST_PARAMS);
+        return readRoutingTable(response.getEntity(), hosts);
+    }
+
+    private Map<String, HttpHost> sniffHostsByNodeId() throws IOException {
         Response response = restClient.performRequest("get", "/_nodes/http", sniffRequestParams);
         return readHosts(response.getEntity());
     }
 
-    private List<HttpHost> readHosts(HttpEntity entity) throws IOException {
+    private Map<String, HttpHost> readHosts(HttpEntity entity) throws IOException {
         try (InputStream inputStream = entity.getContent()) {
             JsonParser parser = jsonFactory.createParser(inputStream);
             if (parser.nextToken() != JsonToken.START_OBJECT) {
                 throw new IOException("expected data to start with an object");
             }
-            List<HttpHost> hosts = new ArrayList<>();
+            Map<String, HttpHost> hosts = new LinkedHashMap<>();
             while (parser.nextToken() != JsonToken.END_OBJECT) {
                 if (parser.getCurrentToken() == JsonToken.START_OBJECT) {
                     if ("nodes".equals(parser.getCurrentName())) {
@@ -111,7 +137,7 @@ public final class ElasticsearchHostsSniffer implements HostsSniffer {
                             HttpHost sniffedHost = readHost(nodeId, parser, this.scheme);
                             if (sniffedHost != null) {
                                 logger.trace("adding node [" + nodeId + "]");
-                                hosts.add(sniffedHost);
+                                hosts.put(nodeId, sniffedHost);
                             }
                         }
                     } else {
@@ -153,6 +179,185 @@ public final class ElasticsearchHostsSniffer implements HostsSniffer {
         return httpHost;
     }
 
+    private RoutingTable readRoutingTable(HttpEntity entity, Map<String, HttpHost> hosts) throws IOException {
+        try (InputStream inputStream = entity.getContent()) {
+            JsonParser parser = jsonFactory.createParser(inputStream);
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("expected data to start with an object");
+            }
+            Map<String, IndexMetaData> metaData = new HashMap<>();
+            Map<String, Map<Integer, HttpHost>> primaries = new HashMap<>();
+            while (parser.nextToken() != JsonToken.END_OBJECT) {
+                if (parser.getCurrentToken() == JsonToken.START_OBJECT) {
+                    if ("metadata".equals(parser.getCurrentName())) {
+                        readIndices(parser, metaData, null, null);
+                    } else if ("routing_table".equals(parser.getCurrentName())) {
+                        readIndices(parser, null, primaries, hosts);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            }
+            RoutingTable.Builder builder = RoutingTable.builder();
+            for (Map.Entry<String, IndexMetaData> entry : metaData.entrySet()) {
+                String index = entry.getKey();
+                IndexMetaData indexMetaData = entry.getValue();
+                Map<Integer, HttpHost> indexPrimaries = primaries.get(index);
+                if (indexPrimaries == null || indexMetaData.numberOfShards <= 0) {
+                    //closed index, or index whose number of shards was filtered out
+                    continue;
+                }
+                int routingNumShards = indexMetaData.routingNumShards;
+                if (routingNumShards <= 0) {
+                    if (indexMetaData.shrunk) {
+                        logger.debug("skipping shrunk index [" + index + "] as its routing is unknown");
+                        continue;
+                    }
+                    routingNumShards = indexMetaData.numberOfShards;
+                }
+                HttpHost[] primaryHosts = new HttpHost[indexMetaData.numberOfShards];
+                for (Map.Entry<Integer, HttpHost> primary : indexPrimaries.entrySet()) {
+                    if (primary.getKey() >= 0 && primary.getKey() < primaryHosts.length) {
+                        primaryHosts[primary.getKey()] = primary.getValue();
+                    }
+                }
+                try {
+                    builder.addIndex(index, routingNumShards, indexMetaData.routingPartitionSize, primaryHosts);
+                } catch (IllegalArgumentException e) {
+                    logger.debug("skipping index [" + index + "]", e);
+                }
+            }
+            return builder.build();
+        }
+    }
+
+    /**
+     * Reads the {@code indices} object of either the metadata section or the routing table section of the cluster state.
+     */
+    private static void readIndices(JsonParser parser, Map<String, IndexMetaData> metaData, Map<String, Map<Integer, HttpHost>> primaries,
+                                    Map<String, HttpHost> hosts) throws IOException {
+        while (parser.nextToken() != JsonToken.END_OBJECT) {
+            if (parser.getCurrentToken() == JsonToken.START_OBJECT) {
+                if ("indices".equals(parser.getCurrentName())) {
+                    while (parser.nextToken() != JsonToken.END_OBJECT) {
+                        JsonToken token = parser.nextToken();
+                        assert token == JsonToken.START_OBJECT;
+                        String index = parser.getCurrentName();
+                        if (metaData != null) {
+                            metaData.put(index, readIndexMetaData(parser));
+                        } else {
+                            primaries.put(index, readPrimaries(parser, hosts));
+                        }
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            } else if (parser.getCurrentToken() == JsonToken.START_ARRAY) {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private static IndexMetaData readIndexMetaData(JsonParser parser) throws IOException {
+        IndexMetaData indexMetaData = new IndexMetaData();
+        while (parser.nextToken() != JsonToken.END_OBJECT) {
+            if (parser.getCurrentToken() == JsonToken.VALUE_NUMBER_INT && "routing_num_shards".equals(parser.getCurrentName())) {
+                indexMetaData.routingNumShards = parser.getIntValue();
+            } else if (parser.getCurrentToken() == JsonToken.START_OBJECT) {
+                if ("settings".equals(parser.getCurrentName())) {
+                    readIndexSettings(parser, "", indexMetaData);
+                } else {
+                    parser.skipChildren();
+                }
+            } else if (parser.getCurrentToken() == JsonToken.START_ARRAY) {
+                parser.skipChildren();
+            }
+        }
+        return indexMetaData;
+    }
+
+    /**
+     * Reads the settings of an index, which can be either nested or flat
+     */
+    private static void readIndexSettings(JsonParser parser, String prefix, IndexMetaData indexMetaData) throws IOException {
+        while (parser.nextToken() != JsonToken.END_OBJECT) {
+            if (parser.getCurrentToken() == JsonToken.START_OBJECT) {
+                readIndexSettings(parser, prefix + parser.getCurrentName() + ".", indexMetaData);
+            } else if (parser.getCurrentToken() == JsonToken.START_ARRAY) {
+                parser.skipChildren();
+            } else if (parser.getCurrentToken() != JsonToken.FIELD_NAME) {
+                String setting = prefix + parser.getCurrentName();
+                if ("index.number_of_shards".equals(setting)) {
+                    indexMetaData.numberOfShards = Integer.parseInt(parser.getValueAsString());
+                } else if ("index.routing_partition_size".equals(setting)) {
+                    indexMetaData.routingPartitionSize = Integer.parseInt(parser.getValueAsString());
+                } else if ("index.shrink.source.name".equals(setting)) {
+                    indexMetaData.shrunk = true;
+                }
+            }
+        }
+    }
+
+    private static Map<Integer, HttpHost> readPrimaries(JsonParser parser, Map<String, HttpHost> hosts) throws IOException {
+        Map<Integer, HttpHost> primaries = new HashMap<>();
+        while (parser.nextToken() != JsonToken.END_OBJECT) {
+            if (parser.getCurrentToken() == JsonToken.START_OBJECT) {
+                if ("shards".equals(parser.getCurrentName())) {
+                    while (parser.nextToken() != JsonToken.END_OBJECT) {
+                        JsonToken token = parser.nextToken();
+                        assert token == JsonToken.START_ARRAY;
+                        int shard = Integer.parseInt(parser.getCurrentName());
+                        while (parser.nextToken() != JsonToken.END_ARRAY) {
+                            HttpHost primaryHost = readPrimaryHost(parser, hosts);
+                            if (primaryHost != null) {
+                                primaries.put(shard, primaryHost);
+                            }
+                        }
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            } else if (parser.getCurrentToken() == JsonToken.START_ARRAY) {
+                parser.skipChildren();
+            }
+        }
+        return primaries;
+    }
+
+    /**
+     * Reads a shard copy and returns the host of the node that holds it if it is an active primary
+     */
+    private static HttpHost readPrimaryHost(JsonParser parser, Map<String, HttpHost> hosts) throws IOException {
+        boolean primary = false;
+        String state = null;
+        String node = null;
+        while (parser.nextToken() != JsonToken.END_OBJECT) {
+            if (parser.getCurrentToken() == JsonToken.VALUE_TRUE && "primary".equals(parser.getCurrentName())) {
+                primary = true;
+            } else if (parser.getCurrentToken() == JsonToken.VALUE_STRING) {
+                if ("state".equals(parser.getCurrentName())) {
+                    state = parser.getValueAsString();
+                } else if ("node".equals(parser.getCurrentName())) {
+                    node = parser.getValueAsString();
+                }
+            } else if (parser.getCurrentToken() == JsonToken.START_OBJECT || parser.getCurrentToken() == JsonToken.START_ARRAY) {
+                parser.skipChildren();
+            }
+        }
+        //a relocating primary keeps serving requests on its current node until the relocation completes
+        if (primary && node != null && ("STARTED".equals(state) || "RELOCATING".equals(state))) {
+            return hosts.get(node);
+        }
+        return null;
+    }
+
+    private static final class IndexMetaData {
+        private int numberOfShards = -1;
+        private int routingNumShards = -1;
+        private int routingPartitionSize = 1;
+        private boolean shrunk = false;
+    }
+
     public enum Scheme {
         HTTP("http"), HTTPS("https");
 
@@ -24,6 +24,7 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.http.HttpHost;
 import org.elasticsearch.client.RestClient;
 import org.elasticsearch.client.RestClientBuilder;
+import org.elasticsearch.client.RoutingTable;
 
 import java.io.Closeable;
 import java.io.IOException;
@@ -41,6 +42,8 @@ import java.util.concurrent.atomic.AtomicBoolean;
  * It is possible to perform sniffing on failure by creating a {@link SniffOnFailureListener} and providing it as an argument to
  * {@link RestClientBuilder#setFailureListener(RestClient.FailureListener)}. The Sniffer implementation needs to be lazily set to the
  * previously created SniffOnFailureListener through {@link SniffOnFailureListener#setSniffer(Sniffer)}.
+ * If a {@link RoutingTableSniffer} is provided, the task also fetches the host that holds each primary shard and sets it to the
+ * {@link RestClient} instance, see {@link RestClient#setRoutingTable(RoutingTable)}.
  */
 public class Sniffer implements Closeable {
 
@@ -48,8 +51,9 @@ public class Sniffer implements Closeable {
 
     private final Task task;
 
-    Sniffer(RestClient restClient, HostsSniffer hostsSniffer, long sniffInterval, long sniffAfterFailureDelay) {
-        this.task = new Task(hostsSniffer, restClient, sniffInterval, sniffAfterFailureDelay);
+    Sniffer(RestClient restClient, HostsSniffer hostsSniffer, RoutingTableSniffer routingTableSniffer, long sniffInterval,
+            long sniffAfterFailureDelay) {
+        this.task = new Task(hostsSniffer, routingTableSniffer, restClient, sniffInterval, sniffAfterFailureDelay);
     }
 
     /**
@@ -66,6 +70,7 @@ public class Sniffer implements Closeable {
 
     private static class Task implements Runnable {
         private final HostsSniffer hostsSniffer;
+        private final RoutingTableSniffer routingTableSniffer;
         private final RestClient restClient;
 
         private final long sniffIntervalMillis;
@@ -74,8 +79,10 @@ public class Sniffer implements Closeable {
         private final AtomicBoolean running = new AtomicBoolean(false);
         private ScheduledFuture<?> scheduledFuture;
 
-        private Task(HostsSniffer hostsSniffer, RestClient restClient, long sniffIntervalMillis, long sniffAfterFailureDelayMillis) {
+        private Task(HostsSniffer hostsSniffer, RoutingTableSniffer routingTableSniffer, RestClient restClient, long sniffIntervalMillis,
+                     long sniffAfterFailureDelayMillis) {
             this.hostsSniffer = hostsSniffer;
+            this.routingTableSniffer = routingTableSniffer;
             this.restClient = restClient;
             this.sniffIntervalMillis = sniffIntervalMillis;
             this.sniffAfterFailureDelayMillis = sniffAfterFailureDelayMillis;
@@ -110,18 +117,10 @@ public class Sniffer implements Closeable {
         void sniff(HttpHost excludeHost, long nextSniffDelayMillis) {
             if (running.compareAndSet(false, true)) {
                 try {
-                    List<HttpHost> sniffedHosts = hostsSniffer.sniffHosts();
-                    logger.debug("sniffed hosts: " + sniffedHosts);
-                    if (excludeHost != null) {
-                        sniffedHosts.remove(excludeHost);
+                    sniffHosts(excludeHost);
+                    if (routingTableSniffer != null) {
+                        sniffRoutingTable();
                     }
-                    if (sniffedHosts.isEmpty()) {
-                        logger.warn("no hosts to set, hosts will be updated at the next sniffing round");
-                    } else {
-                        this.restClient.setHosts(sniffedHosts.toArray(new HttpHost[sniffedHosts.size()]));
-                    }
-                } catch (Exception e) {
-                    logger.error("error while sniffing nodes", e);
                 } finally {
                     scheduleNextRun(nextSniffDelayMillis);
                     running.set(false);
@@ -129,6 +128,34 @@ public class Sniffer implements Closeable {
             }
         }
 
+        private void sniffHosts(HttpHost excludeHost) {
+            try {
+                List<HttpHost> sniffedHosts = hostsSniffer.sniffHosts();
+                logger.debug("sniffed hosts: " + sniffedHosts);
+                if (excludeHost != null) {
+                    sniffedHosts.remove(excludeHost);
+                }
+                if (sniffedHosts.isEmpty()) {
+                    logger.warn("no hosts to set, hosts will be updated at the next sniffing round");
+                } else {
+                    this.restClient.setHosts(sniffedHosts.toArray(new HttpHost[sniffedHosts.size()]));
+                }
+            } catch (Exception e) {
+                logger.error("error while sniffing nodes", e);
+            }
+        }
+
+        private void sniffRoutingTable() {
+            try {
+                //hosts that were excluded or not sniffed are not used by the client even if the routing table points to them
+                RoutingTable routingTable = routingTableSniffer.sniffRoutingTable();
+                logger.debug("sniffed routing table: " + routingTable);
+                this.restClient.setRoutingTable(routingTable);
+            } catch (Exception e) {
+                logger.error("error while sniffing routing table, the previous one is kept", e);
+            }
+        }
+
         synchronized void shutdown() {
             scheduledExecutorService.shutdown();
             try {
@@ -35,6 +35,7 @@ public final class SnifferBuilder {
     private long sniffIntervalMillis = DEFAULT_SNIFF_INTERVAL;
     private long sniffAfterFailureDelayMillis = DEFAULT_SNIFF_AFTER_FAILURE_DELAY;
     private HostsSniffer hostsSniffer;
+    private RoutingTableSniffer routingTableSniffer;
 
     /**
      * Creates a new builder instance by providing the {@link RestClient} that will be used to communicate with elasticsearch
@@ -79,6 +80,17 @@ public final class SnifferBuilder {
         return this;
     }
 
+    /**
+     * Sets the {@link RoutingTableSniffer} to be used to read the host that holds each primary shard, so that requests that target
+     * a single document are sent straight to that host. Usually the same {@link ElasticsearchHostsSniffer} instance that is
+     * provided to {@link #setHostsSniffer(HostsSniffer)}. The routing table is not sniffed when not provided.
+     */
+    public SnifferBuilder setRoutingTableSniffer(RoutingTableSniffer routingTableSniffer) {
+        Objects.requireNonNull(routingTableSniffer, "routingTableSniffer cannot be null");
+        this.routingTableSniffer = routingTableSniffer;
+        return this;
+    }
+
     /**
      * Creates the {@link Sniffer} based on the provided configuration.
      */
@@ -86,6 +98,6 @@ public final class SnifferBuilder {
         if (hostsSniffer == null) {
             this.hostsSniffer = new ElasticsearchHostsSniffer(restClient);
         }
-        return new Sniffer(restClient, hostsSniffer, sniffIntervalMillis, sniffAfterFailureDelayMillis);
+        return new Sniffer(restClient, hostsSniffer, routingTableSniffer, sniffIntervalMillis, sniffAfterFailureDelayMillis);
     }
 }
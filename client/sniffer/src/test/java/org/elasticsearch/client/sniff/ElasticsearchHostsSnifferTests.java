@@ -35,6 +35,7 @@ import org.elasticsearch.client.Response;
 import org.elasticsearch.client.ResponseException;
 import org.elasticsearch.client.RestClient;
 import org.elasticsearch.client.RestClientTestCase;
+import org.elasticsearch.client.RoutingTable;
 import org.junit.After;
 import org.junit.Before;
 
@@ -140,6 +141,77 @@ public class ElasticsearchHostsSnifferTests extends RestClientTestCase {
         }
     }
 
+    public void testSniffRoutingTable() throws IOException {
+        HttpHost host1 = new HttpHost("host1", 9200, scheme.toString());
+        HttpHost host2 = new HttpHost("host2", 9201, scheme.toString());
+        String nodesInfoBody = "{\"nodes\":{"
+                + "\"node1\":{\"http\":{\"publish_address\":\"host1:9200\"}},"
+                + "\"node2\":{\"http\":{\"publish_address\":\"host2:9201\"}},"
+                + "\"node3\":{}}}";
+        String clusterStateBody = "{\"metadata\":{\"indices\":{"
+                + "\"index\":{\"routing_num_shards\":2,\"settings\":{\"index\":{\"number_of_shards\":\"2\"}}},"
+                + "\"partitioned\":{\"settings\":{\"index\":{\"number_of_shards\":\"2\",\"routing_partition_size\":\"1\"}}},"
+                + "\"shrunk\":{\"routing_num_shards\":4,"
+                + "\"settings\":{\"index\":{\"number_of_shards\":\"1\",\"shrink\":{\"source\":{\"name\":\"source\"}}}}},"
+                + "\"shrunk_unknown\":{\"settings\":{\"index\":{\"number_of_shards\":\"1\","
+                + "\"shrink\":{\"source\":{\"name\":\"source\"}}}}},"
+                + "\"closed\":{\"settings\":{\"index\":{\"number_of_shards\":\"1\"}}}}},"
+                + "\"routing_table\":{\"indices\":{"
+                + "\"index\":{\"shards\":{"
+                + "\"0\":[{\"state\":\"STARTED\",\"primary\":false,\"node\":\"node2\"},"
+                + "{\"state\":\"STARTED\",\"primary\":true,\"node\":\"node1\"}],"
+                + "\"1\":[{\"state\":\"RELOCATING\",\"primary\":true,\"node\":\"node2\"}]}},"
+                + "\"partitioned\":{\"shards\":{"
+                + "\"0\":[{\"state\":\"UNASSIGNED\",\"primary\":true,\"node\":null}],"
+                + "\"1\":[{\"state\":\"STARTED\",\"primary\":true,\"node\":\"node3\"}]}},"
+                + "\"shrunk\":{\"shards\":{\"0\":[{\"state\":\"STARTED\",\"primary\":true,\"node\":\"node2\"}]}},"
+                + "\"shrunk_unknown\":{\"shards\":{\"0\":[{\"state\":\"STARTED\",\"primary\":true,\"node\":\"node2\"}]}}"
+                + "}}}";
+        HttpServer routingServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        routingServer.createContext("/_nodes/http", new StaticResponseHandler(nodesInfoBody));
+        routingServer.createContext("/_cluster/state/metadata,routing_table", new StaticResponseHandler(clusterStateBody));
+        routingServer.start();
+        try {
+            HttpHost httpHost = new HttpHost(routingServer.getAddress().getHostString(), routingServer.getAddress().getPort());
+            try (RestClient restClient = RestClient.builder(httpHost).build()) {
+                ElasticsearchHostsSniffer sniffer = new ElasticsearchHostsSniffer(restClient, sniffRequestTimeout, scheme);
+                RoutingTable routingTable = sniffer.sniffRoutingTable();
+                assertEquals(3, routingTable.size());
+                RoutingTable expected = RoutingTable.builder()
+                        .addIndex("index", host1, host2)
+                        .addIndex("partitioned", null, null)
+                        .addIndex("shrunk", 4, 1, host2)
+                        .build();
+                for (int i = 0; i < 20; i++) {
+                    String id = RandomStrings.randomAsciiOfLengthBetween(getRandom(), 1, 10);
+                    for (String index : new String[] {"index", "partitioned", "shrunk", "shrunk_unknown", "closed"}) {
+                        assertEquals(expected.primaryHost(index, id, null), routingTable.primaryHost(index, id, null));
+                    }
+                }
+            }
+        } finally {
+            routingServer.stop(0);
+        }
+    }
+
+    //animal-sniffer doesn't like our usage of com.sun.net.httpserver.* classes
+    @IgnoreJRERequirement
+    private static class StaticResponseHandler implements HttpHandler {
+        private final byte[] body;
+
+        StaticResponseHandler(String body) {
+            this.body = body.getBytes(Consts.UTF_8);
+        }
+
+        @Override
+        public void handle(HttpExchange httpExchange) throws IOException {
+            httpExchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = httpExchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
     private static HttpServer createHttpServer(final SniffResponse sniffResponse, final int sniffTimeoutMillis) throws IOException {
         HttpServer httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
         httpServer.createContext("/_nodes/http", new ResponseHandler(sniffTimeoutMillis, sniffResponse));
@@ -315,12 +315,30 @@ public class BulkRequest extends ActionRequest implements CompositeIndicesReques
     public BulkRequest add(BytesReference data, @Nullable String defaultIndex, @Nullable String defaultType, @Nullable String
         defaultRouting, @Nullable String[] defaultFields, @Nullable FetchSourceContext defaultFetchSourceContext, @Nullable String
         defaultPipeline, @Nullable Object payload, boolean allowExplicitIndex, XContentType xContentType) throws IOException {
+        addCompleteItems(data, defaultIndex, defaultType, defaultRouting, defaultFields, defaultFetchSourceContext, defaultPipeline,
+            payload, allowExplicitIndex, xContentType, 0);
+        return this;
+    }
+
+    /**
+     * Adds the items of the framed data whose lines are all terminated and returns the number of bytes they take up. The bytes
+     * that are not consumed are the beginning of an item, which can be added once the rest of it arrived.
+     *
+     * @param lineOffset the number of lines that came before the data, used in error messages
+     */
+    public int addCompleteItems(BytesReference data, @Nullable String defaultIndex, @Nullable String defaultType,
+                                @Nullable String defaultRouting, @Nullable String[] defaultFields,
+                                @Nullable FetchSourceContext defaultFetchSourceContext, @Nullable String defaultPipeline,
+                                @Nullable Object payload, boolean allowExplicitIndex, XContentType xContentType,
+                                int lineOffset) throws IOException {
         XContent xContent = xContentType.xContent();
-        int line = 0;
+        int line = lineOffset;
         int from = 0;
+        int itemStart = 0;
         int length = data.length();
         byte marker = xContent.streamSeparator();
         while (true) {
+            itemStart = from;
             int nextMarker = findNextMarker(marker, from, data, length);
             if (nextMarker == -1) {
                 break;
@@ -499,7 +517,7 @@ public class BulkRequest extends ActionRequest implements CompositeIndicesReques
                 }
             }
         }
-        return this;
+        return itemStart;
     }
 
     /**
@@ -28,6 +28,7 @@ import org.elasticsearch.action.OriginalIndices;
 import org.elasticsearch.common.util.concurrent.AtomicArray;
 import org.elasticsearch.search.SearchPhaseResult;
 import org.elasticsearch.search.SearchShardTarget;
+import org.elasticsearch.search.aggregations.metrics.tophits.DeferredTopHits;
 import org.elasticsearch.search.fetch.FetchSearchResult;
 import org.elasticsearch.search.fetch.ShardFetchSearchRequest;
 import org.elasticsearch.search.internal.InternalSearchResponse;
@@ -36,6 +37,7 @@ import org.elasticsearch.transport.Transport;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 import java.util.function.BiFunction;
 
 /**
@@ -101,16 +103,24 @@ final class FetchSearchPhase extends SearchPhase {
         String scrollId = isScrollSearch ? TransportSearchHelper.buildScrollId(queryResults) : null;
         final SearchPhaseController.ReducedQueryPhase reducedQueryPhase = resultConsumer.reduce();
         final boolean queryAndFetchOptimization = queryResults.length() == 1;
-        final Runnable finishPhase = ()
-            -> moveToNextPhase(searchPhaseController, scrollId, reducedQueryPhase, queryAndFetchOptimization ?
-            queryResults : fetchResults);
+        // the hits of the top_hits aggregations that made it to the reduced aggregations are fetched along with the search hits
+        final DeferredTopHits deferredTopHits = DeferredTopHits.collect(reducedQueryPhase.aggregations, phaseResults);
+        final Runnable finishPhase = () -> {
+            if (queryAndFetchOptimization == false) {
+                deferredTopHits.fill(fetchResults::get);
+            }
+            moveToNextPhase(searchPhaseController, scrollId, reducedQueryPhase, queryAndFetchOptimization ?
+                queryResults : fetchResults);
+        };
         if (queryAndFetchOptimization) {
             assert phaseResults.isEmpty() || phaseResults.get(0).fetchResult() != null;
+            assert deferredTopHits.isEmpty() : "top hits are fetched in the query phase when searching a single shard";
             // query AND fetch optimization
             finishPhase.run();
         } else {
             final IntArrayList[] docIdsToLoad = searchPhaseController.fillDocIdsToLoad(numShards, reducedQueryPhase.scoreDocs);
-            if (reducedQueryPhase.scoreDocs.length == 0) { // no docs to fetch -- sidestep everything and return
+            if (reducedQueryPhase.scoreDocs.length == 0 && deferredTopHits.isEmpty()) {
+                // no docs to fetch -- sidestep everything and return
                 phaseResults.stream()
                     .map(SearchPhaseResult::queryResult)
                     .forEach(this::releaseIrrelevantSearchContext); // we have to release contexts here to free up resources
@@ -125,6 +135,11 @@ final class FetchSearchPhase extends SearchPhase {
                 for (int i = 0; i < docIdsToLoad.length; i++) {
                     IntArrayList entry = docIdsToLoad[i];
                     SearchPhaseResult queryResult = queryResults.get(i);
+                    final Map<String, ScoreDoc[]> topHitsDocs = deferredTopHits.docs(i);
+                    if (entry == null && topHitsDocs.isEmpty() == false) {
+                        // only top hits to fetch from this shard
+                        entry = new IntArrayList(0);
+                    }
                     if (entry == null) { // no results for this shard ID
                         if (queryResult != null) {
                             // if we got some hits from this shard we have to release the context there
@@ -140,6 +155,7 @@ final class FetchSearchPhase extends SearchPhase {
                             searchShardTarget.getNodeId());
                         ShardFetchSearchRequest fetchSearchRequest = createFetchRequest(queryResult.queryResult().getRequestId(), i, entry,
                             lastEmittedDocPerShard, searchShardTarget.getOriginalIndices());
+                        fetchSearchRequest.topHitsDocs(topHitsDocs);
                         executeFetch(i, searchShardTarget, counter, fetchSearchRequest, queryResult.queryResult(),
                             connection);
                     }
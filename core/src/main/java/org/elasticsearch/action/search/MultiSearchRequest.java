@@ -19,6 +19,7 @@
 
 package org.elasticsearch.action.search;
 
+import org.elasticsearch.Version;
 import org.elasticsearch.action.ActionRequest;
 import org.elasticsearch.action.ActionRequestValidationException;
 import org.elasticsearch.action.CompositeIndicesRequest;
@@ -38,6 +39,7 @@ import static org.elasticsearch.action.ValidateActions.addValidationError;
 public class MultiSearchRequest extends ActionRequest implements CompositeIndicesRequest {
 
     private int maxConcurrentSearchRequests = 0;
+    private boolean batchShardRequests = false;
     private List<SearchRequest> requests = new ArrayList<>();
 
     private IndicesOptions indicesOptions = IndicesOptions.strictExpandOpenAndForbidClosed();
@@ -79,6 +81,23 @@ public class MultiSearchRequest extends ActionRequest implements CompositeIndice
         return this;
     }
 
+    /**
+     * Returns whether the query phase requests of the searches that target the same shard are sent to it as a single request.
+     */
+    public boolean batchShardRequests() {
+        return batchShardRequests;
+    }
+
+    /**
+     * Sets whether the query phase requests of the searches that target the same shard are sent to it as a single request, that the
+     * shard executes on a single point-in-time view of its data. All searches are then started at once, regardless of
+     * {@link #maxConcurrentSearchRequests()}. Defaults to <code>false</code>.
+     */
+    public MultiSearchRequest batchShardRequests(boolean batchShardRequests) {
+        this.batchShardRequests = batchShardRequests;
+        return this;
+    }
+
     public List<SearchRequest> requests() {
         return this.requests;
     }
@@ -115,6 +134,9 @@ public class MultiSearchRequest extends ActionRequest implements CompositeIndice
     public void readFrom(StreamInput in) throws IOException {
         super.readFrom(in);
         maxConcurrentSearchRequests = in.readVInt();
+        if (in.getVersion().onOrAfter(Version.V_5_5_2_UNRELEASED)) {
+            batchShardRequests = in.readBoolean();
+        }
         int size = in.readVInt();
         for (int i = 0; i < size; i++) {
             SearchRequest request = new SearchRequest();
@@ -127,6 +149,9 @@ public class MultiSearchRequest extends ActionRequest implements CompositeIndice
     public void writeTo(StreamOutput out) throws IOException {
         super.writeTo(out);
         out.writeVInt(maxConcurrentSearchRequests);
+        if (out.getVersion().onOrAfter(Version.V_5_5_2_UNRELEASED)) {
+            out.writeBoolean(batchShardRequests);
+        }
         out.writeVInt(requests.size());
         for (SearchRequest request : requests) {
             request.writeTo(out);
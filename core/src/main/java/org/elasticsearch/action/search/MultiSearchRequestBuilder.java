@@ -79,4 +79,12 @@ public class MultiSearchRequestBuilder extends ActionRequestBuilder<MultiSearchR
         request().maxConcurrentSearchRequests(maxConcurrentSearchRequests);
         return this;
     }
+
+    /**
+     * Sets whether the query phase requests of the searches that target the same shard are sent to it as a single request.
+     */
+    public MultiSearchRequestBuilder setBatchShardRequests(boolean batchShardRequests) {
+        request().batchShardRequests(batchShardRequests);
+        return this;
+    }
 }
@@ -0,0 +1,138 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.action.search;
+
+import org.elasticsearch.Version;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.collect.Tuple;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.search.SearchPhaseResult;
+import org.elasticsearch.search.internal.ShardSearchBatchRequest;
+import org.elasticsearch.search.internal.ShardSearchTransportRequest;
+import org.elasticsearch.search.query.QuerySearchBatchResult;
+import org.elasticsearch.tasks.Task;
+import org.elasticsearch.transport.Transport;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects the shard level query requests of the searches of a multi search request until all of them have been dispatched, and
+ * then sends the requests that target the same shard on the same node as a single {@link ShardSearchBatchRequest}. Requests that
+ * are sent after the batcher has been flushed, like retries on other shard copies, are sent on their own.
+ */
+final class QueryPhaseBatcher {
+
+    private final SearchTransportService searchTransportService;
+    private final Task parentTask;
+    private final Map<Tuple<DiscoveryNode, ShardId>, Batch> batches = new LinkedHashMap<>();
+    private boolean flushed = false;
+
+    /**
+     * @param parentTask the multi search task, the parent of the batch requests
+     */
+    QueryPhaseBatcher(SearchTransportService searchTransportService, Task parentTask) {
+        this.searchTransportService = searchTransportService;
+        this.parentTask = parentTask;
+    }
+
+    /**
+     * Queues the given request until the batcher is flushed, or sends it right away if it has been flushed already.
+     */
+    void sendExecuteQuery(Transport.Connection connection, ShardSearchTransportRequest request, SearchTask task,
+                          SearchActionListener<SearchPhaseResult> listener) {
+        synchronized (this) {
+            if (flushed == false) {
+                batches.computeIfAbsent(new Tuple<>(connection.getNode(), request.shardId()), k -> new Batch(connection))
+                    .add(request, task, listener);
+                return;
+            }
+        }
+        searchTransportService.sendExecuteQuery(connection, request, task, listener);
+    }
+
+    /**
+     * Sends all queued requests, grouped by shard.
+     */
+    void flush() {
+        final List<Batch> toSend;
+        synchronized (this) {
+            if (flushed) {
+                return;
+            }
+            flushed = true;
+            toSend = new ArrayList<>(batches.values());
+            batches.clear();
+        }
+        for (Batch batch : toSend) {
+            batch.send();
+        }
+    }
+
+    private final class Batch {
+        private final Transport.Connection connection;
+        private final List<ShardSearchTransportRequest> requests = new ArrayList<>();
+        private final List<SearchTask> tasks = new ArrayList<>();
+        private final List<SearchActionListener<SearchPhaseResult>> listeners = new ArrayList<>();
+
+        Batch(Transport.Connection connection) {
+            this.connection = connection;
+        }
+
+        void add(ShardSearchTransportRequest request, SearchTask task, SearchActionListener<SearchPhaseResult> listener) {
+            requests.add(request);
+            tasks.add(task);
+            listeners.add(listener);
+        }
+
+        void send() {
+            if (requests.size() == 1 || connection.getVersion().before(Version.V_5_5_2_UNRELEASED)) {
+                for (int i = 0; i < requests.size(); i++) {
+                    searchTransportService.sendExecuteQuery(connection, requests.get(i), tasks.get(i), listeners.get(i));
+                }
+                return;
+            }
+            searchTransportService.sendExecuteQueryBatch(connection, new ShardSearchBatchRequest(requests), parentTask,
+                new ActionListener<QuerySearchBatchResult>() {
+                    @Override
+                    public void onResponse(QuerySearchBatchResult result) {
+                        assert result.size() == listeners.size() : "expected " + listeners.size() + " results but got " + result.size();
+                        for (int i = 0; i < listeners.size(); i++) {
+                            if (result.getFailure(i) != null) {
+                                listeners.get(i).onFailure(result.getFailure(i));
+                            } else {
+                                listeners.get(i).onResponse(result.getResult(i));
+                            }
+                        }
+                    }
+
+                    @Override
+                    public void onFailure(Exception e) {
+                        for (SearchActionListener<SearchPhaseResult> listener : listeners) {
+                            listener.onFailure(e);
+                        }
+                    }
+                });
+        }
+    }
+}
@@ -101,6 +101,22 @@ public final class SearchRequest extends ActionRequest implements IndicesRequest
         this.source = source;
     }
 
+    /**
+     * Copies the given search request with another search source.
+     */
+    SearchRequest(SearchRequest searchRequest, SearchSourceBuilder source) {
+        this(searchRequest.indices, source);
+        this.searchType = searchRequest.searchType;
+        this.routing = searchRequest.routing;
+        this.preference = searchRequest.preference;
+        this.requestCache = searchRequest.requestCache;
+        this.scroll = searchRequest.scroll;
+        this.batchedReduceSize = searchRequest.batchedReduceSize;
+        this.types = searchRequest.types;
+        this.indicesOptions = searchRequest.indicesOptions;
+        setParentTask(searchRequest.getParentTask());
+    }
+
     @Override
     public ActionRequestValidationException validate() {
         return null;
@@ -26,11 +26,14 @@ import org.elasticsearch.common.Strings;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.xcontent.ChunkedToXContent;
 import org.elasticsearch.common.xcontent.StatusToXContentObject;
+import org.elasticsearch.common.xcontent.ToXContent;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.XContentParser;
 import org.elasticsearch.rest.RestStatus;
 import org.elasticsearch.rest.action.RestActions;
+import org.elasticsearch.search.SearchHit;
 import org.elasticsearch.search.SearchHits;
 import org.elasticsearch.search.aggregations.Aggregations;
 import org.elasticsearch.search.internal.InternalSearchResponse;
@@ -40,8 +43,10 @@ import org.elasticsearch.search.suggest.Suggest;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 import static org.elasticsearch.action.search.ShardSearchFailure.readShardSearchFailure;
 import static org.elasticsearch.common.xcontent.XContentParserUtils.ensureExpectedToken;
@@ -52,7 +57,7 @@ import static org.elasticsearch.common.xcontent.XContentParserUtils.throwUnknown
 /**
  * A response of a search request.
  */
-public class SearchResponse extends ActionResponse implements StatusToXContentObject {
+public class SearchResponse extends ActionResponse implements StatusToXContentObject, ChunkedToXContent {
 
     private static final ParseField SCROLL_ID = new ParseField("_scroll_id");
     private static final ParseField TOOK = new ParseField("took");
@@ -204,6 +209,25 @@ public class SearchResponse extends ActionResponse implements StatusToXContentOb
     }
 
     public XContentBuilder innerToXContent(XContentBuilder builder, Params params) throws IOException {
+        headerToXContent(builder, params);
+        internalResponse.toXContent(builder, params);
+        return builder;
+    }
+
+    /**
+     * Returns what {@link #toXContent(XContentBuilder, Params)} prints out as a fragment for the response header, the chunks
+     * of the response sections and a fragment that closes the response object. Hits are written one fragment per hit.
+     */
+    @Override
+    public Iterator<ToXContent> toXContentChunked() {
+        final List<ToXContent> chunks = new ArrayList<>(internalResponse.hits().getHits().length + 4);
+        chunks.add((builder, params) -> headerToXContent(builder.startObject(), params));
+        internalResponse.toXContentChunked().forEachRemaining(chunks::add);
+        chunks.add((builder, params) -> builder.endObject());
+        return chunks.iterator();
+    }
+
+    private XContentBuilder headerToXContent(XContentBuilder builder, Params params) throws IOException {
         if (scrollId != null) {
             builder.field(SCROLL_ID.getPreferredName(), scrollId);
         }
@@ -217,11 +241,18 @@ public class SearchResponse extends ActionResponse implements StatusToXContentOb
         }
         RestActions.buildBroadcastShardsHeader(builder, params, getTotalShards(), getSuccessfulShards(), getFailedShards(),
             getShardFailures());
-        internalResponse.toXContent(builder, params);
         return builder;
     }
 
     public static SearchResponse fromXContent(XContentParser parser) throws IOException {
+        return fromXContent(parser, null);
+    }
+
+    /**
+     * Parses a search response, handing each hit to the given consumer as soon as it has been parsed instead of collecting the
+     * hits in the returned response, see {@link SearchHits#fromXContent(XContentParser, Consumer)}.
+     */
+    public static SearchResponse fromXContent(XContentParser parser, @Nullable Consumer<SearchHit> hitConsumer) throws IOException {
         ensureExpectedToken(XContentParser.Token.START_OBJECT, parser.nextToken(), parser::getTokenLocation);
         XContentParser.Token token;
         String currentFieldName = null;
@@ -256,7 +287,7 @@ public class SearchResponse extends ActionResponse implements StatusToXContentOb
                 }
             } else if (token == XContentParser.Token.START_OBJECT) {
                 if (SearchHits.Fields.HITS.equals(currentFieldName)) {
-                    hits = SearchHits.fromXContent(parser);
+                    hits = SearchHits.fromXContent(parser, hitConsumer);
                 } else if (Aggregations.AGGREGATIONS_FIELD.equals(currentFieldName)) {
                     aggs = Aggregations.fromXContent(parser);
                 } else if (Suggest.NAME.equals(currentFieldName)) {
@@ -29,7 +29,10 @@ import org.elasticsearch.search.profile.SearchProfileShardResults;
 import org.elasticsearch.search.suggest.Suggest;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -104,6 +107,21 @@ public class SearchResponseSections implements ToXContent {
     @Override
     public final XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
         hits.toXContent(builder, params);
+        return sectionsToXContent(builder, params);
+    }
+
+    /**
+     * Returns what {@link #toXContent(XContentBuilder, Params)} prints out as the chunks of the hits followed by a single
+     * fragment for the other sections.
+     */
+    public final Iterator<ToXContent> toXContentChunked() {
+        final List<ToXContent> chunks = new ArrayList<>(hits.getHits().length + 3);
+        hits.toXContentChunked().forEachRemaining(chunks::add);
+        chunks.add(this::sectionsToXContent);
+        return chunks.iterator();
+    }
+
+    private XContentBuilder sectionsToXContent(XContentBuilder builder, Params params) throws IOException {
         if (aggregations != null) {
             aggregations.toXContent(builder, params);
         }
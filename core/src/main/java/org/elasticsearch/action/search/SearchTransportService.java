@@ -26,10 +26,12 @@ import org.elasticsearch.action.IndicesRequest;
 import org.elasticsearch.action.OriginalIndices;
 import org.elasticsearch.action.support.IndicesOptions;
 import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.component.AbstractComponent;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
 import org.elasticsearch.search.SearchPhaseResult;
 import org.elasticsearch.search.SearchService;
 import org.elasticsearch.search.dfs.DfsSearchResult;
@@ -39,11 +41,14 @@ import org.elasticsearch.search.fetch.ScrollQueryFetchSearchResult;
 import org.elasticsearch.search.fetch.ShardFetchRequest;
 import org.elasticsearch.search.fetch.ShardFetchSearchRequest;
 import org.elasticsearch.search.internal.InternalScrollSearchRequest;
+import org.elasticsearch.search.internal.ShardSearchBatchRequest;
 import org.elasticsearch.search.internal.ShardSearchTransportRequest;
+import org.elasticsearch.search.query.QuerySearchBatchResult;
 import org.elasticsearch.search.query.QuerySearchRequest;
 import org.elasticsearch.search.query.QuerySearchResult;
 import org.elasticsearch.search.query.ScrollQuerySearchResult;
 import org.elasticsearch.tasks.Task;
+import org.elasticsearch.tasks.TaskId;
 import org.elasticsearch.threadpool.ThreadPool;
 import org.elasticsearch.transport.RemoteClusterService;
 import org.elasticsearch.transport.Transport;
@@ -56,6 +61,7 @@ import org.elasticsearch.transport.TransportResponse;
 import org.elasticsearch.transport.TransportService;
 
 import java.io.IOException;
+import java.util.Map;
 import java.util.function.Supplier;
 
 /**
@@ -69,6 +75,7 @@ public class SearchTransportService extends AbstractComponent {
     public static final String CLEAR_SCROLL_CONTEXTS_ACTION_NAME = "indices:data/read/search[clear_scroll_contexts]";
     public static final String DFS_ACTION_NAME = "indices:data/read/search[phase/dfs]";
     public static final String QUERY_ACTION_NAME = "indices:data/read/search[phase/query]";
+    public static final String QUERY_BATCH_ACTION_NAME = "indices:data/read/search[phase/query/batch]";
     public static final String QUERY_ID_ACTION_NAME = "indices:data/read/search[phase/query/id]";
     public static final String QUERY_SCROLL_ACTION_NAME = "indices:data/read/search[phase/query/scroll]";
     @Deprecated
@@ -78,6 +85,8 @@ public class SearchTransportService extends AbstractComponent {
     public static final String FETCH_ID_ACTION_NAME = "indices:data/read/search[phase/fetch/id]";
 
     private final TransportService transportService;
+    // the batchers of the multi search requests that batch their shard requests, by multi search task
+    private final Map<TaskId, QueryPhaseBatcher> queryPhaseBatchers = ConcurrentCollections.newConcurrentMap();
 
     public SearchTransportService(Settings settings, TransportService transportService) {
         super(settings);
@@ -139,6 +148,15 @@ public class SearchTransportService extends AbstractComponent {
         }
     }
 
+    /**
+     * Sends the query phase of several searches that target the same shard as one request.
+     */
+    public void sendExecuteQueryBatch(Transport.Connection connection, final ShardSearchBatchRequest request, Task parentTask,
+                                      final ActionListener<QuerySearchBatchResult> listener) {
+        transportService.sendChildRequest(connection, QUERY_BATCH_ACTION_NAME, request, parentTask,
+            new ActionListenerResponseHandler<>(listener, QuerySearchBatchResult::new));
+    }
+
     public void sendExecuteQuery(Transport.Connection connection, final QuerySearchRequest request, SearchTask task,
                                  final SearchActionListener<QuerySearchResult> listener) {
         transportService.sendChildRequest(connection, QUERY_ID_ACTION_NAME, request, task,
@@ -182,6 +200,22 @@ public class SearchTransportService extends AbstractComponent {
             task, new ActionListenerResponseHandler<>(listener, MultiSearchResponse::new));
     }
 
+    void registerQueryPhaseBatcher(TaskId multiSearchTaskId, QueryPhaseBatcher batcher) {
+        queryPhaseBatchers.put(multiSearchTaskId, batcher);
+    }
+
+    void removeQueryPhaseBatcher(TaskId multiSearchTaskId) {
+        queryPhaseBatchers.remove(multiSearchTaskId);
+    }
+
+    /**
+     * Returns the batcher of the multi search request with the given task id, or <code>null</code> if there is none.
+     */
+    @Nullable
+    QueryPhaseBatcher getQueryPhaseBatcher(TaskId multiSearchTaskId) {
+        return queryPhaseBatchers.get(multiSearchTaskId);
+    }
+
     public RemoteClusterService getRemoteClusterService() {
         return transportService.getRemoteClusterService();
     }
@@ -333,6 +367,16 @@ public class SearchTransportService extends AbstractComponent {
             });
         TransportActionProxy.registerProxyAction(transportService, QUERY_ACTION_NAME, QuerySearchResult::new);
 
+        transportService.registerRequestHandler(QUERY_BATCH_ACTION_NAME, ShardSearchBatchRequest::new, ThreadPool.Names.SEARCH,
+            new TaskAwareTransportRequestHandler<ShardSearchBatchRequest>() {
+                @Override
+                public void messageReceived(ShardSearchBatchRequest request, TransportChannel channel, Task task) throws Exception {
+                    QuerySearchBatchResult result = searchService.executeQueryPhase(request, (SearchTask)task);
+                    channel.sendResponse(result);
+                }
+            });
+        TransportActionProxy.registerProxyAction(transportService, QUERY_BATCH_ACTION_NAME, QuerySearchBatchResult::new);
+
         transportService.registerRequestHandler(QUERY_ID_ACTION_NAME, QuerySearchRequest::new, ThreadPool.Names.SEARCH,
             new TaskAwareTransportRequestHandler<QuerySearchRequest>() {
                 @Override
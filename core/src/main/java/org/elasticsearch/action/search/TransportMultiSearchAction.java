@@ -31,6 +31,8 @@ import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.util.concurrent.AtomicArray;
 import org.elasticsearch.common.util.concurrent.EsExecutors;
+import org.elasticsearch.tasks.Task;
+import org.elasticsearch.tasks.TaskId;
 import org.elasticsearch.threadpool.ThreadPool;
 import org.elasticsearch.transport.TransportService;
 
@@ -43,26 +45,41 @@ public class TransportMultiSearchAction extends HandledTransportAction<MultiSear
     private final int availableProcessors;
     private final ClusterService clusterService;
     private final TransportAction<SearchRequest, SearchResponse> searchAction;
+    private final SearchTransportService searchTransportService;
 
     @Inject
     public TransportMultiSearchAction(Settings settings, ThreadPool threadPool, TransportService transportService,
                                       ClusterService clusterService, TransportSearchAction searchAction,
-                                      ActionFilters actionFilters, IndexNameExpressionResolver resolver) {
+                                      SearchTransportService searchTransportService, ActionFilters actionFilters,
+                                      IndexNameExpressionResolver resolver) {
         super(settings, MultiSearchAction.NAME, threadPool, transportService, actionFilters, resolver, MultiSearchRequest::new);
         this.clusterService = clusterService;
         this.searchAction = searchAction;
+        this.searchTransportService = searchTransportService;
         this.availableProcessors = EsExecutors.boundedNumberOfProcessors(settings);
     }
 
     TransportMultiSearchAction(ThreadPool threadPool, ActionFilters actionFilters, TransportService transportService,
                                ClusterService clusterService, TransportAction<SearchRequest, SearchResponse> searchAction,
-                               IndexNameExpressionResolver resolver, int availableProcessors) {
+                               SearchTransportService searchTransportService, IndexNameExpressionResolver resolver,
+                               int availableProcessors) {
         super(Settings.EMPTY, MultiSearchAction.NAME, threadPool, transportService, actionFilters, resolver, MultiSearchRequest::new);
         this.clusterService = clusterService;
         this.searchAction = searchAction;
+        this.searchTransportService = searchTransportService;
         this.availableProcessors = availableProcessors;
     }
 
+    @Override
+    protected void doExecute(Task task, MultiSearchRequest request, ActionListener<MultiSearchResponse> listener) {
+        if (request.batchShardRequests()) {
+            clusterService.state().blocks().globalBlockedRaiseException(ClusterBlockLevel.READ);
+            executeBatched(task, request, listener);
+        } else {
+            doExecute(request, listener);
+        }
+    }
+
     @Override
     protected void doExecute(MultiSearchRequest request, ActionListener<MultiSearchResponse> listener) {
         ClusterState clusterState = clusterService.state();
@@ -168,6 +185,49 @@ public class TransportMultiSearchAction extends HandledTransportAction<MultiSear
         });
     }
 
+    /**
+     * Starts all search requests at once. They become children of the multi search task, which lets them find the batcher that
+     * holds back their shard level query requests until all of them have been started.
+     */
+    private void executeBatched(Task task, MultiSearchRequest request, ActionListener<MultiSearchResponse> listener) {
+        final int numRequests = request.requests().size();
+        final AtomicArray<MultiSearchResponse.Item> responses = new AtomicArray<>(numRequests);
+        final AtomicInteger responseCounter = new AtomicInteger(numRequests);
+        final TaskId taskId = new TaskId(clusterService.localNode().getId(), task.getId());
+        final QueryPhaseBatcher batcher = new QueryPhaseBatcher(searchTransportService, task);
+        searchTransportService.registerQueryPhaseBatcher(taskId, batcher);
+        try {
+            for (int i = 0; i < numRequests; i++) {
+                final int responseSlot = i;
+                final SearchRequest searchRequest = request.requests().get(i);
+                searchRequest.setParentTask(taskId);
+                searchAction.execute(searchRequest, new ActionListener<SearchResponse>() {
+                    @Override
+                    public void onResponse(SearchResponse searchResponse) {
+                        handleResponse(new MultiSearchResponse.Item(searchResponse, null));
+                    }
+
+                    @Override
+                    public void onFailure(Exception e) {
+                        handleResponse(new MultiSearchResponse.Item(null, e));
+                    }
+
+                    private void handleResponse(MultiSearchResponse.Item item) {
+                        responses.set(responseSlot, item);
+                        if (responseCounter.decrementAndGet() == 0) {
+                            listener.onResponse(new MultiSearchResponse(responses.toArray(new MultiSearchResponse.Item[numRequests])));
+                        }
+                    }
+                });
+            }
+        } finally {
+            // searches that have not dispatched their shard requests yet, like the ones that need to contact remote clusters first,
+            // send them on their own
+            searchTransportService.removeQueryPhaseBatcher(taskId);
+            batcher.flush();
+        }
+    }
+
     static final class SearchRequestSlot {
 
         final SearchRequest request;
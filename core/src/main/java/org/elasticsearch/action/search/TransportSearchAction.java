@@ -40,8 +40,13 @@ import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.index.Index;
 import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.search.SearchService;
+import org.elasticsearch.search.aggregations.InternalAggregations;
+import org.elasticsearch.search.aggregations.bucket.terms.TermsRefinement;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
 import org.elasticsearch.search.internal.AliasFilter;
+import org.elasticsearch.search.internal.InternalSearchResponse;
+import org.elasticsearch.search.profile.ProfileShardResult;
+import org.elasticsearch.search.profile.SearchProfileShardResults;
 import org.elasticsearch.tasks.Task;
 import org.elasticsearch.threadpool.ThreadPool;
 import org.elasticsearch.transport.RemoteClusterAware;
@@ -177,7 +182,55 @@ public class TransportSearchAction extends HandledTransportAction<SearchRequest,
         final SearchTimeProvider timeProvider =
                 new SearchTimeProvider(absoluteStartMillis, relativeStartNanos, System::nanoTime);
 
+        final TermsRefinement refinement = searchRequest.scroll() == null ? TermsRefinement.create(searchRequest.source()) : null;
+        if (refinement == null) {
+            executeRound(task, timeProvider, searchRequest, listener);
+        } else {
+            executeRound(task, timeProvider, new SearchRequest(searchRequest, refinement.firstRound()), ActionListener.wrap(
+                firstRound -> {
+                    refinement.onCountingRound((InternalAggregations) firstRound.getAggregations());
+                    refineTopTerms(task, timeProvider, searchRequest, refinement, firstRound, firstRound.getSuccessfulShards(),
+                        new ArrayList<>(Arrays.asList(firstRound.getShardFailures())), listener);
+                }, listener::onFailure));
+        }
+    }
 
+    /**
+     * Runs the next round of the refinement of the top terms of a search request, and eventually responds with the hits and the
+     * aggregations of its first round, where the refined terms aggregations are replaced with the ones of the last round. The
+     * shards that failed in any round are reported since they make the refined terms inexact.
+     */
+    private void refineTopTerms(Task task, SearchTimeProvider timeProvider, SearchRequest searchRequest, TermsRefinement refinement,
+                                SearchResponse firstRound, int successfulShards, List<ShardSearchFailure> shardFailures,
+                                ActionListener<SearchResponse> listener) {
+        if (refinement.needsCountingRound()) {
+            executeRound(task, timeProvider, new SearchRequest(searchRequest, refinement.countingRound()), ActionListener.wrap(
+                countingRound -> {
+                    refinement.onCountingRound((InternalAggregations) countingRound.getAggregations());
+                    shardFailures.addAll(Arrays.asList(countingRound.getShardFailures()));
+                    refineTopTerms(task, timeProvider, searchRequest, refinement, firstRound,
+                        Math.min(successfulShards, countingRound.getSuccessfulShards()), shardFailures, listener);
+                }, listener::onFailure));
+        } else {
+            executeRound(task, timeProvider, new SearchRequest(searchRequest, refinement.lastRound()), ActionListener.wrap(
+                lastRound -> {
+                    InternalAggregations aggregations = refinement.merge((InternalAggregations) firstRound.getAggregations(),
+                        (InternalAggregations) lastRound.getAggregations());
+                    Map<String, ProfileShardResult> profileResults = firstRound.getProfileResults();
+                    InternalSearchResponse internalResponse = new InternalSearchResponse(firstRound.getHits(), aggregations,
+                        firstRound.getSuggest(), profileResults.isEmpty() ? null : new SearchProfileShardResults(profileResults),
+                        firstRound.isTimedOut() || lastRound.isTimedOut(), firstRound.isTerminatedEarly(),
+                        firstRound.getNumReducePhases());
+                    shardFailures.addAll(Arrays.asList(lastRound.getShardFailures()));
+                    listener.onResponse(new SearchResponse(internalResponse, firstRound.getScrollId(), firstRound.getTotalShards(),
+                        Math.min(successfulShards, lastRound.getSuccessfulShards()), lastRound.getTookInMillis(),
+                        shardFailures.toArray(ShardSearchFailure.EMPTY_ARRAY)));
+                }, listener::onFailure));
+        }
+    }
+
+    private void executeRound(Task task, SearchTimeProvider timeProvider, SearchRequest searchRequest,
+                              ActionListener<SearchResponse> listener) {
         final ClusterState clusterState = clusterService.state();
         final Map<String, OriginalIndices> remoteClusterIndices = remoteClusterService.groupIndices(searchRequest.indicesOptions(),
             searchRequest.indices(), idx -> indexNameExpressionResolver.hasIndexOrAlias(idx, clusterState));
@@ -345,7 +398,7 @@ public class TransportSearchAction extends HandledTransportAction<SearchRequest,
             case QUERY_THEN_FETCH:
                 searchAsyncAction = new SearchQueryThenFetchAsyncAction(logger, searchTransportService, connectionLookup,
                     aliasFilter, concreteIndexBoosts, searchPhaseController, executor, searchRequest, listener, shardIterators,
-                    timeProvider, clusterStateVersion, task);
+                    timeProvider, clusterStateVersion, task, searchTransportService.getQueryPhaseBatcher(task.getParentTaskId()));
                 break;
             default:
                 throw new IllegalStateException("Unknown search type: [" + searchRequest.searchType() + "]");
@@ -400,6 +400,7 @@ public class ClusterState implements ToXContent, Diffable<ClusterState> {
                 builder.startObject(indexMetaData.getIndex().getName());
 
                 builder.field("state", indexMetaData.getState().toString().toLowerCase(Locale.ENGLISH));
+                builder.field(IndexMetaData.KEY_ROUTING_NUM_SHARDS, indexMetaData.getRoutingNumShards());
 
                 builder.startObject("settings");
                 Settings settings = indexMetaData.getSettings();
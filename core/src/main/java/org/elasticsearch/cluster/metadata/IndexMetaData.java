@@ -272,7 +272,7 @@ public class IndexMetaData implements Diffable<IndexMetaData>, ToXContent {
 
     public static final String KEY_IN_SYNC_ALLOCATIONS = "in_sync_allocations";
     static final String KEY_VERSION = "version";
-    static final String KEY_ROUTING_NUM_SHARDS = "routing_num_shards";
+    public static final String KEY_ROUTING_NUM_SHARDS = "routing_num_shards";
     static final String KEY_SETTINGS = "settings";
     static final String KEY_STATE = "state";
     static final String KEY_MAPPINGS = "mappings";
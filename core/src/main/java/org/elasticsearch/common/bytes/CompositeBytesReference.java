@@ -26,6 +26,8 @@ import org.apache.lucene.util.RamUsageEstimator;
 
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
 
 /**
@@ -144,6 +146,13 @@ public final class CompositeBytesReference extends BytesReference {
 
     }
 
+    /**
+     * Returns the references this reference is composed of, in order.
+     */
+    public List<BytesReference> references() {
+        return Collections.unmodifiableList(Arrays.asList(references));
+    }
+
     @Override
     public long ramBytesUsed() {
        return ramBytesUsed;
@@ -0,0 +1,114 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.common.bytes;
+
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.elasticsearch.common.io.Channels;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A {@link BytesReference} over a region of a file. The bytes are not held in memory but read from the file whenever they are
+ * accessed, which allows transports to send the region straight from the file when it is written as part of a message.
+ *
+ * Note, the file must not be modified or deleted while this reference is in use.
+ */
+public final class FileRegionBytesReference extends BytesReference {
+
+    private static final long SHALLOW_SIZE = RamUsageEstimator.shallowSizeOfInstance(FileRegionBytesReference.class);
+
+    private final Path path;
+    private final long position;
+    private final int length;
+
+    public FileRegionBytesReference(Path path, long position, int length) {
+        if (position < 0) {
+            throw new IllegalArgumentException("position must be >= 0 but was [" + position + "]");
+        }
+        if (length < 0) {
+            throw new IllegalArgumentException("length must be >= 0 but was [" + length + "]");
+        }
+        this.path = path;
+        this.position = position;
+        this.length = length;
+    }
+
+    /**
+     * The file this region belongs to.
+     */
+    public Path path() {
+        return path;
+    }
+
+    /**
+     * The offset of this region in the file.
+     */
+    public long position() {
+        return position;
+    }
+
+    @Override
+    public byte get(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("index [" + index + "] is out of bounds for length [" + length + "]");
+        }
+        return read(index, 1)[0];
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public BytesReference slice(int from, int length) {
+        if (from < 0 || (from + length) > this.length) {
+            throw new IllegalArgumentException("can't slice a buffer with length [" + this.length +
+                "], with slice parameters from [" + from + "], length [" + length + "]");
+        }
+        return new FileRegionBytesReference(path, position + from, length);
+    }
+
+    @Override
+    public BytesRef toBytesRef() {
+        return new BytesRef(read(0, length));
+    }
+
+    private byte[] read(int offset, int length) {
+        if (length == 0) {
+            return BytesRef.EMPTY_BYTES;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return Channels.readFromFileChannel(channel, position + offset, length);
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to read [" + length + "] bytes at [" + (position + offset) + "] from [" + path + "]", e);
+        }
+    }
+
+    @Override
+    public long ramBytesUsed() {
+        return SHALLOW_SIZE;
+    }
+}
@@ -43,7 +43,7 @@ public class CborXContentGenerator extends JsonXContentGenerator {
     }
 
     @Override
-    protected boolean supportsRawWrites() {
-        return false;
+    protected void writeRawFieldSeparator() {
+        // a cbor map is a plain sequence of keys and values, the raw value can immediately follow the key
     }
 }
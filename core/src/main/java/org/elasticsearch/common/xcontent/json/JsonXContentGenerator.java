@@ -28,6 +28,7 @@ import com.fasterxml.jackson.core.json.JsonWriteContext;
 import com.fasterxml.jackson.core.util.DefaultIndenter;
 import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
 import com.fasterxml.jackson.core.util.JsonGeneratorDelegate;
+import org.elasticsearch.common.bytes.BytesArray;
 import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.io.Streams;
 import org.elasticsearch.common.io.stream.StreamInput;
@@ -285,6 +286,13 @@ public class JsonXContentGenerator implements XContentGenerator {
 
     private void writeStartRaw(String name) throws IOException {
         writeFieldName(name);
+        writeRawFieldSeparator();
+    }
+
+    /**
+     * Writes what separates a field name from a raw value that follows it, the generator doesn't do it since it doesn't see the value.
+     */
+    protected void writeRawFieldSeparator() throws IOException {
         generator.writeRaw(':');
     }
 
@@ -365,7 +373,7 @@ public class JsonXContentGenerator implements XContentGenerator {
         } else {
             if (generator.getOutputContext().getCurrentName() != null) {
                 // If we've just started a field we'll need to add the separator
-                generator.writeRaw(':');
+                writeRawFieldSeparator();
             }
             flush();
             content.writeTo(os);
@@ -390,6 +398,16 @@ public class JsonXContentGenerator implements XContentGenerator {
     }
 
     protected void copyRawValue(BytesReference content, XContent xContent) throws IOException {
+        if (content instanceof BytesArray) {
+            // parsing the array in place saves copying it through a stream into the parser's buffer
+            final BytesArray array = (BytesArray) content;
+            // EMPTY is safe here because we never call namedObject
+            try (XContentParser parser = xContent.createParser(NamedXContentRegistry.EMPTY, array.array(), array.offset(),
+                    array.length())) {
+                copyCurrentStructure(parser);
+            }
+            return;
+        }
         // EMPTY is safe here because we never call namedObject
         try (StreamInput input = content.streamInput();
              XContentParser parser = xContent.createParser(NamedXContentRegistry.EMPTY, input)) {
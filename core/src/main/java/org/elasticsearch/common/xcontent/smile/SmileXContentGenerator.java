@@ -44,6 +44,8 @@ public class SmileXContentGenerator extends JsonXContentGenerator {
 
     @Override
     protected boolean supportsRawWrites() {
+        // smile documents start with a header and refer back to the names and values they already wrote, so they can't be
+        // embedded in another smile document as they are
         return false;
     }
 }
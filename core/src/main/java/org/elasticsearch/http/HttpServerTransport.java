@@ -62,6 +62,17 @@ public interface HttpServerTransport extends LifecycleComponent {
          */
         void dispatchBadRequest(RestRequest request, RestChannel channel, ThreadContext threadContext, Throwable cause);
 
+        /**
+         * Whether the handler of the request can consume its body while it is still being received. The request only carries
+         * the headers at this point, the transport dispatches it with an {@link RestRequest#incrementalContent()} if this
+         * returns {@code true}.
+         *
+         * @param request the request to dispatch, without its body
+         */
+        default boolean supportsIncrementalContent(RestRequest request) {
+            return false;
+        }
+
     }
 
 }
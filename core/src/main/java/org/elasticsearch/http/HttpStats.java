@@ -19,33 +19,62 @@
 
 package org.elasticsearch.http;
 
+import org.elasticsearch.Version;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.io.stream.Writeable;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.xcontent.ToXContent;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 
 public class HttpStats implements Writeable, ToXContent {
 
     private final long serverOpen;
     private final long totalOpen;
+    private final long compressionUncompressedSize;
+    private final long compressionCompressedSize;
+    private final long compressionTimeInNanos;
 
     public HttpStats(long serverOpen, long totalOpen) {
+        this(serverOpen, totalOpen, 0, 0, 0);
+    }
+
+    public HttpStats(long serverOpen, long totalOpen, long compressionUncompressedSize, long compressionCompressedSize,
+                     long compressionTimeInNanos) {
         this.serverOpen = serverOpen;
         this.totalOpen = totalOpen;
+        this.compressionUncompressedSize = compressionUncompressedSize;
+        this.compressionCompressedSize = compressionCompressedSize;
+        this.compressionTimeInNanos = compressionTimeInNanos;
     }
 
     public HttpStats(StreamInput in) throws IOException {
         serverOpen = in.readVLong();
         totalOpen = in.readVLong();
+        if (in.getVersion().onOrAfter(Version.V_5_5_2_UNRELEASED)) {
+            compressionUncompressedSize = in.readVLong();
+            compressionCompressedSize = in.readVLong();
+            compressionTimeInNanos = in.readVLong();
+        } else {
+            compressionUncompressedSize = 0;
+            compressionCompressedSize = 0;
+            compressionTimeInNanos = 0;
+        }
     }
 
     @Override
     public void writeTo(StreamOutput out) throws IOException {
         out.writeVLong(serverOpen);
         out.writeVLong(totalOpen);
+        if (out.getVersion().onOrAfter(Version.V_5_5_2_UNRELEASED)) {
+            out.writeVLong(compressionUncompressedSize);
+            out.writeVLong(compressionCompressedSize);
+            out.writeVLong(compressionTimeInNanos);
+        }
     }
 
     public long getServerOpen() {
@@ -56,10 +85,38 @@ public class HttpStats implements Writeable, ToXContent {
         return this.totalOpen;
     }
 
+    /**
+     * The number of bytes of response content that were compressed, before compression.
+     */
+    public ByteSizeValue getCompressionUncompressedSize() {
+        return new ByteSizeValue(compressionUncompressedSize);
+    }
+
+    /**
+     * The number of bytes of response content that were compressed, after compression.
+     */
+    public ByteSizeValue getCompressionCompressedSize() {
+        return new ByteSizeValue(compressionCompressedSize);
+    }
+
+    /**
+     * The time spent compressing response content.
+     */
+    public TimeValue getCompressionTime() {
+        return new TimeValue(compressionTimeInNanos, TimeUnit.NANOSECONDS);
+    }
+
     static final class Fields {
         static final String HTTP = "http";
         static final String CURRENT_OPEN = "current_open";
         static final String TOTAL_OPENED = "total_opened";
+        static final String COMPRESSION = "compression";
+        static final String UNCOMPRESSED_SIZE = "uncompressed_size";
+        static final String UNCOMPRESSED_SIZE_IN_BYTES = "uncompressed_size_in_bytes";
+        static final String COMPRESSED_SIZE = "compressed_size";
+        static final String COMPRESSED_SIZE_IN_BYTES = "compressed_size_in_bytes";
+        static final String TIME = "time";
+        static final String TIME_IN_MILLIS = "time_in_millis";
     }
 
     @Override
@@ -67,6 +124,11 @@ public class HttpStats implements Writeable, ToXContent {
         builder.startObject(Fields.HTTP);
         builder.field(Fields.CURRENT_OPEN, serverOpen);
         builder.field(Fields.TOTAL_OPENED, totalOpen);
+        builder.startObject(Fields.COMPRESSION);
+        builder.byteSizeField(Fields.UNCOMPRESSED_SIZE_IN_BYTES, Fields.UNCOMPRESSED_SIZE, compressionUncompressedSize);
+        builder.byteSizeField(Fields.COMPRESSED_SIZE_IN_BYTES, Fields.COMPRESSED_SIZE, compressionCompressedSize);
+        builder.timeValueField(Fields.TIME_IN_MILLIS, Fields.TIME, getCompressionTime());
+        builder.endObject();
         builder.endObject();
         return builder;
     }
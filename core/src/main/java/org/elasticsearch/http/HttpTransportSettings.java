@@ -21,11 +21,14 @@ package org.elasticsearch.http;
 
 import org.elasticsearch.common.settings.Setting;
 import org.elasticsearch.common.settings.Setting.Property;
+import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.transport.PortsRange;
 import org.elasticsearch.common.unit.ByteSizeUnit;
 import org.elasticsearch.common.unit.ByteSizeValue;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Function;
 
 import static java.util.Collections.emptyList;
@@ -55,6 +58,28 @@ public final class HttpTransportSettings {
     // best compromise between reduction in network traffic and added latency. For more details please check #7309.
     public static final Setting<Integer> SETTING_HTTP_COMPRESSION_LEVEL =
         Setting.intSetting("http.compression_level", 3, Property.NodeScope);
+    // compressing small responses costs more than the few bytes it saves, the gzip header and trailer alone take 18 bytes
+    public static final Setting<ByteSizeValue> SETTING_HTTP_COMPRESSION_MIN_SIZE =
+        Setting.byteSizeSetting("http.compression_min_size", new ByteSizeValue(256, ByteSizeUnit.BYTES), Property.NodeScope);
+    // the content codings that responses may be compressed with, in order of preference
+    public static final Setting<List<String>> SETTING_HTTP_COMPRESSION_CODECS =
+        listSetting("http.compression_codecs", Arrays.asList("gzip", "deflate"), Function.identity(), Property.NodeScope);
+    // overrides the compression level per endpoint, keyed by the first path element that starts with an underscore, eg. _search
+    public static final Setting<Settings> SETTING_HTTP_COMPRESSION_LEVELS = Setting.groupSetting("http.compression_levels.", (settings) -> {
+        for (Map.Entry<String, String> entry : settings.getAsMap().entrySet()) {
+            final int level;
+            try {
+                level = Integer.parseInt(entry.getValue());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("http.compression_levels." + entry.getKey() + " must be an integer but was ["
+                    + entry.getValue() + "]", e);
+            }
+            if (level < 0 || level > 9) {
+                throw new IllegalArgumentException("http.compression_levels." + entry.getKey() + " must be between 0 and 9 but was ["
+                    + level + "]");
+            }
+        }
+    }, Property.NodeScope);
     public static final Setting<List<String>> SETTING_HTTP_HOST =
         listSetting("http.host", emptyList(), Function.identity(), Property.NodeScope);
     public static final Setting<List<String>> SETTING_HTTP_PUBLISH_HOST =
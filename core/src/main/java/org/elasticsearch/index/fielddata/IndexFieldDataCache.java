@@ -33,6 +33,11 @@ public interface IndexFieldDataCache {
 
     <FD extends AtomicFieldData, IFD extends IndexFieldData.Global<FD>> IFD load(DirectoryReader indexReader, IFD indexFieldData) throws Exception;
 
+    /**
+     * Whether the global field data of the given reader is cached already, so that loading it does not need to build it.
+     */
+    boolean isGlobalLoaded(DirectoryReader indexReader);
+
     /**
      * Clears all the field data stored cached in on this index.
      */
@@ -69,6 +74,11 @@ public interface IndexFieldDataCache {
             return (IFD) indexFieldData.localGlobalDirect(indexReader);
         }
 
+        @Override
+        public boolean isGlobalLoaded(DirectoryReader indexReader) {
+            return false;
+        }
+
         @Override
         public void clear() {
         }
@@ -42,6 +42,12 @@ public interface IndexOrdinalsFieldData extends IndexFieldData.Global<AtomicOrdi
     @Override
     IndexOrdinalsFieldData localGlobalDirect(DirectoryReader indexReader) throws Exception;
 
+    /**
+     * Whether {@link #loadGlobal(DirectoryReader)} can return without building global ordinals, because they are cached
+     * already or because the ordinals of the given {@link IndexReader} are global already.
+     */
+    boolean isGlobalLoaded(DirectoryReader indexReader);
+
     /**
      * Returns the underlying {@link MultiDocValues.OrdinalMap} for this fielddata
      * or null if global ordinals are not needed (constant value or single segment).
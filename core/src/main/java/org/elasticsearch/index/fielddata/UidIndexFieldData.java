@@ -93,6 +93,11 @@ public final class UidIndexFieldData implements IndexOrdinalsFieldData {
         return new UidIndexFieldData(index, type, idFieldData.loadGlobal(indexReader));
     }
 
+    @Override
+    public boolean isGlobalLoaded(DirectoryReader indexReader) {
+        return idFieldData.isGlobalLoaded(indexReader);
+    }
+
     @Override
     public IndexOrdinalsFieldData localGlobalDirect(DirectoryReader indexReader) throws Exception {
         return new UidIndexFieldData(index, type, idFieldData.localGlobalDirect(indexReader));
@@ -76,6 +76,11 @@ public class GlobalOrdinalsIndexFieldData extends AbstractIndexComponent impleme
         return this;
     }
 
+    @Override
+    public boolean isGlobalLoaded(DirectoryReader indexReader) {
+        return true;
+    }
+
     @Override
     public IndexOrdinalsFieldData localGlobalDirect(DirectoryReader indexReader) throws Exception {
         return this;
@@ -147,6 +147,11 @@ public class ConstantIndexFieldData extends AbstractIndexOrdinalsFieldData {
         return this;
     }
 
+    @Override
+    public boolean isGlobalLoaded(DirectoryReader indexReader) {
+        return true;
+    }
+
     @Override
     public IndexOrdinalsFieldData localGlobalDirect(DirectoryReader indexReader) throws Exception {
         return loadGlobal(indexReader);
@@ -122,6 +122,12 @@ public class SortedSetDVOrdinalsIndexFieldData extends DocValuesIndexFieldData i
         }
     }
 
+    @Override
+    public boolean isGlobalLoaded(DirectoryReader indexReader) {
+        // ordinals of a single segment are already global
+        return indexReader.leaves().size() <= 1 || cache.isGlobalLoaded(indexReader);
+    }
+
     @Override
     public IndexOrdinalsFieldData localGlobalDirect(DirectoryReader indexReader) throws Exception {
         return GlobalOrdinalsBuilder.build(indexReader, this, indexSettings, breakerService, logger, scriptFunction);
@@ -1292,6 +1292,10 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
         return indexEventListener;
     }
 
+    public ThreadPool getThreadPool() {
+        return threadPool;
+    }
+
     public void activateThrottling() {
         try {
             getEngine().activateThrottling();
@@ -168,6 +168,11 @@ public class IndicesFieldDataCache extends AbstractComponent implements RemovalL
             return (IFD) accountable;
         }
 
+        @Override
+        public boolean isGlobalLoaded(DirectoryReader indexReader) {
+            return cache.get(new Key(this, indexReader.getCoreCacheKey(), null)) != null;
+        }
+
         @Override
         public void onClose(Object coreKey) {
             cache.invalidate(new Key(this, coreKey, null));
@@ -72,6 +72,22 @@ public class RecoverySettings extends AbstractComponent {
             INDICES_RECOVERY_INTERNAL_LONG_ACTION_TIMEOUT_SETTING::get, TimeValue.timeValueSeconds(0),
             Property.Dynamic, Property.NodeScope);
 
+    /**
+     * the number of file chunks that a single recovery may have in flight to the target node at the same time. Sending more than one
+     * chunk before waiting for the acknowledgement of the previous one keeps high-latency links busy; the overall bandwidth is still
+     * capped by `indices.recovery.max_bytes_per_sec`.
+     */
+    public static final Setting<Integer> INDICES_RECOVERY_MAX_CONCURRENT_FILE_CHUNKS_SETTING =
+        Setting.intSetting("indices.recovery.max_concurrent_file_chunks", 2, 1, 8, Property.Dynamic, Property.NodeScope);
+
+    /**
+     * whether file chunks are sent as regions of the files on disk, which transports that support it write to the network without
+     * reading them into memory first. Only applies to stores whose files live on the local file system. Transports whose channels
+     * encrypt messages still copy the regions.
+     */
+    public static final Setting<Boolean> INDICES_RECOVERY_ZERO_COPY_FILE_CHUNKS_SETTING =
+        Setting.boolSetting("indices.recovery.zero_copy_file_chunks", false, Property.Dynamic, Property.NodeScope);
+
     public static final ByteSizeValue DEFAULT_CHUNK_SIZE = new ByteSizeValue(512, ByteSizeUnit.KB);
 
     private volatile ByteSizeValue maxBytesPerSec;
@@ -81,6 +97,8 @@ public class RecoverySettings extends AbstractComponent {
     private volatile TimeValue activityTimeout;
     private volatile TimeValue internalActionTimeout;
     private volatile TimeValue internalActionLongTimeout;
+    private volatile int maxConcurrentFileChunks;
+    private volatile boolean zeroCopyFileChunks;
 
     private volatile ByteSizeValue chunkSize = DEFAULT_CHUNK_SIZE;
 
@@ -96,6 +114,8 @@ public class RecoverySettings extends AbstractComponent {
         this.internalActionLongTimeout = INDICES_RECOVERY_INTERNAL_LONG_ACTION_TIMEOUT_SETTING.get(settings);
 
         this.activityTimeout = INDICES_RECOVERY_ACTIVITY_TIMEOUT_SETTING.get(settings);
+        this.maxConcurrentFileChunks = INDICES_RECOVERY_MAX_CONCURRENT_FILE_CHUNKS_SETTING.get(settings);
+        this.zeroCopyFileChunks = INDICES_RECOVERY_ZERO_COPY_FILE_CHUNKS_SETTING.get(settings);
         this.maxBytesPerSec = INDICES_RECOVERY_MAX_BYTES_PER_SEC_SETTING.get(settings);
         if (maxBytesPerSec.getBytes() <= 0) {
             rateLimiter = null;
@@ -104,7 +124,7 @@ public class RecoverySettings extends AbstractComponent {
         }
 
 
-        logger.debug("using max_bytes_per_sec[{}]", maxBytesPerSec);
+        logger.debug("using max_bytes_per_sec[{}], max_concurrent_file_chunks [{}]", maxBytesPerSec, maxConcurrentFileChunks);
 
         clusterSettings.addSettingsUpdateConsumer(INDICES_RECOVERY_MAX_BYTES_PER_SEC_SETTING, this::setMaxBytesPerSec);
         clusterSettings.addSettingsUpdateConsumer(INDICES_RECOVERY_RETRY_DELAY_STATE_SYNC_SETTING, this::setRetryDelayStateSync);
@@ -112,6 +132,8 @@ public class RecoverySettings extends AbstractComponent {
         clusterSettings.addSettingsUpdateConsumer(INDICES_RECOVERY_INTERNAL_ACTION_TIMEOUT_SETTING, this::setInternalActionTimeout);
         clusterSettings.addSettingsUpdateConsumer(INDICES_RECOVERY_INTERNAL_LONG_ACTION_TIMEOUT_SETTING, this::setInternalActionLongTimeout);
         clusterSettings.addSettingsUpdateConsumer(INDICES_RECOVERY_ACTIVITY_TIMEOUT_SETTING, this::setActivityTimeout);
+        clusterSettings.addSettingsUpdateConsumer(INDICES_RECOVERY_MAX_CONCURRENT_FILE_CHUNKS_SETTING, this::setMaxConcurrentFileChunks);
+        clusterSettings.addSettingsUpdateConsumer(INDICES_RECOVERY_ZERO_COPY_FILE_CHUNKS_SETTING, this::setZeroCopyFileChunks);
     }
 
     public RateLimiter rateLimiter() {
@@ -140,6 +162,14 @@ public class RecoverySettings extends AbstractComponent {
 
     public ByteSizeValue getChunkSize() { return chunkSize; }
 
+    public int getMaxConcurrentFileChunks() {
+        return maxConcurrentFileChunks;
+    }
+
+    public boolean isZeroCopyFileChunks() {
+        return zeroCopyFileChunks;
+    }
+
     public void setChunkSize(ByteSizeValue chunkSize) { // only settable for tests
         if (chunkSize.bytesAsInt() <= 0) {
             throw new IllegalArgumentException("chunkSize must be > 0");
@@ -168,6 +198,14 @@ public class RecoverySettings extends AbstractComponent {
         this.internalActionLongTimeout = internalActionLongTimeout;
     }
 
+    private void setMaxConcurrentFileChunks(int maxConcurrentFileChunks) {
+        this.maxConcurrentFileChunks = maxConcurrentFileChunks;
+    }
+
+    private void setZeroCopyFileChunks(boolean zeroCopyFileChunks) {
+        this.zeroCopyFileChunks = zeroCopyFileChunks;
+    }
+
     private void setMaxBytesPerSec(ByteSizeValue maxBytesPerSec) {
         this.maxBytesPerSec = maxBytesPerSec;
         if (maxBytesPerSec.getBytes() <= 0) {
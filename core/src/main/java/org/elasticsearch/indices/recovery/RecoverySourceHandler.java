@@ -25,6 +25,10 @@ import org.apache.lucene.index.CorruptIndexException;
 import org.apache.lucene.index.IndexCommit;
 import org.apache.lucene.index.IndexFormatTooNewException;
 import org.apache.lucene.index.IndexFormatTooOldException;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.FileSwitchDirectory;
+import org.apache.lucene.store.FilterDirectory;
 import org.apache.lucene.store.IOContext;
 import org.apache.lucene.store.IndexInput;
 import org.apache.lucene.store.RateLimiter;
@@ -32,9 +36,14 @@ import org.apache.lucene.util.ArrayUtil;
 import org.apache.lucene.util.IOUtils;
 import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.common.CheckedConsumer;
 import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.StopWatch;
 import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.bytes.FileRegionBytesReference;
+import org.elasticsearch.common.collect.Tuple;
 import org.elasticsearch.common.io.Streams;
 import org.elasticsearch.common.lease.Releasable;
 import org.elasticsearch.common.lucene.store.InputStreamIndexInput;
@@ -53,8 +62,13 @@ import org.elasticsearch.transport.RemoteTransportException;
 import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.StreamSupport;
@@ -83,6 +97,8 @@ public class RecoverySourceHandler {
     private final Function<String, Releasable> delayNewRecoveries;
     private final int chunkSizeInBytes;
     private final RecoveryTargetHandler recoveryTarget;
+    private final InFlightFileChunks inFlightFileChunks;
+    private final boolean zeroCopyFileChunks;
 
     protected final RecoveryResponse response;
 
@@ -107,6 +123,8 @@ public class RecoverySourceHandler {
                                  final Supplier<Long> currentClusterStateVersionSupplier,
                                  Function<String, Releasable> delayNewRecoveries,
                                  final int fileChunkSizeInBytes,
+                                 final int maxConcurrentFileChunks,
+                                 final boolean zeroCopyFileChunks,
                                  final Logger logger) {
         this.shard = shard;
         this.recoveryTarget = recoveryTarget;
@@ -117,6 +135,8 @@ public class RecoverySourceHandler {
         this.indexName = this.request.shardId().getIndex().getName();
         this.shardId = this.request.shardId().id();
         this.chunkSizeInBytes = fileChunkSizeInBytes;
+        this.inFlightFileChunks = new InFlightFileChunks(maxConcurrentFileChunks);
+        this.zeroCopyFileChunks = zeroCopyFileChunks;
         this.response = new RecoveryResponse();
     }
 
@@ -273,7 +293,15 @@ public class RecoverySourceHandler {
                 // How many bytes we've copied since we last called RateLimiter.pause
                 final Function<StoreFileMetaData, OutputStream> outputStreamFactories =
                         md -> new BufferedOutputStream(new RecoveryOutputStream(md, translogView), chunkSizeInBytes);
-                sendFiles(store, phase1Files.toArray(new StoreFileMetaData[phase1Files.size()]), outputStreamFactories);
+                final Path fileRegionsDirectory = zeroCopyFileChunks ? fileSystemDirectory(store.directory()) : null;
+                transferFiles(store, phase1Files.toArray(new StoreFileMetaData[phase1Files.size()]), md -> {
+                    final Path file = fileRegionsDirectory == null ? null : fileRegionsDirectory.resolve(md.name());
+                    if (file != null && Files.size(file) == md.length()) {
+                        sendFileRegions(md, file, translogView);
+                    } else {
+                        copyFile(store, md, outputStreamFactories);
+                    }
+                });
                 // Send the CLEAN_FILES request, which takes all of the files that
                 // were transferred and renames them from their temporary file
                 // names to the actual file names. It also writes checksums for
@@ -526,62 +554,191 @@ public class RecoverySourceHandler {
 
         @Override
         public void write(byte[] b, int offset, int length) throws IOException {
-            sendNextChunk(position, new BytesArray(b, offset, length), md.length() == position + length);
+            // the chunk may still be in flight when the caller reuses its buffer, so we have to hand over a copy
+            final BytesArray content = new BytesArray(Arrays.copyOfRange(b, offset, offset + length));
+            sendNextChunk(position, content, md.length() == position + length);
             position += length;
             assert md.length() >= position : "length: " + md.length() + " but positions was: " + position;
         }
 
         private void sendNextChunk(long position, BytesArray content, boolean lastChunk) throws IOException {
-            // Actually send the file chunk to the target node, waiting for it to complete
-            cancellableThreads.executeIO(() ->
-                    recoveryTarget.writeFileChunk(md, position, content, lastChunk, translogView.totalOperations())
-            );
-            if (shard.state() == IndexShardState.CLOSED) { // check if the shard got closed on us
-                throw new IndexShardClosedException(request.shardId());
+            sendFileChunk(md, position, content, lastChunk, translogView);
+        }
+    }
+
+    private void sendFileChunk(StoreFileMetaData md, long position, BytesReference content, boolean lastChunk,
+                               Translog.View translogView) {
+        // Send the file chunk to the target node, this only blocks if too many chunks are in flight already
+        inFlightFileChunks.send(md, position, content, lastChunk, translogView.totalOperations());
+        if (shard.state() == IndexShardState.CLOSED) { // check if the shard got closed on us
+            throw new IndexShardClosedException(request.shardId());
+        }
+    }
+
+    /**
+     * Sends the given file in chunks that reference regions of the file rather than its content, which lets the transport write
+     * them to the network straight from the file. The checksum of the file is verified by the target as usual.
+     */
+    private void sendFileRegions(StoreFileMetaData md, Path file, Translog.View translogView) {
+        long position = 0;
+        while (position < md.length()) {
+            final int length = (int) Math.min(chunkSizeInBytes, md.length() - position);
+            final FileRegionBytesReference content = new FileRegionBytesReference(file, position, length);
+            sendFileChunk(md, position, content, position + length == md.length(), translogView);
+            position += length;
+        }
+    }
+
+    /**
+     * Returns the file system directory that holds the files of the given directory, or <code>null</code> if its files can't be
+     * read from the file system directly.
+     */
+    @Nullable
+    static Path fileSystemDirectory(Directory directory) {
+        final Directory unwrapped = FilterDirectory.unwrap(directory);
+        if (unwrapped instanceof FSDirectory) {
+            return ((FSDirectory) unwrapped).getDirectory();
+        } else if (unwrapped instanceof FileSwitchDirectory) {
+            final FileSwitchDirectory switchDirectory = (FileSwitchDirectory) unwrapped;
+            final Path primary = fileSystemDirectory(switchDirectory.getPrimaryDir());
+            if (primary != null && primary.equals(fileSystemDirectory(switchDirectory.getSecondaryDir()))) {
+                return primary;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Bounds the number of file chunks that have been sent to the target but have not been acknowledged yet. Keeping more than
+     * one chunk in flight prevents the file copy from being capped at chunk_size / round-trip-time on high-latency links. Chunks
+     * of the current file and of the files sent before it can be in flight at the same time; the first failure is kept together
+     * with the file it belongs to and rethrown on the next interaction.
+     */
+    final class InFlightFileChunks {
+        private final int maxInFlight;
+        private final Semaphore permits;
+        private final AtomicReference<Tuple<StoreFileMetaData, Exception>> failure = new AtomicReference<>();
+
+        InFlightFileChunks(int maxInFlight) {
+            if (maxInFlight < 1) {
+                throw new IllegalArgumentException("max concurrent file chunks must be >= 1 but was [" + maxInFlight + "]");
+            }
+            this.maxInFlight = maxInFlight;
+            this.permits = new Semaphore(maxInFlight);
+        }
+
+        void send(StoreFileMetaData md, long position, BytesReference content, boolean lastChunk, int totalTranslogOps) {
+            cancellableThreads.execute(permits::acquire);
+            boolean success = false;
+            try {
+                ensureNoFailure();
+                recoveryTarget.writeFileChunk(md, position, content, lastChunk, totalTranslogOps, ActionListener.wrap(
+                    r -> permits.release(),
+                    e -> {
+                        failure.compareAndSet(null, Tuple.tuple(md, e));
+                        permits.release();
+                    }));
+                success = true;
+            } finally {
+                if (success == false) {
+                    permits.release();
+                }
+            }
+        }
+
+        /**
+         * Blocks until all chunks sent so far have been acknowledged by the target.
+         */
+        void waitForAcknowledgements() {
+            cancellableThreads.execute(() -> permits.acquire(maxInFlight));
+            permits.release(maxInFlight);
+            ensureNoFailure();
+        }
+
+        /**
+         * Returns the file whose chunk failed on the target, or <code>null</code> if all chunks were acknowledged so far.
+         */
+        @Nullable
+        StoreFileMetaData failedFile() {
+            final Tuple<StoreFileMetaData, Exception> failure = this.failure.get();
+            return failure == null ? null : failure.v1();
+        }
+
+        private void ensureNoFailure() {
+            final Tuple<StoreFileMetaData, Exception> failure = this.failure.get();
+            if (failure != null) {
+                throw ExceptionsHelper.convertToRuntime(failure.v2());
             }
         }
     }
 
     void sendFiles(Store store, StoreFileMetaData[] files, Function<StoreFileMetaData, OutputStream> outputStreamFactory) throws Exception {
+        transferFiles(store, files, md -> copyFile(store, md, outputStreamFactory));
+    }
+
+    private void copyFile(Store store, StoreFileMetaData md, Function<StoreFileMetaData, OutputStream> outputStreamFactory)
+            throws IOException {
+        try (IndexInput indexInput = store.directory().openInput(md.name(), IOContext.READONCE)) {
+            // it's fine that we are only having the indexInput in the try/with block. The copy methods handles
+            // exceptions during close correctly and doesn't hide the original exception.
+            Streams.copy(new InputStreamIndexInput(indexInput, md.length()), outputStreamFactory.apply(md));
+        }
+    }
+
+    private void transferFiles(Store store, StoreFileMetaData[] files, CheckedConsumer<StoreFileMetaData, Exception> fileSender)
+            throws Exception {
         store.incRef();
         try {
             ArrayUtil.timSort(files, (a, b) -> Long.compare(a.length(), b.length())); // send smallest first
             for (int i = 0; i < files.length; i++) {
                 final StoreFileMetaData md = files[i];
-                try (IndexInput indexInput = store.directory().openInput(md.name(), IOContext.READONCE)) {
-                    // it's fine that we are only having the indexInput in the try/with block. The copy methods handles
-                    // exceptions during close correctly and doesn't hide the original exception.
-                    Streams.copy(new InputStreamIndexInput(indexInput, md.length()), outputStreamFactory.apply(md));
+                try {
+                    fileSender.accept(md);
                 } catch (Exception e) {
-                    final IOException corruptIndexException;
-                    if ((corruptIndexException = ExceptionsHelper.unwrapCorruption(e)) != null) {
-                        if (store.checkIntegrityNoException(md) == false) { // we are corrupted on the primary -- fail!
-                            logger.warn("{} Corrupted file detected {} checksum mismatch", shardId, md);
-                            failEngine(corruptIndexException);
-                            throw corruptIndexException;
-                        } else { // corruption has happened on the way to replica
-                            RemoteTransportException exception = new RemoteTransportException("File corruption occurred on recovery but " +
-                                    "checksums are ok", null);
-                            exception.addSuppressed(e);
-                            logger.warn(
-                                (org.apache.logging.log4j.util.Supplier<?>) () -> new ParameterizedMessage(
-                                    "{} Remote file corruption on node {}, recovering {}. local checksum OK",
-                                    shardId,
-                                    request.targetNode(),
-                                    md),
-                                corruptIndexException);
-                            throw exception;
-                        }
-                    } else {
-                        throw e;
-                    }
+                    // the failure might belong to a chunk of a previous file that was still in flight
+                    final StoreFileMetaData failedFile = inFlightFileChunks.failedFile();
+                    handleErrorOnSendFiles(store, e, failedFile == null ? md : failedFile);
+                }
+            }
+            try {
+                inFlightFileChunks.waitForAcknowledgements();
+            } catch (Exception e) {
+                final StoreFileMetaData failedFile = inFlightFileChunks.failedFile();
+                if (failedFile == null) {
+                    throw e;
                 }
+                handleErrorOnSendFiles(store, e, failedFile);
             }
         } finally {
             store.decRef();
         }
     }
 
+    private void handleErrorOnSendFiles(Store store, Exception e, StoreFileMetaData md) throws Exception {
+        final IOException corruptIndexException;
+        if ((corruptIndexException = ExceptionsHelper.unwrapCorruption(e)) != null) {
+            if (store.checkIntegrityNoException(md) == false) { // we are corrupted on the primary -- fail!
+                logger.warn("{} Corrupted file detected {} checksum mismatch", shardId, md);
+                failEngine(corruptIndexException);
+                throw corruptIndexException;
+            } else { // corruption has happened on the way to replica
+                RemoteTransportException exception = new RemoteTransportException("File corruption occurred on recovery but " +
+                        "checksums are ok", null);
+                exception.addSuppressed(e);
+                logger.warn(
+                    (org.apache.logging.log4j.util.Supplier<?>) () -> new ParameterizedMessage(
+                        "{} Remote file corruption on node {}, recovering {}. local checksum OK",
+                        shardId,
+                        request.targetNode(),
+                        md),
+                    corruptIndexException);
+                throw exception;
+            }
+        } else {
+            throw e;
+        }
+    }
+
     protected void failEngine(IOException cause) {
         shard.failShard("recovery", cause);
     }
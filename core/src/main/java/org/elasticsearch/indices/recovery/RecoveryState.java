@@ -19,6 +19,7 @@
 
 package org.elasticsearch.indices.recovery;
 
+import org.elasticsearch.Version;
 import org.elasticsearch.cluster.node.DiscoveryNode;
 import org.elasticsearch.cluster.routing.RecoverySource;
 import org.elasticsearch.cluster.routing.ShardRouting;
@@ -39,6 +40,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Keeps track of state related to shard recovery.
@@ -342,6 +344,7 @@ public class RecoveryState implements ToXContent, Streamable {
         static final String SOURCE_THROTTLE_TIME_IN_MILLIS = "source_throttle_time_in_millis";
         static final String TARGET_THROTTLE_TIME = "target_throttle_time";
         static final String TARGET_THROTTLE_TIME_IN_MILLIS = "target_throttle_time_in_millis";
+        static final String RECOVERED_BYTES_PER_SEC = "recovered_bytes_per_sec";
     }
 
     public static class Timer implements Streamable {
@@ -552,6 +555,9 @@ public class RecoveryState implements ToXContent, Streamable {
         private long length;
         private long recovered;
         private boolean reused;
+        // nano time the first chunk of this file was received, only used locally to compute the recovery time
+        private long startNanoTime = 0;
+        private long recoveryTimeInNanos = 0;
 
         public File() {
         }
@@ -566,6 +572,11 @@ public class RecoveryState implements ToXContent, Streamable {
         void addRecoveredBytes(long bytes) {
             assert reused == false : "file is marked as reused, can't update recovered bytes";
             assert bytes >= 0 : "can't recovered negative bytes. got [" + bytes + "]";
+            final long now = System.nanoTime();
+            if (startNanoTime == 0) {
+                startNanoTime = now;
+            }
+            recoveryTimeInNanos = now - startNanoTime;
             recovered += bytes;
         }
 
@@ -601,6 +612,23 @@ public class RecoveryState implements ToXContent, Streamable {
             return reused == false && length == recovered;
         }
 
+        /**
+         * time between the first and the latest chunk of this file that was received. 0 if the file is reused
+         */
+        public TimeValue recoveryTime() {
+            return TimeValue.timeValueNanos(recoveryTimeInNanos);
+        }
+
+        /**
+         * the throughput achieved while receiving this file in bytes per second, or 0 if it cannot be computed yet
+         */
+        public long recoveredBytesPerSec() {
+            if (recoveryTimeInNanos <= 0) {
+                return 0;
+            }
+            return (long) (recovered / (recoveryTimeInNanos / (double) TimeUnit.SECONDS.toNanos(1)));
+        }
+
         public static File readFile(StreamInput in) throws IOException {
             File file = new File();
             file.readFrom(in);
@@ -613,6 +641,9 @@ public class RecoveryState implements ToXContent, Streamable {
             length = in.readVLong();
             recovered = in.readVLong();
             reused = in.readBoolean();
+            if (in.getVersion().onOrAfter(Version.V_5_5_2_UNRELEASED)) {
+                recoveryTimeInNanos = in.readVLong();
+            }
         }
 
         @Override
@@ -621,6 +652,9 @@ public class RecoveryState implements ToXContent, Streamable {
             out.writeVLong(length);
             out.writeVLong(recovered);
             out.writeBoolean(reused);
+            if (out.getVersion().onOrAfter(Version.V_5_5_2_UNRELEASED)) {
+                out.writeVLong(recoveryTimeInNanos);
+            }
         }
 
         @Override
@@ -630,6 +664,10 @@ public class RecoveryState implements ToXContent, Streamable {
             builder.byteSizeField(Fields.LENGTH_IN_BYTES, Fields.LENGTH, length);
             builder.field(Fields.REUSED, reused);
             builder.byteSizeField(Fields.RECOVERED_IN_BYTES, Fields.RECOVERED, recovered);
+            if (reused == false) {
+                builder.timeValueField(Fields.TOTAL_TIME_IN_MILLIS, Fields.TOTAL_TIME, recoveryTime());
+                builder.field(Fields.RECOVERED_BYTES_PER_SEC, recoveredBytesPerSec());
+            }
             builder.endObject();
             return builder;
         }
@@ -31,6 +31,7 @@ import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.BytesRefIterator;
 import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.cluster.node.DiscoveryNode;
 import org.elasticsearch.common.UUIDs;
 import org.elasticsearch.common.bytes.BytesReference;
@@ -51,10 +52,12 @@ import org.elasticsearch.index.translog.Translog;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.PriorityQueue;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
@@ -86,6 +89,7 @@ public class RecoveryTarget extends AbstractRefCounted implements RecoveryTarget
     private final AtomicBoolean finished = new AtomicBoolean();
 
     private final ConcurrentMap<String, IndexOutput> openIndexOutputs = ConcurrentCollections.newConcurrentMap();
+    private final ConcurrentMap<String, FileChunkWriter> fileChunkWriters = ConcurrentCollections.newConcurrentMap();
     private final CancellableThreads cancellableThreads;
 
     // last time this status was accessed
@@ -327,6 +331,8 @@ public class RecoveryTarget extends AbstractRefCounted implements RecoveryTarget
                 }
                 iterator.remove();
             }
+            // drop the chunks that arrived ahead of their predecessors, their files are never completed
+            fileChunkWriters.clear();
             // trash temporary files
             for (String file : tempFileNames.keySet()) {
                 logger.trace("cleaning temporary file [{}]", file);
@@ -434,11 +440,32 @@ public class RecoveryTarget extends AbstractRefCounted implements RecoveryTarget
     }
 
     @Override
+    public void writeFileChunk(StoreFileMetaData fileMetaData, long position, BytesReference content, boolean lastChunk,
+                               int totalTranslogOps, ActionListener<Void> listener) {
+        try {
+            writeFileChunk(fileMetaData, position, content, lastChunk, totalTranslogOps);
+        } catch (Exception e) {
+            listener.onFailure(e);
+            return;
+        }
+        listener.onResponse(null);
+    }
+
+    /**
+     * Writes a chunk of the given file. The source may have several chunks of the same file in flight, so chunks can arrive out
+     * of order; they are buffered until all preceding bytes of the file have been written.
+     */
     public void writeFileChunk(StoreFileMetaData fileMetaData, long position, BytesReference content,
                                boolean lastChunk, int totalTranslogOps) throws IOException {
+        state().getTranslog().totalOperations(totalTranslogOps);
+        final FileChunkWriter writer = fileChunkWriters.computeIfAbsent(fileMetaData.name(), name -> new FileChunkWriter());
+        writer.writeChunk(new FileChunk(fileMetaData, content, position, lastChunk));
+    }
+
+    private void innerWriteFileChunk(StoreFileMetaData fileMetaData, long position, BytesReference content,
+                                     boolean lastChunk) throws IOException {
         final Store store = store();
         final String name = fileMetaData.name();
-        state().getTranslog().totalOperations(totalTranslogOps);
         final RecoveryState.Index indexState = state().getIndex();
         IndexOutput indexOutput;
         if (position == 0) {
@@ -467,4 +494,38 @@ public class RecoveryTarget extends AbstractRefCounted implements RecoveryTarget
             assert remove == null || remove == indexOutput; // remove maybe null if we got finished
         }
     }
+
+    private static final class FileChunk {
+        final StoreFileMetaData md;
+        final BytesReference content;
+        final long position;
+        final boolean lastChunk;
+
+        FileChunk(StoreFileMetaData md, BytesReference content, long position, boolean lastChunk) {
+            this.md = md;
+            this.content = content;
+            this.position = position;
+            this.lastChunk = lastChunk;
+        }
+    }
+
+    private final class FileChunkWriter {
+        // chunks that arrived ahead of the current write position of the file, ordered by position
+        private final PriorityQueue<FileChunk> pendingChunks = new PriorityQueue<>(Comparator.comparingLong(chunk -> chunk.position));
+        private long lastPosition = 0;
+
+        synchronized void writeChunk(FileChunk newChunk) throws IOException {
+            pendingChunks.add(newChunk);
+            FileChunk chunk;
+            while ((chunk = pendingChunks.peek()) != null && chunk.position == lastPosition) {
+                pendingChunks.poll();
+                innerWriteFileChunk(chunk.md, chunk.position, chunk.content, chunk.lastChunk);
+                lastPosition += chunk.content.length();
+                if (chunk.lastChunk) {
+                    assert pendingChunks.isEmpty() : "still have pending chunks after the last chunk of [" + chunk.md.name() + "]";
+                    fileChunkWriters.remove(chunk.md.name());
+                }
+            }
+        }
+    }
 }
@@ -18,6 +18,7 @@
  */
 package org.elasticsearch.indices.recovery;
 
+import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.index.store.Store;
 import org.elasticsearch.index.store.StoreFileMetaData;
@@ -74,8 +75,11 @@ public interface RecoveryTargetHandler {
      */
     void cleanFiles(int totalTranslogOps, Store.MetadataSnapshot sourceMetaData) throws IOException;
 
-    /** writes a partial file chunk to the target store */
+    /**
+     * writes a partial file chunk to the target store. The call may return before the chunk is written, the listener is notified
+     * once the target acknowledged it. Chunks of the same file may therefore be in flight concurrently.
+     */
     void writeFileChunk(StoreFileMetaData fileMetaData, long position, BytesReference content,
-                        boolean lastChunk, int totalTranslogOps) throws IOException;
+                        boolean lastChunk, int totalTranslogOps, ActionListener<Void> listener);
 
 }
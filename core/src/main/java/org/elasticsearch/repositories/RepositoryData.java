@@ -102,6 +102,13 @@ public final class RepositoryData {
         return new RepositoryData(genId, snapshotIds, snapshotStates, indexSnapshots, incompatibleSnapshotIds);
     }
 
+    /**
+     * Returns a copy of this instance that belongs to the given generational index file id, for instance once it was written to it.
+     */
+    public RepositoryData withGenId(final long newGenId) {
+        return new RepositoryData(newGenId, snapshotIds, snapshotStates, indexSnapshots, incompatibleSnapshotIds);
+    }
+
     /**
      * Gets the generational index file id from which this instance was read.
      */
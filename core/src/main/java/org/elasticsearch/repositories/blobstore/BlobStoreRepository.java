@@ -45,6 +45,7 @@ import org.elasticsearch.cluster.metadata.IndexMetaData;
 import org.elasticsearch.cluster.metadata.MetaData;
 import org.elasticsearch.cluster.metadata.RepositoryMetaData;
 import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.CheckedConsumer;
 import org.elasticsearch.common.Numbers;
 import org.elasticsearch.common.Strings;
 import org.elasticsearch.common.UUIDs;
@@ -54,6 +55,8 @@ import org.elasticsearch.common.blobstore.BlobPath;
 import org.elasticsearch.common.blobstore.BlobStore;
 import org.elasticsearch.common.bytes.BytesArray;
 import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.cache.Cache;
+import org.elasticsearch.common.cache.CacheBuilder;
 import org.elasticsearch.common.collect.Tuple;
 import org.elasticsearch.common.component.AbstractLifecycleComponent;
 import org.elasticsearch.common.compress.NotXContentException;
@@ -67,6 +70,7 @@ import org.elasticsearch.common.metrics.CounterMetric;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.unit.ByteSizeUnit;
 import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.util.concurrent.AbstractRunnable;
 import org.elasticsearch.common.util.iterable.Iterables;
 import org.elasticsearch.common.util.set.Sets;
 import org.elasticsearch.common.xcontent.NamedXContentRegistry;
@@ -102,6 +106,7 @@ import org.elasticsearch.snapshots.SnapshotId;
 import org.elasticsearch.snapshots.SnapshotInfo;
 import org.elasticsearch.snapshots.SnapshotMissingException;
 import org.elasticsearch.snapshots.SnapshotShardFailure;
+import org.elasticsearch.threadpool.ThreadPool;
 
 import java.io.FilterInputStream;
 import java.io.IOException;
@@ -112,10 +117,16 @@ import java.nio.file.NoSuchFileException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 import static java.util.Collections.emptyMap;
@@ -233,6 +244,14 @@ public abstract class BlobStoreRepository extends AbstractLifecycleComponent imp
 
     private final boolean readOnly;
 
+    private final int maxConcurrentUploads;
+
+    private final int maxConcurrentDownloads;
+
+    private final Cache<String, ShardIndexCacheEntry> shardIndexCache;
+
+    private final AtomicReference<RepositoryData> latestKnownRepositoryData = new AtomicReference<>();
+
     private final ChecksumBlobStoreFormat<BlobStoreIndexShardSnapshot> indexShardSnapshotFormat;
 
     private final LegacyBlobStoreFormat<BlobStoreIndexShardSnapshot> indexShardSnapshotLegacyFormat;
@@ -252,6 +271,22 @@ public abstract class BlobStoreRepository extends AbstractLifecycleComponent imp
         snapshotRateLimiter = getRateLimiter(metadata.settings(), "max_snapshot_bytes_per_sec", new ByteSizeValue(40, ByteSizeUnit.MB));
         restoreRateLimiter = getRateLimiter(metadata.settings(), "max_restore_bytes_per_sec", new ByteSizeValue(40, ByteSizeUnit.MB));
         readOnly = metadata.settings().getAsBoolean("readonly", false);
+        maxConcurrentUploads = metadata.settings().getAsInt("max_concurrent_uploads", 2);
+        if (maxConcurrentUploads < 1) {
+            throw new RepositoryException(metadata.name(), "max_concurrent_uploads must be >= 1 but was [" + maxConcurrentUploads + "]");
+        }
+        maxConcurrentDownloads = metadata.settings().getAsInt("max_concurrent_downloads", 2);
+        if (maxConcurrentDownloads < 1) {
+            throw new RepositoryException(metadata.name(), "max_concurrent_downloads must be >= 1 but was [" + maxConcurrentDownloads + "]");
+        }
+        final long shardIndexCacheSize = metadata.settings().getAsLong("shard_index_cache_size", 100_000L);
+        if (shardIndexCacheSize < 0) {
+            throw new RepositoryException(metadata.name(), "shard_index_cache_size must be >= 0 but was [" + shardIndexCacheSize + "]");
+        }
+        shardIndexCache = CacheBuilder.<String, ShardIndexCacheEntry>builder()
+            .setMaximumWeight(shardIndexCacheSize)
+            .weigher((path, entry) -> entry.numberOfFiles + 1)
+            .build();
 
         indexShardSnapshotFormat = new ChecksumBlobStoreFormat<>(SNAPSHOT_CODEC, SNAPSHOT_NAME_FORMAT,
             BlobStoreIndexShardSnapshot::fromXContent, namedXContentRegistry, isCompress());
@@ -754,6 +789,15 @@ public abstract class BlobStoreRepository extends AbstractLifecycleComponent imp
             } else {
                 snapshotsIndexBlobName = INDEX_FILE_PREFIX + Long.toString(indexGen);
                 legacyFormat = false;
+                // index-N blobs are never overwritten so the repository data this node wrote last is still valid if N did not change
+                final RepositoryData latestKnown = latestKnownRepositoryData.get();
+                if (latestKnown != null) {
+                    if (latestKnown.getGenId() == indexGen) {
+                        return latestKnown;
+                    }
+                    // the repository was modified by someone else since
+                    latestKnownRepositoryData.compareAndSet(latestKnown, null);
+                }
             }
 
             RepositoryData repositoryData;
@@ -818,6 +862,8 @@ public abstract class BlobStoreRepository extends AbstractLifecycleComponent imp
 
     protected void writeIndexGen(final RepositoryData repositoryData, final long repositoryStateId) throws IOException {
         assert isReadOnly() == false; // can not write to a read only repository
+        // only remember the repository data once it was written in full
+        latestKnownRepositoryData.set(null);
         final long currentGen = latestIndexBlobId();
         if (repositoryStateId != SnapshotsInProgress.UNDEFINED_REPOSITORY_STATE_ID && currentGen != repositoryStateId) {
             // the index file was updated by a concurrent operation, so we were operating on stale
@@ -859,6 +905,10 @@ public abstract class BlobStoreRepository extends AbstractLifecycleComponent imp
         }
         logger.debug("Repository [{}] updating index.latest with generation [{}]", metadata.name(), newGen);
         writeAtomic(INDEX_LATEST_BLOB, genBytes);
+        if (snapshotsBlobContainer.blobExists(INCOMPATIBLE_SNAPSHOTS_BLOB)) {
+            // otherwise the next read needs to write the incompatible snapshots blob
+            latestKnownRepositoryData.set(repositoryData.withGenId(newGen));
+        }
     }
 
     /**
@@ -882,6 +932,8 @@ public abstract class BlobStoreRepository extends AbstractLifecycleComponent imp
         }
         // write the incompatible snapshots blob
         writeAtomic(INCOMPATIBLE_SNAPSHOTS_BLOB, bytes);
+        // the incompatible snapshots are part of the repository data but do not change its generation
+        latestKnownRepositoryData.set(null);
     }
 
     /**
@@ -965,7 +1017,8 @@ public abstract class BlobStoreRepository extends AbstractLifecycleComponent imp
 
     @Override
     public void snapshotShard(IndexShard shard, SnapshotId snapshotId, IndexId indexId, IndexCommit snapshotIndexCommit, IndexShardSnapshotStatus snapshotStatus) {
-        SnapshotContext snapshotContext = new SnapshotContext(shard, snapshotId, indexId, snapshotStatus);
+        SnapshotContext snapshotContext = new SnapshotContext(shard, snapshotId, indexId, snapshotStatus,
+            shard.getThreadPool().executor(ThreadPool.Names.SNAPSHOT));
         snapshotStatus.startTime(System.currentTimeMillis());
 
         try {
@@ -986,7 +1039,8 @@ public abstract class BlobStoreRepository extends AbstractLifecycleComponent imp
 
     @Override
     public void restoreShard(IndexShard shard, SnapshotId snapshotId, Version version, IndexId indexId, ShardId snapshotShardId, RecoveryState recoveryState) {
-        final RestoreContext snapshotContext = new RestoreContext(shard, snapshotId, version, indexId, snapshotShardId, recoveryState);
+        final RestoreContext snapshotContext = new RestoreContext(shard, snapshotId, version, indexId, snapshotShardId, recoveryState,
+            shard.getThreadPool().executor(ThreadPool.Names.SNAPSHOT));
         try {
             snapshotContext.restore();
         } catch (Exception e) {
@@ -1054,6 +1108,28 @@ public abstract class BlobStoreRepository extends AbstractLifecycleComponent imp
         }
     }
 
+    /**
+     * The index-N blob of a shard snapshot container that this node wrote last
+     */
+    private static final class ShardIndexCacheEntry {
+
+        private final int generation;
+
+        private final BlobStoreIndexShardSnapshots snapshots;
+
+        private final int numberOfFiles;
+
+        ShardIndexCacheEntry(int generation, BlobStoreIndexShardSnapshots snapshots) {
+            this.generation = generation;
+            this.snapshots = snapshots;
+            int numberOfFiles = 0;
+            for (SnapshotFiles snapshotFiles : snapshots) {
+                numberOfFiles += snapshotFiles.indexFiles().size();
+            }
+            this.numberOfFiles = numberOfFiles;
+        }
+    }
+
     /**
      * Context for snapshot/restore operations
      */
@@ -1083,6 +1159,7 @@ public abstract class BlobStoreRepository extends AbstractLifecycleComponent imp
          */
         public void delete() {
             final Map<String, BlobMetaData> blobs;
+            // the container is always listed, the shard index cache only saves reading the latest index-N blob back
             try {
                 blobs = blobContainer.listBlobs();
             } catch (IOException e) {
@@ -1134,6 +1211,8 @@ public abstract class BlobStoreRepository extends AbstractLifecycleComponent imp
          */
         protected void finalize(List<SnapshotFiles> snapshots, int fileListGeneration, Map<String, BlobMetaData> blobs) {
             BlobStoreIndexShardSnapshots newSnapshots = new BlobStoreIndexShardSnapshots(snapshots);
+            final String shardIndexCacheKey = blobContainer.path().buildAsString();
+            shardIndexCache.invalidate(shardIndexCacheKey);
             // delete old index files first
             for (String blobName : blobs.keySet()) {
                 if (indexShardSnapshotsFormat.isTempBlobName(blobName) || blobName.startsWith(SNAPSHOT_INDEX_PREFIX)) {
@@ -1170,6 +1249,7 @@ public abstract class BlobStoreRepository extends AbstractLifecycleComponent imp
                 } catch (IOException e) {
                     throw new IndexShardSnapshotFailedException(shardId, "Failed to write file list", e);
                 }
+                shardIndexCache.put(shardIndexCacheKey, new ShardIndexCacheEntry(fileListGeneration, newSnapshots));
             }
         }
 
@@ -1208,6 +1288,80 @@ public abstract class BlobStoreRepository extends AbstractLifecycleComponent imp
             return generation;
         }
 
+        /**
+         * Processes the given files using up to {@code maxConcurrentFiles} files at a time, in the order of the list. The current
+         * thread processes files itself and helpers are forked to the given executor, all of them pulling from the same queue.
+         * The current thread never waits for helpers that did not start yet, so the work completes even if the executor is busy
+         * with other shards. Once a file failed, the files that were not started yet are skipped.
+         *
+         * @param files              files to process
+         * @param maxConcurrentFiles maximum number of files processed at the same time
+         * @param executor           executor the helpers are forked to
+         * @param fileProcessor      processes a single file
+         */
+        protected void processFilesConcurrently(final List<BlobStoreIndexShardSnapshot.FileInfo> files, final int maxConcurrentFiles,
+                                                final Executor executor,
+                                                final CheckedConsumer<BlobStoreIndexShardSnapshot.FileInfo, IOException> fileProcessor)
+            throws IOException {
+            final Queue<BlobStoreIndexShardSnapshot.FileInfo> queue = new ConcurrentLinkedQueue<>(files);
+            final CountDownLatch filesDone = new CountDownLatch(files.size());
+            final AtomicReference<Exception> failure = new AtomicReference<>();
+            final int helpers = Math.min(maxConcurrentFiles, files.size()) - 1;
+            for (int i = 0; i < helpers; i++) {
+                executor.execute(new AbstractRunnable() {
+                    @Override
+                    protected void doRun() {
+                        processFilesFromQueue(queue, filesDone, failure, fileProcessor);
+                    }
+
+                    @Override
+                    public void onRejection(Exception e) {
+                        // the current thread processes the files this helper would have taken
+                        logger.debug((Supplier<?>) () -> new ParameterizedMessage("[{}] [{}] file helper rejected", shardId, snapshotId), e);
+                    }
+
+                    @Override
+                    public void onFailure(Exception e) {
+                        // files that were already taken from the queue are always counted down
+                        failure.compareAndSet(null, e);
+                    }
+                });
+            }
+            processFilesFromQueue(queue, filesDone, failure, fileProcessor);
+            try {
+                filesDone.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IndexShardSnapshotException(shardId, "interrupted while waiting for files to be processed", e);
+            }
+            final Exception e = failure.get();
+            if (e != null) {
+                if (e instanceof IOException) {
+                    throw (IOException) e;
+                }
+                throw ExceptionsHelper.convertToRuntime(e);
+            }
+        }
+
+        private void processFilesFromQueue(final Queue<BlobStoreIndexShardSnapshot.FileInfo> queue, final CountDownLatch filesDone,
+                                           final AtomicReference<Exception> failure,
+                                           final CheckedConsumer<BlobStoreIndexShardSnapshot.FileInfo, IOException> fileProcessor) {
+            BlobStoreIndexShardSnapshot.FileInfo fileInfo;
+            while ((fileInfo = queue.poll()) != null) {
+                try {
+                    if (failure.get() == null) {
+                        fileProcessor.accept(fileInfo);
+                    }
+                } catch (Exception e) {
+                    if (failure.compareAndSet(null, e) == false) {
+                        failure.get().addSuppressed(e);
+                    }
+                } finally {
+                    filesDone.countDown();
+                }
+            }
+        }
+
         /**
          * Loads all available snapshots in the repository
          *
@@ -1230,6 +1384,16 @@ public abstract class BlobStoreRepository extends AbstractLifecycleComponent imp
                 }
             }
             if (latest >= 0) {
+                final String shardIndexCacheKey = blobContainer.path().buildAsString();
+                final ShardIndexCacheEntry cachedShardIndex = shardIndexCache.get(shardIndexCacheKey);
+                if (cachedShardIndex != null) {
+                    if (cachedShardIndex.generation == latest) {
+                        // index-N blobs are never overwritten, no need to read the one this node wrote again
+                        return new Tuple<>(cachedShardIndex.snapshots, latest);
+                    }
+                    // another node wrote to the container since
+                    shardIndexCache.invalidate(shardIndexCacheKey);
+                }
                 try {
                     final BlobStoreIndexShardSnapshots shardSnapshots =
                         indexShardSnapshotsFormat.read(blobContainer, Integer.toString(latest));
@@ -1272,6 +1436,8 @@ public abstract class BlobStoreRepository extends AbstractLifecycleComponent imp
 
         private final IndexShardSnapshotStatus snapshotStatus;
 
+        private final Executor uploadExecutor;
+
         /**
          * Constructs new context
          *
@@ -1279,11 +1445,14 @@ public abstract class BlobStoreRepository extends AbstractLifecycleComponent imp
          * @param snapshotId     snapshot id
          * @param indexId        the id of the index being snapshotted
          * @param snapshotStatus snapshot status to report progress
+         * @param uploadExecutor executor used to upload files concurrently to the current thread
          */
-        SnapshotContext(IndexShard shard, SnapshotId snapshotId, IndexId indexId, IndexShardSnapshotStatus snapshotStatus) {
+        SnapshotContext(IndexShard shard, SnapshotId snapshotId, IndexId indexId, IndexShardSnapshotStatus snapshotStatus,
+                        Executor uploadExecutor) {
             super(snapshotId, Version.CURRENT, indexId, shard.shardId());
             this.snapshotStatus = snapshotStatus;
             this.store = shard.store();
+            this.uploadExecutor = uploadExecutor;
         }
 
         /**
@@ -1296,6 +1465,7 @@ public abstract class BlobStoreRepository extends AbstractLifecycleComponent imp
             store.incRef();
             try {
                 final Map<String, BlobMetaData> blobs;
+                // listed to find the latest index-N blob and fresh data blob names, see the note in delete()
                 try {
                     blobs = blobContainer.listBlobs();
                 } catch (IOException e) {
@@ -1370,12 +1540,10 @@ public abstract class BlobStoreRepository extends AbstractLifecycleComponent imp
 
                 snapshotStatus.updateStage(IndexShardSnapshotStatus.Stage.STARTED);
 
-                for (BlobStoreIndexShardSnapshot.FileInfo snapshotFileInfo : filesToSnapshot) {
-                    try {
-                        snapshotFile(snapshotFileInfo);
-                    } catch (IOException e) {
-                        throw new IndexShardSnapshotFailedException(shardId, "Failed to perform snapshot (index files)", e);
-                    }
+                try {
+                    snapshotFiles(filesToSnapshot);
+                } catch (IOException e) {
+                    throw new IndexShardSnapshotFailedException(shardId, "Failed to perform snapshot (index files)", e);
                 }
 
                 snapshotStatus.indexVersion(snapshotIndexCommit.getGeneration());
@@ -1409,11 +1577,18 @@ public abstract class BlobStoreRepository extends AbstractLifecycleComponent imp
             }
         }
 
+        /**
+         * Uploads the given files using up to {@code max_concurrent_uploads} files at a time. The parts of a single file are
+         * still uploaded sequentially so the file can be verified against its checksum while it is read.
+         *
+         * @param files files to be snapshotted
+         */
+        private void snapshotFiles(final List<BlobStoreIndexShardSnapshot.FileInfo> files) throws IOException {
+            processFilesConcurrently(files, maxConcurrentUploads, uploadExecutor, this::snapshotFile);
+        }
+
         /**
          * Snapshot individual file
-         * <p>
-         * This is asynchronous method. Upon completion of the operation latch is getting counted down and any failures are
-         * added to the {@code failures} list
          *
          * @param fileInfo file to be snapshotted
          */
@@ -1560,19 +1735,24 @@ public abstract class BlobStoreRepository extends AbstractLifecycleComponent imp
 
         private final RecoveryState recoveryState;
 
+        private final Executor downloadExecutor;
+
         /**
          * Constructs new restore context
          *
-         * @param shard           shard to restore into
-         * @param snapshotId      snapshot id
-         * @param indexId         id of the index being restored
-         * @param snapshotShardId shard in the snapshot that data should be restored from
-         * @param recoveryState   recovery state to report progress
+         * @param shard            shard to restore into
+         * @param snapshotId       snapshot id
+         * @param indexId          id of the index being restored
+         * @param snapshotShardId  shard in the snapshot that data should be restored from
+         * @param recoveryState    recovery state to report progress
+         * @param downloadExecutor executor used to download files concurrently to the current thread
          */
-        RestoreContext(IndexShard shard, SnapshotId snapshotId, Version version, IndexId indexId, ShardId snapshotShardId, RecoveryState recoveryState) {
+        RestoreContext(IndexShard shard, SnapshotId snapshotId, Version version, IndexId indexId, ShardId snapshotShardId, RecoveryState recoveryState,
+                       Executor downloadExecutor) {
             super(snapshotId, version, indexId, shard.shardId(), snapshotShardId);
             this.recoveryState = recoveryState;
             this.targetShard = shard;
+            this.downloadExecutor = downloadExecutor;
         }
 
         /**
@@ -1670,11 +1850,13 @@ public abstract class BlobStoreRepository extends AbstractLifecycleComponent imp
                     for (final StoreFileMetaData storeFileMetaData : diff.different) {
                         IOUtils.deleteFiles(store.directory(), storeFileMetaData.name());
                     }
-                    // restore the files from the snapshot to the Lucene store
-                    for (final BlobStoreIndexShardSnapshot.FileInfo fileToRecover : filesToRecover) {
+                    // restore the files from the snapshot to the Lucene store, smallest first so that the segment infos and
+                    // other small files are fetched and verified early while the large files are still being downloaded
+                    filesToRecover.sort(Comparator.comparingLong(BlobStoreIndexShardSnapshot.FileInfo::length));
+                    processFilesConcurrently(filesToRecover, maxConcurrentDownloads, downloadExecutor, fileToRecover -> {
                         logger.trace("[{}] [{}] restoring file [{}]", shardId, snapshotId, fileToRecover.name());
                         restoreFile(fileToRecover, store);
-                    }
+                    });
                 } catch (IOException ex) {
                     throw new IndexShardRestoreFailedException(shardId, "Failed to recover index", ex);
                 }
@@ -0,0 +1,186 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.rest;
+
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.xcontent.ChunkedToXContent;
+import org.elasticsearch.common.xcontent.ToXContent;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+
+/**
+ * A response whose content is rendered chunk by chunk while it is being sent. Channels that support it ask for the next
+ * chunk once the previous one was written out, so that the whole content never has to be held in memory. Other channels
+ * get the whole content at once through {@link #content()}.
+ */
+public abstract class ChunkedRestResponse extends RestResponse {
+
+    /**
+     * The size channels cut chunks at unless they have a better idea.
+     */
+    public static final int DEFAULT_CHUNK_SIZE_IN_BYTES = 128 * 1024;
+
+    private final RestStatus status;
+    private final ChunkOutputStream output = new ChunkOutputStream();
+    private boolean done;
+    private BytesReference content;
+
+    protected ChunkedRestResponse(RestStatus status) {
+        this.status = status;
+    }
+
+    /**
+     * Creates a response that renders the fragments of the given content with a builder of the given channel.
+     */
+    public static ChunkedRestResponse fromXContent(RestChannel channel, RestStatus status, ChunkedToXContent content) throws IOException {
+        return new XContentChunkedRestResponse(channel, status, content.toXContentChunked());
+    }
+
+    @Override
+    public RestStatus status() {
+        return status;
+    }
+
+    /**
+     * Returns {@code true} once all the content was written.
+     */
+    public final boolean isDone() {
+        return done;
+    }
+
+    /**
+     * Writes the next chunk of the content to the given stream. Chunks end on fragment boundaries, so a chunk is cut at the
+     * end of the first fragment that brings it to {@code sizeHint} bytes or more.
+     */
+    public final void writeChunk(OutputStream out, int sizeHint) throws IOException {
+        if (done) {
+            throw new IllegalStateException("the content of the response was already fully written");
+        }
+        output.target = out;
+        output.bytesWritten = 0;
+        try {
+            while (done == false && output.bytesWritten < sizeHint) {
+                done = writeFragment() == false;
+            }
+        } finally {
+            output.target = null;
+        }
+    }
+
+    /**
+     * Renders what was not written in chunks yet at once.
+     */
+    @Override
+    public BytesReference content() {
+        if (content == null) {
+            final BytesStreamOutput out = new BytesStreamOutput();
+            try {
+                while (done == false) {
+                    writeChunk(out, Integer.MAX_VALUE);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            content = out.bytes();
+        }
+        return content;
+    }
+
+    /**
+     * The stream fragments have to be written to. It forwards to the stream of the chunk being written.
+     */
+    protected final OutputStream output() {
+        return output;
+    }
+
+    /**
+     * Writes the next fragment of the content to {@link #output()}, flushing whatever was buffered on the way.
+     *
+     * @return whether there are more fragments to write
+     */
+    protected abstract boolean writeFragment() throws IOException;
+
+    private static final class ChunkOutputStream extends OutputStream {
+
+        private OutputStream target;
+        private long bytesWritten;
+
+        @Override
+        public void write(int b) throws IOException {
+            target.write(b);
+            bytesWritten++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            target.write(b, off, len);
+            bytesWritten += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (target != null) {
+                target.flush();
+            }
+        }
+
+        @Override
+        public void close() {
+            // the chunk streams belong to the channel
+        }
+    }
+
+    private static final class XContentChunkedRestResponse extends ChunkedRestResponse {
+
+        private final XContentBuilder builder;
+        private final Iterator<? extends ToXContent> fragments;
+        private final ToXContent.Params params;
+
+        XContentChunkedRestResponse(RestChannel channel, RestStatus status, Iterator<? extends ToXContent> fragments) throws IOException {
+            super(status);
+            this.builder = channel.newBuilder(output());
+            this.fragments = fragments;
+            this.params = channel.request();
+        }
+
+        @Override
+        public String contentType() {
+            return builder.contentType().mediaType();
+        }
+
+        @Override
+        protected boolean writeFragment() throws IOException {
+            if (fragments.hasNext()) {
+                fragments.next().toXContent(builder, params);
+            }
+            if (fragments.hasNext()) {
+                builder.flush();
+                return true;
+            }
+            builder.close();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.rest;
+
+import org.elasticsearch.common.bytes.BytesReference;
+
+/**
+ * The body of a request that is handed to its handler while it is still being received, see
+ * {@link RestHandler#supportsIncrementalContent()}. The body is read one chunk at a time, and only when the handler asks for
+ * it, so that a slow handler holds back the client instead of piling up the body in memory. Whatever was not read yet when
+ * the response is sent is dropped.
+ */
+public interface IncrementalRestContent {
+
+    /**
+     * The length of the body as announced by the client, {@code -1} if it was not announced up front.
+     */
+    long contentLength();
+
+    /**
+     * Asks for the next chunk of the body. The handler is notified once the chunk arrived, on a network thread. Only one
+     * chunk can be asked for at a time.
+     */
+    void next(ChunkHandler handler);
+
+    /**
+     * Drops the rest of the body. A chunk that was asked for is not handed out anymore.
+     */
+    void discard();
+
+    /**
+     * Receives the chunks of an {@link IncrementalRestContent}.
+     */
+    interface ChunkHandler {
+
+        /**
+         * Called with the next chunk of the body, which the handler owns from now on.
+         *
+         * @param chunk the chunk, possibly empty
+         * @param last  whether this is the last chunk of the body
+         */
+        void onChunk(BytesReference chunk, boolean last);
+
+        /**
+         * Called if the rest of the body can't be received, for instance because the connection was closed.
+         */
+        void onFailure(Exception e);
+    }
+}
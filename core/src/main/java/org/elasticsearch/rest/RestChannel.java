@@ -25,6 +25,7 @@ import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.XContentType;
 
 import java.io.IOException;
+import java.io.OutputStream;
 
 /**
  * A channel used to construct bytes / builder based outputs, and send responses.
@@ -37,6 +38,12 @@ public interface RestChannel {
 
     XContentBuilder newBuilder(@Nullable XContentType xContentType, boolean useFiltering) throws IOException;
 
+    /**
+     * Creates a new builder like {@link #newBuilder()} does, but writing to the given stream instead of {@link #bytesOutput()}.
+     * This is used by responses that are sent in chunks while they are being built.
+     */
+    XContentBuilder newBuilder(OutputStream outputStream) throws IOException;
+
     BytesStreamOutput bytesOutput();
 
     RestRequest request();
@@ -43,6 +43,7 @@ import org.elasticsearch.indices.breaker.CircuitBreakerService;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.List;
 import java.util.Locale;
 import java.util.Objects;
@@ -178,13 +179,22 @@ public class RestController extends AbstractComponent implements HttpServerTrans
         }
         RestChannel responseChannel = channel;
         try {
-            final int contentLength = request.hasContent() ? request.content().length() : 0;
+            final IncrementalRestContent incrementalContent = request.incrementalContent();
+            final int contentLength;
+            if (incrementalContent != null) {
+                // the body is still to come, reserve what the client announced
+                assert incrementalContent.contentLength() >= 0 : "only bodies of known length are received incrementally";
+                contentLength = Math.toIntExact(Math.max(0, incrementalContent.contentLength()));
+            } else {
+                contentLength = request.hasContent() ? request.content().length() : 0;
+            }
             assert contentLength >= 0 : "content length was negative, how is that possible?";
+            final boolean hasContent = contentLength > 0 || incrementalContent != null;
             final RestHandler handler = getHandler(request);
 
-            if (contentLength > 0 && hasContentTypeOrCanAutoDetect(request, handler) == false) {
+            if (hasContent && hasContentTypeOrCanAutoDetect(request, handler) == false) {
                 sendContentTypeErrorMessage(request, responseChannel);
-            } else if (contentLength > 0 && handler != null && handler.supportsContentStream() &&
+            } else if (hasContent && handler != null && handler.supportsContentStream() &&
                 request.getXContentType() != XContentType.JSON && request.getXContentType() != XContentType.SMILE) {
                 responseChannel.sendResponse(BytesRestResponse.createSimpleErrorResponse(responseChannel,
                     RestStatus.NOT_ACCEPTABLE, "Content-Type [" + request.getXContentType() +
@@ -210,6 +220,26 @@ public class RestController extends AbstractComponent implements HttpServerTrans
         }
     }
 
+    @Override
+    public boolean supportsIncrementalContent(RestRequest request) {
+        final RestHandler handler = getHandler(request);
+        if (handler == null || handler.supportsIncrementalContent() == false) {
+            return false;
+        }
+        // the in-flight requests breaker reserves the announced length up front, bodies of unknown length are received in full
+        // so that they are accounted for like any other body
+        if (request.header("Content-Length") == null) {
+            return false;
+        }
+        // the content type can't be detected from a body that did not arrive yet, it has to be one the handler can parse
+        final XContentType xContentType = request.getXContentType();
+        if (xContentType == null) {
+            final String contentType = request.header("Content-Type");
+            return contentType != null && handler.supportsContentStream() && isNewlineDelimitedJson(contentType);
+        }
+        return handler.supportsContentStream() == false || xContentType == XContentType.JSON || xContentType == XContentType.SMILE;
+    }
+
     @Override
     public void dispatchBadRequest(
             final RestRequest request,
@@ -308,6 +338,11 @@ public class RestController extends AbstractComponent implements HttpServerTrans
         return true;
     }
 
+    private static boolean isNewlineDelimitedJson(String contentType) {
+        final String lowercaseMediaType = contentType.toLowerCase(Locale.ROOT);
+        return lowercaseMediaType.equals("application/x-ndjson") || lowercaseMediaType.equals("application/x-ldjson");
+    }
+
     private boolean autoDetectXContentType(RestRequest restRequest) {
         deprecationLogger.deprecated("Content type detection for rest requests is deprecated. Specify the content type using " +
             "the [Content-Type] header.");
@@ -426,6 +461,11 @@ public class RestController extends AbstractComponent implements HttpServerTrans
             return delegate.newBuilder(xContentType, useFiltering);
         }
 
+        @Override
+        public XContentBuilder newBuilder(OutputStream outputStream) throws IOException {
+            return delegate.newBuilder(outputStream);
+        }
+
         @Override
         public BytesStreamOutput bytesOutput() {
             return delegate.bytesOutput();
@@ -56,4 +56,13 @@ public interface RestHandler {
     default boolean supportsContentStream() {
         return false;
     }
+
+    /**
+     * Indicates if the RestHandler can consume the body of a request while it is still being received. Such requests are
+     * dispatched as soon as their headers arrived and hand out their body through {@link RestRequest#incrementalContent()}.
+     * Transports are free to receive the body in full anyway.
+     */
+    default boolean supportsIncrementalContent() {
+        return false;
+    }
 }
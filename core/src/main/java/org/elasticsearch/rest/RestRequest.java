@@ -140,6 +140,15 @@ public abstract class RestRequest implements ToXContent.Params {
 
     public abstract BytesReference content();
 
+    /**
+     * The body of this request if it is handed to the handler while it is still being received, in which case
+     * {@link #content()} is empty. {@code null} if the body was received in full before the request was dispatched.
+     */
+    @Nullable
+    public IncrementalRestContent incrementalContent() {
+        return null;
+    }
+
     /**
      * @return content of the request body or throw an exception if the body or content type is missing
      */
@@ -22,18 +22,17 @@ package org.elasticsearch.rest.action.cat;
 import org.elasticsearch.common.Booleans;
 import org.elasticsearch.common.Strings;
 import org.elasticsearch.common.Table;
-import org.elasticsearch.common.io.Streams;
 import org.elasticsearch.common.io.UTF8StreamWriter;
-import org.elasticsearch.common.io.stream.BytesStream;
 import org.elasticsearch.common.logging.DeprecationLogger;
 import org.elasticsearch.common.logging.Loggers;
 import org.elasticsearch.common.regex.Regex;
 import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.common.unit.SizeValue;
 import org.elasticsearch.common.unit.TimeValue;
-import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.ToXContent;
 import org.elasticsearch.common.xcontent.XContentType;
 import org.elasticsearch.rest.BytesRestResponse;
+import org.elasticsearch.rest.ChunkedRestResponse;
 import org.elasticsearch.rest.RestChannel;
 import org.elasticsearch.rest.RestRequest;
 import org.elasticsearch.rest.RestResponse;
@@ -43,6 +42,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
@@ -63,20 +63,23 @@ public class RestTable {
 
     public static RestResponse buildXContentBuilder(Table table, RestChannel channel) throws Exception {
         RestRequest request = channel.request();
-        XContentBuilder builder = channel.newBuilder();
         List<DisplayHeader> displayHeaders = buildDisplayHeaders(table, request);
-
-        builder.startArray();
         List<Integer> rowOrder = getRowOrder(table, request);
+
+        // each row is written as a separate fragment so that large tables are sent in chunks
+        List<ToXContent> fragments = new ArrayList<>(rowOrder.size() + 2);
+        fragments.add((builder, params) -> builder.startArray());
         for (Integer row : rowOrder) {
-            builder.startObject();
-            for (DisplayHeader header : displayHeaders) {
-                builder.field(header.display, renderValue(request, table.getAsMap().get(header.name).get(row).value));
-            }
-            builder.endObject();
+            fragments.add((builder, params) -> {
+                builder.startObject();
+                for (DisplayHeader header : displayHeaders) {
+                    builder.field(header.display, renderValue(request, table.getAsMap().get(header.name).get(row).value));
+                }
+                return builder.endObject();
+            });
         }
-        builder.endArray();
-        return new BytesRestResponse(RestStatus.OK, builder);
+        fragments.add((builder, params) -> builder.endArray());
+        return ChunkedRestResponse.fromXContent(channel, RestStatus.OK, fragments::iterator);
     }
 
     public static RestResponse buildTextPlainResponse(Table table, RestChannel channel) throws IOException {
@@ -85,37 +88,73 @@ public class RestTable {
 
         List<DisplayHeader> headers = buildDisplayHeaders(table, request);
         int[] width = buildWidths(table, request, verbose, headers);
+        List<Integer> rowOrder = getRowOrder(table, request);
+        return new TextTableRestResponse(table, request, verbose, headers, width, rowOrder);
+    }
 
-        BytesStream bytesOut = Streams.flushOnCloseStream(channel.bytesOutput());
-        UTF8StreamWriter out = new UTF8StreamWriter().setOutput(bytesOut);
-        int lastHeader = headers.size() - 1;
-        if (verbose) {
-            for (int col = 0; col < headers.size(); col++) {
-                DisplayHeader header = headers.get(col);
-                boolean isLastColumn = col == lastHeader;
-                pad(new Table.Cell(header.display, table.findHeaderByName(header.name)), width[col], request, out, isLastColumn);
-                if (!isLastColumn) {
-                    out.append(" ");
-                }
-            }
-            out.append("\n");
+    /**
+     * Renders a table as plain text, one line per fragment, so that large tables are sent in chunks.
+     */
+    private static final class TextTableRestResponse extends ChunkedRestResponse {
+
+        private final Table table;
+        private final RestRequest request;
+        private final List<DisplayHeader> headers;
+        private final int[] width;
+        private final Iterator<Integer> rows;
+        private final UTF8StreamWriter out;
+        private boolean headerPending;
+
+        TextTableRestResponse(Table table, RestRequest request, boolean verbose, List<DisplayHeader> headers, int[] width,
+                              List<Integer> rowOrder) {
+            super(RestStatus.OK);
+            this.table = table;
+            this.request = request;
+            this.headers = headers;
+            this.width = width;
+            this.rows = rowOrder.iterator();
+            this.out = new UTF8StreamWriter().setOutput(output());
+            this.headerPending = verbose;
         }
 
-        List<Integer> rowOrder = getRowOrder(table, request);
+        @Override
+        public String contentType() {
+            return BytesRestResponse.TEXT_CONTENT_TYPE;
+        }
 
-        for (Integer row: rowOrder) {
-            for (int col = 0; col < headers.size(); col++) {
-                DisplayHeader header = headers.get(col);
-                boolean isLastColumn = col == lastHeader;
-                pad(table.getAsMap().get(header.name).get(row), width[col], request, out, isLastColumn);
-                if (!isLastColumn) {
-                    out.append(" ");
+        @Override
+        protected boolean writeFragment() throws IOException {
+            int lastHeader = headers.size() - 1;
+            if (headerPending) {
+                headerPending = false;
+                for (int col = 0; col < headers.size(); col++) {
+                    DisplayHeader header = headers.get(col);
+                    boolean isLastColumn = col == lastHeader;
+                    pad(new Table.Cell(header.display, table.findHeaderByName(header.name)), width[col], request, out, isLastColumn);
+                    if (!isLastColumn) {
+                        out.append(" ");
+                    }
                 }
+                out.append("\n");
+            } else if (rows.hasNext()) {
+                Integer row = rows.next();
+                for (int col = 0; col < headers.size(); col++) {
+                    DisplayHeader header = headers.get(col);
+                    boolean isLastColumn = col == lastHeader;
+                    pad(table.getAsMap().get(header.name).get(row), width[col], request, out, isLastColumn);
+                    if (!isLastColumn) {
+                        out.append(" ");
+                    }
+                }
+                out.append("\n");
+            }
+            if (rows.hasNext()) {
+                out.flush();
+                return true;
             }
-            out.append("\n");
+            out.close();
+            return false;
         }
-        out.close();
-        return new BytesRestResponse(RestStatus.OK, BytesRestResponse.TEXT_CONTENT_TYPE, bytesOut.bytes());
     }
 
     static List<Integer> getRowOrder(Table table, RestRequest request) {
@@ -0,0 +1,338 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.rest.action.document;
+
+import org.elasticsearch.ElasticsearchParseException;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.admin.indices.refresh.RefreshRequest;
+import org.elasticsearch.action.admin.indices.refresh.RefreshResponse;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.support.ActiveShardCount;
+import org.elasticsearch.action.support.WriteRequest;
+import org.elasticsearch.client.node.NodeClient;
+import org.elasticsearch.client.Requests;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.bytes.CompositeBytesReference;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.rest.IncrementalRestContent;
+import org.elasticsearch.rest.RestChannel;
+import org.elasticsearch.rest.action.RestStatusToXContentListener;
+import org.elasticsearch.search.fetch.subphase.FetchSourceContext;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executes a bulk request whose body is still being received. Items are parsed as their lines arrive and sent off in
+ * batches of about {@code batchSize} bytes. Reading the body pauses while {@link #MAX_IN_FLIGHT_BATCHES} batches are being
+ * executed. The responses of the batches are stitched together into a single response once all of them completed.
+ * <p>
+ * A body that fits into a single batch is executed exactly like a bulk request that was received in full. With larger
+ * bodies the batches that were sent off before a malformed item was found are not undone. Such bodies do not refresh the
+ * shards once per batch with {@code refresh=true}: the batches are executed without refreshing, and the indices the items
+ * went to are refreshed once all of them completed.
+ */
+final class IncrementalBulkHandler implements IncrementalRestContent.ChunkHandler {
+
+    static final int MAX_IN_FLIGHT_BATCHES = 2;
+
+    private final NodeClient client;
+    private final IncrementalRestContent content;
+    private final RestStatusToXContentListener<BulkResponse> listener;
+    private final long batchSize;
+    private final long startTimeNanos = System.nanoTime();
+
+    private final String defaultIndex;
+    private final String defaultType;
+    private final String defaultRouting;
+    private final String[] defaultFields;
+    private final FetchSourceContext defaultFetchSourceContext;
+    private final String defaultPipeline;
+    private final boolean allowExplicitIndex;
+    private final XContentType xContentType;
+    private final ActiveShardCount waitForActiveShards;
+    private final TimeValue timeout;
+    private final WriteRequest.RefreshPolicy refreshPolicy;
+
+    // the bytes of the items that were not complete yet
+    private List<BytesReference> pending = new ArrayList<>();
+    private int lines;
+    private long receivedBytes;
+    private BulkRequest batch;
+    private final List<BulkResponse> responses = new ArrayList<>();
+    private int inFlightBatches;
+    private boolean readPaused;
+    private boolean contentDone;
+    private boolean refreshStarted;
+    private boolean refreshing;
+    private boolean responded;
+    private Exception failure;
+
+    IncrementalBulkHandler(NodeClient client, RestChannel channel, IncrementalRestContent content, long batchSize,
+                           String defaultIndex, String defaultType, String defaultRouting, String[] defaultFields,
+                           FetchSourceContext defaultFetchSourceContext, String defaultPipeline, boolean allowExplicitIndex,
+                           XContentType xContentType, ActiveShardCount waitForActiveShards, TimeValue timeout,
+                           WriteRequest.RefreshPolicy refreshPolicy) {
+        this.client = client;
+        this.content = content;
+        this.listener = new RestStatusToXContentListener<>(channel);
+        this.batchSize = batchSize;
+        this.defaultIndex = defaultIndex;
+        this.defaultType = defaultType;
+        this.defaultRouting = defaultRouting;
+        this.defaultFields = defaultFields;
+        this.defaultFetchSourceContext = defaultFetchSourceContext;
+        this.defaultPipeline = defaultPipeline;
+        this.allowExplicitIndex = allowExplicitIndex;
+        this.xContentType = xContentType;
+        this.waitForActiveShards = waitForActiveShards;
+        this.timeout = timeout;
+        this.refreshPolicy = refreshPolicy;
+        this.batch = newBatch();
+    }
+
+    void start() {
+        content.next(this);
+    }
+
+    @Override
+    public synchronized void onChunk(BytesReference chunk, boolean last) {
+        if (failure != null) {
+            return;
+        }
+        receivedBytes += chunk.length();
+        if (chunk.length() > 0) {
+            pending.add(chunk);
+        }
+        try {
+            if (last || containsMarker(chunk)) {
+                parsePending();
+            }
+            if (batch.estimatedSizeInBytes() >= batchSize) {
+                sendBatch();
+            }
+            if (last) {
+                contentDone = true;
+                // like a body that was received in full, trailing lines that do not make up a complete item are ignored
+                pending = null;
+                if (receivedBytes == 0) {
+                    throw new ElasticsearchParseException("request body is required");
+                }
+                if (responses.isEmpty()) {
+                    // the body fits into a single batch, which refreshes like a bulk request that was received in full
+                    batch.setRefreshPolicy(refreshPolicy);
+                    sendBatch();
+                } else if (batch.numberOfActions() > 0) {
+                    sendBatch();
+                }
+            }
+        } catch (Exception e) {
+            fail(e);
+        }
+        if (contentDone == false && failure == null) {
+            if (inFlightBatches < MAX_IN_FLIGHT_BATCHES) {
+                content.next(this);
+            } else {
+                readPaused = true;
+            }
+        }
+        maybeRespond();
+    }
+
+    @Override
+    public synchronized void onFailure(Exception e) {
+        fail(e);
+        maybeRespond();
+    }
+
+    private boolean containsMarker(BytesReference chunk) {
+        final byte marker = xContentType.xContent().streamSeparator();
+        for (int i = 0; i < chunk.length(); i++) {
+            if (chunk.get(i) == marker) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void parsePending() throws Exception {
+        if (pending.isEmpty()) {
+            return;
+        }
+        final BytesReference data;
+        if (pending.size() == 1) {
+            data = pending.get(0);
+        } else {
+            data = new CompositeBytesReference(pending.toArray(new BytesReference[pending.size()]));
+        }
+        final int consumed = batch.addCompleteItems(data, defaultIndex, defaultType, defaultRouting, defaultFields,
+            defaultFetchSourceContext, defaultPipeline, null, allowExplicitIndex, xContentType, lines);
+        final byte marker = xContentType.xContent().streamSeparator();
+        for (int i = 0; i < consumed; i++) {
+            if (data.get(i) == marker) {
+                lines++;
+            }
+        }
+        pending = new ArrayList<>();
+        if (consumed < data.length()) {
+            pending.add(data.slice(consumed, data.length() - consumed));
+        }
+    }
+
+    private BulkRequest newBatch() {
+        final BulkRequest bulkRequest = Requests.bulkRequest();
+        bulkRequest.waitForActiveShards(waitForActiveShards);
+        bulkRequest.timeout(timeout);
+        // waiting for a refresh is fine for each batch, forcing one is not, see #maybeRefresh
+        bulkRequest.setRefreshPolicy(refreshPolicy == WriteRequest.RefreshPolicy.IMMEDIATE ? WriteRequest.RefreshPolicy.NONE
+            : refreshPolicy);
+        return bulkRequest;
+    }
+
+    private void sendBatch() {
+        final int index = responses.size();
+        final BulkRequest bulkRequest = batch;
+        batch = newBatch();
+        responses.add(null);
+        inFlightBatches++;
+        client.bulk(bulkRequest, new ActionListener<BulkResponse>() {
+            @Override
+            public void onResponse(BulkResponse bulkResponse) {
+                onBatchDone(index, bulkResponse, null);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                onBatchDone(index, null, e);
+            }
+        });
+    }
+
+    private synchronized void onBatchDone(int index, BulkResponse bulkResponse, Exception e) {
+        inFlightBatches--;
+        if (e != null) {
+            fail(e);
+        } else {
+            responses.set(index, bulkResponse);
+            if (readPaused && failure == null) {
+                readPaused = false;
+                content.next(this);
+            }
+        }
+        maybeRespond();
+    }
+
+    private void fail(Exception e) {
+        if (failure == null) {
+            failure = e;
+            pending = null;
+            content.discard();
+        } else if (failure != e) {
+            failure.addSuppressed(e);
+        }
+    }
+
+    /**
+     * Refreshes the indices that the items of a body that took several batches went to, if the request asked for a refresh.
+     * Returns whether a refresh was started, in which case the response is sent once it completed.
+     */
+    private boolean maybeRefresh() {
+        if (refreshStarted || failure != null || refreshPolicy != WriteRequest.RefreshPolicy.IMMEDIATE || responses.size() < 2) {
+            return false;
+        }
+        refreshStarted = true;
+        final Set<String> indices = new HashSet<>();
+        for (BulkResponse response : responses) {
+            for (BulkItemResponse item : response.getItems()) {
+                if (item.isFailed() == false) {
+                    indices.add(item.getIndex());
+                }
+            }
+        }
+        if (indices.isEmpty()) {
+            return false;
+        }
+        refreshing = true;
+        client.admin().indices().refresh(new RefreshRequest(indices.toArray(new String[indices.size()])),
+            new ActionListener<RefreshResponse>() {
+                @Override
+                public void onResponse(RefreshResponse refreshResponse) {
+                    onRefreshDone(null);
+                }
+
+                @Override
+                public void onFailure(Exception e) {
+                    onRefreshDone(e);
+                }
+            });
+        return true;
+    }
+
+    private synchronized void onRefreshDone(Exception e) {
+        refreshing = false;
+        if (e != null) {
+            fail(e);
+        }
+        maybeRespond();
+    }
+
+    private void maybeRespond() {
+        if (responded || refreshing || inFlightBatches > 0 || (contentDone == false && failure == null)) {
+            return;
+        }
+        if (maybeRefresh()) {
+            return;
+        }
+        responded = true;
+        if (failure != null) {
+            listener.onFailure(failure);
+            return;
+        }
+        int numberOfItems = 0;
+        for (BulkResponse response : responses) {
+            numberOfItems += response.getItems().length;
+        }
+        final BulkItemResponse[] items = new BulkItemResponse[numberOfItems];
+        long ingestTookInMillis = BulkResponse.NO_INGEST_TOOK;
+        int offset = 0;
+        for (BulkResponse response : responses) {
+            for (BulkItemResponse item : response.getItems()) {
+                final int id = offset + item.getItemId();
+                if (item.isFailed()) {
+                    items[id] = new BulkItemResponse(id, item.getOpType(), item.getFailure());
+                } else {
+                    items[id] = new BulkItemResponse(id, item.getOpType(), item.getResponse());
+                }
+            }
+            offset += response.getItems().length;
+            if (response.getIngestTookInMillis() != BulkResponse.NO_INGEST_TOOK) {
+                ingestTookInMillis = Math.max(ingestTookInMillis, 0) + response.getIngestTookInMillis();
+            }
+        }
+        final long tookInMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTimeNanos);
+        listener.onResponse(new BulkResponse(items, tookInMillis, ingestTookInMillis));
+    }
+}
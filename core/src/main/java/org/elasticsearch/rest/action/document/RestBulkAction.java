@@ -27,8 +27,12 @@ import org.elasticsearch.client.node.NodeClient;
 import org.elasticsearch.common.Strings;
 import org.elasticsearch.common.logging.DeprecationLogger;
 import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Setting.Property;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.rest.BaseRestHandler;
+import org.elasticsearch.rest.IncrementalRestContent;
 import org.elasticsearch.rest.RestController;
 import org.elasticsearch.rest.RestRequest;
 import org.elasticsearch.rest.action.RestStatusToXContentListener;
@@ -52,7 +56,15 @@ public class RestBulkAction extends BaseRestHandler {
     private static final DeprecationLogger DEPRECATION_LOGGER =
         new DeprecationLogger(Loggers.getLogger(RestBulkAction.class));
 
+    /**
+     * The size of the batches bulk requests are executed in while their body is still being received. Defaults to {@code 0},
+     * which disables executing bulk requests before their body was received in full.
+     */
+    public static final Setting<ByteSizeValue> INCREMENTAL_BATCH_SIZE =
+        Setting.byteSizeSetting("rest.action.bulk.incremental_batch_size", new ByteSizeValue(0), Property.NodeScope);
+
     private final boolean allowExplicitIndex;
+    private final long incrementalBatchSize;
 
     public RestBulkAction(Settings settings, RestController controller) {
         super(settings);
@@ -65,6 +77,7 @@ public class RestBulkAction extends BaseRestHandler {
         controller.registerHandler(PUT, "/{index}/{type}/_bulk", this);
 
         this.allowExplicitIndex = MULTI_ALLOW_EXPLICIT_INDEX.get(settings);
+        this.incrementalBatchSize = INCREMENTAL_BATCH_SIZE.get(settings).getBytes();
     }
 
     @Override
@@ -86,6 +99,13 @@ public class RestBulkAction extends BaseRestHandler {
         }
         bulkRequest.timeout(request.paramAsTime("timeout", BulkShardRequest.DEFAULT_TIMEOUT));
         bulkRequest.setRefreshPolicy(request.param("refresh"));
+        final IncrementalRestContent incrementalContent = request.incrementalContent();
+        if (incrementalContent != null) {
+            return channel -> new IncrementalBulkHandler(client, channel, incrementalContent, incrementalBatchSize, defaultIndex,
+                defaultType, defaultRouting, defaultFields, defaultFetchSourceContext, defaultPipeline, allowExplicitIndex,
+                request.getXContentType(), bulkRequest.waitForActiveShards(), bulkRequest.timeout(),
+                bulkRequest.getRefreshPolicy()).start();
+        }
         bulkRequest.add(request.requiredContent(), defaultIndex, defaultType, defaultRouting, defaultFields,
             defaultFetchSourceContext, defaultPipeline, null, allowExplicitIndex, request.getXContentType());
 
@@ -96,4 +116,9 @@ public class RestBulkAction extends BaseRestHandler {
     public boolean supportsContentStream() {
         return true;
     }
+
+    @Override
+    public boolean supportsIncrementalContent() {
+        return incrementalBatchSize > 0;
+    }
 }
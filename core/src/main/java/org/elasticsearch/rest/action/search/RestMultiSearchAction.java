@@ -85,6 +85,7 @@ public class RestMultiSearchAction extends BaseRestHandler {
         if (restRequest.hasParam("max_concurrent_searches")) {
             multiRequest.maxConcurrentSearchRequests(restRequest.paramAsInt("max_concurrent_searches", 0));
         }
+        multiRequest.batchShardRequests(restRequest.paramAsBoolean("batch_shard_requests", multiRequest.batchShardRequests()));
 
         parseMultiLineRequest(restRequest, multiRequest.indicesOptions(), allowExplicitIndex, (searchRequest, parser) -> {
             try {
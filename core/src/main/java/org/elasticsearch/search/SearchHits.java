@@ -19,6 +19,7 @@
 
 package org.elasticsearch.search;
 
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.io.stream.Streamable;
@@ -29,8 +30,10 @@ import org.elasticsearch.common.xcontent.XContentParser;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.function.Consumer;
 
 import static org.elasticsearch.common.xcontent.XContentParserUtils.ensureExpectedToken;
 import static org.elasticsearch.common.xcontent.XContentParserUtils.throwUnknownField;
@@ -141,6 +144,26 @@ public class SearchHits implements Streamable, ToXContent, Iterable<SearchHit> {
 
     @Override
     public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+        startHitsToXContent(builder);
+        for (SearchHit hit : hits) {
+            hit.toXContent(builder, params);
+        }
+        return endHitsToXContent(builder);
+    }
+
+    /**
+     * Returns what {@link #toXContent(XContentBuilder, Params)} prints out as a fragment per hit, surrounded by a fragment
+     * that opens and a fragment that closes the hits array.
+     */
+    public Iterator<ToXContent> toXContentChunked() {
+        final List<ToXContent> chunks = new ArrayList<>(hits.length + 2);
+        chunks.add((builder, params) -> startHitsToXContent(builder));
+        Collections.addAll(chunks, hits);
+        chunks.add((builder, params) -> endHitsToXContent(builder));
+        return chunks.iterator();
+    }
+
+    private XContentBuilder startHitsToXContent(XContentBuilder builder) throws IOException {
         builder.startObject(Fields.HITS);
         builder.field(Fields.TOTAL, totalHits);
         if (Float.isNaN(maxScore)) {
@@ -149,16 +172,24 @@ public class SearchHits implements Streamable, ToXContent, Iterable<SearchHit> {
             builder.field(Fields.MAX_SCORE, maxScore);
         }
         builder.field(Fields.HITS);
-        builder.startArray();
-        for (SearchHit hit : hits) {
-            hit.toXContent(builder, params);
-        }
+        return builder.startArray();
+    }
+
+    private XContentBuilder endHitsToXContent(XContentBuilder builder) throws IOException {
         builder.endArray();
-        builder.endObject();
-        return builder;
+        return builder.endObject();
     }
 
     public static SearchHits fromXContent(XContentParser parser) throws IOException {
+        return fromXContent(parser, null);
+    }
+
+    /**
+     * Parses search hits, handing each hit to the given consumer as soon as it has been parsed rather than collecting them, in
+     * which case the returned hits have no entries but only the total hits and max score. This allows to process the hits of a
+     * response as the response is being read from a stream.
+     */
+    public static SearchHits fromXContent(XContentParser parser, @Nullable Consumer<SearchHit> hitConsumer) throws IOException {
         if (parser.currentToken() != XContentParser.Token.START_OBJECT) {
             parser.nextToken();
             ensureExpectedToken(XContentParser.Token.START_OBJECT, parser.currentToken(), parser::getTokenLocation);
@@ -187,7 +218,12 @@ public class SearchHits implements Streamable, ToXContent, Iterable<SearchHit> {
                 }
             } else if (token == XContentParser.Token.START_ARRAY) {
                 while ((token = parser.nextToken()) != XContentParser.Token.END_ARRAY) {
-                    hits.add(SearchHit.fromXContent(parser));
+                    SearchHit hit = SearchHit.fromXContent(parser);
+                    if (hitConsumer == null) {
+                        hits.add(hit);
+                    } else {
+                        hitConsumer.accept(hit);
+                    }
                 }
             }
         }
@@ -35,6 +35,7 @@ import org.elasticsearch.common.settings.Setting;
 import org.elasticsearch.common.settings.Setting.Property;
 import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.common.util.concurrent.AbstractRefCounted;
 import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
 import org.elasticsearch.common.util.concurrent.ConcurrentMapLong;
 import org.elasticsearch.index.Index;
@@ -54,6 +55,7 @@ import org.elasticsearch.script.SearchScript;
 import org.elasticsearch.search.aggregations.AggregationInitializationException;
 import org.elasticsearch.search.aggregations.AggregatorFactories;
 import org.elasticsearch.search.aggregations.SearchContextAggregations;
+import org.elasticsearch.search.aggregations.metrics.tophits.DeferredTopHitsContext;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
 import org.elasticsearch.search.collapse.CollapseContext;
 import org.elasticsearch.search.dfs.DfsPhase;
@@ -71,9 +73,12 @@ import org.elasticsearch.search.internal.InternalScrollSearchRequest;
 import org.elasticsearch.search.internal.ScrollContext;
 import org.elasticsearch.search.internal.SearchContext;
 import org.elasticsearch.search.internal.SearchContext.Lifetime;
+import org.elasticsearch.search.internal.ShardSearchBatchRequest;
 import org.elasticsearch.search.internal.ShardSearchRequest;
+import org.elasticsearch.search.internal.ShardSearchTransportRequest;
 import org.elasticsearch.search.profile.Profilers;
 import org.elasticsearch.search.query.QueryPhase;
+import org.elasticsearch.search.query.QuerySearchBatchResult;
 import org.elasticsearch.search.query.QuerySearchRequest;
 import org.elasticsearch.search.query.QuerySearchResult;
 import org.elasticsearch.search.query.ScrollQuerySearchResult;
@@ -95,6 +100,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 
 import static org.elasticsearch.common.unit.TimeValue.timeValueMillis;
@@ -250,7 +256,39 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
     }
 
     public SearchPhaseResult executeQueryPhase(ShardSearchRequest request, SearchTask task) throws IOException {
-        final SearchContext context = createAndPutContext(request);
+        return executeQueryPhase(request, task, null);
+    }
+
+    /**
+     * Executes the query phase of all requests of the batch one after the other. The requests target the same shard and share a
+     * single searcher, so they all see the same point-in-time view of the shard and the filters they have in common that get cached
+     * are cached for the following requests. Failures are reported per request.
+     */
+    public QuerySearchBatchResult executeQueryPhase(ShardSearchBatchRequest request, SearchTask task) {
+        final List<ShardSearchTransportRequest> requests = request.requests();
+        final QuerySearchBatchResult result = new QuerySearchBatchResult(requests.size());
+        final IndexShard indexShard = indicesService.indexServiceSafe(request.shardId().getIndex()).getShard(request.shardId().id());
+        final SharedSearcher searcher = new SharedSearcher(indexShard.acquireSearcher("search"));
+        try {
+            for (int i = 0; i < requests.size(); i++) {
+                final Engine.Searcher reference = searcher.acquire();
+                try {
+                    result.setResult(i, executeQueryPhase(requests.get(i), task, reference));
+                } catch (Exception e) {
+                    // the search context releases the reference once it is freed, but the request may have failed before creating it
+                    reference.close();
+                    result.setFailure(i, e);
+                }
+            }
+        } finally {
+            searcher.decRef();
+        }
+        return result;
+    }
+
+    private SearchPhaseResult executeQueryPhase(ShardSearchRequest request, SearchTask task, @Nullable Engine.Searcher searcher)
+        throws IOException {
+        final SearchContext context = createAndPutContext(request, searcher);
         final SearchOperationListener operationListener = context.indexShard().getSearchOperationListener();
         context.incRef();
         boolean queryPhaseSuccess = false;
@@ -420,6 +458,9 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
             operationListener.onPreFetchPhase(context);
             long time = System.nanoTime();
             fetchPhase.execute(context);
+            if (request.topHitsDocs().isEmpty() == false) {
+                context.fetchResult().topHits(context.deferredTopHits().fetch(context, request.topHitsDocs()));
+            }
             if (fetchPhaseShouldFreeContext(context)) {
                 freeContext(request.id());
             } else {
@@ -454,7 +495,11 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
     }
 
     final SearchContext createAndPutContext(ShardSearchRequest request) throws IOException {
-        SearchContext context = createContext(request, null);
+        return createAndPutContext(request, null);
+    }
+
+    private SearchContext createAndPutContext(ShardSearchRequest request, @Nullable Engine.Searcher searcher) throws IOException {
+        SearchContext context = createContext(request, searcher);
         boolean success = false;
         try {
             putContext(context);
@@ -478,6 +523,10 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
                 context.scrollContext(new ScrollContext());
                 context.scrollContext().scroll = request.scroll();
             }
+            if (request.deferTopHitsFetch()) {
+                // before parsing the source, top_hits aggregations register themselves
+                context.deferredTopHits(new DeferredTopHitsContext());
+            }
             parseSource(context, request.source());
 
             // if the from and size are still not set, default them
@@ -825,6 +874,40 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
         }
     }
 
+    /**
+     * A searcher that is shared by several search contexts. It is released once all references to it have been closed.
+     */
+    private static final class SharedSearcher extends AbstractRefCounted {
+
+        private final Engine.Searcher searcher;
+
+        SharedSearcher(Engine.Searcher searcher) {
+            super("shared_searcher");
+            this.searcher = searcher;
+        }
+
+        /**
+         * Returns a new reference to the searcher, closing it more than once has no effect.
+         */
+        Engine.Searcher acquire() {
+            incRef();
+            final AtomicBoolean closed = new AtomicBoolean();
+            return new Engine.Searcher(searcher.source(), searcher.searcher()) {
+                @Override
+                public void close() {
+                    if (closed.compareAndSet(false, true)) {
+                        decRef();
+                    }
+                }
+            };
+        }
+
+        @Override
+        protected void closeInternal() {
+            searcher.close();
+        }
+    }
+
     public AliasFilter buildAliasFilter(ClusterState state, String index, String... expressions) {
         return indicesService.buildAliasFilter(state, index, expressions);
     }
@@ -27,6 +27,7 @@ import org.elasticsearch.index.query.QueryParseContext;
 import org.elasticsearch.search.internal.SearchContext;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -69,6 +70,11 @@ public abstract class AggregationBuilder
     /** Add a sub aggregation to this builder. */
     public abstract AggregationBuilder subAggregation(PipelineAggregationBuilder aggregation);
 
+    /** Return the sub aggregations of this builder, not including pipeline aggregations. */
+    public List<AggregationBuilder> getSubAggregations() {
+        return factoriesBuilder.getAggregatorFactories();
+    }
+
     /**
      * Internal: Registers sub-factories with this factory. The sub-factory will be
      * responsible for the creation of sub-aggregators under the aggregator
@@ -30,6 +30,8 @@ import org.elasticsearch.search.aggregations.bucket.filters.FiltersAggregator.Ke
 import org.elasticsearch.search.aggregations.bucket.filters.FiltersAggregationBuilder;
 import org.elasticsearch.search.aggregations.bucket.geogrid.GeoGridAggregationBuilder;
 import org.elasticsearch.search.aggregations.bucket.geogrid.GeoHashGrid;
+import org.elasticsearch.search.aggregations.bucket.geogrid.GeoTileGrid;
+import org.elasticsearch.search.aggregations.bucket.geogrid.GeoTileGridAggregationBuilder;
 import org.elasticsearch.search.aggregations.bucket.global.Global;
 import org.elasticsearch.search.aggregations.bucket.global.GlobalAggregationBuilder;
 import org.elasticsearch.search.aggregations.bucket.histogram.DateHistogramAggregationBuilder;
@@ -239,6 +241,13 @@ public class AggregationBuilders {
         return new GeoGridAggregationBuilder(name);
     }
 
+    /**
+     * Create a new {@link GeoTileGrid} aggregation with the given name.
+     */
+    public static GeoTileGridAggregationBuilder geotileGrid(String name) {
+        return new GeoTileGridAggregationBuilder(name);
+    }
+
     /**
      * Create a new {@link SignificantTerms} aggregation with the given name.
      */
@@ -30,6 +30,7 @@ import org.elasticsearch.search.aggregations.bucket.BucketsAggregator;
 import org.elasticsearch.search.internal.SearchContext;
 
 import java.io.IOException;
+import java.util.function.BiConsumer;
 
 /**
  * An Aggregator.
@@ -100,6 +101,12 @@ public abstract class Aggregator extends BucketCollector implements Releasable {
      */
     public abstract InternalAggregation buildEmptyAggregation();
 
+    /**
+     * Reports how this aggregator chose to run, for the profile API. Nothing is reported by default.
+     */
+    public void collectDebugInfo(BiConsumer<String, Object> add) {
+    }
+
     /** Aggregation mode for sub aggregations. */
     public enum SubAggCollectionMode implements Writeable {
 
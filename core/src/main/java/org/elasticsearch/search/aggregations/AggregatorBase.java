@@ -20,6 +20,7 @@ package org.elasticsearch.search.aggregations;
 
 import org.elasticsearch.common.breaker.CircuitBreaker;
 import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.CollectionTerminatedException;
 import org.elasticsearch.common.breaker.CircuitBreakingException;
 import org.elasticsearch.indices.breaker.CircuitBreakerService;
 import org.elasticsearch.search.aggregations.bucket.BestBucketsDeferringCollector;
@@ -56,6 +57,7 @@ public abstract class AggregatorBase extends Aggregator {
     private final List<PipelineAggregator> pipelineAggregators;
     private final CircuitBreakerService breakerService;
     private boolean failed = false;
+    private BatchingLeafBucketCollector batch;
 
     /**
      * Constructs a new Aggregator.
@@ -145,8 +147,32 @@ public abstract class AggregatorBase extends Aggregator {
 
     @Override
     public final LeafBucketCollector getLeafCollector(LeafReaderContext ctx) throws IOException {
+        flushBatch();
+        doFinishLeaf();
         final LeafBucketCollector sub = collectableSubAggregators.getLeafCollector(ctx);
-        return getLeafCollector(ctx, sub);
+        final LeafBucketCollector leafCollector = getLeafCollector(ctx, sub);
+        if (batch == null || leafCollector == LeafBucketCollector.NO_OP_COLLECTOR) {
+            return leafCollector;
+        }
+        return batch.reset(leafCollector);
+    }
+
+    private void flushBatch() throws IOException {
+        if (batch != null) {
+            try {
+                batch.reset(LeafBucketCollector.NO_OP_COLLECTOR);
+            } catch (CollectionTerminatedException e) {
+                // the previous segment is done anyway
+            }
+        }
+    }
+
+    /**
+     * Can be overridden by aggregator implementations that buffer docs to be called back when the collection of a segment is
+     * done, before the sub-aggregators move on to the next segment, so that the buffered docs are passed on to the leaf
+     * collectors of the segment they belong to. It is also called before {@link #doPostCollection()}.
+     */
+    protected void doFinishLeaf() throws IOException {
     }
 
     /**
@@ -177,6 +203,17 @@ public abstract class AggregatorBase extends Aggregator {
         collectableSubAggregators = BucketCollector.wrap(collectors);
         doPreCollection();
         collectableSubAggregators.preCollection();
+        if (parent == null && collectsInBatches() && needsScores() == false) {
+            batch = new BatchingLeafBucketCollector(BatchingLeafBucketCollector.DEFAULT_BATCH_SIZE);
+        }
+    }
+
+    /**
+     * Can be overridden by aggregators whose leaf collectors implement {@link LeafBucketCollector#collect(int[], long[], int)}, so
+     * that they are passed batches of docs when they are at the top level and do not need scores.
+     */
+    protected boolean collectsInBatches() {
+        return false;
     }
 
     public DeferringBucketCollector getDeferringCollector() {
@@ -254,6 +291,8 @@ public abstract class AggregatorBase extends Aggregator {
      */
     @Override
     public final void postCollection() throws IOException {
+        flushBatch();
+        doFinishLeaf();
         // post-collect this agg before subs to make it possible to buffer and then replay in postCollection()
         doPostCollection();
         collectableSubAggregators.postCollection();
@@ -0,0 +1,92 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.aggregations;
+
+import org.apache.lucene.search.Scorer;
+
+import java.io.IOException;
+
+/**
+ * A {@link LeafBucketCollector} that buffers the docs that it collects with their buckets, and passes them on to another leaf
+ * collector in batches, through {@link LeafBucketCollector#collect(int[], long[], int)}. Since docs are collected later than
+ * they are matched, the other collector must not need scores, and {@link #flush()} must be called once the segment is done.
+ * The buffers are reused from one segment to the next, see {@link #reset(LeafBucketCollector)}.
+ */
+public final class BatchingLeafBucketCollector extends LeafBucketCollector {
+
+    /**
+     * The default number of docs of a batch.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 1024;
+
+    private final int[] docs;
+    private final long[] buckets;
+    private int count;
+    private LeafBucketCollector delegate = NO_OP_COLLECTOR;
+
+    public BatchingLeafBucketCollector(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batch size must be at least 1, got " + batchSize);
+        }
+        docs = new int[batchSize];
+        buckets = new long[batchSize];
+    }
+
+    /**
+     * Flushes the pending docs to the current collector, then starts collecting docs for the given one.
+     */
+    public BatchingLeafBucketCollector reset(LeafBucketCollector delegate) throws IOException {
+        flush();
+        this.delegate = delegate;
+        return this;
+    }
+
+    @Override
+    public void setScorer(Scorer scorer) throws IOException {
+        delegate.setScorer(scorer);
+    }
+
+    @Override
+    public void collect(int doc, long bucket) throws IOException {
+        docs[count] = doc;
+        buckets[count] = bucket;
+        if (++count == docs.length) {
+            flush();
+        }
+    }
+
+    @Override
+    public void collect(int[] docs, long[] buckets, int count) throws IOException {
+        flush();
+        delegate.collect(docs, buckets, count);
+    }
+
+    /**
+     * Passes the pending docs on to the collector.
+     */
+    public void flush() throws IOException {
+        if (count > 0) {
+            final int count = this.count;
+            // reset first, the collector may throw to stop collecting this segment
+            this.count = 0;
+            delegate.collect(docs, buckets, count);
+        }
+    }
+}
@@ -68,6 +68,13 @@ public abstract class LeafBucketCollector implements LeafCollector {
                     }
                 }
 
+                @Override
+                public void collect(int[] docs, long[] buckets, int count) throws IOException {
+                    for (LeafBucketCollector c : colls) {
+                        c.collect(docs, buckets, count);
+                    }
+                }
+
             };
         }
     }
@@ -77,6 +84,18 @@ public abstract class LeafBucketCollector implements LeafCollector {
      */
     public abstract void collect(int doc, long bucket) throws IOException;
 
+    /**
+     * Collect the first {@code count} docs of the given array, each in the bucket at the same index of the {@code buckets} array,
+     * in the same order as if they were collected one by one. Implementations may override this method to read doc values and
+     * accumulate them in a tight loop, the default implementation calls {@link #collect(int, long)} for each doc. The arrays are
+     * reused by the caller and must not be modified.
+     */
+    public void collect(int[] docs, long[] buckets, int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            collect(docs[i], buckets[i]);
+        }
+    }
+
     @Override
     public final void collect(int doc) throws IOException {
         collect(doc, 0);
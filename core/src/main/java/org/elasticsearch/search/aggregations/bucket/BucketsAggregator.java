@@ -80,6 +80,31 @@ public abstract class BucketsAggregator extends AggregatorBase {
         subCollector.collect(doc, bucketOrd);
     }
 
+    /**
+     * Same as {@link #collectBucket(LeafBucketCollector, int, long)}, but for a batch of docs, see
+     * {@link LeafBucketCollector#collect(int[], long[], int)}.
+     */
+    public final void collectBuckets(LeafBucketCollector subCollector, int[] docs, long[] bucketOrds, int count) throws IOException {
+        long maxBucketOrd = -1;
+        for (int i = 0; i < count; i++) {
+            maxBucketOrd = Math.max(maxBucketOrd, bucketOrds[i]);
+        }
+        grow(maxBucketOrd + 1);
+        collectExistingBuckets(subCollector, docs, bucketOrds, count);
+    }
+
+    /**
+     * Same as {@link #collectBuckets(LeafBucketCollector, int[], long[], int)}, but doesn't check if the docCounts needs to be
+     * re-sized.
+     */
+    public final void collectExistingBuckets(LeafBucketCollector subCollector, int[] docs, long[] bucketOrds, int count)
+            throws IOException {
+        for (int i = 0; i < count; i++) {
+            docCounts.increment(bucketOrds[i], 1);
+        }
+        subCollector.collect(docs, bucketOrds, count);
+    }
+
     public IntArray getDocCounts() {
         return docCounts;
     }
@@ -52,18 +52,46 @@ public class FilterAggregator extends SingleBucketAggregator {
         this.filter = filter;
     }
 
+    @Override
+    protected boolean collectsInBatches() {
+        // passes the matching docs on to the sub-aggregations in batches
+        return true;
+    }
+
     @Override
     public LeafBucketCollector getLeafCollector(LeafReaderContext ctx,
             final LeafBucketCollector sub) throws IOException {
         // no need to provide deleted docs to the filter
         final Bits bits = Lucene.asSequentialAccessBits(ctx.reader().maxDoc(), filter.scorer(ctx));
         return new LeafBucketCollectorBase(sub, null) {
+            private int[] matchingDocs = new int[0];
+            private long[] matchingBuckets = new long[0];
+
             @Override
             public void collect(int doc, long bucket) throws IOException {
                 if (bits.get(doc)) {
                     collectBucket(sub, doc, bucket);
                 }
             }
+
+            @Override
+            public void collect(int[] docs, long[] buckets, int count) throws IOException {
+                if (matchingDocs.length < count) {
+                    matchingDocs = new int[docs.length];
+                    matchingBuckets = new long[docs.length];
+                }
+                int matching = 0;
+                for (int i = 0; i < count; i++) {
+                    if (bits.get(docs[i])) {
+                        matchingDocs[matching] = docs[i];
+                        matchingBuckets[matching] = buckets[i];
+                        matching++;
+                    }
+                }
+                if (matching > 0) {
+                    collectBuckets(sub, matchingDocs, matchingBuckets, matching);
+                }
+            }
         };
     }
 
@@ -46,6 +46,7 @@ import org.elasticsearch.search.aggregations.support.ValuesSourceType;
 import org.elasticsearch.search.internal.SearchContext;
 
 import java.io.IOException;
+import java.util.Map;
 import java.util.Objects;
 
 public class GeoGridAggregationBuilder extends ValuesSourceAggregationBuilder<ValuesSource.GeoPoint, GeoGridAggregationBuilder> {
@@ -92,10 +93,17 @@ public class GeoGridAggregationBuilder extends ValuesSourceAggregationBuilder<Va
     }
 
     public GeoGridAggregationBuilder precision(int precision) {
-        this.precision = GeoHashGridParams.checkPrecision(precision);
+        this.precision = checkPrecision(precision);
         return this;
     }
 
+    /**
+     * Validates the given precision.
+     */
+    protected int checkPrecision(int precision) {
+        return GeoHashGridParams.checkPrecision(precision);
+    }
+
     public int precision() {
         return precision;
     }
@@ -148,6 +156,15 @@ public class GeoGridAggregationBuilder extends ValuesSourceAggregationBuilder<Va
         if (shardSize < requiredSize) {
             shardSize = requiredSize;
         }
+        return createFactory(name, config, precision, requiredSize, shardSize, context, parent, subFactoriesBuilder, metaData);
+    }
+
+    /**
+     * Creates the factory of the aggregators of this grid, once the shard size is known.
+     */
+    protected ValuesSourceAggregatorFactory<ValuesSource.GeoPoint, ?> createFactory(String name,
+            ValuesSourceConfig<ValuesSource.GeoPoint> config, int precision, int requiredSize, int shardSize, SearchContext context,
+            AggregatorFactory<?> parent, Builder subFactoriesBuilder, Map<String, Object> metaData) throws IOException {
         return new GeoHashGridAggregatorFactory(name, config, precision, requiredSize, shardSize, context, parent,
                 subFactoriesBuilder, metaData);
     }
@@ -187,35 +204,86 @@ public class GeoGridAggregationBuilder extends ValuesSourceAggregationBuilder<Va
         return NAME;
     }
 
+    /**
+     * Encodes the cell that contains a point at a given precision as a long. It is called for every point, so it should not
+     * allocate.
+     */
+    @FunctionalInterface
+    interface CellEncoder {
+        long encode(double lon, double lat, int precision);
+    }
+
     private static class CellValues extends SortingNumericDocValues {
-        private MultiGeoPointValues geoValues;
-        private int precision;
+        private final MultiGeoPointValues geoValues;
+        private final int precision;
+        private final CellEncoder encoder;
+        private final GeoPoint topLeft;
+        private final GeoPoint bottomRight;
 
-        protected CellValues(MultiGeoPointValues geoValues, int precision) {
+        protected CellValues(MultiGeoPointValues geoValues, int precision, CellEncoder encoder, GeoPoint topLeft,
+                GeoPoint bottomRight) {
             this.geoValues = geoValues;
             this.precision = precision;
+            this.encoder = encoder;
+            this.topLeft = topLeft;
+            this.bottomRight = bottomRight;
         }
 
         @Override
         public void setDocument(int docId) {
             geoValues.setDocument(docId);
-            resize(geoValues.count());
-            for (int i = 0; i < count(); ++i) {
+            final int valuesCount = geoValues.count();
+            resize(valuesCount);
+            int count = 0;
+            for (int i = 0; i < valuesCount; ++i) {
                 GeoPoint target = geoValues.valueAt(i);
-                values[i] = GeoHashUtils.longEncode(target.getLon(), target.getLat(), precision);
+                if (topLeft == null || inBounds(target.getLat(), target.getLon(), topLeft, bottomRight)) {
+                    values[count++] = encoder.encode(target.getLon(), target.getLat(), precision);
+                }
             }
+            resize(count);
             sort();
         }
     }
 
+    /**
+     * Whether the given point is in the bounding box of the given corners, that crosses the dateline if its left is east of its
+     * right.
+     */
+    static boolean inBounds(double lat, double lon, GeoPoint topLeft, GeoPoint bottomRight) {
+        if (lat > topLeft.getLat() || lat < bottomRight.getLat()) {
+            return false;
+        }
+        if (topLeft.getLon() <= bottomRight.getLon()) {
+            return lon >= topLeft.getLon() && lon <= bottomRight.getLon();
+        }
+        return lon >= topLeft.getLon() || lon <= bottomRight.getLon();
+    }
+
     static class CellIdSource extends ValuesSource.Numeric {
         private final ValuesSource.GeoPoint valuesSource;
         private final int precision;
+        private final CellEncoder encoder;
+        private final org.elasticsearch.common.geo.GeoPoint topLeft;
+        private final org.elasticsearch.common.geo.GeoPoint bottomRight;
 
         CellIdSource(ValuesSource.GeoPoint valuesSource, int precision) {
+            this(valuesSource, precision, GeoHashUtils::longEncode, null, null);
+        }
+
+        /**
+         * @param topLeft       the top left corner of the points to aggregate, or {@code null} to aggregate all points
+         * @param bottomRight   the bottom right corner of the points to aggregate, or {@code null} to aggregate all points
+         */
+        CellIdSource(ValuesSource.GeoPoint valuesSource, int precision, CellEncoder encoder,
+                org.elasticsearch.common.geo.GeoPoint topLeft, org.elasticsearch.common.geo.GeoPoint bottomRight) {
             this.valuesSource = valuesSource;
             //different GeoPoints could map to the same or different geohash cells.
             this.precision = precision;
+            this.encoder = encoder;
+            assert (topLeft == null) == (bottomRight == null);
+            this.topLeft = topLeft;
+            this.bottomRight = bottomRight;
         }
 
         public int precision() {
@@ -229,7 +297,7 @@ public class GeoGridAggregationBuilder extends ValuesSourceAggregationBuilder<Va
 
         @Override
         public SortedNumericDocValues longValues(LeafReaderContext ctx) {
-            return new CellValues(valuesSource.geoPointValues(ctx), precision);
+            return new CellValues(valuesSource.geoPointValues(ctx), precision, encoder, topLeft, bottomRight);
         }
 
         @Override
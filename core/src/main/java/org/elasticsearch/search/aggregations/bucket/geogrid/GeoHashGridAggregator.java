@@ -44,7 +44,7 @@ import java.util.Map;
 
 public class GeoHashGridAggregator extends BucketsAggregator {
 
-    private final int requiredSize;
+    protected final int requiredSize;
     private final int shardSize;
     private final GeoGridAggregationBuilder.CellIdSource valuesSource;
     private final LongHash bucketOrds;
@@ -128,12 +128,19 @@ public class GeoHashGridAggregator extends BucketsAggregator {
             bucket.aggregations = bucketAggregations(bucket.bucketOrd);
             list[i] = bucket;
         }
-        return new InternalGeoHashGrid(name, requiredSize, Arrays.asList(list), pipelineAggregators(), metaData());
+        return buildGrid(Arrays.asList(list));
+    }
+
+    /**
+     * Builds the grid of the given buckets, whose keys are the encoded cells.
+     */
+    protected InternalGeoHashGrid buildGrid(List<InternalGeoHashGrid.Bucket> buckets) {
+        return new InternalGeoHashGrid(name, requiredSize, buckets, pipelineAggregators(), metaData());
     }
 
     @Override
     public InternalGeoHashGrid buildEmptyAggregation() {
-        return new InternalGeoHashGrid(name, requiredSize, Collections.<InternalGeoHashGrid.Bucket> emptyList(), pipelineAggregators(), metaData());
+        return buildGrid(Collections.emptyList());
     }
 
 
@@ -0,0 +1,33 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.search.aggregations.bucket.geogrid;
+
+/**
+ * A {@code geotile_grid} aggregation. Defines multiple buckets, each representing a tile of the Web Mercator projection at a
+ * specific zoom. It shares the buckets of the {@code geohash_grid} aggregation, with {@code zoom/x/y} keys instead of geohashes.
+ */
+public interface GeoTileGrid extends GeoHashGrid {
+
+    /**
+     * A bucket that is associated with a {@code geotile_grid} tile. The key of the bucket is the {@code zoom/x/y} of the tile,
+     * and its point is the center of the tile. All the buckets of a {@code geotile_grid} are tile buckets.
+     */
+    interface Bucket extends GeoHashGrid.Bucket {
+    }
+}
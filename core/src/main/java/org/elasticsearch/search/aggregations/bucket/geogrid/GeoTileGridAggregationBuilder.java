@@ -0,0 +1,211 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.search.aggregations.bucket.geogrid;
+
+import org.elasticsearch.common.ParseField;
+import org.elasticsearch.common.ParsingException;
+import org.elasticsearch.common.geo.GeoPoint;
+import org.elasticsearch.common.geo.GeoUtils;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.xcontent.ObjectParser;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.index.query.QueryParseContext;
+import org.elasticsearch.search.aggregations.AggregatorFactories.Builder;
+import org.elasticsearch.search.aggregations.AggregatorFactory;
+import org.elasticsearch.search.aggregations.support.ValuesSource;
+import org.elasticsearch.search.aggregations.support.ValuesSourceAggregatorFactory;
+import org.elasticsearch.search.aggregations.support.ValuesSourceConfig;
+import org.elasticsearch.search.aggregations.support.ValuesSourceParserHelper;
+import org.elasticsearch.search.internal.SearchContext;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Builds a {@code geotile_grid} aggregation, that groups points by the {@code zoom/x/y} map tile that contains them, with the
+ * precision as the zoom. Points can be restricted to a bounding box, which is checked as points are encoded so that the points
+ * outside of it neither get a bucket nor are collected.
+ */
+public class GeoTileGridAggregationBuilder extends GeoGridAggregationBuilder {
+    public static final String NAME = "geotile_grid";
+    public static final int DEFAULT_PRECISION = 7;
+
+    static final ParseField FIELD_BOUNDS = new ParseField("bounds");
+    static final ParseField FIELD_TOP_LEFT = new ParseField("top_left");
+    static final ParseField FIELD_BOTTOM_RIGHT = new ParseField("bottom_right");
+
+    private static final ObjectParser<GeoTileGridAggregationBuilder, QueryParseContext> PARSER;
+    static {
+        PARSER = new ObjectParser<>(GeoTileGridAggregationBuilder.NAME);
+        ValuesSourceParserHelper.declareGeoFields(PARSER, false, false);
+        PARSER.declareInt(GeoTileGridAggregationBuilder::precision, GeoHashGridParams.FIELD_PRECISION);
+        PARSER.declareInt(GeoTileGridAggregationBuilder::size, GeoHashGridParams.FIELD_SIZE);
+        PARSER.declareInt(GeoTileGridAggregationBuilder::shardSize, GeoHashGridParams.FIELD_SHARD_SIZE);
+        PARSER.declareField((parser, builder, context) -> parseBounds(parser, builder), FIELD_BOUNDS, ObjectParser.ValueType.OBJECT);
+    }
+
+    public static GeoTileGridAggregationBuilder parse(String aggregationName, QueryParseContext context) throws IOException {
+        return PARSER.parse(context.parser(), new GeoTileGridAggregationBuilder(aggregationName), context);
+    }
+
+    private static void parseBounds(XContentParser parser, GeoTileGridAggregationBuilder builder) throws IOException {
+        GeoPoint topLeft = null;
+        GeoPoint bottomRight = null;
+        String currentFieldName = null;
+        XContentParser.Token token;
+        while ((token = parser.nextToken()) != XContentParser.Token.END_OBJECT) {
+            if (token == XContentParser.Token.FIELD_NAME) {
+                currentFieldName = parser.currentName();
+            } else if (FIELD_TOP_LEFT.match(currentFieldName)) {
+                topLeft = GeoUtils.parseGeoPoint(parser);
+            } else if (FIELD_BOTTOM_RIGHT.match(currentFieldName)) {
+                bottomRight = GeoUtils.parseGeoPoint(parser);
+            } else {
+                throw new ParsingException(parser.getTokenLocation(),
+                        "Unexpected field [" + currentFieldName + "] in [" + FIELD_BOUNDS.getPreferredName() + "]");
+            }
+        }
+        if (topLeft == null || bottomRight == null) {
+            throw new ParsingException(parser.getTokenLocation(), "[" + FIELD_BOUNDS.getPreferredName() + "] requires both ["
+                    + FIELD_TOP_LEFT.getPreferredName() + "] and [" + FIELD_BOTTOM_RIGHT.getPreferredName() + "]");
+        }
+        builder.bounds(topLeft, bottomRight);
+    }
+
+    private GeoPoint topLeft;
+    private GeoPoint bottomRight;
+
+    public GeoTileGridAggregationBuilder(String name) {
+        super(name);
+        precision(DEFAULT_PRECISION);
+    }
+
+    /**
+     * Read from a stream.
+     */
+    public GeoTileGridAggregationBuilder(StreamInput in) throws IOException {
+        super(in);
+        if (in.readBoolean()) {
+            topLeft = in.readGeoPoint();
+            bottomRight = in.readGeoPoint();
+        }
+    }
+
+    @Override
+    protected void innerWriteTo(StreamOutput out) throws IOException {
+        super.innerWriteTo(out);
+        if (topLeft != null) {
+            out.writeBoolean(true);
+            out.writeGeoPoint(topLeft);
+            out.writeGeoPoint(bottomRight);
+        } else {
+            out.writeBoolean(false);
+        }
+    }
+
+    @Override
+    protected int checkPrecision(int precision) {
+        return GeoTileUtils.checkPrecisionRange(precision);
+    }
+
+    @Override
+    public GeoTileGridAggregationBuilder precision(int precision) {
+        super.precision(precision);
+        return this;
+    }
+
+    @Override
+    public GeoTileGridAggregationBuilder size(int size) {
+        super.size(size);
+        return this;
+    }
+
+    @Override
+    public GeoTileGridAggregationBuilder shardSize(int shardSize) {
+        super.shardSize(shardSize);
+        return this;
+    }
+
+    /**
+     * Only aggregates the points of the bounding box of the given corners. The box crosses the dateline if the left of the top
+     * left corner is east of the right of the bottom right corner.
+     */
+    public GeoTileGridAggregationBuilder bounds(GeoPoint topLeft, GeoPoint bottomRight) {
+        if (topLeft == null || bottomRight == null) {
+            throw new IllegalArgumentException("[" + FIELD_BOUNDS.getPreferredName() + "] requires both ["
+                    + FIELD_TOP_LEFT.getPreferredName() + "] and [" + FIELD_BOTTOM_RIGHT.getPreferredName() + "] in [" + name + "]");
+        }
+        if (topLeft.getLat() < bottomRight.getLat()) {
+            throw new IllegalArgumentException("top is below bottom corner: " + topLeft.getLat() + " vs. "
+                    + bottomRight.getLat() + " in [" + name + "]");
+        }
+        this.topLeft = topLeft;
+        this.bottomRight = bottomRight;
+        return this;
+    }
+
+    public GeoPoint topLeft() {
+        return topLeft;
+    }
+
+    public GeoPoint bottomRight() {
+        return bottomRight;
+    }
+
+    @Override
+    protected ValuesSourceAggregatorFactory<ValuesSource.GeoPoint, ?> createFactory(String name,
+            ValuesSourceConfig<ValuesSource.GeoPoint> config, int precision, int requiredSize, int shardSize, SearchContext context,
+            AggregatorFactory<?> parent, Builder subFactoriesBuilder, Map<String, Object> metaData) throws IOException {
+        return new GeoTileGridAggregatorFactory(name, config, precision, requiredSize, shardSize, topLeft, bottomRight, context,
+                parent, subFactoriesBuilder, metaData);
+    }
+
+    @Override
+    protected XContentBuilder doXContentBody(XContentBuilder builder, Params params) throws IOException {
+        super.doXContentBody(builder, params);
+        if (topLeft != null) {
+            builder.startObject(FIELD_BOUNDS.getPreferredName());
+            builder.field(FIELD_TOP_LEFT.getPreferredName(), topLeft);
+            builder.field(FIELD_BOTTOM_RIGHT.getPreferredName(), bottomRight);
+            builder.endObject();
+        }
+        return builder;
+    }
+
+    @Override
+    protected boolean innerEquals(Object obj) {
+        GeoTileGridAggregationBuilder other = (GeoTileGridAggregationBuilder) obj;
+        return super.innerEquals(obj)
+                && Objects.equals(topLeft, other.topLeft)
+                && Objects.equals(bottomRight, other.bottomRight);
+    }
+
+    @Override
+    protected int innerHashCode() {
+        return Objects.hash(super.innerHashCode(), topLeft, bottomRight);
+    }
+
+    @Override
+    public String getType() {
+        return NAME;
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.aggregations.bucket.geogrid;
+
+import org.elasticsearch.common.geo.GeoPoint;
+
+/**
+ * Encodes points as the {@code zoom/x/y} tiles of the Web Mercator projection that map clients render, packed into a single
+ * long: 6 bits of zoom, followed by 29 bits of x and 29 bits of y. The encoding only involves arithmetic, so that it can run on
+ * every point without allocating.
+ */
+public final class GeoTileUtils {
+
+    /**
+     * The largest zoom, at which there are 2^29 tiles in each direction, so that x and y fit into 29 bits.
+     */
+    public static final int MAX_ZOOM = 29;
+
+    /**
+     * The latitude of the top edge of the tiles, beyond which the projection is not defined.
+     */
+    public static final double LATITUDE_MASK = 85.0511287798066;
+
+    private static final int ZOOM_SHIFT = 2 * MAX_ZOOM;
+    private static final long X_Y_MASK = (1L << MAX_ZOOM) - 1;
+
+    private GeoTileUtils() {}
+
+    /**
+     * Checks that the given zoom is between 0 and {@link #MAX_ZOOM}.
+     */
+    public static int checkPrecisionRange(int precision) {
+        if (precision < 0 || precision > MAX_ZOOM) {
+            throw new IllegalArgumentException("Invalid geotile_grid precision of " + precision
+                + ". Must be between 0 and " + MAX_ZOOM + ".");
+        }
+        return precision;
+    }
+
+    /**
+     * Returns the x of the tile that contains the given longitude.
+     */
+    static int tileX(double lon, int tiles) {
+        final int x = (int) Math.floor((lon + 180) / 360 * tiles);
+        // the right edge of the map belongs to the last tile
+        return Math.min(Math.max(x, 0), tiles - 1);
+    }
+
+    /**
+     * Returns the y of the tile that contains the given latitude, counting from the top of the map.
+     */
+    static int tileY(double lat, int tiles) {
+        final double latRad = Math.toRadians(Math.min(Math.max(lat, -LATITUDE_MASK), LATITUDE_MASK));
+        final double y = (1 - Math.log(Math.tan(latRad) + 1 / Math.cos(latRad)) / Math.PI) / 2 * tiles;
+        return Math.min(Math.max((int) Math.floor(y), 0), tiles - 1);
+    }
+
+    /**
+     * Encodes the tile that contains the given point at the given zoom.
+     */
+    public static long longEncode(double lon, double lat, int precision) {
+        final int tiles = 1 << precision;
+        return ((long) precision << ZOOM_SHIFT) | ((long) tileX(lon, tiles) << MAX_ZOOM) | tileY(lat, tiles);
+    }
+
+    static int zoom(long tile) {
+        return (int) (tile >>> ZOOM_SHIFT);
+    }
+
+    static int x(long tile) {
+        return (int) ((tile >>> MAX_ZOOM) & X_Y_MASK);
+    }
+
+    static int y(long tile) {
+        return (int) (tile & X_Y_MASK);
+    }
+
+    /**
+     * Returns the {@code zoom/x/y} key of the given tile.
+     */
+    public static String stringEncode(long tile) {
+        return zoom(tile) + "/" + x(tile) + "/" + y(tile);
+    }
+
+    /**
+     * Parses a {@code zoom/x/y} key back into the encoded tile.
+     */
+    public static long longEncode(String key) {
+        final String[] parts = key.split("/");
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("Invalid geotile_grid key [" + key + "], expected [zoom/x/y]");
+        }
+        final int zoom = checkPrecisionRange(Integer.parseInt(parts[0]));
+        final int x = Integer.parseInt(parts[1]);
+        final int y = Integer.parseInt(parts[2]);
+        final int tiles = 1 << zoom;
+        if (x < 0 || x >= tiles || y < 0 || y >= tiles) {
+            throw new IllegalArgumentException("Invalid geotile_grid key [" + key + "], x and y must be between 0 and " + (tiles - 1));
+        }
+        return ((long) zoom << ZOOM_SHIFT) | ((long) x << MAX_ZOOM) | y;
+    }
+
+    /**
+     * Returns the center of the given tile.
+     */
+    public static GeoPoint toGeoPoint(long tile) {
+        final double tiles = 1L << zoom(tile);
+        final double lon = (x(tile) + 0.5) / tiles * 360 - 180;
+        final double n = Math.PI - 2 * Math.PI * (y(tile) + 0.5) / tiles;
+        final double lat = Math.toDegrees(Math.atan(Math.sinh(n)));
+        return new GeoPoint(lat, lon);
+    }
+}
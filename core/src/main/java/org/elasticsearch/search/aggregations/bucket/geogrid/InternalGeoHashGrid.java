@@ -23,6 +23,7 @@ import org.elasticsearch.common.geo.GeoHashUtils;
 import org.elasticsearch.common.geo.GeoPoint;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Writeable;
 import org.elasticsearch.common.util.LongObjectPagedHashMap;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.search.aggregations.Aggregations;
@@ -61,7 +62,7 @@ public class InternalGeoHashGrid extends InternalMultiBucketAggregation<Internal
         /**
          * Read from a stream.
          */
-        private Bucket(StreamInput in) throws IOException {
+        Bucket(StreamInput in) throws IOException {
             geohashAsLong = in.readLong();
             docCount = in.readVLong();
             aggregations = InternalAggregations.readAggregations(in);
@@ -114,7 +115,14 @@ public class InternalGeoHashGrid extends InternalMultiBucketAggregation<Internal
                 aggregationsList.add(bucket.aggregations);
             }
             final InternalAggregations aggs = InternalAggregations.reduce(aggregationsList, context);
-            return new Bucket(geohashAsLong, docCount, aggs);
+            return newBucket(geohashAsLong, docCount, aggs);
+        }
+
+        /**
+         * Creates a bucket of the same kind as this one.
+         */
+        Bucket newBucket(long geohashAsLong, long docCount, InternalAggregations aggregations) {
+            return new Bucket(geohashAsLong, docCount, aggregations);
         }
 
         @Override
@@ -128,7 +136,7 @@ public class InternalGeoHashGrid extends InternalMultiBucketAggregation<Internal
         }
     }
 
-    private final int requiredSize;
+    final int requiredSize;
     private final List<Bucket> buckets;
 
     public InternalGeoHashGrid(String name, int requiredSize, List<Bucket> buckets, List<PipelineAggregator> pipelineAggregators,
@@ -142,9 +150,13 @@ public class InternalGeoHashGrid extends InternalMultiBucketAggregation<Internal
      * Read from a stream.
      */
     public InternalGeoHashGrid(StreamInput in) throws IOException {
+        this(in, Bucket::new);
+    }
+
+    InternalGeoHashGrid(StreamInput in, Writeable.Reader<Bucket> bucketReader) throws IOException {
         super(in);
         requiredSize = readSize(in);
-        buckets = in.readList(Bucket::new);
+        buckets = in.readList(bucketReader);
     }
 
     @Override
@@ -165,7 +177,7 @@ public class InternalGeoHashGrid extends InternalMultiBucketAggregation<Internal
 
     @Override
     public Bucket createBucket(InternalAggregations aggregations, Bucket prototype) {
-        return new Bucket(prototype.geohashAsLong, prototype.docCount, aggregations);
+        return prototype.newBucket(prototype.geohashAsLong, prototype.docCount, aggregations);
     }
 
     @Override
@@ -203,7 +215,7 @@ public class InternalGeoHashGrid extends InternalMultiBucketAggregation<Internal
         for (int i = ordered.size() - 1; i >= 0; i--) {
             list[i] = ordered.pop();
         }
-        return new InternalGeoHashGrid(getName(), requiredSize, Arrays.asList(list), pipelineAggregators(), getMetaData());
+        return create(Arrays.asList(list));
     }
 
     @Override
@@ -0,0 +1,87 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.search.aggregations.bucket.geogrid;
+
+import org.elasticsearch.common.geo.GeoPoint;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.search.aggregations.InternalAggregations;
+import org.elasticsearch.search.aggregations.pipeline.PipelineAggregator;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Represents a grid of map tiles, whose keys are encoded by {@link GeoTileUtils}. It reduces like {@link InternalGeoHashGrid},
+ * only the keys of its buckets are rendered differently.
+ */
+public class InternalGeoTileGrid extends InternalGeoHashGrid implements GeoTileGrid {
+
+    static class Bucket extends InternalGeoHashGrid.Bucket implements GeoTileGrid.Bucket {
+
+        Bucket(long tile, long docCount, InternalAggregations aggregations) {
+            super(tile, docCount, aggregations);
+        }
+
+        /**
+         * Read from a stream.
+         */
+        Bucket(StreamInput in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        public String getKeyAsString() {
+            return GeoTileUtils.stringEncode(geohashAsLong);
+        }
+
+        @Override
+        public GeoPoint getKey() {
+            return GeoTileUtils.toGeoPoint(geohashAsLong);
+        }
+
+        @Override
+        Bucket newBucket(long tile, long docCount, InternalAggregations aggregations) {
+            return new Bucket(tile, docCount, aggregations);
+        }
+    }
+
+    public InternalGeoTileGrid(String name, int requiredSize, List<InternalGeoHashGrid.Bucket> buckets,
+            List<PipelineAggregator> pipelineAggregators, Map<String, Object> metaData) {
+        super(name, requiredSize, buckets, pipelineAggregators, metaData);
+        assert buckets.stream().allMatch(bucket -> bucket instanceof Bucket);
+    }
+
+    /**
+     * Read from a stream.
+     */
+    public InternalGeoTileGrid(StreamInput in) throws IOException {
+        super(in, Bucket::new);
+    }
+
+    @Override
+    public String getWriteableName() {
+        return GeoTileGridAggregationBuilder.NAME;
+    }
+
+    @Override
+    public InternalGeoTileGrid create(List<InternalGeoHashGrid.Bucket> buckets) {
+        return new InternalGeoTileGrid(this.name, this.requiredSize, buckets, this.pipelineAggregators(), this.metaData);
+    }
+}
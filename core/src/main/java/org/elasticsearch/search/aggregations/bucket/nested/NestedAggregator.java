@@ -27,12 +27,14 @@ import org.apache.lucene.search.Query;
 import org.apache.lucene.search.Scorer;
 import org.apache.lucene.search.Weight;
 import org.apache.lucene.search.join.BitSetProducer;
+import org.apache.lucene.util.ArrayUtil;
 import org.apache.lucene.util.BitSet;
 import org.elasticsearch.common.ParseField;
 import org.elasticsearch.common.lucene.search.Queries;
 import org.elasticsearch.index.mapper.ObjectMapper;
 import org.elasticsearch.search.aggregations.Aggregator;
 import org.elasticsearch.search.aggregations.AggregatorFactories;
+import org.elasticsearch.search.aggregations.BatchingLeafBucketCollector;
 import org.elasticsearch.search.aggregations.InternalAggregation;
 import org.elasticsearch.search.aggregations.LeafBucketCollector;
 import org.elasticsearch.search.aggregations.LeafBucketCollectorBase;
@@ -50,6 +52,11 @@ public class NestedAggregator extends SingleBucketAggregator {
 
     private final BitSetProducer parentFilter;
     private final Query childFilter;
+    // buffers the child docs and passes them on to the sub-aggregations in batches
+    private final BatchingLeafBucketCollector childBatch =
+            new BatchingLeafBucketCollector(BatchingLeafBucketCollector.DEFAULT_BATCH_SIZE);
+    private Weight childWeight;
+    private NestedLeafBucketCollector current;
 
     public NestedAggregator(String name, AggregatorFactories factories, ObjectMapper parentObjectMapper, ObjectMapper childObjectMapper,
             SearchContext context, Aggregator parentAggregator,
@@ -62,34 +69,140 @@ public class NestedAggregator extends SingleBucketAggregator {
 
     @Override
     public LeafBucketCollector getLeafCollector(final LeafReaderContext ctx, final LeafBucketCollector sub) throws IOException {
-        IndexReaderContext topLevelContext = ReaderUtil.getTopLevelContext(ctx);
-        IndexSearcher searcher = new IndexSearcher(topLevelContext);
-        searcher.setQueryCache(null);
-        Weight weight = searcher.createNormalizedWeight(childFilter, false);
-        Scorer childDocsScorer = weight.scorer(ctx);
+        if (childWeight == null) {
+            // all segments share the same top level reader, so the weight only needs to be created once
+            IndexReaderContext topLevelContext = ReaderUtil.getTopLevelContext(ctx);
+            IndexSearcher searcher = new IndexSearcher(topLevelContext);
+            searcher.setQueryCache(null);
+            childWeight = searcher.createNormalizedWeight(childFilter, false);
+        }
 
         final BitSet parentDocs = parentFilter.getBitSet(ctx);
-        final DocIdSetIterator childDocs = childDocsScorer != null ? childDocsScorer.iterator() : null;
-        return new LeafBucketCollectorBase(sub, null) {
-            @Override
-            public void collect(int parentDoc, long bucket) throws IOException {
-                // if parentDoc is 0 then this means that this parent doesn't have child docs (b/c these appear always before the parent
-                // doc), so we can skip:
-                if (parentDoc == 0 || parentDocs == null || childDocs == null) {
-                    return;
+        final Scorer childDocsScorer = childWeight.scorer(ctx);
+        if (parentDocs == null || childDocsScorer == null) {
+            return LeafBucketCollector.NO_OP_COLLECTOR;
+        }
+        // children get the score of their parent, so they must be collected while the scorer is on their parent
+        final boolean buffer = needsScores() == false;
+        if (buffer) {
+            childBatch.reset(new LeafBucketCollector() {
+                @Override
+                public void collect(int doc, long bucket) throws IOException {
+                    collectBucket(sub, doc, bucket);
                 }
 
-                final int prevParentDoc = parentDocs.prevSetBit(parentDoc - 1);
-                int childDocId = childDocs.docID();
-                if (childDocId <= prevParentDoc) {
-                    childDocId = childDocs.advance(prevParentDoc + 1);
+                @Override
+                public void collect(int[] docs, long[] buckets, int count) throws IOException {
+                    collectBuckets(sub, docs, buckets, count);
                 }
+            });
+        }
+        current = new NestedLeafBucketCollector(ctx, parentDocs, childDocsScorer.iterator(), sub, buffer);
+        return current;
+    }
+
+    /**
+     * Collects the children of the buffered parent doc, and passes the pending child docs on to the sub-aggregations.
+     */
+    @Override
+    protected void doFinishLeaf() throws IOException {
+        if (current != null) {
+            current.collectChildren();
+            current = null;
+        }
+        childBatch.flush();
+    }
+
+    /**
+     * Parents that collect from several buckets, and deferred replays, pass the buckets of a doc one after the other, so unless
+     * the sub-aggregations need scores, the buckets of a parent doc are buffered until the next parent doc and its children are
+     * only iterated once for all of them, then passed on in batches.
+     */
+    private class NestedLeafBucketCollector extends LeafBucketCollectorBase {
+
+        private final LeafReaderContext ctx;
+        private final BitSet parentDocs;
+        private final LeafBucketCollector sub;
+        private final boolean buffer;
+        private DocIdSetIterator childDocs;
+        private int parentDoc = -1;
+        private int lastParentDoc = -1;
+        private long[] buckets = new long[1];
+        private int bucketCount = 0;
+        private int[] children = new int[8];
+        private int childCount = 0;
+
+        NestedLeafBucketCollector(LeafReaderContext ctx, BitSet parentDocs, DocIdSetIterator childDocs, LeafBucketCollector sub,
+                boolean buffer) {
+            super(sub, null);
+            this.ctx = ctx;
+            this.parentDocs = parentDocs;
+            this.childDocs = childDocs;
+            this.sub = sub;
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void collect(int parentDoc, long bucket) throws IOException {
+            // if parentDoc is 0 then this means that this parent doesn't have child docs (b/c these appear always before the parent
+            // doc), so we can skip:
+            if (parentDoc == 0) {
+                return;
+            }
+            if (parentDoc != this.parentDoc) {
+                collectChildren();
+                this.parentDoc = parentDoc;
+            }
+            if (bucketCount == buckets.length) {
+                buckets = ArrayUtil.grow(buckets, bucketCount + 1);
+            }
+            buckets[bucketCount++] = bucket;
+            if (buffer == false) {
+                collectChildren();
+            }
+        }
 
-                for (; childDocId < parentDoc; childDocId = childDocs.nextDoc()) {
-                    collectBucket(sub, childDocId, bucket);
+        void collectChildren() throws IOException {
+            if (bucketCount == 0) {
+                return;
+            }
+            if (parentDoc != lastParentDoc) {
+                readChildren();
+            }
+            // the children of the last parent doc are kept, so that the buckets of a parent doc that are not buffered together,
+            // like the ones of sub-aggregations that need scores, do not iterate them again
+            for (int c = 0; c < childCount; c++) {
+                for (int i = 0; i < bucketCount; i++) {
+                    if (buffer) {
+                        childBatch.collect(children[c], buckets[i]);
+                    } else {
+                        collectBucket(sub, children[c], buckets[i]);
+                    }
                 }
             }
-        };
+            bucketCount = 0;
+        }
+
+        private void readChildren() throws IOException {
+            if (parentDoc < lastParentDoc) {
+                // parents are collected in order by the aggregations that ship with elasticsearch, including deferred replays,
+                // but children must not be skipped if they are not
+                childDocs = childWeight.scorer(ctx).iterator();
+            }
+            final int prevParentDoc = parentDocs.prevSetBit(parentDoc - 1);
+            int childDocId = childDocs.docID();
+            if (childDocId <= prevParentDoc) {
+                childDocId = childDocs.advance(prevParentDoc + 1);
+            }
+            childCount = 0;
+            for (; childDocId < parentDoc; childDocId = childDocs.nextDoc()) {
+                if (childCount == children.length) {
+                    children = ArrayUtil.grow(children, childCount + 1);
+                }
+                children[childCount++] = childDocId;
+            }
+            lastParentDoc = parentDoc;
+        }
     }
 
     @Override
@@ -98,7 +211,7 @@ public class NestedAggregator extends SingleBucketAggregator {
                 pipelineAggregators(), metaData());
     }
 
-        @Override
+    @Override
     public InternalAggregation buildEmptyAggregation() {
         return new InternalNested(name, 0, buildEmptySubAggregations(), pipelineAggregators(), metaData());
     }
@@ -48,9 +48,7 @@ public class NestedAggregatorFactory extends AggregatorFactory<NestedAggregatorF
     @Override
     public Aggregator createInternal(Aggregator parent, boolean collectsFromSingleBucket, List<PipelineAggregator> pipelineAggregators,
             Map<String, Object> metaData) throws IOException {
-        if (collectsFromSingleBucket == false) {
-            return asMultiBucketAggregator(this, context, parent);
-        }
+        // the aggregator collects from several buckets itself, see NestedAggregator.NestedLeafBucketCollector
         if (childObjectMapper == null) {
             return new Unmapped(name, context, parent, pipelineAggregators, metaData);
         }
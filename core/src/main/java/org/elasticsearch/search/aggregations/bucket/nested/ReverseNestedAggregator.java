@@ -30,6 +30,7 @@ import org.elasticsearch.common.lucene.search.Queries;
 import org.elasticsearch.index.mapper.ObjectMapper;
 import org.elasticsearch.search.aggregations.Aggregator;
 import org.elasticsearch.search.aggregations.AggregatorFactories;
+import org.elasticsearch.search.aggregations.BatchingLeafBucketCollector;
 import org.elasticsearch.search.aggregations.InternalAggregation;
 import org.elasticsearch.search.aggregations.LeafBucketCollector;
 import org.elasticsearch.search.aggregations.LeafBucketCollectorBase;
@@ -50,6 +51,9 @@ public class ReverseNestedAggregator extends SingleBucketAggregator {
 
     private final Query parentFilter;
     private final BitSetProducer parentBitsetProducer;
+    // buffers the parent docs and passes them on to the sub-aggregations in batches
+    private final BatchingLeafBucketCollector parentBatch =
+            new BatchingLeafBucketCollector(BatchingLeafBucketCollector.DEFAULT_BATCH_SIZE);
 
     public ReverseNestedAggregator(String name, AggregatorFactories factories, ObjectMapper objectMapper,
             SearchContext context, Aggregator parent, List<PipelineAggregator> pipelineAggregators, Map<String, Object> metaData)
@@ -71,6 +75,28 @@ public class ReverseNestedAggregator extends SingleBucketAggregator {
         if (parentDocs == null) {
             return LeafBucketCollector.NO_OP_COLLECTOR;
         }
+        // the scorer is on the child doc, so parents can only be buffered if the sub-aggregations don't need scores
+        final LeafBucketCollector parents;
+        if (needsScores()) {
+            parents = new LeafBucketCollector() {
+                @Override
+                public void collect(int doc, long bucket) throws IOException {
+                    collectBucket(sub, doc, bucket);
+                }
+            };
+        } else {
+            parents = parentBatch.reset(new LeafBucketCollector() {
+                @Override
+                public void collect(int doc, long bucket) throws IOException {
+                    collectBucket(sub, doc, bucket);
+                }
+
+                @Override
+                public void collect(int[] docs, long[] buckets, int count) throws IOException {
+                    collectBuckets(sub, docs, buckets, count);
+                }
+            });
+        }
         final LongIntHashMap bucketOrdToLastCollectedParentDoc = new LongIntHashMap(32);
         return new LeafBucketCollectorBase(sub, null) {
             @Override
@@ -83,17 +109,22 @@ public class ReverseNestedAggregator extends SingleBucketAggregator {
                 if (bucketOrdToLastCollectedParentDoc.indexExists(keySlot)) {
                     int lastCollectedParentDoc = bucketOrdToLastCollectedParentDoc.indexGet(keySlot);
                     if (parentDoc > lastCollectedParentDoc) {
-                        collectBucket(sub, parentDoc, bucket);
+                        parents.collect(parentDoc, bucket);
                         bucketOrdToLastCollectedParentDoc.indexReplace(keySlot, parentDoc);
                     }
                 } else {
-                    collectBucket(sub, parentDoc, bucket);
+                    parents.collect(parentDoc, bucket);
                     bucketOrdToLastCollectedParentDoc.indexInsert(keySlot, bucket, parentDoc);
                 }
             }
         };
     }
 
+    @Override
+    protected void doFinishLeaf() throws IOException {
+        parentBatch.flush();
+    }
+
     @Override
     public InternalAggregation buildAggregation(long owningBucketOrdinal) throws IOException {
         return new InternalReverseNested(name, bucketDocCount(owningBucketOrdinal), bucketAggregations(owningBucketOrdinal), pipelineAggregators(),
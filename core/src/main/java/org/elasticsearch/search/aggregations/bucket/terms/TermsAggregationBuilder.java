@@ -18,6 +18,7 @@
  */
 package org.elasticsearch.search.aggregations.bucket.terms;
 
+import org.elasticsearch.Version;
 import org.elasticsearch.common.ParseField;
 import org.elasticsearch.common.ParsingException;
 import org.elasticsearch.common.io.stream.StreamInput;
@@ -60,6 +61,7 @@ public class TermsAggregationBuilder extends ValuesSourceAggregationBuilder<Valu
             -1);
     public static final ParseField SHOW_TERM_DOC_COUNT_ERROR = new ParseField("show_term_doc_count_error");
     public static final ParseField ORDER_FIELD = new ParseField("order");
+    public static final ParseField REFINE_TOP_TERMS = new ParseField("refine_top_terms");
 
     private static final ObjectParser<TermsAggregationBuilder, QueryParseContext> PARSER;
     static {
@@ -71,6 +73,8 @@ public class TermsAggregationBuilder extends ValuesSourceAggregationBuilder<Valu
 
         PARSER.declareInt(TermsAggregationBuilder::shardSize, SHARD_SIZE_FIELD_NAME);
 
+        PARSER.declareBoolean(TermsAggregationBuilder::refineTopTerms, REFINE_TOP_TERMS);
+
         PARSER.declareLong(TermsAggregationBuilder::minDocCount, MIN_DOC_COUNT_FIELD_NAME);
 
         PARSER.declareLong(TermsAggregationBuilder::shardMinDocCount, SHARD_MIN_DOC_COUNT_FIELD_NAME);
@@ -104,6 +108,7 @@ public class TermsAggregationBuilder extends ValuesSourceAggregationBuilder<Valu
     private TermsAggregator.BucketCountThresholds bucketCountThresholds = new TermsAggregator.BucketCountThresholds(
             DEFAULT_BUCKET_COUNT_THRESHOLDS);
     private boolean showTermDocCountError = false;
+    private boolean refineTopTerms = false;
 
     public TermsAggregationBuilder(String name, ValueType valueType) {
         super(name, ValuesSourceType.ANY, valueType);
@@ -120,6 +125,9 @@ public class TermsAggregationBuilder extends ValuesSourceAggregationBuilder<Valu
         includeExclude = in.readOptionalWriteable(IncludeExclude::new);
         order = InternalOrder.Streams.readOrder(in);
         showTermDocCountError = in.readBoolean();
+        if (in.getVersion().onOrAfter(Version.V_5_5_2_UNRELEASED)) {
+            refineTopTerms = in.readBoolean();
+        }
     }
 
     @Override
@@ -135,6 +143,9 @@ public class TermsAggregationBuilder extends ValuesSourceAggregationBuilder<Valu
         out.writeOptionalWriteable(includeExclude);
         InternalOrder.Streams.writeOrder(order, out);
         out.writeBoolean(showTermDocCountError);
+        if (out.getVersion().onOrAfter(Version.V_5_5_2_UNRELEASED)) {
+            out.writeBoolean(refineTopTerms);
+        }
     }
 
     /**
@@ -286,6 +297,65 @@ public class TermsAggregationBuilder extends ValuesSourceAggregationBuilder<Valu
         return this;
     }
 
+    /**
+     * Get whether the coordinating node refines the top terms in additional rounds
+     */
+    public boolean refineTopTerms() {
+        return refineTopTerms;
+    }
+
+    /**
+     * Set whether the coordinating node refines the top terms in additional rounds, so that the returned terms and their
+     * counts are exact as long as the index does not change between rounds, which each search the latest refreshed view of
+     * the index. See {@link TermsRefinement}.
+     */
+    public TermsAggregationBuilder refineTopTerms(boolean refineTopTerms) {
+        this.refineTopTerms = refineTopTerms;
+        return this;
+    }
+
+    BucketCountThresholds bucketCountThresholds() {
+        return bucketCountThresholds;
+    }
+
+    /**
+     * Copies this aggregation, except for {@link #refineTopTerms()}, with or without its sub-aggregations.
+     */
+    TermsAggregationBuilder copy(boolean withSubAggregations) {
+        TermsAggregationBuilder copy = new TermsAggregationBuilder(name, targetValueType());
+        if (withSubAggregations) {
+            copy.subAggregations(factoriesBuilder);
+        }
+        if (metaData != null) {
+            copy.setMetaData(metaData);
+        }
+        if (field() != null) {
+            copy.field(field());
+        }
+        if (script() != null) {
+            copy.script(script());
+        }
+        if (valueType() != null) {
+            copy.valueType(valueType());
+        }
+        if (format() != null) {
+            copy.format(format());
+        }
+        if (missing() != null) {
+            copy.missing(missing());
+        }
+        if (timeZone() != null) {
+            copy.timeZone(timeZone());
+        }
+        copy.order = order;
+        copy.includeExclude = includeExclude;
+        copy.executionHint = executionHint;
+        copy.collectMode = collectMode;
+        copy.bucketCountThresholds = new BucketCountThresholds(bucketCountThresholds);
+        copy.showTermDocCountError = showTermDocCountError;
+        return copy;
+    }
+
     @Override
     protected ValuesSourceAggregatorFactory<ValuesSource, ?> innerBuild(SearchContext context, ValuesSourceConfig<ValuesSource> config,
             AggregatorFactory<?> parent, Builder subFactoriesBuilder) throws IOException {
@@ -297,6 +367,9 @@ public class TermsAggregationBuilder extends ValuesSourceAggregationBuilder<Valu
     protected XContentBuilder doXContentBody(XContentBuilder builder, Params params) throws IOException {
         bucketCountThresholds.toXContent(builder, params);
         builder.field(SHOW_TERM_DOC_COUNT_ERROR.getPreferredName(), showTermDocCountError);
+        if (refineTopTerms) {
+            builder.field(REFINE_TOP_TERMS.getPreferredName(), refineTopTerms);
+        }
         if (executionHint != null) {
             builder.field(TermsAggregationBuilder.EXECUTION_HINT_FIELD_NAME.getPreferredName(), executionHint);
         }
@@ -313,7 +386,8 @@ public class TermsAggregationBuilder extends ValuesSourceAggregationBuilder<Valu
 
     @Override
     protected int innerHashCode() {
-        return Objects.hash(bucketCountThresholds, collectMode, executionHint, includeExclude, order, showTermDocCountError);
+        return Objects.hash(bucketCountThresholds, collectMode, executionHint, includeExclude, order, showTermDocCountError,
+                refineTopTerms);
     }
 
     @Override
@@ -324,7 +398,8 @@ public class TermsAggregationBuilder extends ValuesSourceAggregationBuilder<Valu
                 && Objects.equals(executionHint, other.executionHint)
                 && Objects.equals(includeExclude, other.includeExclude)
                 && Objects.equals(order, other.order)
-                && Objects.equals(showTermDocCountError, other.showTermDocCountError);
+                && Objects.equals(showTermDocCountError, other.showTermDocCountError)
+                && Objects.equals(refineTopTerms, other.refineTopTerms);
     }
 
     @Override
@@ -42,6 +42,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.function.BiConsumer;
 
 public abstract class TermsAggregator extends BucketsAggregator {
 
@@ -171,6 +172,9 @@ public abstract class TermsAggregator extends BucketsAggregator {
     protected final Terms.Order order;
     protected final Set<Aggregator> aggsUsedForSorting = new HashSet<>();
     protected final SubAggCollectionMode collectMode;
+    // how the factory picked the execution mode of this aggregator, reported by the profile API
+    private String executionMode;
+    private String executionModeReason;
 
     public TermsAggregator(String name, AggregatorFactories factories, SearchContext context, Aggregator parent,
             BucketCountThresholds bucketCountThresholds, Terms.Order order, DocValueFormat format, SubAggCollectionMode collectMode,
@@ -201,4 +205,19 @@ public abstract class TermsAggregator extends BucketsAggregator {
                 && !aggsUsedForSorting.contains(aggregator);
     }
 
+    void setExecutionMode(TermsAggregatorFactory.ExecutionMode executionMode, String reason) {
+        this.executionMode = executionMode.toString();
+        this.executionModeReason = reason;
+    }
+
+    @Override
+    public void collectDebugInfo(BiConsumer<String, Object> add) {
+        super.collectDebugInfo(add);
+        if (executionMode != null) {
+            add.accept("execution_hint", executionMode);
+            add.accept("execution_hint_reason", executionModeReason);
+        }
+        add.accept("collect_mode", collectMode.parseField().getPreferredName());
+    }
+
 }
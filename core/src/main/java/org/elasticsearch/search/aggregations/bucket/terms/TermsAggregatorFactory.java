@@ -19,7 +19,13 @@
 
 package org.elasticsearch.search.aggregations.bucket.terms;
 
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScorerSupplier;
+import org.apache.lucene.search.Weight;
 import org.elasticsearch.common.ParseField;
 import org.elasticsearch.search.DocValueFormat;
 import org.elasticsearch.search.aggregations.AggregationExecutionException;
@@ -30,6 +36,7 @@ import org.elasticsearch.search.aggregations.AggregatorFactory;
 import org.elasticsearch.search.aggregations.InternalAggregation;
 import org.elasticsearch.search.aggregations.NonCollectingAggregator;
 import org.elasticsearch.search.aggregations.bucket.BucketUtils;
+import org.elasticsearch.search.aggregations.bucket.global.GlobalAggregatorFactory;
 import org.elasticsearch.search.aggregations.bucket.terms.TermsAggregator.BucketCountThresholds;
 import org.elasticsearch.search.aggregations.bucket.terms.support.IncludeExclude;
 import org.elasticsearch.search.aggregations.pipeline.PipelineAggregator;
@@ -109,20 +116,41 @@ public class TermsAggregatorFactory extends ValuesSourceAggregatorFactory<Values
         bucketCountThresholds.ensureValidity();
         if (valuesSource instanceof ValuesSource.Bytes) {
             ExecutionMode execution = null;
+            String executionReason = null;
             if (executionHint != null) {
                 execution = ExecutionMode.fromString(executionHint);
+                executionReason = "requested";
             }
 
             // In some cases, using ordinals is just not supported: override it
             if (!(valuesSource instanceof ValuesSource.Bytes.WithOrdinals)) {
                 execution = ExecutionMode.MAP;
+                executionReason = "values have no ordinals";
+            }
+
+            IndexSearcher indexSearcher = context.searcher();
+            long segmentValueCount = -1;
+            if (execution == null
+                    && ((ValuesSource.Bytes.WithOrdinals) valuesSource).isGlobalOrdinalsLoaded(indexSearcher) == false) {
+                // Building global ordinals merges the terms of all segments, which may cost more than hashing the terms of the
+                // documents that the query matches, for instance on an index that has just been refreshed
+                ValuesSource.Bytes.WithOrdinals valueSourceWithOrdinals = (ValuesSource.Bytes.WithOrdinals) valuesSource;
+                segmentValueCount = 0;
+                for (LeafReaderContext ctx : indexSearcher.getIndexReader().leaves()) {
+                    segmentValueCount += valueSourceWithOrdinals.ordinalsValues(ctx).getValueCount();
+                }
+                final long estimatedDocCount = estimateCollectedDocCount();
+                if (estimatedDocCount < segmentValueCount) {
+                    execution = ExecutionMode.MAP;
+                    executionReason = "global ordinals are not loaded and building them for [" + segmentValueCount
+                        + "] segment terms costs more than hashing the terms of about [" + estimatedDocCount + "] matching documents";
+                }
             }
 
             final long maxOrd;
             final double ratio;
             if (execution == null || execution.needsGlobalOrdinals()) {
                 ValuesSource.Bytes.WithOrdinals valueSourceWithOrdinals = (ValuesSource.Bytes.WithOrdinals) valuesSource;
-                IndexSearcher indexSearcher = context.searcher();
                 maxOrd = valueSourceWithOrdinals.globalMaxOrd(indexSearcher);
                 ratio = maxOrd / ((double) indexSearcher.getIndexReader().numDocs());
             } else {
@@ -139,9 +167,12 @@ public class TermsAggregatorFactory extends ValuesSourceAggregatorFactory<Values
                 // global ordinals to keep the bucket ords dense.
                 // Additionally, if using partitioned terms the regular global
                 // ordinals would be sparse so we opt for hash
-                if (Aggregator.descendsFromBucketAggregator(parent) ||
-                        (includeExclude != null && includeExclude.isPartitionBased())) {
+                if (Aggregator.descendsFromBucketAggregator(parent)) {
+                    execution = ExecutionMode.GLOBAL_ORDINALS_HASH;
+                    executionReason = "under a bucket aggregation";
+                } else if (includeExclude != null && includeExclude.isPartitionBased()) {
                     execution = ExecutionMode.GLOBAL_ORDINALS_HASH;
+                    executionReason = "partitioned terms";
                 } else {
                     if (factories == AggregatorFactories.EMPTY) {
                         if (ratio <= 0.5 && maxOrd <= 2048) {
@@ -151,11 +182,16 @@ public class TermsAggregatorFactory extends ValuesSourceAggregatorFactory<Values
                             // additional memory usage, which directly linked to
                             // maxOrd, so we need to limit.
                             execution = ExecutionMode.GLOBAL_ORDINALS_LOW_CARDINALITY;
+                            executionReason = "[" + maxOrd + "] terms for [" + indexSearcher.getIndexReader().numDocs() + "] documents";
                         } else {
                             execution = ExecutionMode.GLOBAL_ORDINALS;
+                            executionReason = segmentValueCount == -1 ? "global ordinals are loaded"
+                                : "building global ordinals for [" + segmentValueCount + "] segment terms is cheaper than hashing terms";
                         }
                     } else {
                         execution = ExecutionMode.GLOBAL_ORDINALS;
+                        executionReason = segmentValueCount == -1 ? "global ordinals are loaded"
+                            : "building global ordinals for [" + segmentValueCount + "] segment terms is cheaper than hashing terms";
                     }
                 }
             }
@@ -163,7 +199,8 @@ public class TermsAggregatorFactory extends ValuesSourceAggregatorFactory<Values
             if (cm == null) {
                 cm = SubAggCollectionMode.DEPTH_FIRST;
                 if (factories != AggregatorFactories.EMPTY) {
-                    cm = subAggCollectionMode(bucketCountThresholds.getShardSize(), maxOrd);
+                    // the number of terms in all segments is an upper bound of the number of unique terms
+                    cm = subAggCollectionMode(bucketCountThresholds.getShardSize(), maxOrd != -1 ? maxOrd : segmentValueCount);
                 }
             }
 
@@ -173,8 +210,10 @@ public class TermsAggregatorFactory extends ValuesSourceAggregatorFactory<Values
                         + "settings as they can only be applied to string fields. Use an array of values for include/exclude clauses");
             }
 
-            return execution.create(name, factories, valuesSource, order, format, bucketCountThresholds, includeExclude, context, parent,
-                    cm, showTermDocCountError, pipelineAggregators, metaData);
+            final Aggregator aggregator = execution.create(name, factories, valuesSource, order, format, bucketCountThresholds,
+                    includeExclude, context, parent, cm, showTermDocCountError, pipelineAggregators, metaData);
+            ((TermsAggregator) aggregator).setExecutionMode(execution, executionReason);
+            return aggregator;
         }
 
         if ((includeExclude != null) && (includeExclude.isRegexBased())) {
@@ -212,6 +251,34 @@ public class TermsAggregatorFactory extends ValuesSourceAggregatorFactory<Values
                 + "]. It can only be applied to numeric or string fields.");
     }
 
+    /**
+     * Estimates how many documents this aggregation is going to collect, from the cost of the query. Aggregations under a
+     * {@code global} aggregation collect all documents.
+     */
+    private long estimateCollectedDocCount() throws IOException {
+        final IndexReader indexReader = context.searcher().getIndexReader();
+        final Query query = context.query();
+        boolean global = false;
+        for (AggregatorFactory<?> factory = parent; factory != null; factory = factory.getParent()) {
+            global |= factory instanceof GlobalAggregatorFactory;
+        }
+        if (global || query == null || query instanceof MatchAllDocsQuery) {
+            return indexReader.numDocs();
+        }
+        // a plain searcher, so that the estimation neither shows up in the profile nor fills the query cache
+        final IndexSearcher searcher = new IndexSearcher(indexReader);
+        searcher.setQueryCache(null);
+        final Weight weight = searcher.createNormalizedWeight(query, false);
+        long cost = 0;
+        for (LeafReaderContext ctx : indexReader.leaves()) {
+            final ScorerSupplier scorerSupplier = weight.scorerSupplier(ctx);
+            if (scorerSupplier != null) {
+                cost += scorerSupplier.cost();
+            }
+        }
+        return Math.min(cost, indexReader.numDocs());
+    }
+
     // return the SubAggCollectionMode that this aggregation should use based on the expected size
     // and the cardinality of the field
     static SubAggCollectionMode subAggCollectionMode(int expectedSize, long maxOrd) {
@@ -0,0 +1,272 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.aggregations.bucket.terms;
+
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.search.DocValueFormat;
+import org.elasticsearch.search.aggregations.Aggregation;
+import org.elasticsearch.search.aggregations.AggregationBuilder;
+import org.elasticsearch.search.aggregations.AggregatorFactories;
+import org.elasticsearch.search.aggregations.InternalAggregation;
+import org.elasticsearch.search.aggregations.InternalAggregations;
+import org.elasticsearch.search.aggregations.bucket.terms.support.IncludeExclude;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Computes the exact top terms of the top-level terms aggregations of a search request that {@link
+ * TermsAggregationBuilder#refineTopTerms() refine their top terms}, in several rounds that the coordinating node runs one after
+ * the other.
+ * <p>
+ * The first rounds only count terms: the shards return their top {@code shard_size} terms, without sub-aggregations, and the
+ * coordinating node looks at the {@code doc_count_error_upper_bound} of the reduced terms. If no term that the shards did not
+ * return may have as many documents as the last of the top {@code size} terms, the terms whose upper bound reaches it are the
+ * only candidates, and the last round fetches their exact counts and sub-aggregations from all shards. Otherwise counting starts
+ * over with a twice larger {@code shard_size}, up to {@link #MAX_COUNTING_ROUNDS} times, after which the last round runs the
+ * aggregation as usual with the last {@code shard_size}, and reports its error bounds.
+ * <p>
+ * The first round also runs the rest of the search request, so that its hits and its other aggregations are the ones of the
+ * response, while the next rounds only run the aggregations that still need to be refined.
+ * <p>
+ * Rounds are not point-in-time consistent: each one searches the latest refreshed view of the index, so documents that are
+ * indexed, updated or deleted between rounds may make the last round disagree with the counting rounds, and the returned
+ * terms are then not guaranteed to be the exact top terms.
+ */
+public final class TermsRefinement {
+
+    static final int MAX_COUNTING_ROUNDS = 3;
+
+    private final SearchSourceBuilder source;
+    // the aggregations to refine, by name
+    private final Map<String, TermsAggregationBuilder> refined = new LinkedHashMap<>();
+    // the shard size of the next counting round of the aggregations that still need one
+    private final Map<String, Integer> shardSizes = new LinkedHashMap<>();
+    private final Map<String, TermsAggregationBuilder> lastRound = new LinkedHashMap<>();
+    private int countingRounds = 0;
+
+    private TermsRefinement(SearchSourceBuilder source) {
+        this.source = source;
+    }
+
+    /**
+     * Returns how to refine the top terms of the given search source, or {@code null} if none of its aggregations needs it.
+     */
+    public static TermsRefinement create(SearchSourceBuilder source) {
+        if (source == null || source.aggregations() == null
+                // sibling pipeline aggregations would see the terms of the first round
+                || source.aggregations().getPipelineAggregatorFactories().isEmpty() == false) {
+            return null;
+        }
+        TermsRefinement refinement = new TermsRefinement(source);
+        for (AggregationBuilder aggregation : source.aggregations().getAggregatorFactories()) {
+            if (aggregation instanceof TermsAggregationBuilder && canRefine((TermsAggregationBuilder) aggregation)) {
+                TermsAggregationBuilder terms = (TermsAggregationBuilder) aggregation;
+                refinement.refined.put(terms.getName(), terms);
+                int shardSize = terms.bucketCountThresholds().getShardSize();
+                int size = terms.bucketCountThresholds().getRequiredSize();
+                refinement.shardSizes.put(terms.getName(), shardSize < size ? size : shardSize);
+            }
+        }
+        return refinement.refined.isEmpty() ? null : refinement;
+    }
+
+    private static boolean canRefine(TermsAggregationBuilder terms) {
+        // the error bounds are only known when sorting by descending count
+        return terms.refineTopTerms()
+            && InternalOrder.isCountDesc(terms.order())
+            && terms.bucketCountThresholds().getMinDocCount() > 0
+            && (terms.includeExclude() == null || terms.includeExclude().isPartitionBased() == false);
+    }
+
+    /**
+     * The search source of the first round, that counts the terms of the refined aggregations, and runs everything else.
+     */
+    public SearchSourceBuilder firstRound() {
+        AggregatorFactories.Builder aggregations = new AggregatorFactories.Builder();
+        for (AggregationBuilder aggregation : source.aggregations().getAggregatorFactories()) {
+            String name = aggregation.getName();
+            aggregations.addAggregator(refined.containsKey(name) ? counting(refined.get(name), shardSizes.get(name)) : aggregation);
+        }
+        countingRounds++;
+        return source.copyWithNewAggregations(aggregations);
+    }
+
+    /**
+     * Whether some aggregations need another counting round, see {@link #countingRound()}.
+     */
+    public boolean needsCountingRound() {
+        return shardSizes.isEmpty() == false;
+    }
+
+    /**
+     * The search source of the next counting round of the aggregations that need one.
+     */
+    public SearchSourceBuilder countingRound() {
+        assert needsCountingRound();
+        AggregatorFactories.Builder aggregations = new AggregatorFactories.Builder();
+        for (Map.Entry<String, Integer> entry : shardSizes.entrySet()) {
+            aggregations.addAggregator(counting(refined.get(entry.getKey()), entry.getValue()));
+        }
+        countingRounds++;
+        return aggregationsOnly(aggregations);
+    }
+
+    /**
+     * Looks at the terms that a counting round returned and decides about the next round of each aggregation.
+     */
+    public void onCountingRound(InternalAggregations aggregations) {
+        for (String name : new ArrayList<>(shardSizes.keySet())) {
+            TermsAggregationBuilder terms = refined.get(name);
+            int shardSize = shardSizes.get(name);
+            Aggregation result = aggregations == null ? null : aggregations.get(name);
+            SortedSet<BytesRef> candidates = null;
+            if (result instanceof InternalTerms) {
+                candidates = candidates((InternalTerms<?, ?>) result, terms.bucketCountThresholds().getRequiredSize(), shardSize);
+            }
+            if (candidates != null && candidates.isEmpty() == false) {
+                // one more than the candidates, so that the shards do not report any error
+                TermsAggregationBuilder exact = lastRound(terms, candidates.size() + 1);
+                exact.includeExclude(new IncludeExclude(candidates, null));
+                lastRound.put(name, exact);
+                shardSizes.remove(name);
+            } else if (candidates == null && countingRounds < MAX_COUNTING_ROUNDS && shardSize <= Integer.MAX_VALUE / 2) {
+                shardSizes.put(name, shardSize * 2);
+            } else {
+                lastRound.put(name, lastRound(terms, shardSize));
+                shardSizes.remove(name);
+            }
+        }
+    }
+
+    /**
+     * The search source of the last round, that runs the refined aggregations on their candidate terms.
+     */
+    public SearchSourceBuilder lastRound() {
+        assert needsCountingRound() == false;
+        AggregatorFactories.Builder aggregations = new AggregatorFactories.Builder();
+        for (TermsAggregationBuilder terms : lastRound.values()) {
+            aggregations.addAggregator(terms);
+        }
+        return aggregationsOnly(aggregations);
+    }
+
+    /**
+     * Replaces the refined aggregations of the first round with the ones of the last round.
+     */
+    public InternalAggregations merge(InternalAggregations firstRound, InternalAggregations lastRound) {
+        if (firstRound == null || lastRound == null) {
+            return firstRound;
+        }
+        List<InternalAggregation> aggregations = new ArrayList<>();
+        for (Aggregation aggregation : firstRound) {
+            InternalAggregation refinedAggregation = lastRound.get(aggregation.getName());
+            aggregations.add(refinedAggregation == null ? (InternalAggregation) aggregation : refinedAggregation);
+        }
+        return new InternalAggregations(aggregations);
+    }
+
+    private static TermsAggregationBuilder counting(TermsAggregationBuilder terms, int shardSize) {
+        TermsAggregationBuilder counting = terms.copy(false);
+        counting.size(shardSize);
+        counting.shardSize(shardSize);
+        // terms that are too rare to be returned may still be candidates
+        counting.minDocCount(1);
+        counting.shardMinDocCount(0);
+        counting.showTermDocCountError(true);
+        return counting;
+    }
+
+    private static TermsAggregationBuilder lastRound(TermsAggregationBuilder terms, int shardSize) {
+        TermsAggregationBuilder lastRound = terms.copy(true);
+        lastRound.shardSize(shardSize);
+        // shards must return the terms that are rare on them too, or their counts are not exact
+        lastRound.shardMinDocCount(0);
+        return lastRound;
+    }
+
+    private SearchSourceBuilder aggregationsOnly(AggregatorFactories.Builder aggregations) {
+        return source.copyWithNewAggregations(aggregations).size(0).suggest(null).highlighter(null).profile(false);
+    }
+
+    /**
+     * Returns the terms that may be in the top {@code size} terms, or {@code null} if the shards may not have returned all of them.
+     */
+    static SortedSet<BytesRef> candidates(InternalTerms<?, ?> terms, int size, int shardSize) {
+        final List<? extends InternalTerms.Bucket<?>> buckets = terms.getBuckets();
+        final long docCountError = terms.getDocCountError();
+        if (docCountError < 0) {
+            return null;
+        }
+        final long minTopDocCount;
+        if (buckets.size() < size) {
+            if (docCountError > 0) {
+                // any term that no shard returned may be in the top terms
+                return null;
+            }
+            minTopDocCount = 0;
+        } else {
+            minTopDocCount = buckets.get(size - 1).docCount;
+            // a term that no shard returned has at most docCountError documents, and so does a term that the reduction dropped on
+            // top of the count of the last term that it kept
+            long maxOtherDocCount = docCountError;
+            if (buckets.size() >= shardSize) {
+                maxOtherDocCount += buckets.get(buckets.size() - 1).docCount;
+            }
+            if (maxOtherDocCount >= minTopDocCount) {
+                return null;
+            }
+        }
+        final SortedSet<BytesRef> candidates = new TreeSet<>();
+        for (InternalTerms.Bucket<?> bucket : buckets) {
+            if (bucket.docCountError < 0) {
+                return null;
+            }
+            if (bucket.docCount + bucket.docCountError >= minTopDocCount) {
+                BytesRef term = term(bucket);
+                if (term == null) {
+                    return null;
+                }
+                candidates.add(term);
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Returns the term of the given bucket in a form that {@link IncludeExclude} parses back to the same term.
+     */
+    private static BytesRef term(InternalTerms.Bucket<?> bucket) {
+        if (bucket instanceof StringTerms.Bucket) {
+            return bucket.format == DocValueFormat.RAW ? ((StringTerms.Bucket) bucket).termBytes : new BytesRef(bucket.getKeyAsString());
+        } else if (bucket instanceof DoubleTerms.Bucket) {
+            return new BytesRef(bucket.getKey().toString());
+        } else if (bucket instanceof LongTerms.Bucket && bucket.format == DocValueFormat.RAW) {
+            return new BytesRef(bucket.getKey().toString());
+        }
+        // other formats, like dates, may not parse back to the same value
+        return null;
+    }
+}
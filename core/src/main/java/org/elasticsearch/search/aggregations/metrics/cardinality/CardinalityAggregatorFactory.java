@@ -52,7 +52,17 @@ public class CardinalityAggregatorFactory extends ValuesSourceAggregatorFactory<
     @Override
     protected Aggregator doCreateInternal(ValuesSource valuesSource, Aggregator parent, boolean collectsFromSingleBucket,
             List<PipelineAggregator> pipelineAggregators, Map<String, Object> metaData) throws IOException {
-        return new CardinalityAggregator(name, valuesSource, precision(), context, parent, pipelineAggregators,
+        final int precision = precision();
+        if (collectsFromSingleBucket == false && valuesSource instanceof ValuesSource.Bytes.WithOrdinals) {
+            // many buckets on a field with few unique values, collect the global ordinals and only hash the values once
+            final ValuesSource.Bytes.WithOrdinals ordinalsSource = (ValuesSource.Bytes.WithOrdinals) valuesSource;
+            final long maxOrd = ordinalsSource.globalMaxOrd(context.searcher());
+            if (GlobalOrdCardinalityAggregator.useGlobalOrdinals(maxOrd, precision)) {
+                return new GlobalOrdCardinalityAggregator(name, ordinalsSource, maxOrd, precision, context, parent,
+                    pipelineAggregators, metaData);
+            }
+        }
+        return new CardinalityAggregator(name, valuesSource, precision, context, parent, pipelineAggregators,
                 metaData);
     }
 
@@ -0,0 +1,334 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.aggregations.metrics.cardinality;
+
+import com.carrotsearch.hppc.BitMixer;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.RandomAccessOrds;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.FixedBitSet;
+import org.elasticsearch.common.hash.MurmurHash3;
+import org.elasticsearch.common.lease.Releasables;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.common.util.IntArray;
+import org.elasticsearch.common.util.LongArray;
+import org.elasticsearch.common.util.ObjectArray;
+import org.elasticsearch.search.aggregations.Aggregator;
+import org.elasticsearch.search.aggregations.InternalAggregation;
+import org.elasticsearch.search.aggregations.LeafBucketCollector;
+import org.elasticsearch.search.aggregations.metrics.NumericMetricsAggregator;
+import org.elasticsearch.search.aggregations.pipeline.PipelineAggregator;
+import org.elasticsearch.search.aggregations.support.ValuesSource;
+import org.elasticsearch.search.internal.SearchContext;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+/**
+ * A cardinality aggregator for fields that have global ordinals and few unique values, typically under a bucket aggregation that
+ * creates many buckets. It collects the global ordinals of each bucket and only hashes the values when the aggregation is built,
+ * so that each unique value is hashed once whatever the number of buckets it appears in. Like the HyperLogLog++ counters, the
+ * ordinals of a bucket start in a small hash table that grows with the number of unique values of the bucket, and only move to a
+ * bit set over all global ordinals once the table would take more memory than the bit set. The result that is sent to the
+ * coordinating node holds HyperLogLog++ counters, like the ones of {@link CardinalityAggregator}, so that they can be merged with
+ * the results of the other shards.
+ */
+public class GlobalOrdCardinalityAggregator extends NumericMetricsAggregator.SingleValue {
+
+    private static final int INITIAL_CAPACITY = 8;
+    private static final float MAX_LOAD_FACTOR = 0.75f;
+
+    /**
+     * Whether the bit set of the global ordinals of a bucket takes less than a quarter of the memory of the HyperLogLog++
+     * registers of the bucket, the same trade-off as {@link CardinalityAggregator} makes for segment ordinals. This bounds the
+     * memory of the buckets that see many values, the ones that see few values stay in small hash tables.
+     */
+    static boolean useGlobalOrdinals(long maxOrd, int precision) {
+        return maxOrd > 0 && maxOrd <= Integer.MAX_VALUE && (maxOrd + 7) / 8 < HyperLogLogPlusPlus.memoryUsage(precision) / 4;
+    }
+
+    private final int precision;
+    private final ValuesSource.Bytes.WithOrdinals valuesSource;
+    private final BigArrays bigArrays;
+    private final int maxOrd;
+    private final int wordsPerBucket;
+    // hash tables of the global ordinals (plus one, so that 0 means unused) that each bucket has seen, while they are few
+    private ObjectArray<IntArray> sparseOrds;
+    private IntArray sparseSizes;
+    // bit sets of the global ordinals of the buckets whose hash table outgrew the bit set
+    private ObjectArray<LongArray> denseOrds;
+    // lazily computed hashes of the values of all visited global ordinals
+    private LongArray hashes;
+    // lazily computed cardinalities of the buckets, plus one so that 0 means not computed yet
+    private LongArray cardinalities;
+
+    GlobalOrdCardinalityAggregator(String name, ValuesSource.Bytes.WithOrdinals valuesSource, long maxOrd, int precision,
+                                   SearchContext context, Aggregator parent, List<PipelineAggregator> pipelineAggregators,
+                                   Map<String, Object> metaData) throws IOException {
+        super(name, context, parent, pipelineAggregators, metaData);
+        assert useGlobalOrdinals(maxOrd, precision);
+        this.valuesSource = valuesSource;
+        this.precision = precision;
+        this.bigArrays = context.bigArrays();
+        this.maxOrd = (int) maxOrd;
+        this.wordsPerBucket = FixedBitSet.bits2words(this.maxOrd);
+        boolean success = false;
+        try {
+            this.sparseOrds = bigArrays.newObjectArray(1);
+            this.sparseSizes = bigArrays.newIntArray(1);
+            this.denseOrds = bigArrays.newObjectArray(1);
+            success = true;
+        } finally {
+            if (success == false) {
+                Releasables.close(sparseOrds, sparseSizes, denseOrds);
+            }
+        }
+    }
+
+    @Override
+    public boolean needsScores() {
+        return false;
+    }
+
+    @Override
+    public LeafBucketCollector getLeafCollector(LeafReaderContext ctx, LeafBucketCollector sub) throws IOException {
+        final RandomAccessOrds globalOrds = valuesSource.globalOrdinalsValues(ctx);
+        final SortedDocValues singleValues = DocValues.unwrapSingleton(globalOrds);
+        if (singleValues != null) {
+            return new LeafBucketCollector() {
+                @Override
+                public void collect(int doc, long bucket) {
+                    final int ord = singleValues.getOrd(doc);
+                    if (ord >= 0) {
+                        visit(bucket, ord);
+                    }
+                }
+            };
+        }
+        return new LeafBucketCollector() {
+            @Override
+            public void collect(int doc, long bucket) {
+                globalOrds.setDocument(doc);
+                final int numOrds = globalOrds.cardinality();
+                for (int i = 0; i < numOrds; i++) {
+                    visit(bucket, (int) globalOrds.ordAt(i));
+                }
+            }
+        };
+    }
+
+    private void visit(long bucket, int ord) {
+        if (bucket < denseOrds.size()) {
+            final LongArray bits = denseOrds.get(bucket);
+            if (bits != null) {
+                setBit(bits, ord);
+                return;
+            }
+        }
+        sparseOrds = bigArrays.grow(sparseOrds, bucket + 1);
+        sparseSizes = bigArrays.grow(sparseSizes, bucket + 1);
+        IntArray table = sparseOrds.get(bucket);
+        final long capacity = table == null ? INITIAL_CAPACITY
+            : sparseSizes.get(bucket) >= table.size() * MAX_LOAD_FACTOR ? table.size() * 2 : table.size();
+        if (capacity * Integer.BYTES > (long) wordsPerBucket * Long.BYTES) {
+            // the hash table would take more memory than the bit set
+            setBit(toDense(bucket, table), ord);
+            return;
+        }
+        if (table == null) {
+            table = bigArrays.newIntArray(capacity);
+            sparseOrds.set(bucket, table);
+        } else if (capacity > table.size()) {
+            table = resize(table, capacity);
+            sparseOrds.set(bucket, table);
+        }
+        if (insert(table, ord + 1)) {
+            sparseSizes.increment(bucket, 1);
+        }
+    }
+
+    private static void setBit(LongArray bits, int ord) {
+        final long word = ord >>> 6;
+        bits.set(word, bits.get(word) | (1L << ord));
+    }
+
+    private static boolean insert(IntArray table, int k) {
+        final int mask = (int) table.size() - 1;
+        for (int i = BitMixer.mix32(k) & mask; ; i = (i + 1) & mask) {
+            final int v = table.get(i);
+            if (v == 0) {
+                table.set(i, k);
+                return true;
+            } else if (v == k) {
+                return false;
+            }
+        }
+    }
+
+    private IntArray resize(IntArray table, long capacity) {
+        final IntArray newTable = bigArrays.newIntArray(capacity);
+        for (long i = 0; i < table.size(); ++i) {
+            final int k = table.get(i);
+            if (k != 0) {
+                insert(newTable, k);
+            }
+        }
+        Releasables.close(table);
+        return newTable;
+    }
+
+    private LongArray toDense(long bucket, IntArray table) {
+        denseOrds = bigArrays.grow(denseOrds, bucket + 1);
+        final LongArray bits = bigArrays.newLongArray(wordsPerBucket);
+        denseOrds.set(bucket, bits);
+        if (table != null) {
+            for (long i = 0; i < table.size(); ++i) {
+                final int k = table.get(i);
+                if (k != 0) {
+                    setBit(bits, k - 1);
+                }
+            }
+            sparseOrds.set(bucket, null);
+            sparseSizes.set(bucket, 0);
+            Releasables.close(table);
+        }
+        return bits;
+    }
+
+    /**
+     * Calls the consumer with each global ordinal that the bucket has seen.
+     */
+    private void forEachOrd(long bucket, IntConsumer consumer) {
+        final LongArray bits = bucket < denseOrds.size() ? denseOrds.get(bucket) : null;
+        if (bits != null) {
+            for (int i = 0; i < wordsPerBucket; i++) {
+                long word = bits.get(i);
+                while (word != 0) {
+                    consumer.accept((i << 6) + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            return;
+        }
+        final IntArray table = bucket < sparseOrds.size() ? sparseOrds.get(bucket) : null;
+        if (table != null) {
+            for (long i = 0; i < table.size(); ++i) {
+                final int k = table.get(i);
+                if (k != 0) {
+                    consumer.accept(k - 1);
+                }
+            }
+        }
+    }
+
+    private long numBuckets() {
+        return Math.max(sparseOrds.size(), denseOrds.size());
+    }
+
+    @Override
+    public double metric(long owningBucketOrd) {
+        if (owningBucketOrd >= numBuckets()) {
+            return 0;
+        }
+        // the value used for ordering is the one that gets reported, not the exact count of the bucket's ordinals
+        if (cardinalities == null) {
+            cardinalities = bigArrays.newLongArray(numBuckets());
+        }
+        long cardinality = cardinalities.get(owningBucketOrd) - 1;
+        if (cardinality < 0) {
+            try (HyperLogLogPlusPlus counts = counts(owningBucketOrd, bigArrays)) {
+                cardinality = counts.cardinality(0);
+            }
+            cardinalities.set(owningBucketOrd, cardinality + 1);
+        }
+        return cardinality;
+    }
+
+    @Override
+    public InternalAggregation buildAggregation(long owningBucketOrdinal) throws IOException {
+        if (metric(owningBucketOrdinal) == 0) {
+            return buildEmptyAggregation();
+        }
+        // like CardinalityAggregator, the returned aggregation needs to remain usable after this aggregator is released
+        final HyperLogLogPlusPlus counts = counts(owningBucketOrdinal, BigArrays.NON_RECYCLING_INSTANCE);
+        return new InternalCardinality(name, counts, pipelineAggregators(), metaData());
+    }
+
+    /**
+     * Collects the hashes of the values that the bucket has seen into a new HyperLogLog++ counter.
+     */
+    private HyperLogLogPlusPlus counts(long bucket, BigArrays countsBigArrays) {
+        if (hashes == null) {
+            hashes = computeHashes();
+        }
+        final HyperLogLogPlusPlus counts = new HyperLogLogPlusPlus(precision, countsBigArrays, 1);
+        forEachOrd(bucket, ord -> counts.collect(0, hashes.get(ord)));
+        return counts;
+    }
+
+    /**
+     * Hashes the values of the global ordinals that at least one bucket has seen, the same way as {@link CardinalityAggregator}.
+     */
+    private LongArray computeHashes() {
+        final RandomAccessOrds globalOrds = valuesSource.globalOrdinalsValues(context.searcher().getIndexReader().leaves().get(0));
+        final LongArray hashes = bigArrays.newLongArray(maxOrd, false);
+        boolean success = false;
+        try {
+            final FixedBitSet allVisitedOrds = new FixedBitSet(maxOrd);
+            for (long bucket = 0; bucket < numBuckets(); bucket++) {
+                forEachOrd(bucket, allVisitedOrds::set);
+            }
+            final MurmurHash3.Hash128 hash = new MurmurHash3.Hash128();
+            for (int ord = allVisitedOrds.nextSetBit(0); ord != DocIdSetIterator.NO_MORE_DOCS;
+                    ord = ord + 1 < maxOrd ? allVisitedOrds.nextSetBit(ord + 1) : DocIdSetIterator.NO_MORE_DOCS) {
+                final BytesRef value = globalOrds.lookupOrd(ord);
+                MurmurHash3.hash128(value.bytes, value.offset, value.length, 0, hash);
+                hashes.set(ord, hash.h1);
+            }
+            success = true;
+            return hashes;
+        } finally {
+            if (success == false) {
+                Releasables.close(hashes);
+            }
+        }
+    }
+
+    @Override
+    public InternalAggregation buildEmptyAggregation() {
+        return new InternalCardinality(name, null, pipelineAggregators(), metaData());
+    }
+
+    @Override
+    protected void doClose() {
+        for (long i = 0; i < sparseOrds.size(); ++i) {
+            Releasables.close(sparseOrds.get(i));
+        }
+        for (long i = 0; i < denseOrds.size(); ++i) {
+            Releasables.close(denseOrds.get(i));
+        }
+        Releasables.close(sparseOrds, sparseSizes, denseOrds, hashes, cardinalities);
+    }
+}
@@ -19,21 +19,21 @@
 
 package org.elasticsearch.search.aggregations.metrics.cardinality;
 
-import org.apache.lucene.util.BytesRef;
+import com.carrotsearch.hppc.BitMixer;
 import org.apache.lucene.util.LongBitSet;
 import org.apache.lucene.util.packed.PackedInts;
+import org.elasticsearch.Version;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.lease.Releasable;
 import org.elasticsearch.common.lease.Releasables;
 import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.common.util.ByteArray;
-import org.elasticsearch.common.util.ByteUtils;
 import org.elasticsearch.common.util.IntArray;
+import org.elasticsearch.common.util.ObjectArray;
 
 import java.io.IOException;
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
+import java.util.Arrays;
 
 /**
  * Hyperloglog++ counter, implemented based on pseudo code from
@@ -46,6 +46,12 @@ import java.nio.ByteOrder;
  * requires more space and makes hyperloglog (which is less accurate) used sooner,
  * this is also considerably faster.
  *
+ * Buckets start with the sparse representation: a hash table of encoded hashes
+ * that grows with the number of distinct values. They only get the dense array
+ * of registers of hyperloglog once the table would take about as much memory, so
+ * that many buckets that only see a few values each, like the ones of a terms
+ * aggregation on a high cardinality field, stay cheap.
+ *
  * Trying to understand what this class does without having read the paper is
  * considered adventurous.
  */
@@ -152,7 +158,11 @@ public final class HyperLogLogPlusPlus implements Releasable {
 
     private final BigArrays bigArrays;
     private final OpenBitSet algorithm;
+    // the registers of the buckets that use hyperloglog, one slot of m registers per bucket in the order the buckets got upgraded
     private ByteArray runLens;
+    // the slot of each bucket in runLens, plus one so that 0 means that the bucket has no registers
+    private IntArray registerSlots;
+    private int numRegisterSlots;
     private final Hashset hashSet;
     private final int p, m;
     private final double alphaMM;
@@ -168,7 +178,8 @@ public final class HyperLogLogPlusPlus implements Releasable {
         m = 1 << p;
         this.bigArrays = bigArrays;
         algorithm = new OpenBitSet();
-        runLens = bigArrays.newByteArray(initialBucketCount << p);
+        runLens = bigArrays.newByteArray(0);
+        registerSlots = bigArrays.newIntArray(initialBucketCount);
         hashSet = new Hashset(initialBucketCount);
         final double alpha;
         switch (p) {
@@ -190,11 +201,20 @@ public final class HyperLogLogPlusPlus implements Releasable {
     }
 
     public long maxBucket() {
-        return runLens.size() >>> p;
+        return registerSlots.size();
     }
 
     private void ensureCapacity(long numBuckets) {
-        runLens = bigArrays.grow(runLens, numBuckets << p);
+        registerSlots = bigArrays.grow(registerSlots, numBuckets);
+    }
+
+    /**
+     * Returns the index of the first register of the given bucket, which must use hyperloglog.
+     */
+    private long registersStart(long bucket) {
+        final int slot = registerSlots.get(bucket) - 1;
+        assert slot >= 0 : "bucket [" + bucket + "] has no registers";
+        return (long) slot << p;
     }
 
     public void merge(long thisBucket, HyperLogLogPlusPlus other, long otherBucket) {
@@ -220,8 +240,8 @@ public final class HyperLogLogPlusPlus implements Releasable {
             if (algorithm.get(thisBucket) != HYPERLOGLOG) {
                 upgradeToHll(thisBucket);
             }
-            final long thisStart = thisBucket << p;
-            final long otherStart = otherBucket << p;
+            final long thisStart = registersStart(thisBucket);
+            final long otherStart = other.registersStart(otherBucket);
             for (int i = 0; i < m; ++i) {
                 runLens.set(thisStart + i, (byte) Math.max(runLens.get(thisStart + i), other.runLens.get(otherStart + i)));
             }
@@ -262,7 +282,7 @@ public final class HyperLogLogPlusPlus implements Releasable {
     }
 
     private void collectHll(long bucket, long index, int runLen) {
-        final long bucketIndex = (bucket << p) + index;
+        final long bucketIndex = registersStart(bucket) + index;
         runLens.set(bucketIndex, (byte) Math.max(runLen, runLens.get(bucketIndex)));
     }
 
@@ -283,7 +303,7 @@ public final class HyperLogLogPlusPlus implements Releasable {
     private long cardinalityHll(long bucket) {
         double inverseSum = 0;
         int zeros = 0;
-        for (long i = bucket << p, end = i + m; i < end; ++i) {
+        for (long i = registersStart(bucket), end = i + m; i < end; ++i) {
             final int runLen = runLens.get(i);
             inverseSum += 1. / (1L << runLen);
             if (runLen == 0) {
@@ -306,15 +326,20 @@ public final class HyperLogLogPlusPlus implements Releasable {
     }
 
     void upgradeToHll(long bucket) {
+        assert algorithm.get(bucket) == LINEAR_COUNTING : "bucket [" + bucket + "] already uses hyperloglog";
         ensureCapacity(bucket + 1);
         final IntArray values = hashSet.values(bucket);
         try {
-            runLens.fill(bucket << p, (bucket << p) + m, (byte) 0);
+            final long start = (long) numRegisterSlots << p;
+            runLens = bigArrays.grow(runLens, start + m);
+            runLens.fill(start, start + m, (byte) 0);
+            registerSlots.set(bucket, ++numRegisterSlots);
             for (long i = 0; i < values.size(); ++i) {
                 final int encoded = values.get(i);
                 collectHllEncoded(bucket, encoded);
             }
             algorithm.set(bucket);
+            hashSet.clear(bucket);
         } finally {
             Releasables.close(values);
         }
@@ -417,51 +442,42 @@ public final class HyperLogLogPlusPlus implements Releasable {
 
     @Override
     public void close() {
-        Releasables.close(runLens, hashSet.sizes);
+        Releasables.close(runLens, registerSlots, hashSet);
     }
 
     /**
-     * We are actually using HyperLogLog's runLens array but interpreting it as a hash set
-     * for linear counting.
+     * The hash tables of the buckets that use linear counting. Each bucket has its own table, which starts small and doubles in
+     * size as hashes are added, up to a quarter of the number of registers because ints take 4 bytes. The bucket is upgraded to
+     * hyperloglog before its table fills up.
      */
-    private class Hashset {
+    private class Hashset implements Releasable {
+
+        private static final int INITIAL_CAPACITY = 8;
 
-        private final int capacity;
+        private final int maxCapacity;
         private final int threshold;
-        private final int mask;
+        private ObjectArray<IntArray> tables;
         private IntArray sizes;
-        private final BytesRef readSpare;
-        private final ByteBuffer writeSpare;
 
         Hashset(long initialBucketCount) {
-            capacity = m / 4; // because ints take 4 bytes
-            threshold = (int) (capacity * MAX_LOAD_FACTOR);
-            mask = capacity - 1;
+            maxCapacity = m / 4;
+            threshold = (int) (maxCapacity * MAX_LOAD_FACTOR);
+            tables = bigArrays.newObjectArray(initialBucketCount);
             sizes = bigArrays.newIntArray(initialBucketCount);
-            readSpare = new BytesRef();
-            writeSpare = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
-        }
-
-        private long index (long bucket, int index) {
-            return (bucket << p) + (index << 2);
         }
 
-        private int get(long bucket, int index) {
-            runLens.get(index(bucket, index), 4, readSpare);
-            return ByteUtils.readIntLE(readSpare.bytes, readSpare.offset);
-        }
-
-        private void set(long bucket, int index, int value) {
-            writeSpare.putInt(0, value);
-            runLens.set(index(bucket, index), writeSpare.array(), 0, 4);
+        private IntArray table(long bucket) {
+            return bucket < tables.size() ? tables.get(bucket) : null;
         }
 
         private int recomputedSize(long bucket) {
+            final IntArray table = table(bucket);
             int size = 0;
-            for (int i = 0; i <= mask; ++i) {
-                final int v = get(bucket, i);
-                if (v != 0) {
-                    ++size;
+            if (table != null) {
+                for (long i = 0; i < table.size(); ++i) {
+                    if (table.get(i) != 0) {
+                        ++size;
+                    }
                 }
             }
             return size;
@@ -481,19 +497,48 @@ public final class HyperLogLogPlusPlus implements Releasable {
          * Return <tt>-1</tt> if the value was already in the set or the new set size if it was added.
          */
         public int add(long bucket, int k) {
-            sizes = bigArrays.grow(sizes, bucket + 1);
             assert k != 0;
-            for (int i = (k & mask); ; i = (i + 1) & mask) {
-                final int v = get(bucket, i);
+            tables = bigArrays.grow(tables, bucket + 1);
+            sizes = bigArrays.grow(sizes, bucket + 1);
+            IntArray table = tables.get(bucket);
+            if (table == null) {
+                table = bigArrays.newIntArray(Math.min(INITIAL_CAPACITY, maxCapacity));
+                tables.set(bucket, table);
+            } else if (sizes.get(bucket) >= table.size() * MAX_LOAD_FACTOR && table.size() < maxCapacity) {
+                table = resize(table, table.size() * 2);
+                tables.set(bucket, table);
+            }
+            if (insert(table, k)) {
+                return sizes.increment(bucket, 1);
+            }
+            return -1;
+        }
+
+        private boolean insert(IntArray table, int k) {
+            final int mask = (int) table.size() - 1;
+            for (int i = BitMixer.mix32(k) & mask; ; i = (i + 1) & mask) {
+                final int v = table.get(i);
                 if (v == 0) {
                     // means unused, take it!
-                    set(bucket, i, k);
-                    return sizes.increment(bucket, 1);
+                    table.set(i, k);
+                    return true;
                 } else if (v == k) {
                     // k is already in the set
-                    return -1;
+                    return false;
+                }
+            }
+        }
+
+        private IntArray resize(IntArray table, long capacity) {
+            final IntArray newTable = bigArrays.newIntArray(capacity);
+            for (long i = 0; i < table.size(); ++i) {
+                final int k = table.get(i);
+                if (k != 0) {
+                    insert(newTable, k);
                 }
             }
+            Releasables.close(table);
+            return newTable;
         }
 
         public IntArray values(final long bucket) {
@@ -502,9 +547,10 @@ public final class HyperLogLogPlusPlus implements Releasable {
             if (size == 0) {
                 return values;
             }
+            final IntArray table = tables.get(bucket);
             int i = 0;
-            for (int j = 0; j < capacity; ++j) {
-                final int k = get(bucket, j);
+            for (long j = 0; j < table.size(); ++j) {
+                final int k = table.get(j);
                 if (k != 0) {
                     values.set(i++, k);
                 }
@@ -513,46 +559,158 @@ public final class HyperLogLogPlusPlus implements Releasable {
             return values;
         }
 
+        /**
+         * Releases the table of the given bucket.
+         */
+        public void clear(long bucket) {
+            final IntArray table = table(bucket);
+            if (table != null) {
+                tables.set(bucket, null);
+                sizes.set(bucket, 0);
+                Releasables.close(table);
+            }
+        }
+
+        @Override
+        public void close() {
+            for (long i = 0; i < tables.size(); ++i) {
+                Releasables.close(tables.get(i));
+            }
+            Releasables.close(tables, sizes);
+        }
     }
 
     public void writeTo(long bucket, StreamOutput out) throws IOException {
         out.writeVInt(p);
+        final boolean compact = out.getVersion().onOrAfter(Version.V_5_5_2_UNRELEASED);
         if (algorithm.get(bucket) == LINEAR_COUNTING) {
             out.writeBoolean(LINEAR_COUNTING);
             try (IntArray hashes = hashSet.values(bucket)) {
                 out.writeVLong(hashes.size());
-                for (long i = 0; i < hashes.size(); ++i) {
-                    out.writeInt(hashes.get(i));
+                if (compact) {
+                    writeHashes(hashes, out);
+                } else {
+                    for (long i = 0; i < hashes.size(); ++i) {
+                        out.writeInt(hashes.get(i));
+                    }
                 }
             }
         } else {
             out.writeBoolean(HYPERLOGLOG);
-            for (long i = bucket << p, end = i + m; i < end; ++i) {
-                out.writeByte(runLens.get(i));
+            final long start = registersStart(bucket);
+            if (compact) {
+                writeRegisters(start, out);
+            } else {
+                for (long i = start, end = i + m; i < end; ++i) {
+                    out.writeByte(runLens.get(i));
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the hashes as the deltas between them in unsigned order.
+     */
+    private static void writeHashes(IntArray hashes, StreamOutput out) throws IOException {
+        final long[] sorted = new long[Math.toIntExact(hashes.size())];
+        for (int i = 0; i < sorted.length; ++i) {
+            sorted[i] = Integer.toUnsignedLong(hashes.get(i));
+        }
+        Arrays.sort(sorted);
+        long previous = 0;
+        for (long hash : sorted) {
+            out.writeVLong(hash - previous);
+            previous = hash;
+        }
+    }
+
+    /**
+     * Writes the registers either as the positions and values of the non-zero ones, which is smaller when few values have been
+     * counted, or packed on 6 bits each, which is enough for the longest run length.
+     */
+    private void writeRegisters(long start, StreamOutput out) throws IOException {
+        int nonZero = 0;
+        for (long i = start, end = start + m; i < end; ++i) {
+            if (runLens.get(i) != 0) {
+                ++nonZero;
+            }
+        }
+        // non-zero registers take about 2 bytes each if sparse and all registers take 3/4 of a byte each if packed
+        final boolean sparse = nonZero < 3 * m / 8;
+        out.writeBoolean(sparse);
+        if (sparse) {
+            out.writeVInt(nonZero);
+            long previous = start;
+            for (long i = start, end = start + m; i < end; ++i) {
+                final byte runLen = runLens.get(i);
+                if (runLen != 0) {
+                    out.writeVInt((int) (i - previous));
+                    out.writeByte(runLen);
+                    previous = i;
+                }
+            }
+        } else {
+            for (long i = start, end = start + m; i < end; i += 4) {
+                final int packed = runLens.get(i) | runLens.get(i + 1) << 6 | runLens.get(i + 2) << 12 | runLens.get(i + 3) << 18;
+                out.writeByte((byte) packed);
+                out.writeByte((byte) (packed >>> 8));
+                out.writeByte((byte) (packed >>> 16));
+            }
+        }
+    }
+
+    private void readRegisters(long start, StreamInput in) throws IOException {
+        if (in.readBoolean()) {
+            final int nonZero = in.readVInt();
+            long index = start;
+            for (int i = 0; i < nonZero; ++i) {
+                index += in.readVInt();
+                runLens.set(index, in.readByte());
+            }
+        } else {
+            for (long i = start, end = start + m; i < end; i += 4) {
+                final int packed = (in.readByte() & 0xFF) | (in.readByte() & 0xFF) << 8 | (in.readByte() & 0xFF) << 16;
+                runLens.set(i, (byte) (packed & 0x3F));
+                runLens.set(i + 1, (byte) ((packed >>> 6) & 0x3F));
+                runLens.set(i + 2, (byte) ((packed >>> 12) & 0x3F));
+                runLens.set(i + 3, (byte) (packed >>> 18));
             }
         }
     }
 
     public static HyperLogLogPlusPlus readFrom(StreamInput in, BigArrays bigArrays) throws IOException {
         final int precision = in.readVInt();
+        final boolean compact = in.getVersion().onOrAfter(Version.V_5_5_2_UNRELEASED);
         HyperLogLogPlusPlus counts = new HyperLogLogPlusPlus(precision, bigArrays, 1);
         final boolean algorithm = in.readBoolean();
         if (algorithm == LINEAR_COUNTING) {
             counts.algorithm.clear(0);
             final long size = in.readVLong();
+            long hash = 0;
             for (long i = 0; i < size; ++i) {
-                final int encoded = in.readInt();
+                final int encoded;
+                if (compact) {
+                    hash += in.readVLong();
+                    encoded = (int) hash;
+                } else {
+                    encoded = in.readInt();
+                }
                 counts.hashSet.add(0, encoded);
             }
         } else {
-            counts.algorithm.set(0);
-            for (int i = 0; i < counts.m; ++i) {
-                counts.runLens.set(i, in.readByte());
+            counts.upgradeToHll(0);
+            final long start = counts.registersStart(0);
+            if (compact) {
+                counts.readRegisters(start, in);
+            } else {
+                for (int i = 0; i < counts.m; ++i) {
+                    counts.runLens.set(start + i, in.readByte());
+                }
             }
         }
         return counts;
     }
-    
+
     /** looks and smells like the old openbitset. */
     static class OpenBitSet {
         LongBitSet impl = new LongBitSet(64);
@@ -67,6 +67,11 @@ public class MaxAggregator extends NumericMetricsAggregator.SingleValue {
         return valuesSource != null && valuesSource.needsScores();
     }
 
+    @Override
+    protected boolean collectsInBatches() {
+        return true;
+    }
+
     @Override
     public LeafBucketCollector getLeafCollector(LeafReaderContext ctx,
             final LeafBucketCollector sub) throws IOException {
@@ -91,6 +96,26 @@ public class MaxAggregator extends NumericMetricsAggregator.SingleValue {
                 maxes.set(bucket, max);
             }
 
+            @Override
+            public void collect(int[] docs, long[] buckets, int count) throws IOException {
+                int start = 0;
+                while (start < count) {
+                    final long bucket = buckets[start];
+                    if (bucket >= maxes.size()) {
+                        long from = maxes.size();
+                        maxes = bigArrays.grow(maxes, bucket + 1);
+                        maxes.fill(from, maxes.size(), Double.NEGATIVE_INFINITY);
+                    }
+                    double max = maxes.get(bucket);
+                    int i = start;
+                    for (; i < count && buckets[i] == bucket; i++) {
+                        max = Math.max(max, values.get(docs[i]));
+                    }
+                    maxes.set(bucket, max);
+                    start = i;
+                }
+            }
+
         };
     }
 
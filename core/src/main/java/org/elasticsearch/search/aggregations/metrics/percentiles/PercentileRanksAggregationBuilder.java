@@ -88,6 +88,13 @@ public class PercentileRanksAggregationBuilder extends LeafOnly<ValuesSource.Num
             }
         }, TDIGEST_OPTIONS_PARSER::parse, PercentilesMethod.TDIGEST.getParseField(), ObjectParser.ValueType.OBJECT);
 
+        PARSER.declareField((b, v) -> {
+            b.method(PercentilesMethod.MERGING_TDIGEST);
+            if (v.compression != null) {
+                b.compression(v.compression);
+            }
+        }, TDIGEST_OPTIONS_PARSER::parse, PercentilesMethod.MERGING_TDIGEST.getParseField(), ObjectParser.ValueType.OBJECT);
+
         PARSER.declareField((b, v) -> {
             b.method(PercentilesMethod.HDR);
             if (v.numberOfSigDigits != null) {
@@ -188,7 +195,8 @@ public class PercentileRanksAggregationBuilder extends LeafOnly<ValuesSource.Num
 
     /**
      * Expert: set the compression. Higher values improve accuracy but also
-     * memory usage. Only relevant when using {@link PercentilesMethod#TDIGEST}.
+     * memory usage. Only relevant when using {@link PercentilesMethod#TDIGEST}
+     * or {@link PercentilesMethod#MERGING_TDIGEST}.
      */
     public PercentileRanksAggregationBuilder compression(double compression) {
         if (compression < 0.0) {
@@ -201,7 +209,8 @@ public class PercentileRanksAggregationBuilder extends LeafOnly<ValuesSource.Num
 
     /**
      * Expert: get the compression. Higher values improve accuracy but also
-     * memory usage. Only relevant when using {@link PercentilesMethod#TDIGEST}.
+     * memory usage. Only relevant when using {@link PercentilesMethod#TDIGEST}
+     * or {@link PercentilesMethod#MERGING_TDIGEST}.
      */
     public double compression() {
         return compression;
@@ -224,7 +233,9 @@ public class PercentileRanksAggregationBuilder extends LeafOnly<ValuesSource.Num
             AggregatorFactory<?> parent, Builder subFactoriesBuilder) throws IOException {
         switch (method) {
         case TDIGEST:
-            return new TDigestPercentileRanksAggregatorFactory(name, config, values, compression, keyed, context, parent,
+        case MERGING_TDIGEST:
+            return new TDigestPercentileRanksAggregatorFactory(name, config, values, compression,
+                    method == PercentilesMethod.MERGING_TDIGEST, keyed, context, parent,
                     subFactoriesBuilder, metaData);
         case HDR:
             return new HDRPercentileRanksAggregatorFactory(name, config, values, numberOfSignificantValueDigits, keyed, context,
@@ -239,7 +250,7 @@ public class PercentileRanksAggregationBuilder extends LeafOnly<ValuesSource.Num
         builder.array(VALUES_FIELD.getPreferredName(), values);
         builder.field(PercentilesAggregationBuilder.KEYED_FIELD.getPreferredName(), keyed);
         builder.startObject(method.toString());
-        if (method == PercentilesMethod.TDIGEST) {
+        if (method == PercentilesMethod.TDIGEST || method == PercentilesMethod.MERGING_TDIGEST) {
             builder.field(PercentilesAggregationBuilder.COMPRESSION_FIELD.getPreferredName(), compression);
         } else {
             builder.field(PercentilesAggregationBuilder.NUMBER_SIGNIFICANT_DIGITS_FIELD.getPreferredName(), numberOfSignificantValueDigits);
@@ -260,6 +271,7 @@ public class PercentileRanksAggregationBuilder extends LeafOnly<ValuesSource.Num
             equalSettings = Objects.equals(numberOfSignificantValueDigits, other.numberOfSignificantValueDigits);
             break;
         case TDIGEST:
+        case MERGING_TDIGEST:
             equalSettings = Objects.equals(compression, other.compression);
             break;
         default:
@@ -277,6 +289,7 @@ public class PercentileRanksAggregationBuilder extends LeafOnly<ValuesSource.Num
         case HDR:
             return Objects.hash(Arrays.hashCode(values), keyed, numberOfSignificantValueDigits, method);
         case TDIGEST:
+        case MERGING_TDIGEST:
             return Objects.hash(Arrays.hashCode(values), keyed, compression, method);
         default:
             throw new IllegalStateException("Illegal method [" + method + "]");
@@ -94,6 +94,13 @@ public class PercentilesAggregationBuilder extends LeafOnly<ValuesSource.Numeric
             }
         }, TDIGEST_OPTIONS_PARSER::parse, PercentilesMethod.TDIGEST.getParseField(), ObjectParser.ValueType.OBJECT);
 
+        PARSER.declareField((b, v) -> {
+            b.method(PercentilesMethod.MERGING_TDIGEST);
+            if (v.compression != null) {
+                b.compression(v.compression);
+            }
+        }, TDIGEST_OPTIONS_PARSER::parse, PercentilesMethod.MERGING_TDIGEST.getParseField(), ObjectParser.ValueType.OBJECT);
+
         PARSER.declareField((b, v) -> {
             b.method(PercentilesMethod.HDR);
             if (v.numberOfSigDigits != null) {
@@ -194,7 +201,8 @@ public class PercentilesAggregationBuilder extends LeafOnly<ValuesSource.Numeric
 
     /**
      * Expert: set the compression. Higher values improve accuracy but also
-     * memory usage. Only relevant when using {@link PercentilesMethod#TDIGEST}.
+     * memory usage. Only relevant when using {@link PercentilesMethod#TDIGEST}
+     * or {@link PercentilesMethod#MERGING_TDIGEST}.
      */
     public PercentilesAggregationBuilder compression(double compression) {
         if (compression < 0.0) {
@@ -207,7 +215,8 @@ public class PercentilesAggregationBuilder extends LeafOnly<ValuesSource.Numeric
 
     /**
      * Expert: get the compression. Higher values improve accuracy but also
-     * memory usage. Only relevant when using {@link PercentilesMethod#TDIGEST}.
+     * memory usage. Only relevant when using {@link PercentilesMethod#TDIGEST}
+     * or {@link PercentilesMethod#MERGING_TDIGEST}.
      */
     public double compression() {
         return compression;
@@ -230,7 +239,9 @@ public class PercentilesAggregationBuilder extends LeafOnly<ValuesSource.Numeric
             AggregatorFactory<?> parent, Builder subFactoriesBuilder) throws IOException {
         switch (method) {
         case TDIGEST:
-            return new TDigestPercentilesAggregatorFactory(name, config, percents, compression, keyed, context, parent,
+        case MERGING_TDIGEST:
+            return new TDigestPercentilesAggregatorFactory(name, config, percents, compression,
+                    method == PercentilesMethod.MERGING_TDIGEST, keyed, context, parent,
                     subFactoriesBuilder, metaData);
         case HDR:
             return new HDRPercentilesAggregatorFactory(name, config, percents, numberOfSignificantValueDigits, keyed, context, parent,
@@ -245,7 +256,7 @@ public class PercentilesAggregationBuilder extends LeafOnly<ValuesSource.Numeric
         builder.array(PERCENTS_FIELD.getPreferredName(), percents);
         builder.field(KEYED_FIELD.getPreferredName(), keyed);
         builder.startObject(method.toString());
-        if (method == PercentilesMethod.TDIGEST) {
+        if (method == PercentilesMethod.TDIGEST || method == PercentilesMethod.MERGING_TDIGEST) {
             builder.field(COMPRESSION_FIELD.getPreferredName(), compression);
         } else {
             builder.field(NUMBER_SIGNIFICANT_DIGITS_FIELD.getPreferredName(), numberOfSignificantValueDigits);
@@ -266,6 +277,7 @@ public class PercentilesAggregationBuilder extends LeafOnly<ValuesSource.Numeric
             equalSettings = Objects.equals(numberOfSignificantValueDigits, other.numberOfSignificantValueDigits);
             break;
         case TDIGEST:
+        case MERGING_TDIGEST:
             equalSettings = Objects.equals(compression, other.compression);
             break;
         default:
@@ -283,6 +295,7 @@ public class PercentilesAggregationBuilder extends LeafOnly<ValuesSource.Numeric
         case HDR:
             return Objects.hash(Arrays.hashCode(percents), keyed, numberOfSignificantValueDigits, method);
         case TDIGEST:
+        case MERGING_TDIGEST:
             return Objects.hash(Arrays.hashCode(percents), keyed, compression, method);
         default:
             throw new IllegalStateException("Illegal method [" + method.toString() + "]");
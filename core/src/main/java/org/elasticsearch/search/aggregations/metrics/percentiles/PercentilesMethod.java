@@ -19,6 +19,7 @@
 
 package org.elasticsearch.search.aggregations.metrics.percentiles;
 
+import org.elasticsearch.Version;
 import org.elasticsearch.common.ParseField;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
@@ -37,7 +38,11 @@ public enum PercentilesMethod implements Writeable {
     /**
      * The HDRHistogram method of calculating percentiles
      */
-    HDR("hdr", "HDR");
+    HDR("hdr", "HDR"),
+    /**
+     * The TDigest method, using a digest that merges added values in batches rather than inserting them in a tree
+     */
+    MERGING_TDIGEST("merging_tdigest");
 
     private final ParseField parseField;
 
@@ -58,6 +63,10 @@ public enum PercentilesMethod implements Writeable {
 
     @Override
     public void writeTo(StreamOutput out) throws IOException {
+        if (this == MERGING_TDIGEST && out.getVersion().before(Version.V_5_5_2_UNRELEASED)) {
+            throw new IllegalArgumentException("method [" + this + "] is not supported by nodes before version ["
+                    + Version.V_5_5_2_UNRELEASED + "]");
+        }
         out.writeEnum(this);
     }
 
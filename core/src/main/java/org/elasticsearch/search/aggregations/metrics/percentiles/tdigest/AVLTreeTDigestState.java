@@ -0,0 +1,101 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.search.aggregations.metrics.percentiles.tdigest;
+
+import com.tdunning.math.stats.AVLTreeDigest;
+import com.tdunning.math.stats.Centroid;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+import java.io.IOException;
+
+/**
+ * A digest backed by the AVL tree digest of the t-digest library, the default implementation of the {@code tdigest} method.
+ */
+final class AVLTreeTDigestState extends TDigestState {
+
+    private final AVLTreeDigest digest;
+
+    AVLTreeTDigestState(double compression) {
+        super(compression);
+        this.digest = new AVLTreeDigest(compression);
+    }
+
+    @Override
+    boolean isMerging() {
+        return false;
+    }
+
+    @Override
+    public long size() {
+        return digest.size();
+    }
+
+    @Override
+    public int centroidCount() {
+        return digest.centroidCount();
+    }
+
+    @Override
+    public int byteSize() {
+        return digest.byteSize();
+    }
+
+    @Override
+    public void add(double value) {
+        digest.add(value);
+    }
+
+    @Override
+    public void add(TDigestState other) {
+        if (other instanceof AVLTreeTDigestState == false) {
+            throw new IllegalArgumentException("cannot merge a merging digest into a digest backed by an AVL tree");
+        }
+        digest.add(((AVLTreeTDigestState) other).digest);
+    }
+
+    @Override
+    public double quantile(double q) {
+        return digest.quantile(q);
+    }
+
+    @Override
+    public double cdf(double value) {
+        return digest.cdf(value);
+    }
+
+    @Override
+    void writeCentroids(StreamOutput out) throws IOException {
+        out.writeVInt(digest.centroidCount());
+        for (Centroid centroid : digest.centroids()) {
+            out.writeDouble(centroid.mean());
+            out.writeVLong(centroid.count());
+        }
+    }
+
+    static AVLTreeTDigestState readCentroids(double compression, StreamInput in) throws IOException {
+        final AVLTreeTDigestState state = new AVLTreeTDigestState(compression);
+        final int n = in.readVInt();
+        for (int i = 0; i < n; i++) {
+            state.digest.add(in.readDouble(), in.readVInt());
+        }
+        return state;
+    }
+
+}
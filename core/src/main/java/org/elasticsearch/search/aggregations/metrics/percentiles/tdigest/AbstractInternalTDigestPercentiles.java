@@ -83,7 +83,7 @@ abstract class AbstractInternalTDigestPercentiles extends InternalNumericMetrics
         for (InternalAggregation aggregation : aggregations) {
             final AbstractInternalTDigestPercentiles percentiles = (AbstractInternalTDigestPercentiles) aggregation;
             if (merged == null) {
-                merged = new TDigestState(percentiles.state.compression());
+                merged = TDigestState.create(percentiles.state.compression(), percentiles.state.isMerging());
             }
             merged.add(percentiles.state);
         }
@@ -0,0 +1,305 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.search.aggregations.metrics.percentiles.tdigest;
+
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.IntroSorter;
+import org.elasticsearch.Version;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A <a href="https://github.com/tdunning/t-digest">t-digest</a> that keeps its centroids in two primitive arrays, the means and
+ * the weights, instead of a tree of centroid objects. Added values are appended after the centroids and are merged into them,
+ * in a single pass over the values sorted by mean, once {@link #bufferSize(double)} of them have been buffered or before the
+ * digest is queried or serialized. A centroid only absorbs its neighbour if its weight stays under the usual t-digest bound of
+ * {@code 4 * count * q * (1 - q) / compression}, so that digests of up to {@code compression} values are exact.
+ */
+final class MergingTDigestState extends TDigestState {
+
+    private static final double[] EMPTY_MEANS = new double[0];
+    private static final long[] EMPTY_WEIGHTS = new long[0];
+
+    /**
+     * The number of values that are buffered before they get merged into the centroids.
+     */
+    static int bufferSize(double compression) {
+        return Math.max(32, (int) Math.ceil(5 * compression));
+    }
+
+    private final int bufferSize;
+    // the sorted centroids come first, followed by the values that have been added since the last merge
+    private double[] means = EMPTY_MEANS;
+    private long[] weights = EMPTY_WEIGHTS;
+    private int centroidCount;
+    private int size;
+    private long count;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    MergingTDigestState(double compression) {
+        super(compression);
+        this.bufferSize = bufferSize(compression);
+    }
+
+    @Override
+    boolean isMerging() {
+        return true;
+    }
+
+    @Override
+    public long size() {
+        return count;
+    }
+
+    @Override
+    public int centroidCount() {
+        compress();
+        return centroidCount;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    @Override
+    public int byteSize() {
+        return 64 + means.length * (Double.BYTES + Long.BYTES);
+    }
+
+    @Override
+    public void add(double value) {
+        add(value, 1);
+    }
+
+    public void add(double value, long weight) {
+        if (Double.isNaN(value)) {
+            throw new IllegalArgumentException("Cannot add NaN");
+        }
+        if (size - centroidCount >= bufferSize) {
+            compress();
+        }
+        append(value, weight);
+        count += weight;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    @Override
+    public void add(TDigestState state) {
+        if (state instanceof MergingTDigestState == false) {
+            throw new IllegalArgumentException("cannot merge a digest backed by an AVL tree into a merging digest");
+        }
+        final MergingTDigestState other = (MergingTDigestState) state;
+        other.compress();
+        for (int i = 0; i < other.centroidCount; i++) {
+            if (size - centroidCount >= bufferSize) {
+                compress();
+            }
+            append(other.means[i], other.weights[i]);
+            count += other.weights[i];
+        }
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    private void append(double mean, long weight) {
+        if (size == means.length) {
+            final int newLength = ArrayUtil.oversize(size + 1, Double.BYTES);
+            means = Arrays.copyOf(means, newLength);
+            weights = Arrays.copyOf(weights, newLength);
+        }
+        means[size] = mean;
+        weights[size] = weight;
+        size++;
+    }
+
+    /**
+     * Merges the buffered values into the centroids.
+     */
+    public void compress() {
+        if (size == centroidCount) {
+            return;
+        }
+        new IntroSorter() {
+            double pivot;
+
+            @Override
+            protected void setPivot(int i) {
+                pivot = means[i];
+            }
+
+            @Override
+            protected int comparePivot(int j) {
+                return Double.compare(pivot, means[j]);
+            }
+
+            @Override
+            protected int compare(int i, int j) {
+                return Double.compare(means[i], means[j]);
+            }
+
+            @Override
+            protected void swap(int i, int j) {
+                final double mean = means[i];
+                means[i] = means[j];
+                means[j] = mean;
+                final long weight = weights[i];
+                weights[i] = weights[j];
+                weights[j] = weight;
+            }
+        }.sort(0, size);
+
+        // the merged centroids are written in place, which is safe since a centroid never starts after the value it is made of
+        final double total = count;
+        int last = 0;
+        long weightBefore = 0;
+        for (int i = 1; i < size; i++) {
+            final long proposedWeight = weights[last] + weights[i];
+            final double q = (weightBefore + proposedWeight / 2.0) / total;
+            if (proposedWeight <= 4 * total * q * (1 - q) / compression) {
+                means[last] += (means[i] - means[last]) * weights[i] / proposedWeight;
+                weights[last] = proposedWeight;
+            } else {
+                weightBefore += weights[last];
+                last++;
+                means[last] = means[i];
+                weights[last] = weights[i];
+            }
+        }
+        centroidCount = size = last + 1;
+    }
+
+    /**
+     * Returns an estimation of the value at the given quantile, between 0 and 1, by interpolating linearly between the means of
+     * the centroids, each of them holding half of its weight on either side of its mean.
+     */
+    @Override
+    public double quantile(double q) {
+        if (q < 0 || q > 1) {
+            throw new IllegalArgumentException("q should be in [0,1], got " + q);
+        }
+        compress();
+        if (centroidCount == 0) {
+            return Double.NaN;
+        }
+        final double index = q * count;
+        double weightSoFar = weights[0] / 2.0;
+        if (index < weightSoFar) {
+            return min + (means[0] - min) * index / weightSoFar;
+        }
+        for (int i = 0; i < centroidCount - 1; i++) {
+            final double delta = (weights[i] + weights[i + 1]) / 2.0;
+            if (index < weightSoFar + delta) {
+                return means[i] + (means[i + 1] - means[i]) * (index - weightSoFar) / delta;
+            }
+            weightSoFar += delta;
+        }
+        final int last = centroidCount - 1;
+        final double ratio = Math.min(1, (index - weightSoFar) / (weights[last] / 2.0));
+        return means[last] + (max - means[last]) * ratio;
+    }
+
+    /**
+     * Returns an estimation of the fraction of the values that are less than or equal to the given value, the inverse of
+     * {@link #quantile(double)}.
+     */
+    @Override
+    public double cdf(double value) {
+        compress();
+        if (centroidCount == 0) {
+            return Double.NaN;
+        }
+        if (value < min) {
+            return 0;
+        }
+        if (value > max) {
+            return 1;
+        }
+        final double total = count;
+        double weightSoFar = 0;
+        for (int i = 0; i < centroidCount; i++) {
+            if (value < means[i]) {
+                final double center = weightSoFar + weights[i] / 2.0;
+                if (i == 0) {
+                    return center * (value - min) / (means[0] - min) / total;
+                }
+                final double previousCenter = weightSoFar - weights[i - 1] / 2.0;
+                return (previousCenter + (center - previousCenter) * (value - means[i - 1]) / (means[i] - means[i - 1])) / total;
+            }
+            if (value == means[i]) {
+                long equalWeight = 0;
+                for (int j = i; j < centroidCount && means[j] == value; j++) {
+                    equalWeight += weights[j];
+                }
+                return (weightSoFar + equalWeight / 2.0) / total;
+            }
+            weightSoFar += weights[i];
+        }
+        final int last = centroidCount - 1;
+        final double lastCenter = total - weights[last] / 2.0;
+        return (lastCenter + weights[last] / 2.0 * (value - means[last]) / (max - means[last])) / total;
+    }
+
+    @Override
+    void writeCentroids(StreamOutput out) throws IOException {
+        compress();
+        out.writeVInt(centroidCount);
+        // merging digests are only sent to older nodes in the format of the AVL tree digest, which has no extreme values
+        if (out.getVersion().onOrAfter(Version.V_5_5_2_UNRELEASED) && centroidCount > 0) {
+            out.writeDouble(min);
+            out.writeDouble(max);
+        }
+        for (int i = 0; i < centroidCount; i++) {
+            out.writeDouble(means[i]);
+            out.writeVLong(weights[i]);
+        }
+    }
+
+    static MergingTDigestState readCentroids(double compression, StreamInput in) throws IOException {
+        final MergingTDigestState state = new MergingTDigestState(compression);
+        final int n = in.readVInt();
+        if (n == 0) {
+            return state;
+        }
+        state.min = in.readDouble();
+        state.max = in.readDouble();
+        state.means = new double[n];
+        state.weights = new long[n];
+        boolean sorted = true;
+        for (int i = 0; i < n; i++) {
+            state.means[i] = in.readDouble();
+            state.weights[i] = in.readVLong();
+            state.count += state.weights[i];
+            sorted &= i == 0 || state.means[i - 1] <= state.means[i];
+        }
+        state.size = n;
+        // the centroids of a serialized digest have been merged already, they are only merged again if they are out of order
+        state.centroidCount = sorted ? n : 0;
+        return state;
+    }
+
+}
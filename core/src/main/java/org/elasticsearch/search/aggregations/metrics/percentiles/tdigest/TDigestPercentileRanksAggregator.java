@@ -35,10 +35,10 @@ import java.util.Map;
 public class TDigestPercentileRanksAggregator extends AbstractTDigestPercentilesAggregator {
 
     public TDigestPercentileRanksAggregator(String name, Numeric valuesSource, SearchContext context, Aggregator parent, double[] percents,
-            double compression, boolean keyed, DocValueFormat formatter, List<PipelineAggregator> pipelineAggregators,
+            double compression, boolean merging, boolean keyed, DocValueFormat formatter, List<PipelineAggregator> pipelineAggregators,
             Map<String, Object> metaData)
             throws IOException {
-        super(name, valuesSource, context, parent, percents, compression, keyed, formatter, pipelineAggregators, metaData);
+        super(name, valuesSource, context, parent, percents, compression, merging, keyed, formatter, pipelineAggregators, metaData);
     }
 
     @Override
@@ -53,7 +53,8 @@ public class TDigestPercentileRanksAggregator extends AbstractTDigestPercentiles
 
     @Override
     public InternalAggregation buildEmptyAggregation() {
-        return new InternalTDigestPercentileRanks(name, keys, new TDigestState(compression), keyed, formatter, pipelineAggregators(), metaData());
+        return new InternalTDigestPercentileRanks(name, keys, TDigestState.create(compression, merging), keyed, formatter,
+                pipelineAggregators(), metaData());
     }
 
     @Override
@@ -38,29 +38,31 @@ public class TDigestPercentileRanksAggregatorFactory
 
     private final double[] percents;
     private final double compression;
+    private final boolean merging;
     private final boolean keyed;
 
     public TDigestPercentileRanksAggregatorFactory(String name, ValuesSourceConfig<Numeric> config, double[] percents,
-            double compression, boolean keyed, SearchContext context, AggregatorFactory<?> parent,
+            double compression, boolean merging, boolean keyed, SearchContext context, AggregatorFactory<?> parent,
             AggregatorFactories.Builder subFactoriesBuilder, Map<String, Object> metaData) throws IOException {
         super(name, config, context, parent, subFactoriesBuilder, metaData);
         this.percents = percents;
         this.compression = compression;
+        this.merging = merging;
         this.keyed = keyed;
     }
 
     @Override
     protected Aggregator createUnmapped(Aggregator parent, List<PipelineAggregator> pipelineAggregators, Map<String, Object> metaData)
             throws IOException {
-        return new TDigestPercentileRanksAggregator(name, null, context, parent, percents, compression, keyed, config.format(),
+        return new TDigestPercentileRanksAggregator(name, null, context, parent, percents, compression, merging, keyed, config.format(),
                 pipelineAggregators, metaData);
     }
 
     @Override
     protected Aggregator doCreateInternal(Numeric valuesSource, Aggregator parent, boolean collectsFromSingleBucket,
             List<PipelineAggregator> pipelineAggregators, Map<String, Object> metaData) throws IOException {
-        return new TDigestPercentileRanksAggregator(name, valuesSource, context, parent, percents, compression, keyed, config.format(),
-                pipelineAggregators, metaData);
+        return new TDigestPercentileRanksAggregator(name, valuesSource, context, parent, percents, compression, merging, keyed,
+                config.format(), pipelineAggregators, metaData);
     }
 
 }
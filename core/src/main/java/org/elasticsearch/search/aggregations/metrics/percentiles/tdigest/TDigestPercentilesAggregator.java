@@ -36,9 +36,9 @@ public class TDigestPercentilesAggregator extends AbstractTDigestPercentilesAggr
 
     public TDigestPercentilesAggregator(String name, Numeric valuesSource, SearchContext context,
             Aggregator parent, double[] percents,
-            double compression, boolean keyed, DocValueFormat formatter, List<PipelineAggregator> pipelineAggregators,
+            double compression, boolean merging, boolean keyed, DocValueFormat formatter, List<PipelineAggregator> pipelineAggregators,
             Map<String, Object> metaData) throws IOException {
-        super(name, valuesSource, context, parent, percents, compression, keyed, formatter, pipelineAggregators, metaData);
+        super(name, valuesSource, context, parent, percents, compression, merging, keyed, formatter, pipelineAggregators, metaData);
     }
 
     @Override
@@ -63,6 +63,7 @@ public class TDigestPercentilesAggregator extends AbstractTDigestPercentilesAggr
 
     @Override
     public InternalAggregation buildEmptyAggregation() {
-        return new InternalTDigestPercentiles(name, keys, new TDigestState(compression), keyed, formatter, pipelineAggregators(), metaData());
+        return new InternalTDigestPercentiles(name, keys, TDigestState.create(compression, merging), keyed, formatter,
+                pipelineAggregators(), metaData());
     }
 }
@@ -18,47 +18,86 @@
  */
 package org.elasticsearch.search.aggregations.metrics.percentiles.tdigest;
 
-import com.tdunning.math.stats.AVLTreeDigest;
-import com.tdunning.math.stats.Centroid;
+import org.elasticsearch.Version;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 
 import java.io.IOException;
 
 /**
- * Extension of {@link com.tdunning.math.stats.TDigest} with custom serialization.
+ * The digest that a t-digest percentiles aggregation keeps for each bucket. The {@code tdigest} method uses the AVL tree digest of
+ * the t-digest library, the {@code merging_tdigest} method a {@link MergingTDigestState}.
  */
-public class TDigestState extends AVLTreeDigest {
+public abstract class TDigestState {
 
-    private final double compression;
+    /**
+     * Creates an empty digest.
+     *
+     * @param merging whether the digest should be a merging digest rather than one backed by an AVL tree
+     */
+    public static TDigestState create(double compression, boolean merging) {
+        return merging ? new MergingTDigestState(compression) : new AVLTreeTDigestState(compression);
+    }
+
+    protected final double compression;
 
-    public TDigestState(double compression) {
-        super(compression);
+    TDigestState(double compression) {
         this.compression = compression;
     }
 
-    @Override
     public double compression() {
         return compression;
     }
 
+    /**
+     * Whether this is a merging digest, see {@link #create(double, boolean)}.
+     */
+    abstract boolean isMerging();
+
+    /**
+     * The number of values that have been added to this digest.
+     */
+    public abstract long size();
+
+    public abstract int centroidCount();
+
+    /**
+     * An estimation of the memory that this digest uses, in bytes.
+     */
+    public abstract int byteSize();
+
+    public abstract void add(double value);
+
+    /**
+     * Adds all the values of the given digest, which must be of the same kind, to this one.
+     */
+    public abstract void add(TDigestState other);
+
+    public abstract double quantile(double q);
+
+    public abstract double cdf(double value);
+
+    /**
+     * Writes the number of centroids followed by their means and weights.
+     */
+    abstract void writeCentroids(StreamOutput out) throws IOException;
+
     public static void write(TDigestState state, StreamOutput out) throws IOException {
-        out.writeDouble(state.compression);
-        out.writeVInt(state.centroidCount());
-        for (Centroid centroid : state.centroids()) {
-            out.writeDouble(centroid.mean());
-            out.writeVLong(centroid.count());
+        if (out.getVersion().onOrAfter(Version.V_5_5_2_UNRELEASED)) {
+            out.writeBoolean(state.isMerging());
         }
+        out.writeDouble(state.compression);
+        state.writeCentroids(out);
     }
 
     public static TDigestState read(StreamInput in) throws IOException {
-        double compression = in.readDouble();
-        TDigestState state = new TDigestState(compression);
-        int n = in.readVInt();
-        for (int i = 0; i < n; i++) {
-            state.add(in.readDouble(), in.readVInt());
+        final boolean merging = in.getVersion().onOrAfter(Version.V_5_5_2_UNRELEASED) && in.readBoolean();
+        final double compression = in.readDouble();
+        if (merging) {
+            return MergingTDigestState.readCentroids(compression, in);
+        } else {
+            return AVLTreeTDigestState.readCentroids(compression, in);
         }
-        return state;
     }
 
 }
@@ -75,6 +75,11 @@ public class StatsAggregator extends NumericMetricsAggregator.MultiValue {
         return valuesSource != null && valuesSource.needsScores();
     }
 
+    @Override
+    protected boolean collectsInBatches() {
+        return true;
+    }
+
     @Override
     public LeafBucketCollector getLeafCollector(LeafReaderContext ctx,
             final LeafBucketCollector sub) throws IOException {
@@ -84,8 +89,7 @@ public class StatsAggregator extends NumericMetricsAggregator.MultiValue {
         final BigArrays bigArrays = context.bigArrays();
         final SortedNumericDoubleValues values = valuesSource.doubleValues(ctx);
         return new LeafBucketCollectorBase(sub, values) {
-            @Override
-            public void collect(int doc, long bucket) throws IOException {
+            private void grow(long bucket) {
                 if (bucket >= counts.size()) {
                     final long from = counts.size();
                     final long overSize = BigArrays.overSize(bucket + 1);
@@ -96,7 +100,11 @@ public class StatsAggregator extends NumericMetricsAggregator.MultiValue {
                     mins.fill(from, overSize, Double.POSITIVE_INFINITY);
                     maxes.fill(from, overSize, Double.NEGATIVE_INFINITY);
                 }
+            }
 
+            @Override
+            public void collect(int doc, long bucket) throws IOException {
+                grow(bucket);
                 values.setDocument(doc);
                 final int valuesCount = values.count();
                 counts.increment(bucket, valuesCount);
@@ -113,6 +121,37 @@ public class StatsAggregator extends NumericMetricsAggregator.MultiValue {
                 mins.set(bucket, min);
                 maxes.set(bucket, max);
             }
+
+            @Override
+            public void collect(int[] docs, long[] buckets, int count) throws IOException {
+                // accumulate the values of consecutive docs that go to the same bucket before updating the bucket
+                int start = 0;
+                while (start < count) {
+                    final long bucket = buckets[start];
+                    grow(bucket);
+                    long valuesCount = 0;
+                    double sum = 0;
+                    double min = mins.get(bucket);
+                    double max = maxes.get(bucket);
+                    int i = start;
+                    for (; i < count && buckets[i] == bucket; i++) {
+                        values.setDocument(docs[i]);
+                        final int docValuesCount = values.count();
+                        valuesCount += docValuesCount;
+                        for (int j = 0; j < docValuesCount; j++) {
+                            double value = values.valueAt(j);
+                            sum += value;
+                            min = Math.min(min, value);
+                            max = Math.max(max, value);
+                        }
+                    }
+                    counts.increment(bucket, valuesCount);
+                    sums.increment(bucket, sum);
+                    mins.set(bucket, min);
+                    maxes.set(bucket, max);
+                    start = i;
+                }
+            }
         };
     }
 
@@ -62,6 +62,11 @@ public class SumAggregator extends NumericMetricsAggregator.SingleValue {
         return valuesSource != null && valuesSource.needsScores();
     }
 
+    @Override
+    protected boolean collectsInBatches() {
+        return true;
+    }
+
     @Override
     public LeafBucketCollector getLeafCollector(LeafReaderContext ctx,
             final LeafBucketCollector sub) throws IOException {
@@ -82,6 +87,27 @@ public class SumAggregator extends NumericMetricsAggregator.SingleValue {
                 }
                 sums.increment(bucket, sum);
             }
+
+            @Override
+            public void collect(int[] docs, long[] buckets, int count) throws IOException {
+                // sum up the values of consecutive docs that go to the same bucket before adding them to the bucket
+                int start = 0;
+                while (start < count) {
+                    final long bucket = buckets[start];
+                    sums = bigArrays.grow(sums, bucket + 1);
+                    double sum = 0;
+                    int i = start;
+                    for (; i < count && buckets[i] == bucket; i++) {
+                        values.setDocument(docs[i]);
+                        final int valuesCount = values.count();
+                        for (int j = 0; j < valuesCount; j++) {
+                            sum += values.valueAt(j);
+                        }
+                    }
+                    sums.increment(bucket, sum);
+                    start = i;
+                }
+            }
         };
     }
 
@@ -0,0 +1,256 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.aggregations.metrics.tophits;
+
+import com.carrotsearch.hppc.IntArrayList;
+import org.apache.lucene.search.ScoreDoc;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.SearchHits;
+import org.elasticsearch.search.SearchPhaseResult;
+import org.elasticsearch.search.SearchShardTarget;
+import org.elasticsearch.search.aggregations.Aggregation;
+import org.elasticsearch.search.aggregations.AggregationBuilder;
+import org.elasticsearch.search.aggregations.Aggregations;
+import org.elasticsearch.search.aggregations.HasAggregations;
+import org.elasticsearch.search.aggregations.InternalAggregation;
+import org.elasticsearch.search.aggregations.InternalAggregations;
+import org.elasticsearch.search.aggregations.InternalMultiBucketAggregation;
+import org.elasticsearch.search.aggregations.bucket.InternalSingleBucketAggregation;
+import org.elasticsearch.search.aggregations.bucket.MultiBucketsAggregation;
+import org.elasticsearch.search.aggregations.bucket.adjacency.AdjacencyMatrixAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.filter.FilterAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.filters.FiltersAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.geogrid.GeoGridAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.global.GlobalAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.histogram.DateHistogramAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.histogram.HistogramAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.missing.MissingAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.nested.NestedAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.nested.ReverseNestedAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.range.RangeAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.range.date.DateRangeAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.range.geodistance.GeoDistanceAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.range.ip.IpRangeAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.sampler.DiversifiedAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.sampler.SamplerAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.significant.SignificantTermsAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.terms.TermsAggregationBuilder;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.fetch.FetchSearchResult;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntFunction;
+
+import static java.util.Collections.unmodifiableSet;
+import static org.elasticsearch.common.util.set.Sets.newHashSet;
+
+/**
+ * The hits of the reduced top_hits aggregations of a search that the shards did not fetch in the query phase, see {@link
+ * DeferredTopHitsContext}. Only the hits that made it to the reduced aggregations are fetched, with the fetch requests of the
+ * shards, rather than the top hits of every bucket on every shard.
+ */
+public final class DeferredTopHits {
+
+    /**
+     * The deferred hits of a top_hits aggregation on a shard, in the order in which they are fetched.
+     */
+    private static final class ShardHits {
+        final List<ScoreDoc> docs = new ArrayList<>();
+        final List<InternalTopHits> aggregations = new ArrayList<>();
+        final IntArrayList positions = new IntArrayList();
+    }
+
+    private static final Set<Class<? extends AggregationBuilder>> BUCKET_AGGREGATIONS = unmodifiableSet(newHashSet(
+        AdjacencyMatrixAggregationBuilder.class, DateHistogramAggregationBuilder.class, DateRangeAggregationBuilder.class,
+        DiversifiedAggregationBuilder.class, FilterAggregationBuilder.class, FiltersAggregationBuilder.class,
+        GeoDistanceAggregationBuilder.class, GeoGridAggregationBuilder.class, GlobalAggregationBuilder.class,
+        HistogramAggregationBuilder.class, IpRangeAggregationBuilder.class, MissingAggregationBuilder.class,
+        NestedAggregationBuilder.class, RangeAggregationBuilder.class, ReverseNestedAggregationBuilder.class,
+        SamplerAggregationBuilder.class, SignificantTermsAggregationBuilder.class, TermsAggregationBuilder.class));
+
+    private final Map<SearchShardTarget, Integer> deferredShards;
+    // by shard index, then by path of the aggregation
+    private final Map<Integer, Map<String, ShardHits>> shards = new HashMap<>();
+
+    private DeferredTopHits(Map<SearchShardTarget, Integer> deferredShards) {
+        this.deferredShards = deferredShards;
+    }
+
+    /**
+     * Returns whether the shards may defer the fetch of the hits of the top_hits aggregations of the given search. The deferred
+     * hits are found in the reduced aggregations by walking down the buckets, so every aggregation above a top_hits aggregation
+     * needs to be a bucket aggregation that is known to reduce to an {@link InternalSingleBucketAggregation} or an {@link
+     * InternalMultiBucketAggregation}.
+     */
+    public static boolean canDefer(SearchSourceBuilder source) {
+        return source == null || source.aggregations() == null || canDefer(source.aggregations().getAggregatorFactories());
+    }
+
+    private static boolean canDefer(List<AggregationBuilder> aggregations) {
+        for (AggregationBuilder aggregation : aggregations) {
+            if (BUCKET_AGGREGATIONS.contains(aggregation.getClass())) {
+                if (canDefer(aggregation.getSubAggregations()) == false) {
+                    return false;
+                }
+            } else if (containsTopHits(aggregation.getSubAggregations())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean containsTopHits(List<AggregationBuilder> aggregations) {
+        for (AggregationBuilder aggregation : aggregations) {
+            if (aggregation instanceof TopHitsAggregationBuilder || containsTopHits(aggregation.getSubAggregations())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Collects the deferred hits of the given reduced aggregations, the shards that deferred the fetch of their hits being the
+     * ones whose query results {@link org.elasticsearch.search.query.QuerySearchResult#hasDeferredTopHits() have deferred top
+     * hits}.
+     */
+    public static DeferredTopHits collect(InternalAggregations aggregations, List<? extends SearchPhaseResult> queryResults) {
+        Map<SearchShardTarget, Integer> deferredShards = new HashMap<>();
+        for (SearchPhaseResult result : queryResults) {
+            if (result.queryResult() != null && result.queryResult().hasDeferredTopHits()) {
+                deferredShards.put(result.getSearchShardTarget(), result.getShardIndex());
+            }
+        }
+        DeferredTopHits deferredTopHits = new DeferredTopHits(deferredShards);
+        if (aggregations != null && deferredShards.isEmpty() == false) {
+            deferredTopHits.collect("", aggregations, true);
+        }
+        return deferredTopHits;
+    }
+
+    private void collect(String parentPath, Aggregations aggregations, boolean knownParents) {
+        for (Aggregation aggregation : aggregations) {
+            String path = parentPath.isEmpty() ? aggregation.getName() : parentPath + '>' + aggregation.getName();
+            if (aggregation instanceof InternalTopHits) {
+                if (knownParents) {
+                    collect(path, (InternalTopHits) aggregation);
+                } else {
+                    checkNotDeferred(path, (InternalTopHits) aggregation);
+                }
+            } else if (aggregation instanceof InternalSingleBucketAggregation) {
+                collect(path, ((InternalSingleBucketAggregation) aggregation).getAggregations(), knownParents);
+            } else if (aggregation instanceof InternalMultiBucketAggregation) {
+                for (InternalMultiBucketAggregation.InternalBucket bucket : ((InternalMultiBucketAggregation<?, ?>) aggregation)
+                        .getBuckets()) {
+                    collect(path, bucket.getAggregations(), knownParents);
+                }
+            } else if (aggregation instanceof HasAggregations) {
+                // only walked to make sure that no deferred hits hide below, see canDefer
+                collect(path, ((HasAggregations) aggregation).getAggregations(), false);
+            } else if (aggregation instanceof MultiBucketsAggregation) {
+                for (MultiBucketsAggregation.Bucket bucket : ((MultiBucketsAggregation) aggregation).getBuckets()) {
+                    collect(path, bucket.getAggregations(), false);
+                }
+            }
+        }
+    }
+
+    private void checkNotDeferred(String path, InternalTopHits topHits) {
+        for (SearchHit hit : topHits.getHits().internalHits()) {
+            if (deferredShards.containsKey(hit.getShard())) {
+                throw new IllegalStateException("top_hits aggregation [" + path + "] has deferred hits under an aggregation that "
+                    + "they cannot be fetched for");
+            }
+        }
+    }
+
+    private void collect(String path, InternalTopHits topHits) {
+        SearchHit[] hits = topHits.getHits().internalHits();
+        ScoreDoc[] scoreDocs = topHits.getTopDocs().scoreDocs;
+        assert hits.length == scoreDocs.length;
+        for (int i = 0; i < hits.length; i++) {
+            Integer shardIndex = deferredShards.get(hits[i].getShard());
+            if (shardIndex != null) {
+                ShardHits shardHits = shards.computeIfAbsent(shardIndex, k -> new LinkedHashMap<>())
+                    .computeIfAbsent(path, k -> new ShardHits());
+                shardHits.docs.add(scoreDocs[i]);
+                shardHits.aggregations.add(topHits);
+                shardHits.positions.add(i);
+            }
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if there are no hits to fetch.
+     */
+    public boolean isEmpty() {
+        return shards.isEmpty();
+    }
+
+    /**
+     * The docs to fetch from the shard with the given index, by path of their top_hits aggregation.
+     */
+    public Map<String, ScoreDoc[]> docs(int shardIndex) {
+        Map<String, ShardHits> shardHits = shards.get(shardIndex);
+        if (shardHits == null) {
+            return Collections.emptyMap();
+        }
+        Map<String, ScoreDoc[]> docs = new HashMap<>(shardHits.size());
+        for (Map.Entry<String, ShardHits> entry : shardHits.entrySet()) {
+            docs.put(entry.getKey(), entry.getValue().docs.toArray(new ScoreDoc[entry.getValue().docs.size()]));
+        }
+        return docs;
+    }
+
+    /**
+     * Replaces the deferred hits with the ones that the shards fetched. The hits of the shards that failed to fetch them are
+     * removed from the aggregations, like the hits of the search.
+     */
+    public void fill(IntFunction<? extends SearchPhaseResult> fetchResults) {
+        Set<InternalTopHits> incomplete = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Map.Entry<Integer, Map<String, ShardHits>> shard : shards.entrySet()) {
+            SearchPhaseResult result = fetchResults.apply(shard.getKey());
+            FetchSearchResult fetchResult = result == null ? null : result.fetchResult();
+            for (Map.Entry<String, ShardHits> entry : shard.getValue().entrySet()) {
+                ShardHits shardHits = entry.getValue();
+                SearchHits fetched = fetchResult == null ? null : fetchResult.topHits().get(entry.getKey());
+                assert fetched == null || fetched.getHits().length == shardHits.docs.size();
+                for (int i = 0; i < shardHits.docs.size(); i++) {
+                    InternalTopHits topHits = shardHits.aggregations.get(i);
+                    if (fetched == null) {
+                        topHits.getHits().internalHits()[shardHits.positions.get(i)] = null;
+                        incomplete.add(topHits);
+                    } else {
+                        topHits.getHits().internalHits()[shardHits.positions.get(i)] = fetched.getAt(i);
+                    }
+                }
+            }
+        }
+        for (InternalTopHits topHits : incomplete) {
+            topHits.removeMissingHits();
+        }
+    }
+}
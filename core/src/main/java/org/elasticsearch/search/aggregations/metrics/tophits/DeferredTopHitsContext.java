@@ -0,0 +1,58 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.aggregations.metrics.tophits;
+
+import org.apache.lucene.search.ScoreDoc;
+import org.elasticsearch.search.SearchHits;
+import org.elasticsearch.search.internal.SearchContext;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The top_hits aggregations of a shard level search whose hits are fetched in the fetch phase rather than when the aggregations
+ * are built. The coordinating node sends the docs that made it to the reduced aggregations with the fetch request of the shard,
+ * see {@link DeferredTopHits}, and they are fetched in one go for each top_hits aggregation, whatever the number of buckets.
+ */
+public final class DeferredTopHitsContext {
+
+    private final Map<String, TopHitsAggregatorFactory> factories = new HashMap<>();
+
+    void register(TopHitsAggregatorFactory factory) {
+        factories.put(factory.path(), factory);
+    }
+
+    /**
+     * Fetches the given docs of the top_hits aggregations at the given paths.
+     */
+    public Map<String, SearchHits> fetch(SearchContext context, Map<String, ScoreDoc[]> docs) throws IOException {
+        Map<String, SearchHits> hits = new HashMap<>(docs.size());
+        for (Map.Entry<String, ScoreDoc[]> entry : docs.entrySet()) {
+            TopHitsAggregatorFactory factory = factories.get(entry.getKey());
+            if (factory == null) {
+                throw new IllegalArgumentException("No top_hits aggregation found for path [" + entry.getKey() + "]");
+            }
+            hits.put(entry.getKey(), TopHitsAggregator.fetchHits(context.fetchPhase(), factory.createSubSearchContext(),
+                entry.getValue()));
+        }
+        return hits;
+    }
+}
@@ -32,6 +32,7 @@ import org.elasticsearch.search.aggregations.InternalAggregation;
 import org.elasticsearch.search.aggregations.pipeline.PipelineAggregator;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -83,6 +84,23 @@ public class InternalTopHits extends InternalAggregation implements TopHits {
         return searchHits;
     }
 
+    TopDocs getTopDocs() {
+        return topDocs;
+    }
+
+    /**
+     * Removes the hits that the fetch phase failed to fetch, see {@link DeferredTopHits}.
+     */
+    void removeMissingHits() {
+        List<SearchHit> hits = new ArrayList<>();
+        for (SearchHit hit : searchHits.internalHits()) {
+            if (hit != null) {
+                hits.add(hit);
+            }
+        }
+        searchHits = new SearchHits(hits.toArray(new SearchHit[hits.size()]), searchHits.getTotalHits(), searchHits.getMaxScore());
+    }
+
     @Override
     public InternalAggregation doReduce(List<InternalAggregation> aggregations, ReduceContext reduceContext) {
         final SearchHits[] shardHits = new SearchHits[aggregations.size()];
@@ -158,32 +158,54 @@ public class TopHitsAggregator extends MetricsAggregator {
                     }
                 }
             }
-            subSearchContext.queryResult().topDocs(topDocs,
-                subSearchContext.sort() == null ? null : subSearchContext.sort().formats);
-            int[] docIdsToLoad = new int[topDocs.scoreDocs.length];
-            for (int i = 0; i < topDocs.scoreDocs.length; i++) {
-                docIdsToLoad[i] = topDocs.scoreDocs[i].doc;
-            }
-            subSearchContext.docIdsToLoad(docIdsToLoad, 0, docIdsToLoad.length);
-            fetchPhase.execute(subSearchContext);
-            FetchSearchResult fetchResult = subSearchContext.fetchResult();
-            SearchHit[] internalHits = fetchResult.fetchResult().hits().internalHits();
-            for (int i = 0; i < internalHits.length; i++) {
-                ScoreDoc scoreDoc = topDocs.scoreDocs[i];
-                SearchHit searchHitFields = internalHits[i];
-                searchHitFields.shard(subSearchContext.shardTarget());
-                searchHitFields.score(scoreDoc.score);
-                if (scoreDoc instanceof FieldDoc) {
-                    FieldDoc fieldDoc = (FieldDoc) scoreDoc;
-                    searchHitFields.sortValues(fieldDoc.fields, subSearchContext.sort().formats);
+            final SearchHits hits;
+            if (context.deferredTopHits() != null) {
+                // only the hits that make it to the response are fetched, in the fetch phase, see DeferredTopHits
+                SearchHit[] deferredHits = new SearchHit[topDocs.scoreDocs.length];
+                for (int i = 0; i < deferredHits.length; i++) {
+                    deferredHits[i] = new SearchHit(topDocs.scoreDocs[i].doc);
+                    deferredHits[i].shard(subSearchContext.shardTarget());
+                }
+                if (deferredHits.length > 0) {
+                    context.queryResult().hasDeferredTopHits(true);
                 }
+                hits = new SearchHits(deferredHits, topDocs.totalHits, topDocs.getMaxScore());
+            } else {
+                subSearchContext.queryResult().topDocs(topDocs,
+                    subSearchContext.sort() == null ? null : subSearchContext.sort().formats);
+                hits = fetchHits(fetchPhase, subSearchContext, topDocs.scoreDocs);
             }
-            topHits = new InternalTopHits(name, subSearchContext.from(), subSearchContext.size(), topDocs, fetchResult.hits(),
+            topHits = new InternalTopHits(name, subSearchContext.from(), subSearchContext.size(), topDocs, hits,
                     pipelineAggregators(), metaData());
         }
         return topHits;
     }
 
+    /**
+     * Fetches the given docs with the given context, and sets their scores and sort values.
+     */
+    static SearchHits fetchHits(FetchPhase fetchPhase, SubSearchContext subSearchContext, ScoreDoc[] scoreDocs) {
+        int[] docIdsToLoad = new int[scoreDocs.length];
+        for (int i = 0; i < scoreDocs.length; i++) {
+            docIdsToLoad[i] = scoreDocs[i].doc;
+        }
+        subSearchContext.docIdsToLoad(docIdsToLoad, 0, docIdsToLoad.length);
+        fetchPhase.execute(subSearchContext);
+        FetchSearchResult fetchResult = subSearchContext.fetchResult();
+        SearchHit[] internalHits = fetchResult.fetchResult().hits().internalHits();
+        for (int i = 0; i < internalHits.length; i++) {
+            ScoreDoc scoreDoc = scoreDocs[i];
+            SearchHit searchHitFields = internalHits[i];
+            searchHitFields.shard(subSearchContext.shardTarget());
+            searchHitFields.score(scoreDoc.score);
+            if (scoreDoc instanceof FieldDoc) {
+                FieldDoc fieldDoc = (FieldDoc) scoreDoc;
+                searchHitFields.sortValues(fieldDoc.fields, subSearchContext.sort().formats);
+            }
+        }
+        return fetchResult.hits();
+    }
+
     @Override
     public InternalTopHits buildEmptyAggregation() {
         TopDocs topDocs;
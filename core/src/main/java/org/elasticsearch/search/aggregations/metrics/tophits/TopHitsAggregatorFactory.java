@@ -68,11 +68,24 @@ public class TopHitsAggregatorFactory extends AggregatorFactory<TopHitsAggregato
         this.docValueFields = docValueFields;
         this.scriptFields = scriptFields;
         this.fetchSourceContext = fetchSourceContext;
+        if (context.deferredTopHits() != null) {
+            // registered when the source is parsed rather than when the aggregator is created, since query results that come from
+            // the request cache have no aggregators, yet their hits are fetched all the same
+            context.deferredTopHits().register(this);
+        }
     }
 
     @Override
     public Aggregator createInternal(Aggregator parent, boolean collectsFromSingleBucket, List<PipelineAggregator> pipelineAggregators,
             Map<String, Object> metaData) throws IOException {
+        return new TopHitsAggregator(context.fetchPhase(), createSubSearchContext(), name, context, parent,
+                pipelineAggregators, metaData);
+    }
+
+    /**
+     * Creates the context that the hits of this aggregation are fetched with.
+     */
+    SubSearchContext createSubSearchContext() throws IOException {
         SubSearchContext subSearchContext = new SubSearchContext(context);
         subSearchContext.parsedQuery(context.parsedQuery());
         subSearchContext.explain(explain);
@@ -98,8 +111,18 @@ public class TopHitsAggregatorFactory extends AggregatorFactory<TopHitsAggregato
         if (highlightBuilder != null) {
             subSearchContext.highlight(highlightBuilder.build(context.getQueryShardContext()));
         }
-        return new TopHitsAggregator(context.fetchPhase(), subSearchContext, name, context, parent,
-                pipelineAggregators, metaData);
+        return subSearchContext;
+    }
+
+    /**
+     * The names of the aggregations from the top level down to this one, separated by {@code >}.
+     */
+    String path() {
+        StringBuilder path = new StringBuilder(name);
+        for (AggregatorFactory<?> factory = parent; factory != null; factory = factory.getParent()) {
+            path.insert(0, '>').insert(0, factory.name());
+        }
+        return path.toString();
     }
 
 }
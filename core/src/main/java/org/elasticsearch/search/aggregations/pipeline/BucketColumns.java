@@ -0,0 +1,244 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.aggregations.pipeline;
+
+import org.apache.lucene.util.FixedBitSet;
+import org.elasticsearch.search.aggregations.Aggregation;
+import org.elasticsearch.search.aggregations.InternalAggregation;
+import org.elasticsearch.search.aggregations.InternalAggregation.ReduceContext;
+import org.elasticsearch.search.aggregations.InternalAggregations;
+import org.elasticsearch.search.aggregations.InternalMultiBucketAggregation;
+import org.elasticsearch.search.aggregations.bucket.MultiBucketsAggregation.Bucket;
+import org.elasticsearch.search.aggregations.bucket.histogram.HistogramFactory;
+import org.elasticsearch.search.aggregations.pipeline.BucketHelpers.GapPolicy;
+import org.elasticsearch.search.aggregations.support.AggregationPath;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A columnar view of the buckets of a histogram: their keys and doc counts, and the values that {@link ColumnarPipelineAggregator}s
+ * computed for them, in primitive arrays. Pipeline aggregators that run one after the other on the same histogram compute their
+ * values on these columns, and can read the values of the previous ones from them, so that the buckets are only rebuilt once, with
+ * the values of all of them, by {@link #build()}.
+ */
+public final class BucketColumns {
+
+    /**
+     * The values of a column, that buckets may not have.
+     */
+    public static final class Column {
+        private final double[] values;
+        private final FixedBitSet exists;
+
+        public Column(int size) {
+            values = new double[size];
+            exists = new FixedBitSet(size);
+        }
+
+        /**
+         * The number of buckets.
+         */
+        public int size() {
+            return values.length;
+        }
+
+        /**
+         * Whether the given bucket has a value.
+         */
+        public boolean exists(int bucket) {
+            return exists.get(bucket);
+        }
+
+        /**
+         * The value of the given bucket, {@code 0} if it has no value.
+         */
+        public double value(int bucket) {
+            return values[bucket];
+        }
+
+        public void set(int bucket, double value) {
+            values[bucket] = value;
+            exists.set(bucket);
+        }
+    }
+
+    private final InternalMultiBucketAggregation<?, ?> histo;
+    private final HistogramFactory factory;
+    private final List<? extends InternalMultiBucketAggregation.InternalBucket> buckets;
+    private final double[] keys;
+    private final long[] docCounts;
+    private final List<ColumnarPipelineAggregator> pipelines = new ArrayList<>();
+    private final List<Column> columns = new ArrayList<>();
+
+    public BucketColumns(InternalAggregation aggregation) {
+        histo = (InternalMultiBucketAggregation<?, ?>) aggregation;
+        factory = (HistogramFactory) aggregation;
+        buckets = histo.getBuckets();
+        keys = new double[buckets.size()];
+        docCounts = new long[buckets.size()];
+        for (int i = 0; i < buckets.size(); i++) {
+            keys[i] = factory.getKey(buckets.get(i)).doubleValue();
+            docCounts[i] = buckets.get(i).getDocCount();
+        }
+    }
+
+    /**
+     * Runs the given pipeline aggregators on the given aggregation, one after the other. Consecutive {@link
+     * ColumnarPipelineAggregator}s run on the same columns, and the buckets are only rebuilt once they are all done.
+     */
+    public static InternalAggregation reduce(InternalAggregation aggregation, List<PipelineAggregator> pipelineAggregators,
+                                             ReduceContext reduceContext) {
+        BucketColumns columns = null;
+        for (PipelineAggregator pipelineAggregator : pipelineAggregators) {
+            if (pipelineAggregator instanceof ColumnarPipelineAggregator && aggregation instanceof HistogramFactory
+                    && ((ColumnarPipelineAggregator) pipelineAggregator).supportsColumns()) {
+                ColumnarPipelineAggregator columnar = (ColumnarPipelineAggregator) pipelineAggregator;
+                if (columns != null && columns.canResolve(columnar.bucketsPaths()) == false) {
+                    aggregation = columns.build();
+                    columns = null;
+                }
+                if (columns == null) {
+                    columns = new BucketColumns(aggregation);
+                }
+                columns.add(columnar, columnar.reduce(columns));
+            } else {
+                if (columns != null) {
+                    aggregation = columns.build();
+                    columns = null;
+                }
+                aggregation = pipelineAggregator.reduce(aggregation, reduceContext);
+            }
+        }
+        return columns == null ? aggregation : columns.build();
+    }
+
+    /**
+     * The number of buckets.
+     */
+    public int size() {
+        return keys.length;
+    }
+
+    public double key(int bucket) {
+        return keys[bucket];
+    }
+
+    public long docCount(int bucket) {
+        return docCounts[bucket];
+    }
+
+    /**
+     * Whether the given buckets paths can be resolved on these columns. Paths that point to the value of a column are, but not the
+     * ones that point to other properties of the aggregations of a column, since the buckets do not have them yet.
+     */
+    boolean canResolve(String[] bucketsPaths) {
+        for (String bucketsPath : bucketsPaths) {
+            List<String> path = AggregationPath.parse(bucketsPath).getPathElementsAsStringList();
+            if (indexOf(path.get(0)) >= 0 && (path.size() > 2 || (path.size() == 2 && "value".equals(path.get(1)) == false))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int indexOf(String name) {
+        for (int i = 0; i < pipelines.size(); i++) {
+            if (pipelines.get(i).name().equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Resolves the values of the given buckets path in all buckets, like {@link BucketHelpers#resolveBucketValue} does for a
+     * single bucket. Buckets where the path does not exist have no value.
+     */
+    public Column resolve(String bucketsPath, GapPolicy gapPolicy) {
+        final List<String> path = AggregationPath.parse(bucketsPath).getPathElementsAsStringList();
+        final Column column = new Column(size());
+        final int index = indexOf(path.get(0));
+        if (index >= 0) {
+            final Column computed = columns.get(index);
+            for (int i = 0; i < size(); i++) {
+                if (computed.exists(i)) {
+                    column.set(i, BucketHelpers.applyGapPolicy(computed.value(i), docCounts[i] == 0, gapPolicy));
+                }
+            }
+        } else {
+            for (int i = 0; i < size(); i++) {
+                Double value = BucketHelpers.resolveBucketValue(histo, buckets.get(i), path, gapPolicy);
+                if (value != null) {
+                    column.set(i, value);
+                }
+            }
+        }
+        return column;
+    }
+
+    /**
+     * Adds the values that the given pipeline aggregator computed.
+     */
+    public void add(ColumnarPipelineAggregator pipeline, Column column) {
+        pipelines.add(pipeline);
+        columns.add(column);
+    }
+
+    /**
+     * The bucket at the given position, without the values of the columns.
+     */
+    public InternalMultiBucketAggregation.InternalBucket bucket(int bucket) {
+        return buckets.get(bucket);
+    }
+
+    /**
+     * Rebuilds the buckets, with the values of the columns added to their aggregations.
+     */
+    public List<Bucket> buildBuckets() {
+        List<Bucket> newBuckets = new ArrayList<>(size());
+        for (int i = 0; i < size(); i++) {
+            InternalMultiBucketAggregation.InternalBucket bucket = buckets.get(i);
+            List<InternalAggregation> aggs = null;
+            for (int c = 0; c < columns.size(); c++) {
+                if (columns.get(c).exists(i)) {
+                    if (aggs == null) {
+                        aggs = new ArrayList<>();
+                        for (Aggregation aggregation : bucket.getAggregations()) {
+                            aggs.add((InternalAggregation) aggregation);
+                        }
+                    }
+                    aggs.add(pipelines.get(c).createValue(this, i, columns.get(c).value(i)));
+                }
+            }
+            // buckets without any value are reused as they are
+            newBuckets.add(aggs == null ? bucket : factory.createBucket(factory.getKey(bucket), bucket.getDocCount(),
+                new InternalAggregations(aggs)));
+        }
+        return newBuckets;
+    }
+
+    /**
+     * Rebuilds the histogram, with the values of the columns added to the aggregations of its buckets.
+     */
+    public InternalAggregation build() {
+        return columns.isEmpty() ? (InternalAggregation) histo : factory.createAggregation(buildBuckets());
+    }
+}
@@ -172,20 +172,28 @@ public class BucketHelpers {
                 }
                 // doc count never has missing values so gap policy doesn't apply here
                 boolean isDocCountProperty = aggPathAsList.size() == 1 && "_count".equals(aggPathAsList.get(0));
-                if (Double.isInfinite(value) || Double.isNaN(value) || (bucket.getDocCount() == 0 && !isDocCountProperty)) {
-                    switch (gapPolicy) {
-                    case INSERT_ZEROS:
-                        return 0.0;
-                    case SKIP:
-                    default:
-                        return Double.NaN;
-                    }
-                } else {
-                    return value;
-                }
+                return applyGapPolicy(value, bucket.getDocCount() == 0 && !isDocCountProperty, gapPolicy);
             }
         } catch (InvalidAggregationPathException e) {
             return null;
         }
     }
+
+    /**
+     * Returns the given value of a bucket, or the value that the given gap policy puts in its place if the value is not a finite
+     * number or if the bucket is empty.
+     */
+    static double applyGapPolicy(double value, boolean emptyBucket, GapPolicy gapPolicy) {
+        if (Double.isInfinite(value) || Double.isNaN(value) || emptyBucket) {
+            switch (gapPolicy) {
+            case INSERT_ZEROS:
+                return 0.0;
+            case SKIP:
+            default:
+                return Double.NaN;
+            }
+        } else {
+            return value;
+        }
+    }
 }
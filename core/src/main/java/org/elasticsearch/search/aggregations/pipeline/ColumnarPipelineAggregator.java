@@ -0,0 +1,70 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.aggregations.pipeline;
+
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.search.aggregations.InternalAggregation;
+import org.elasticsearch.search.aggregations.InternalAggregation.ReduceContext;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * A parent pipeline aggregator that computes at most one value per bucket of a histogram, on the {@link BucketColumns} of the
+ * histogram rather than on its buckets, so that it can share them with the pipeline aggregators that run before and after it.
+ */
+public abstract class ColumnarPipelineAggregator extends PipelineAggregator {
+
+    protected ColumnarPipelineAggregator(String name, String[] bucketsPaths, Map<String, Object> metaData) {
+        super(name, bucketsPaths, metaData);
+    }
+
+    /**
+     * Read from a stream.
+     */
+    protected ColumnarPipelineAggregator(StreamInput in) throws IOException {
+        super(in);
+    }
+
+    /**
+     * Whether this pipeline aggregator can run on columns, otherwise it runs on the buckets with {@link #reduce(InternalAggregation,
+     * ReduceContext)}.
+     */
+    public boolean supportsColumns() {
+        return true;
+    }
+
+    /**
+     * Computes the values of this pipeline aggregator for the buckets of the given columns.
+     */
+    public abstract BucketColumns.Column reduce(BucketColumns columns);
+
+    /**
+     * Creates the aggregation that holds the value of this pipeline aggregator in the given bucket.
+     */
+    public abstract InternalAggregation createValue(BucketColumns columns, int bucket, double value);
+
+    @Override
+    public InternalAggregation reduce(InternalAggregation aggregation, ReduceContext reduceContext) {
+        BucketColumns columns = new BucketColumns(aggregation);
+        columns.add(this, reduce(columns));
+        return columns.build();
+    }
+}
@@ -23,24 +23,16 @@ import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.search.DocValueFormat;
 import org.elasticsearch.search.aggregations.InternalAggregation;
-import org.elasticsearch.search.aggregations.InternalAggregation.ReduceContext;
-import org.elasticsearch.search.aggregations.InternalAggregations;
-import org.elasticsearch.search.aggregations.InternalMultiBucketAggregation;
-import org.elasticsearch.search.aggregations.bucket.MultiBucketsAggregation.Bucket;
-import org.elasticsearch.search.aggregations.bucket.histogram.HistogramFactory;
+import org.elasticsearch.search.aggregations.pipeline.BucketColumns;
 import org.elasticsearch.search.aggregations.pipeline.BucketHelpers.GapPolicy;
+import org.elasticsearch.search.aggregations.pipeline.ColumnarPipelineAggregator;
 import org.elasticsearch.search.aggregations.pipeline.PipelineAggregator;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
 
-import static org.elasticsearch.search.aggregations.pipeline.BucketHelpers.resolveBucketValue;
-
-public class DerivativePipelineAggregator extends PipelineAggregator {
+public class DerivativePipelineAggregator extends ColumnarPipelineAggregator {
     private final DocValueFormat formatter;
     private final GapPolicy gapPolicy;
     private final Double xAxisUnits;
@@ -76,37 +68,23 @@ public class DerivativePipelineAggregator extends PipelineAggregator {
     }
 
     @Override
-    public InternalAggregation reduce(InternalAggregation aggregation, ReduceContext reduceContext) {
-        InternalMultiBucketAggregation<? extends InternalMultiBucketAggregation, ? extends InternalMultiBucketAggregation.InternalBucket>
-                histo = (InternalMultiBucketAggregation<? extends InternalMultiBucketAggregation, ? extends
-                InternalMultiBucketAggregation.InternalBucket>) aggregation;
-        List<? extends InternalMultiBucketAggregation.InternalBucket> buckets = histo.getBuckets();
-        HistogramFactory factory = (HistogramFactory) histo;
-
-        List<Bucket> newBuckets = new ArrayList<>();
-        Number lastBucketKey = null;
-        Double lastBucketValue = null;
-        for (InternalMultiBucketAggregation.InternalBucket bucket : buckets) {
-            Number thisBucketKey = factory.getKey(bucket);
-            Double thisBucketValue = resolveBucketValue(histo, bucket, bucketsPaths()[0], gapPolicy);
-            if (lastBucketValue != null && thisBucketValue != null) {
-                double gradient = thisBucketValue - lastBucketValue;
-                double xDiff = -1;
-                if (xAxisUnits != null) {
-                    xDiff = (thisBucketKey.doubleValue() - lastBucketKey.doubleValue()) / xAxisUnits;
-                }
-                final List<InternalAggregation> aggs = StreamSupport.stream(bucket.getAggregations().spliterator(), false).map((p) -> {
-                    return (InternalAggregation) p;
-                }).collect(Collectors.toList());
-                aggs.add(new InternalDerivative(name(), gradient, xDiff, formatter, new ArrayList<PipelineAggregator>(), metaData()));
-                Bucket newBucket = factory.createBucket(factory.getKey(bucket), bucket.getDocCount(), new InternalAggregations(aggs));
-                newBuckets.add(newBucket);
-            } else {
-                newBuckets.add(bucket);
+    public BucketColumns.Column reduce(BucketColumns columns) {
+        BucketColumns.Column values = columns.resolve(bucketsPaths()[0], gapPolicy);
+        BucketColumns.Column gradients = new BucketColumns.Column(columns.size());
+        for (int i = 1; i < columns.size(); i++) {
+            if (values.exists(i - 1) && values.exists(i)) {
+                gradients.set(i, values.value(i) - values.value(i - 1));
             }
-            lastBucketKey = thisBucketKey;
-            lastBucketValue = thisBucketValue;
         }
-        return factory.createAggregation(newBuckets);
+        return gradients;
+    }
+
+    @Override
+    public InternalAggregation createValue(BucketColumns columns, int bucket, double gradient) {
+        double xDiff = -1;
+        if (xAxisUnits != null) {
+            xDiff = (columns.key(bucket) - columns.key(bucket - 1)) / xAxisUnits;
+        }
+        return new InternalDerivative(name(), gradient, xDiff, formatter, new ArrayList<PipelineAggregator>(), metaData());
     }
 }
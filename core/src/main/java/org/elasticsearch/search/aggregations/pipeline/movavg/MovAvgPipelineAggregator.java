@@ -26,11 +26,11 @@ import org.elasticsearch.search.DocValueFormat;
 import org.elasticsearch.search.aggregations.InternalAggregation;
 import org.elasticsearch.search.aggregations.InternalAggregation.ReduceContext;
 import org.elasticsearch.search.aggregations.InternalAggregations;
-import org.elasticsearch.search.aggregations.InternalMultiBucketAggregation;
-import org.elasticsearch.search.aggregations.bucket.MultiBucketsAggregation;
 import org.elasticsearch.search.aggregations.bucket.MultiBucketsAggregation.Bucket;
 import org.elasticsearch.search.aggregations.bucket.histogram.HistogramFactory;
+import org.elasticsearch.search.aggregations.pipeline.BucketColumns;
 import org.elasticsearch.search.aggregations.pipeline.BucketHelpers.GapPolicy;
+import org.elasticsearch.search.aggregations.pipeline.ColumnarPipelineAggregator;
 import org.elasticsearch.search.aggregations.pipeline.InternalSimpleValue;
 import org.elasticsearch.search.aggregations.pipeline.PipelineAggregator;
 import org.elasticsearch.search.aggregations.pipeline.movavg.models.MovAvgModel;
@@ -38,14 +38,11 @@ import org.elasticsearch.search.aggregations.pipeline.movavg.models.MovAvgModel;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.ListIterator;
 import java.util.Map;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
-import static org.elasticsearch.search.aggregations.pipeline.BucketHelpers.resolveBucketValue;
-
-public class MovAvgPipelineAggregator extends PipelineAggregator {
+public class MovAvgPipelineAggregator extends ColumnarPipelineAggregator {
     private final DocValueFormat formatter;
     private final GapPolicy gapPolicy;
     private final int window;
@@ -93,60 +90,70 @@ public class MovAvgPipelineAggregator extends PipelineAggregator {
     }
 
     @Override
-    public InternalAggregation reduce(InternalAggregation aggregation, ReduceContext reduceContext) {
-        InternalMultiBucketAggregation<? extends InternalMultiBucketAggregation, ? extends InternalMultiBucketAggregation.InternalBucket>
-                histo = (InternalMultiBucketAggregation<? extends InternalMultiBucketAggregation, ? extends
-                InternalMultiBucketAggregation.InternalBucket>) aggregation;
-        List<? extends InternalMultiBucketAggregation.InternalBucket> buckets = histo.getBuckets();
-        HistogramFactory factory = (HistogramFactory) histo;
-
-        List<Bucket> newBuckets = new ArrayList<>();
-        EvictingQueue<Double> values = new EvictingQueue<>(this.window);
+    public boolean supportsColumns() {
+        // predictions add buckets, see #reduce(InternalAggregation, ReduceContext)
+        return predict == 0;
+    }
 
-        Number lastValidKey = 0;
-        int lastValidPosition = 0;
-        int counter = 0;
+    @Override
+    public BucketColumns.Column reduce(BucketColumns columns) {
+        return movingAverage(columns, columns.resolve(bucketsPaths()[0], gapPolicy));
+    }
 
+    private BucketColumns.Column movingAverage(BucketColumns columns, BucketColumns.Column values) {
         // Do we need to fit the model parameters to the data?
         if (minimize) {
             assert (model.canBeMinimized());
-            model = minimize(buckets, histo, model);
+            model = minimize(values, model);
         }
 
-        for (InternalMultiBucketAggregation.InternalBucket bucket : buckets) {
-            Double thisBucketValue = resolveBucketValue(histo, bucket, bucketsPaths()[0], gapPolicy);
-
-            // Default is to reuse existing bucket.  Simplifies the rest of the logic,
-            // since we only change newBucket if we can add to it
-            Bucket newBucket = bucket;
-
-            if (!(thisBucketValue == null || thisBucketValue.equals(Double.NaN))) {
-
+        BucketColumns.Column movavgs = new BucketColumns.Column(columns.size());
+        EvictingQueue<Double> windowValues = new EvictingQueue<>(this.window);
+        for (int i = 0; i < columns.size(); i++) {
+            if (isValue(values, i)) {
                 // Some models (e.g. HoltWinters) have certain preconditions that must be met
-                if (model.hasValue(values.size())) {
-                    double movavg = model.next(values);
-
-                    List<InternalAggregation> aggs = StreamSupport.stream(bucket.getAggregations().spliterator(), false).map((p) -> {
-                        return (InternalAggregation) p;
-                    }).collect(Collectors.toList());
-                    aggs.add(new InternalSimpleValue(name(), movavg, formatter, new ArrayList<PipelineAggregator>(), metaData()));
-                    newBucket = factory.createBucket(factory.getKey(bucket), bucket.getDocCount(), new InternalAggregations(aggs));
+                if (model.hasValue(windowValues.size())) {
+                    movavgs.set(i, model.next(windowValues));
                 }
+                windowValues.offer(values.value(i));
+            }
+        }
+        return movavgs;
+    }
 
-                if (predict > 0) {
-                    lastValidKey = factory.getKey(bucket);
-                    lastValidPosition = counter;
-                }
+    private static boolean isValue(BucketColumns.Column values, int bucket) {
+        return values.exists(bucket) && Double.isNaN(values.value(bucket)) == false;
+    }
 
-                values.offer(thisBucketValue);
-            }
-            counter += 1;
-            newBuckets.add(newBucket);
+    @Override
+    public InternalAggregation createValue(BucketColumns columns, int bucket, double movavg) {
+        return new InternalSimpleValue(name(), movavg, formatter, new ArrayList<PipelineAggregator>(), metaData());
+    }
 
+    @Override
+    public InternalAggregation reduce(InternalAggregation aggregation, ReduceContext reduceContext) {
+        BucketColumns columns = new BucketColumns(aggregation);
+        BucketColumns.Column values = columns.resolve(bucketsPaths()[0], gapPolicy);
+        columns.add(this, movingAverage(columns, values));
+        if (predict == 0) {
+            return columns.build();
         }
 
-        if (buckets.size() > 0 && predict > 0) {
-            double[] predictions = model.predict(values, predict);
+        HistogramFactory factory = (HistogramFactory) aggregation;
+        List<Bucket> newBuckets = columns.buildBuckets();
+        EvictingQueue<Double> windowValues = new EvictingQueue<>(this.window);
+        Number lastValidKey = 0;
+        int lastValidPosition = 0;
+        for (int i = 0; i < columns.size(); i++) {
+            if (isValue(values, i)) {
+                lastValidKey = factory.getKey(columns.bucket(i));
+                lastValidPosition = i;
+                windowValues.offer(values.value(i));
+            }
+        }
+
+        if (columns.size() > 0) {
+            double[] predictions = model.predict(windowValues, predict);
             for (int i = 0; i < predictions.length; i++) {
 
                 List<InternalAggregation> aggs;
@@ -183,22 +190,17 @@ public class MovAvgPipelineAggregator extends PipelineAggregator {
         return factory.createAggregation(newBuckets);
     }
 
-    private MovAvgModel minimize(List<? extends InternalMultiBucketAggregation.InternalBucket> buckets,
-                                 MultiBucketsAggregation histo, MovAvgModel model) {
+    private MovAvgModel minimize(BucketColumns.Column values, MovAvgModel model) {
 
         int counter = 0;
-        EvictingQueue<Double> values = new EvictingQueue<>(this.window);
-
         double[] test = new double[window];
-        ListIterator<? extends InternalMultiBucketAggregation.InternalBucket> iter = buckets.listIterator(buckets.size());
+        int bucket = values.size();
 
-        // We have to walk the iterator backwards because we don't know if/how many buckets are empty.
-        while (iter.hasPrevious() && counter < window) {
-
-            Double thisBucketValue = resolveBucketValue(histo, iter.previous(), bucketsPaths()[0], gapPolicy);
-
-            if (!(thisBucketValue == null || thisBucketValue.equals(Double.NaN))) {
-                test[window - counter - 1] = thisBucketValue;
+        // We have to walk the buckets backwards because we don't know if/how many buckets are empty.
+        while (bucket > 0 && counter < window) {
+            bucket--;
+            if (isValue(values, bucket)) {
+                test[window - counter - 1] = values.value(bucket);
                 counter += 1;
             }
         }
@@ -215,12 +217,10 @@ public class MovAvgPipelineAggregator extends PipelineAggregator {
         counter = 0;
         double[] train = new double[window];
 
-        while (iter.hasPrevious() && counter < window) {
-
-            Double thisBucketValue = resolveBucketValue(histo, iter.previous(), bucketsPaths()[0], gapPolicy);
-
-            if (!(thisBucketValue == null || thisBucketValue.equals(Double.NaN))) {
-                train[window - counter - 1] = thisBucketValue;
+        while (bucket > 0 && counter < window) {
+            bucket--;
+            if (isValue(values, bucket)) {
+                train[window - counter - 1] = values.value(bucket);
                 counter += 1;
             }
         }
@@ -231,10 +231,11 @@ public class MovAvgPipelineAggregator extends PipelineAggregator {
             return model;
         }
 
+        EvictingQueue<Double> trainValues = new EvictingQueue<>(this.window);
         for (double v : train) {
-            values.add(v);
+            trainValues.add(v);
         }
 
-        return SimulatedAnealingMinimizer.minimize(model, values, test);
+        return SimulatedAnealingMinimizer.minimize(model, trainValues, test);
     }
 }
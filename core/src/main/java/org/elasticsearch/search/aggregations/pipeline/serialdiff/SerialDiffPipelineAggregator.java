@@ -20,30 +20,20 @@
 package org.elasticsearch.search.aggregations.pipeline.serialdiff;
 
 import org.elasticsearch.common.Nullable;
-import org.elasticsearch.common.collect.EvictingQueue;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.search.DocValueFormat;
 import org.elasticsearch.search.aggregations.InternalAggregation;
-import org.elasticsearch.search.aggregations.InternalAggregation.ReduceContext;
-import org.elasticsearch.search.aggregations.InternalAggregations;
-import org.elasticsearch.search.aggregations.InternalMultiBucketAggregation;
-import org.elasticsearch.search.aggregations.bucket.MultiBucketsAggregation.Bucket;
-import org.elasticsearch.search.aggregations.bucket.histogram.HistogramFactory;
+import org.elasticsearch.search.aggregations.pipeline.BucketColumns;
 import org.elasticsearch.search.aggregations.pipeline.BucketHelpers.GapPolicy;
+import org.elasticsearch.search.aggregations.pipeline.ColumnarPipelineAggregator;
 import org.elasticsearch.search.aggregations.pipeline.InternalSimpleValue;
-import org.elasticsearch.search.aggregations.pipeline.PipelineAggregator;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
 
-import static org.elasticsearch.search.aggregations.pipeline.BucketHelpers.resolveBucketValue;
-
-public class SerialDiffPipelineAggregator extends PipelineAggregator {
+public class SerialDiffPipelineAggregator extends ColumnarPipelineAggregator {
     private DocValueFormat formatter;
     private GapPolicy gapPolicy;
     private int lag;
@@ -79,49 +69,25 @@ public class SerialDiffPipelineAggregator extends PipelineAggregator {
     }
 
     @Override
-    public InternalAggregation reduce(InternalAggregation aggregation, ReduceContext reduceContext) {
-        InternalMultiBucketAggregation<? extends InternalMultiBucketAggregation, ? extends InternalMultiBucketAggregation.InternalBucket>
-                histo = (InternalMultiBucketAggregation<? extends InternalMultiBucketAggregation, ? extends
-                InternalMultiBucketAggregation.InternalBucket>) aggregation;
-        List<? extends InternalMultiBucketAggregation.InternalBucket> buckets = histo.getBuckets();
-        HistogramFactory factory = (HistogramFactory) histo;
-
-        List<Bucket> newBuckets = new ArrayList<>();
-        EvictingQueue<Double> lagWindow = new EvictingQueue<>(lag);
-        int counter = 0;
-
-        for (InternalMultiBucketAggregation.InternalBucket bucket : buckets) {
-            Double thisBucketValue = resolveBucketValue(histo, bucket, bucketsPaths()[0], gapPolicy);
-            Bucket newBucket = bucket;
-
-            counter += 1;
-
-            // Still under the initial lag period, add nothing and move on
-            Double lagValue;
-            if (counter <= lag) {
-                lagValue = Double.NaN;
-            } else {
-                lagValue = lagWindow.peek();  // Peek here, because we rely on add'ing to always move the window
-            }
-
-            // Normalize null's to NaN
-            if (thisBucketValue == null) {
-                thisBucketValue = Double.NaN;
+    public BucketColumns.Column reduce(BucketColumns columns) {
+        BucketColumns.Column values = columns.resolve(bucketsPaths()[0], gapPolicy);
+        BucketColumns.Column diffs = new BucketColumns.Column(columns.size());
+        // buckets under the initial lag period get no value
+        for (int i = lag; i < columns.size(); i++) {
+            // both have values, calculate diff
+            if (isValue(values, i) && isValue(values, i - lag)) {
+                diffs.set(i, values.value(i) - values.value(i - lag));
             }
+        }
+        return diffs;
+    }
 
-            // Both have values, calculate diff and replace the "empty" bucket
-            if (!Double.isNaN(thisBucketValue) && !Double.isNaN(lagValue)) {
-                double diff = thisBucketValue - lagValue;
-
-                List<InternalAggregation> aggs = StreamSupport.stream(bucket.getAggregations().spliterator(), false).map(
-                        (p) -> (InternalAggregation) p).collect(Collectors.toList());
-                aggs.add(new InternalSimpleValue(name(), diff, formatter, new ArrayList<>(), metaData()));
-                newBucket = factory.createBucket(factory.getKey(bucket), bucket.getDocCount(), new InternalAggregations(aggs));
-            }
+    private static boolean isValue(BucketColumns.Column values, int bucket) {
+        return values.exists(bucket) && Double.isNaN(values.value(bucket)) == false;
+    }
 
-            newBuckets.add(newBucket);
-            lagWindow.add(thisBucketValue);
-        }
-        return factory.createAggregation(newBuckets);
+    @Override
+    public InternalAggregation createValue(BucketColumns columns, int bucket, double diff) {
+        return new InternalSimpleValue(name(), diff, formatter, new ArrayList<>(), metaData());
     }
 }
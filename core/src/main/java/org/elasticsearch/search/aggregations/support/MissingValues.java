@@ -22,6 +22,7 @@ package org.elasticsearch.search.aggregations.support;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.RandomAccessOrds;
 import org.apache.lucene.index.SortedNumericDocValues;
+import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.util.BytesRef;
 import org.elasticsearch.common.geo.GeoPoint;
 import org.elasticsearch.index.fielddata.AbstractRandomAccessOrds;
@@ -187,6 +188,11 @@ public enum MissingValues {
                 RandomAccessOrds values = valuesSource.globalOrdinalsValues(context);
                 return replaceMissing(values, missing);
             }
+
+            @Override
+            public boolean isGlobalOrdinalsLoaded(IndexSearcher indexSearcher) {
+                return valuesSource.isGlobalOrdinalsLoaded(indexSearcher);
+            }
         };
     }
 
@@ -110,6 +110,15 @@ public abstract class ValuesSource {
 
             public abstract RandomAccessOrds globalOrdinalsValues(LeafReaderContext context);
 
+            /**
+             * Whether the global ordinals of the reader of the given searcher are available without having to build them, in
+             * which case {@link #globalMaxOrd(IndexSearcher)} and {@link #globalOrdinalsValues(LeafReaderContext)} are cheap.
+             */
+            public boolean isGlobalOrdinalsLoaded(IndexSearcher indexSearcher) {
+                // the ordinals of a single segment are already global
+                return indexSearcher.getIndexReader().leaves().size() <= 1;
+            }
+
             public long globalMaxOrd(IndexSearcher indexSearcher) {
                 IndexReader indexReader = indexSearcher.getIndexReader();
                 if (indexReader.leaves().isEmpty()) {
@@ -147,6 +156,12 @@ public abstract class ValuesSource {
                     final AtomicOrdinalsFieldData atomicFieldData = global.load(context);
                     return atomicFieldData.getOrdinalsValues();
                 }
+
+                @Override
+                public boolean isGlobalOrdinalsLoaded(IndexSearcher indexSearcher) {
+                    final IndexReader indexReader = indexSearcher.getIndexReader();
+                    return indexReader instanceof DirectoryReader && indexFieldData.isGlobalLoaded((DirectoryReader) indexReader);
+                }
             }
         }
 
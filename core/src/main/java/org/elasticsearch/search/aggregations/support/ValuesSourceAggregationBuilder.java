@@ -160,6 +160,13 @@ public abstract class ValuesSourceAggregationBuilder<VS extends ValuesSource, AB
      */
     protected abstract void innerWriteTo(StreamOutput out) throws IOException;
 
+    /**
+     * Gets the type of the values that this aggregation expects, if it only supports some types.
+     */
+    protected ValueType targetValueType() {
+        return targetValueType;
+    }
+
     /**
      * Should this builder serialize its targetValueType? Defaults to false. All subclasses that override this to true should use the three
      * argument read constructor rather than the four argument version.
@@ -896,6 +896,15 @@ public final class SearchSourceBuilder extends ToXContentToBytes implements Writ
         return shallowCopy(queryBuilder, postQueryBuilder, slice);
     }
 
+    /**
+     * Create a shallow copy of this builder with new aggregations.
+     */
+    public SearchSourceBuilder copyWithNewAggregations(AggregatorFactories.Builder aggregations) {
+        SearchSourceBuilder copy = shallowCopy(queryBuilder, postQueryBuilder, sliceBuilder);
+        copy.aggregations = aggregations;
+        return copy;
+    }
+
     /**
      * Create a shallow copy of this source replaced {@link #queryBuilder}, {@link #postQueryBuilder}, and {@link #sliceBuilder}. Used by
      * {@link #rewrite(QueryShardContext)} and {@link #copyWithNewSlice(SliceBuilder)}.
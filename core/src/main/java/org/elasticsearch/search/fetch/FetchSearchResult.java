@@ -19,6 +19,7 @@
 
 package org.elasticsearch.search.fetch;
 
+import org.elasticsearch.Version;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.search.SearchHit;
@@ -28,10 +29,15 @@ import org.elasticsearch.search.SearchHits;
 import org.elasticsearch.search.query.QuerySearchResult;
 
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static java.util.Collections.emptyMap;
 
 public final class FetchSearchResult extends SearchPhaseResult {
 
     private SearchHits hits;
+    private Map<String, SearchHits> topHits = emptyMap();
     // client side counter
     private transient int counter;
 
@@ -69,6 +75,17 @@ public final class FetchSearchResult extends SearchPhaseResult {
         return hits;
     }
 
+    /**
+     * Sets the hits of the top_hits aggregations whose fetch was deferred to the fetch phase, by path of the aggregation.
+     */
+    public void topHits(Map<String, SearchHits> topHits) {
+        this.topHits = topHits;
+    }
+
+    public Map<String, SearchHits> topHits() {
+        return topHits;
+    }
+
     public FetchSearchResult initCounter() {
         counter = 0;
         return this;
@@ -89,6 +106,15 @@ public final class FetchSearchResult extends SearchPhaseResult {
         super.readFrom(in);
         requestId = in.readLong();
         hits = SearchHits.readSearchHits(in);
+        if (in.getVersion().onOrAfter(Version.V_5_5_2_UNRELEASED)) {
+            int numTopHits = in.readVInt();
+            if (numTopHits > 0) {
+                topHits = new HashMap<>(numTopHits);
+                for (int i = 0; i < numTopHits; i++) {
+                    topHits.put(in.readString(), SearchHits.readSearchHits(in));
+                }
+            }
+        }
     }
 
     @Override
@@ -96,5 +122,12 @@ public final class FetchSearchResult extends SearchPhaseResult {
         super.writeTo(out);
         out.writeLong(requestId);
         hits.writeTo(out);
+        if (out.getVersion().onOrAfter(Version.V_5_5_2_UNRELEASED)) {
+            out.writeVInt(topHits.size());
+            for (Map.Entry<String, SearchHits> entry : topHits.entrySet()) {
+                out.writeString(entry.getKey());
+                entry.getValue().writeTo(out);
+            }
+        }
     }
 }
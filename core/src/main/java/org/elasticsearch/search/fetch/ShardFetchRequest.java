@@ -22,6 +22,7 @@ package org.elasticsearch.search.fetch;
 import com.carrotsearch.hppc.IntArrayList;
 import org.apache.lucene.search.FieldDoc;
 import org.apache.lucene.search.ScoreDoc;
+import org.elasticsearch.Version;
 import org.elasticsearch.action.search.SearchTask;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
@@ -31,6 +32,10 @@ import org.elasticsearch.tasks.TaskId;
 import org.elasticsearch.transport.TransportRequest;
 
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static java.util.Collections.emptyMap;
 
 /**
  * Shard level fetch base request. Holds all the info needed to execute a fetch.
@@ -46,6 +51,8 @@ public class ShardFetchRequest extends TransportRequest {
 
     private ScoreDoc lastEmittedDoc;
 
+    private Map<String, ScoreDoc[]> topHitsDocs = emptyMap();
+
     public ShardFetchRequest() {
     }
 
@@ -72,6 +79,17 @@ public class ShardFetchRequest extends TransportRequest {
         return lastEmittedDoc;
     }
 
+    /**
+     * The docs to fetch for the top_hits aggregations whose fetch was deferred to the fetch phase, by path of the aggregation.
+     */
+    public Map<String, ScoreDoc[]> topHitsDocs() {
+        return topHitsDocs;
+    }
+
+    public void topHitsDocs(Map<String, ScoreDoc[]> topHitsDocs) {
+        this.topHitsDocs = topHitsDocs;
+    }
+
     @Override
     public void readFrom(StreamInput in) throws IOException {
         super.readFrom(in);
@@ -81,14 +99,33 @@ public class ShardFetchRequest extends TransportRequest {
         for (int i = 0; i < size; i++) {
             docIds[i] = in.readVInt();
         }
+        lastEmittedDoc = readScoreDoc(in);
+        if (in.getVersion().onOrAfter(Version.V_5_5_2_UNRELEASED)) {
+            int numTopHits = in.readVInt();
+            if (numTopHits > 0) {
+                topHitsDocs = new HashMap<>(numTopHits);
+                for (int i = 0; i < numTopHits; i++) {
+                    String path = in.readString();
+                    ScoreDoc[] docs = new ScoreDoc[in.readVInt()];
+                    for (int j = 0; j < docs.length; j++) {
+                        docs[j] = readScoreDoc(in);
+                    }
+                    topHitsDocs.put(path, docs);
+                }
+            }
+        }
+    }
+
+    private static ScoreDoc readScoreDoc(StreamInput in) throws IOException {
         byte flag = in.readByte();
         if (flag == 1) {
-            lastEmittedDoc = Lucene.readFieldDoc(in);
+            return Lucene.readFieldDoc(in);
         } else if (flag == 2) {
-            lastEmittedDoc = Lucene.readScoreDoc(in);
+            return Lucene.readScoreDoc(in);
         } else if (flag != 0) {
             throw new IOException("Unknown flag: " + flag);
         }
+        return null;
     }
 
     @Override
@@ -99,14 +136,28 @@ public class ShardFetchRequest extends TransportRequest {
         for (int i = 0; i < size; i++) {
             out.writeVInt(docIds[i]);
         }
-        if (lastEmittedDoc == null) {
+        writeScoreDoc(out, lastEmittedDoc);
+        if (out.getVersion().onOrAfter(Version.V_5_5_2_UNRELEASED)) {
+            out.writeVInt(topHitsDocs.size());
+            for (Map.Entry<String, ScoreDoc[]> entry : topHitsDocs.entrySet()) {
+                out.writeString(entry.getKey());
+                out.writeVInt(entry.getValue().length);
+                for (ScoreDoc doc : entry.getValue()) {
+                    writeScoreDoc(out, doc);
+                }
+            }
+        }
+    }
+
+    private static void writeScoreDoc(StreamOutput out, ScoreDoc doc) throws IOException {
+        if (doc == null) {
             out.writeByte((byte) 0);
-        } else if (lastEmittedDoc instanceof FieldDoc) {
+        } else if (doc instanceof FieldDoc) {
             out.writeByte((byte) 1);
-            Lucene.writeFieldDoc(out, (FieldDoc) lastEmittedDoc);
+            Lucene.writeFieldDoc(out, (FieldDoc) doc);
         } else {
             out.writeByte((byte) 2);
-            Lucene.writeScoreDoc(out, lastEmittedDoc);
+            Lucene.writeScoreDoc(out, doc);
         }
     }
 
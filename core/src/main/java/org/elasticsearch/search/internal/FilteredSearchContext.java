@@ -39,6 +39,7 @@ import org.elasticsearch.index.similarity.SimilarityService;
 import org.elasticsearch.search.SearchExtBuilder;
 import org.elasticsearch.search.SearchShardTarget;
 import org.elasticsearch.search.aggregations.SearchContextAggregations;
+import org.elasticsearch.search.aggregations.metrics.tophits.DeferredTopHitsContext;
 import org.elasticsearch.search.collapse.CollapseContext;
 import org.elasticsearch.search.dfs.DfsSearchResult;
 import org.elasticsearch.search.fetch.FetchPhase;
@@ -181,6 +182,16 @@ public abstract class FilteredSearchContext extends SearchContext {
         return in.innerHits();
     }
 
+    @Override
+    public DeferredTopHitsContext deferredTopHits() {
+        return in.deferredTopHits();
+    }
+
+    @Override
+    public void deferredTopHits(DeferredTopHitsContext deferredTopHitsContext) {
+        in.deferredTopHits(deferredTopHitsContext);
+    }
+
     @Override
     public SuggestionSearchContext suggest() {
         return in.suggest();
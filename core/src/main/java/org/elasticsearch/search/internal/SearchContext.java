@@ -46,6 +46,7 @@ import org.elasticsearch.index.similarity.SimilarityService;
 import org.elasticsearch.search.SearchExtBuilder;
 import org.elasticsearch.search.SearchShardTarget;
 import org.elasticsearch.search.aggregations.SearchContextAggregations;
+import org.elasticsearch.search.aggregations.metrics.tophits.DeferredTopHitsContext;
 import org.elasticsearch.search.dfs.DfsSearchResult;
 import org.elasticsearch.search.fetch.FetchPhase;
 import org.elasticsearch.search.fetch.FetchSearchResult;
@@ -85,6 +86,7 @@ public abstract class SearchContext extends AbstractRefCounted implements Releas
     private Map<Lifetime, List<Releasable>> clearables = null;
     private final AtomicBoolean closed = new AtomicBoolean(false);
     private InnerHitsContext innerHitsContext;
+    private DeferredTopHitsContext deferredTopHitsContext;
 
     protected SearchContext() {
         super("search_context");
@@ -168,6 +170,19 @@ public abstract class SearchContext extends AbstractRefCounted implements Releas
         return innerHitsContext;
     }
 
+    /**
+     * The top_hits aggregations whose hits are fetched in the fetch phase, or <code>null</code> if they fetch their hits when
+     * the aggregations are built.
+     */
+    @Nullable
+    public DeferredTopHitsContext deferredTopHits() {
+        return deferredTopHitsContext;
+    }
+
+    public void deferredTopHits(DeferredTopHitsContext deferredTopHitsContext) {
+        this.deferredTopHitsContext = deferredTopHitsContext;
+    }
+
     public abstract SuggestionSearchContext suggest();
 
     public abstract void suggest(SuggestionSearchContext suggest);
@@ -0,0 +1,99 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.internal;
+
+import org.elasticsearch.action.search.SearchTask;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.tasks.Task;
+import org.elasticsearch.tasks.TaskId;
+import org.elasticsearch.transport.TransportRequest;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Shard level request that carries the query phase of several searches, typically the searches of a multi search request, that
+ * target the same shard. The node holding the shard executes them one after the other on the same point-in-time view of the shard.
+ */
+public class ShardSearchBatchRequest extends TransportRequest {
+
+    private List<ShardSearchTransportRequest> requests;
+
+    public ShardSearchBatchRequest() {
+    }
+
+    public ShardSearchBatchRequest(List<ShardSearchTransportRequest> requests) {
+        if (requests.isEmpty()) {
+            throw new IllegalArgumentException("a batch needs at least one request");
+        }
+        final ShardId shardId = requests.get(0).shardId();
+        for (ShardSearchTransportRequest request : requests) {
+            if (shardId.equals(request.shardId()) == false) {
+                throw new IllegalArgumentException("all requests of a batch must target the same shard but got [" + shardId + "] and ["
+                    + request.shardId() + "]");
+            }
+        }
+        this.requests = Collections.unmodifiableList(new ArrayList<>(requests));
+    }
+
+    public List<ShardSearchTransportRequest> requests() {
+        return requests;
+    }
+
+    public ShardId shardId() {
+        return requests.get(0).shardId();
+    }
+
+    @Override
+    public void readFrom(StreamInput in) throws IOException {
+        super.readFrom(in);
+        final int size = in.readVInt();
+        final List<ShardSearchTransportRequest> requests = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            final ShardSearchTransportRequest request = new ShardSearchTransportRequest();
+            request.readFrom(in);
+            requests.add(request);
+        }
+        this.requests = Collections.unmodifiableList(requests);
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        super.writeTo(out);
+        out.writeVInt(requests.size());
+        for (ShardSearchTransportRequest request : requests) {
+            request.writeTo(out);
+        }
+    }
+
+    @Override
+    public Task createTask(long id, String type, String action, TaskId parentTaskId) {
+        return new SearchTask(id, type, action, getDescription(), parentTaskId);
+    }
+
+    @Override
+    public String getDescription() {
+        return "shardId[" + shardId() + "], requests[" + requests.size() + "]";
+    }
+}
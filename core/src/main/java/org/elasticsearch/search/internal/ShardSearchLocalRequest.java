@@ -32,6 +32,7 @@ import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.query.QueryShardContext;
 import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.search.Scroll;
+import org.elasticsearch.search.aggregations.metrics.tophits.DeferredTopHits;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
 
 import java.io.IOException;
@@ -69,6 +70,7 @@ public class ShardSearchLocalRequest implements ShardSearchRequest {
     private SearchSourceBuilder source;
     private Boolean requestCache;
     private long nowInMillis;
+    private boolean deferTopHitsFetch;
 
     private boolean profile;
 
@@ -81,6 +83,8 @@ public class ShardSearchLocalRequest implements ShardSearchRequest {
                 searchRequest.source(), searchRequest.types(), searchRequest.requestCache(), aliasFilter, indexBoost);
         this.scroll = searchRequest.scroll();
         this.nowInMillis = nowInMillis;
+        // searches over a single shard fetch in the query phase, and scrolls only compute aggregations on the first page
+        this.deferTopHitsFetch = numberOfShards > 1 && scroll == null && DeferredTopHits.canDefer(searchRequest.source());
     }
 
     public ShardSearchLocalRequest(ShardId shardId, String[] types, long nowInMillis, AliasFilter aliasFilter) {
@@ -169,6 +173,11 @@ public class ShardSearchLocalRequest implements ShardSearchRequest {
         return profile;
     }
 
+    @Override
+    public boolean deferTopHitsFetch() {
+        return deferTopHitsFetch;
+    }
+
     void setSearchType(SearchType type) {
         this.searchType = type;
     }
@@ -197,6 +206,9 @@ public class ShardSearchLocalRequest implements ShardSearchRequest {
         }
         nowInMillis = in.readVLong();
         requestCache = in.readOptionalBoolean();
+        if (in.getVersion().onOrAfter(Version.V_5_5_2_UNRELEASED)) {
+            deferTopHitsFetch = in.readBoolean();
+        }
     }
 
     protected void innerWriteTo(StreamOutput out, boolean asKey) throws IOException {
@@ -216,6 +228,10 @@ public class ShardSearchLocalRequest implements ShardSearchRequest {
             out.writeVLong(nowInMillis);
         }
         out.writeOptionalBoolean(requestCache);
+        if (out.getVersion().onOrAfter(Version.V_5_5_2_UNRELEASED)) {
+            // part of the cache key too, since deferred top hits are not fetched yet
+            out.writeBoolean(deferTopHitsFetch);
+        }
     }
 
     @Override
@@ -79,6 +79,12 @@ public interface ShardSearchRequest {
      */
     boolean isProfile();
 
+    /**
+     * Returns true if the hits of the top_hits aggregations are only fetched in the fetch phase, once the coordinating node knows
+     * which of them make it to the response
+     */
+    boolean deferTopHitsFetch();
+
     /**
      * Returns the cache key for this shard search request, based on its content
      */
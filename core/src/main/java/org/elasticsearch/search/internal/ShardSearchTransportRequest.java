@@ -165,6 +165,11 @@ public class ShardSearchTransportRequest extends TransportRequest implements Sha
         return shardSearchLocalRequest.isProfile();
     }
 
+    @Override
+    public boolean deferTopHitsFetch() {
+        return shardSearchLocalRequest.deferTopHitsFetch();
+    }
+
     @Override
     public void rewrite(QueryShardContext context) throws IOException {
         shardSearchLocalRequest.rewrite(context);
@@ -35,6 +35,7 @@ public abstract class AbstractProfileBreakdown<T extends Enum<T>> {
      */
     private final Timer[] timings;
     private final T[] timingTypes;
+    private final Map<String, Object> debugInfo = new HashMap<>();
 
     /** Sole constructor. */
     public AbstractProfileBreakdown(Class<T> clazz) {
@@ -58,4 +59,16 @@ public abstract class AbstractProfileBreakdown<T extends Enum<T>> {
         }
         return Collections.unmodifiableMap(map);
     }
+
+    /**
+     * Records extra information about how the node ran, like the strategy that it picked.
+     */
+    public void addDebugInfo(String key, Object value) {
+        debugInfo.put(key, value);
+    }
+
+    /** The extra information that has been recorded about this node. */
+    public Map<String, Object> toDebugMap() {
+        return Collections.unmodifiableMap(debugInfo);
+    }
 }
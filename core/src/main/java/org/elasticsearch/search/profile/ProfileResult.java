@@ -19,6 +19,7 @@
 
 package org.elasticsearch.search.profile;
 
+import org.elasticsearch.Version;
 import org.elasticsearch.common.ParseField;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
@@ -56,17 +57,25 @@ public final class ProfileResult implements Writeable, ToXContentObject {
     private static final ParseField NODE_TIME_NANOS = new ParseField("time_in_nanos");
     private static final ParseField CHILDREN = new ParseField("children");
     private static final ParseField BREAKDOWN = new ParseField("breakdown");
+    private static final ParseField DEBUG = new ParseField("debug");
 
     private final String type;
     private final String description;
     private final Map<String, Long> timings;
+    private final Map<String, Object> debug;
     private final long nodeTime;
     private final List<ProfileResult> children;
 
     public ProfileResult(String type, String description, Map<String, Long> timings, List<ProfileResult> children) {
+        this(type, description, timings, Collections.emptyMap(), children);
+    }
+
+    public ProfileResult(String type, String description, Map<String, Long> timings, Map<String, Object> debug,
+                         List<ProfileResult> children) {
         this.type = type;
         this.description = description;
         this.timings = Objects.requireNonNull(timings, "required timings argument missing");
+        this.debug = Objects.requireNonNull(debug, "required debug argument missing");
         this.children = children;
         this.nodeTime = getTotalTime(timings);
     }
@@ -84,6 +93,11 @@ public final class ProfileResult implements Writeable, ToXContentObject {
         for (int i = 0; i < timingsSize; ++i) {
             timings.put(in.readString(), in.readLong());
         }
+        if (in.getVersion().onOrAfter(Version.V_5_5_2_UNRELEASED)) {
+            this.debug = in.readMap();
+        } else {
+            this.debug = Collections.emptyMap();
+        }
 
         int size = in.readVInt();
         this.children = new ArrayList<>(size);
@@ -103,6 +117,9 @@ public final class ProfileResult implements Writeable, ToXContentObject {
             out.writeString(entry.getKey());
             out.writeLong(entry.getValue());
         }
+        if (out.getVersion().onOrAfter(Version.V_5_5_2_UNRELEASED)) {
+            out.writeMap(debug);
+        }
         out.writeVInt(children.size());
         for (ProfileResult child : children) {
             child.writeTo(out);
@@ -130,6 +147,13 @@ public final class ProfileResult implements Writeable, ToXContentObject {
         return Collections.unmodifiableMap(timings);
     }
 
+    /**
+     * Returns the extra information that was recorded about how this node ran, like the strategy that an aggregation picked
+     */
+    public Map<String, Object> getDebugInfo() {
+        return Collections.unmodifiableMap(debug);
+    }
+
     /**
      * Returns the total time (inclusive of children) for this query node.
      *
@@ -154,6 +178,9 @@ public final class ProfileResult implements Writeable, ToXContentObject {
                 .field(NODE_TIME.getPreferredName(), String.format(Locale.US, "%.10gms", getTime() / 1000000.0))
                 .field(NODE_TIME_NANOS.getPreferredName(), getTime())
                 .field(BREAKDOWN.getPreferredName(), timings);
+        if (debug.isEmpty() == false) {
+            builder.field(DEBUG.getPreferredName(), debug);
+        }
 
         if (!children.isEmpty()) {
             builder = builder.startArray(CHILDREN.getPreferredName());
@@ -173,6 +200,7 @@ public final class ProfileResult implements Writeable, ToXContentObject {
         String currentFieldName = null;
         String type = null, description = null;
         Map<String, Long> timings =  new HashMap<>();
+        Map<String, Object> debug = Collections.emptyMap();
         List<ProfileResult> children = new ArrayList<>();
         while((token = parser.nextToken()) != XContentParser.Token.END_OBJECT) {
             if (token == XContentParser.Token.FIELD_NAME) {
@@ -200,6 +228,8 @@ public final class ProfileResult implements Writeable, ToXContentObject {
                         long value = parser.longValue();
                         timings.put(name, value);
                     }
+                } else if (DEBUG.match(currentFieldName)) {
+                    debug = parser.map();
                 } else {
                     throwUnknownField(currentFieldName, parser.getTokenLocation());
                 }
@@ -213,7 +243,7 @@ public final class ProfileResult implements Writeable, ToXContentObject {
                 }
             }
         }
-        return new ProfileResult(type, description, timings, children);
+        return new ProfileResult(type, description, timings, debug, children);
     }
 
     /**
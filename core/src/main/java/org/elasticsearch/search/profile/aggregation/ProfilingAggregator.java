@@ -108,6 +108,7 @@ public class ProfilingAggregator extends Aggregator {
     @Override
     public void postCollection() throws IOException {
         delegate.postCollection();
+        delegate.collectDebugInfo(profileBreakdown::addDebugInfo);
     }
 
 }
@@ -45,6 +45,16 @@ public class ProfilingLeafBucketCollector extends LeafBucketCollector {
         }
     }
 
+    @Override
+    public void collect(int[] docs, long[] buckets, int count) throws IOException {
+        collectTimer.start();
+        try {
+            delegate.collect(docs, buckets, count);
+        } finally {
+            collectTimer.stop();
+        }
+    }
+
     @Override
     public void setScorer(Scorer scorer) throws IOException {
         delegate.setScorer(scorer);
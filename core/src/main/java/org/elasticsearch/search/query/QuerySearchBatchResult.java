@@ -0,0 +1,121 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.query;
+
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.search.SearchPhaseResult;
+import org.elasticsearch.search.fetch.QueryFetchSearchResult;
+import org.elasticsearch.search.internal.ShardSearchBatchRequest;
+import org.elasticsearch.transport.TransportResponse;
+
+import java.io.IOException;
+
+/**
+ * The results of the requests of a {@link ShardSearchBatchRequest}, in the same order as the requests. Each request either has a
+ * result, which is a {@link QueryFetchSearchResult} if the search targets a single shard and a {@link QuerySearchResult} otherwise,
+ * or a failure.
+ */
+public final class QuerySearchBatchResult extends TransportResponse {
+
+    private static final byte FAILURE = 0;
+    private static final byte QUERY = 1;
+    private static final byte QUERY_FETCH = 2;
+
+    private SearchPhaseResult[] results;
+    private Exception[] failures;
+
+    public QuerySearchBatchResult() {
+    }
+
+    public QuerySearchBatchResult(int size) {
+        this.results = new SearchPhaseResult[size];
+        this.failures = new Exception[size];
+    }
+
+    public int size() {
+        return results.length;
+    }
+
+    public void setResult(int index, SearchPhaseResult result) {
+        assert result instanceof QuerySearchResult || result instanceof QueryFetchSearchResult : "unexpected result " + result;
+        results[index] = result;
+    }
+
+    public void setFailure(int index, Exception failure) {
+        failures[index] = failure;
+    }
+
+    /**
+     * The result of the request at the given position, or {@code null} if it failed.
+     */
+    public SearchPhaseResult getResult(int index) {
+        return results[index];
+    }
+
+    /**
+     * The failure of the request at the given position, or {@code null} if it succeeded.
+     */
+    public Exception getFailure(int index) {
+        return failures[index];
+    }
+
+    @Override
+    public void readFrom(StreamInput in) throws IOException {
+        super.readFrom(in);
+        final int size = in.readVInt();
+        results = new SearchPhaseResult[size];
+        failures = new Exception[size];
+        for (int i = 0; i < size; i++) {
+            final byte type = in.readByte();
+            switch (type) {
+                case FAILURE:
+                    failures[i] = in.readException();
+                    break;
+                case QUERY:
+                    results[i] = QuerySearchResult.readQuerySearchResult(in);
+                    break;
+                case QUERY_FETCH:
+                    results[i] = QueryFetchSearchResult.readQueryFetchSearchResult(in);
+                    break;
+                default:
+                    throw new IllegalStateException("unknown result type [" + type + "]");
+            }
+        }
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        super.writeTo(out);
+        out.writeVInt(results.length);
+        for (int i = 0; i < results.length; i++) {
+            if (results[i] == null) {
+                out.writeByte(FAILURE);
+                out.writeException(failures[i]);
+            } else if (results[i] instanceof QueryFetchSearchResult) {
+                out.writeByte(QUERY_FETCH);
+                results[i].writeTo(out);
+            } else {
+                out.writeByte(QUERY);
+                results[i].writeTo(out);
+            }
+        }
+    }
+}
@@ -21,6 +21,7 @@ package org.elasticsearch.search.query;
 
 import org.apache.lucene.search.FieldDoc;
 import org.apache.lucene.search.TopDocs;
+import org.elasticsearch.Version;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.search.DocValueFormat;
@@ -56,6 +57,7 @@ public final class QuerySearchResult extends SearchPhaseResult {
     private ProfileShardResult profileShardResults;
     private boolean hasProfileResults;
     private boolean hasScoreDocs;
+    private boolean hasDeferredTopHits;
     private int totalHits;
     private float maxScore;
 
@@ -235,8 +237,22 @@ public final class QuerySearchResult extends SearchPhaseResult {
       return (suggest != null && suggest.hasScoreDocs());
     }
 
+    /**
+     * Sets whether the top_hits aggregations of this result have hits that still need to be fetched in the fetch phase
+     */
+    public void hasDeferredTopHits(boolean hasDeferredTopHits) {
+        this.hasDeferredTopHits = hasDeferredTopHits;
+    }
+
+    /**
+     * Returns <code>true</code> if the top_hits aggregations of this result have hits that still need to be fetched
+     */
+    public boolean hasDeferredTopHits() {
+        return hasDeferredTopHits;
+    }
+
     public boolean hasSearchContext() {
-        return hasScoreDocs || hasSuggestHits();
+        return hasScoreDocs || hasSuggestHits() || hasDeferredTopHits;
     }
 
     public static QuerySearchResult readQuerySearchResult(StreamInput in) throws IOException {
@@ -278,6 +294,9 @@ public final class QuerySearchResult extends SearchPhaseResult {
         terminatedEarly = in.readOptionalBoolean();
         profileShardResults = in.readOptionalWriteable(ProfileShardResult::new);
         hasProfileResults = profileShardResults != null;
+        if (in.getVersion().onOrAfter(Version.V_5_5_2_UNRELEASED)) {
+            hasDeferredTopHits = in.readBoolean();
+        }
     }
 
     @Override
@@ -315,6 +334,9 @@ public final class QuerySearchResult extends SearchPhaseResult {
         out.writeBoolean(searchTimedOut);
         out.writeOptionalBoolean(terminatedEarly);
         out.writeOptionalWriteable(profileShardResults);
+        if (out.getVersion().onOrAfter(Version.V_5_5_2_UNRELEASED)) {
+            out.writeBoolean(hasDeferredTopHits);
+        }
     }
 
     public int getTotalHits() {
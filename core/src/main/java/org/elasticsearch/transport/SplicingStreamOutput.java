@@ -0,0 +1,104 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.transport;
+
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.bytes.CompositeBytesReference;
+import org.elasticsearch.common.bytes.FileRegionBytesReference;
+import org.elasticsearch.common.collect.Tuple;
+import org.elasticsearch.common.io.stream.BytesStream;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A stream that leaves {@link FileRegionBytesReference}s out of the serialized bytes of a message and splices them back in
+ * afterwards, see {@link #splice(BytesReference)}. This allows transports to send file regions straight from the file rather
+ * than reading them into the message buffer. The stream must not buffer or transform bytes between itself and the underlying
+ * {@link BytesStream}, so it can't be used on top of compression.
+ */
+final class SplicingStreamOutput extends StreamOutput {
+
+    private final StreamOutput delegate;
+    private final BytesStream bytes;
+    // the regions together with the offset in the underlying stream they need to be spliced in at
+    private final List<Tuple<Integer, FileRegionBytesReference>> regions = new ArrayList<>();
+
+    SplicingStreamOutput(StreamOutput delegate, BytesStream bytes) {
+        this.delegate = delegate;
+        this.bytes = bytes;
+    }
+
+    @Override
+    public void writeBytesReference(@Nullable BytesReference reference) throws IOException {
+        if (reference instanceof FileRegionBytesReference) {
+            writeVInt(reference.length());
+            regions.add(new Tuple<>(Math.toIntExact(bytes.position()), (FileRegionBytesReference) reference));
+        } else {
+            super.writeBytesReference(reference);
+        }
+    }
+
+    @Override
+    public void writeByte(byte b) throws IOException {
+        delegate.writeByte(b);
+    }
+
+    @Override
+    public void writeBytes(byte[] b, int offset, int length) throws IOException {
+        delegate.writeBytes(b, offset, length);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        delegate.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+
+    @Override
+    public void reset() throws IOException {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Splices the file regions that were written to this stream into the given bytes of the underlying stream.
+     */
+    BytesReference splice(BytesReference written) {
+        if (regions.isEmpty()) {
+            return written;
+        }
+        final List<BytesReference> references = new ArrayList<>(2 * regions.size() + 1);
+        int offset = 0;
+        for (Tuple<Integer, FileRegionBytesReference> region : regions) {
+            references.add(written.slice(offset, region.v1() - offset));
+            references.add(region.v2());
+            offset = region.v1();
+        }
+        references.add(written.slice(offset, written.length() - offset));
+        return new CompositeBytesReference(references.toArray(new BytesReference[references.size()]));
+    }
+}
@@ -40,6 +40,7 @@ import org.elasticsearch.common.compress.Compressor;
 import org.elasticsearch.common.compress.CompressorFactory;
 import org.elasticsearch.common.compress.NotCompressedException;
 import org.elasticsearch.common.io.Streams;
+import org.elasticsearch.common.io.stream.BytesStream;
 import org.elasticsearch.common.io.stream.BytesStreamOutput;
 import org.elasticsearch.common.io.stream.NamedWriteableAwareStreamInput;
 import org.elasticsearch.common.io.stream.NamedWriteableRegistry;
@@ -47,6 +48,7 @@ import org.elasticsearch.common.io.stream.ReleasableBytesStreamOutput;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.lease.Releasable;
+import org.elasticsearch.common.lease.Releasables;
 import org.elasticsearch.common.metrics.CounterMetric;
 import org.elasticsearch.common.network.NetworkAddress;
 import org.elasticsearch.common.network.NetworkService;
@@ -83,6 +85,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -152,6 +155,13 @@ public abstract class TcpTransport<Channel> extends AbstractLifecycleComponent i
         Setting.byteSizeSetting("transport.tcp.receive_buffer_size", NetworkService.TcpSettings.TCP_RECEIVE_BUFFER_SIZE,
             Setting.Property.NodeScope);
 
+    /**
+     * Requests sent for these types are flagged so that the receiving node reads them on the executor of their handler rather than on
+     * the network thread, letting requests of other types that share the network thread overtake them.
+     */
+    static final Set<TransportRequestOptions.Type> LOW_PRIORITY_TYPES =
+        Collections.unmodifiableSet(EnumSet.of(TransportRequestOptions.Type.BULK, TransportRequestOptions.Type.RECOVERY));
+
     private static final long NINETY_PER_HEAP_SIZE = (long) (JvmInfo.jvmInfo().getMem().getHeapMax().getBytes() * 0.9);
     private static final int PING_DATA_SIZE = -1;
     protected final boolean blockingClient;
@@ -442,7 +452,8 @@ public abstract class TcpTransport<Channel> extends AbstractLifecycleComponent i
                 throw new NodeNotConnectedException(node, "connection already closed");
             }
             Channel channel = channel(options.type());
-            sendRequestToChannel(this.node, channel, requestId, action, request, options, getVersion(), (byte)0);
+            final byte status = LOW_PRIORITY_TYPES.contains(options.type()) ? TransportStatus.setLowPriority((byte) 0) : (byte) 0;
+            sendRequestToChannel(this.node, channel, requestId, action, request, options, getVersion(), status);
         }
     }
 
@@ -1060,6 +1071,25 @@ public abstract class TcpTransport<Channel> extends AbstractLifecycleComponent i
      */
     protected void stopInternal() {}
 
+    /**
+     * Retains the bytes of a received message so that they stay valid after {@link #messageReceived} returned, until the returned
+     * releasable is closed. Returns <code>null</code> if the bytes can't be retained, in which case the message is always read on the
+     * network thread. By default the bytes are not retained.
+     */
+    @Nullable
+    protected Releasable retainReceivedMessage(BytesReference message) {
+        return null;
+    }
+
+    /**
+     * Returns a new stream that outgoing requests and responses are serialized into. The bytes of the stream are handed to
+     * {@link #sendMessage(Object, BytesReference, Runnable)} and the stream is closed once the message has been sent, which must
+     * release them. By default the stream is backed by pages from {@link BigArrays}.
+     */
+    protected BytesStream newOutboundStream() {
+        return new ReleasableBytesStreamOutput(bigArrays);
+    }
+
     public boolean canCompress(TransportRequest request) {
         return compress && (!(request instanceof BytesTransportRequest));
     }
@@ -1072,7 +1102,7 @@ public abstract class TcpTransport<Channel> extends AbstractLifecycleComponent i
             options = TransportRequestOptions.builder(options).withCompress(true).build();
         }
         status = TransportStatus.setRequest(status);
-        ReleasableBytesStreamOutput bStream = new ReleasableBytesStreamOutput(bigArrays);
+        BytesStream bStream = newOutboundStream();
         boolean addedReleaseListener = false;
         StreamOutput stream = Streams.flushOnCloseStream(bStream);
         try {
@@ -1094,10 +1124,12 @@ public abstract class TcpTransport<Channel> extends AbstractLifecycleComponent i
             BytesReference message = buildMessage(requestId, status, node.getVersion(), request, stream, bStream);
             final TransportRequestOptions finalOptions = options;
             final StreamOutput finalStream = stream;
+            final long queuedNanos = System.nanoTime();
             Runnable onRequestSent = () -> { // this might be called in a different thread
                 try {
                     IOUtils.closeWhileHandlingException(finalStream, bStream);
                 } finally {
+                    transportServiceAdapter.addRequestQueueTime(finalOptions.type(), System.nanoTime() - queuedNanos);
                     transportServiceAdapter.onRequestSent(node, requestId, action, request, finalOptions);
                 }
             };
@@ -1171,7 +1203,7 @@ public abstract class TcpTransport<Channel> extends AbstractLifecycleComponent i
             options = TransportResponseOptions.builder(options).withCompress(true).build();
         }
         status = TransportStatus.setResponse(status); // TODO share some code with sendRequest
-        ReleasableBytesStreamOutput bStream = new ReleasableBytesStreamOutput(bigArrays);
+        BytesStream bStream = newOutboundStream();
         boolean addedReleaseListener = false;
         StreamOutput stream = Streams.flushOnCloseStream(bStream);
         try {
@@ -1224,7 +1256,14 @@ public abstract class TcpTransport<Channel> extends AbstractLifecycleComponent i
      * Serializes the given message into a bytes representation
      */
     private BytesReference buildMessage(long requestId, byte status, Version nodeVersion, TransportMessage message, StreamOutput stream,
-                                        ReleasableBytesStreamOutput writtenBytes) throws IOException {
+                                        BytesStream writtenBytes) throws IOException {
+        // file regions can't be left out of compressed messages, those are read and compressed like any other bytes
+        final SplicingStreamOutput splicingStream =
+            TransportStatus.isCompress(status) ? null : new SplicingStreamOutput(stream, writtenBytes);
+        if (splicingStream != null) {
+            splicingStream.setVersion(stream.getVersion());
+            stream = splicingStream;
+        }
         final BytesReference zeroCopyBuffer;
         if (message instanceof BytesTransportRequest) { // what a shitty optimization - we should use a direct send method instead
             BytesTransportRequest bRequest = (BytesTransportRequest) message;
@@ -1240,7 +1279,8 @@ public abstract class TcpTransport<Channel> extends AbstractLifecycleComponent i
         // we barf on the decompressing end when we read past EOF on purpose in the #validateRequest method.
         // this might be a problem in deflate after all but it's important to close it for now.
         stream.close();
-        final BytesReference messageBody = writtenBytes.bytes();
+        final BytesReference messageBody =
+            splicingStream == null ? writtenBytes.bytes() : splicingStream.splice(writtenBytes.bytes());
         final BytesReference header = buildHeader(requestId, status, stream.getVersion(), messageBody.length() + zeroCopyBuffer.length());
         return new CompositeBytesReference(header, messageBody, zeroCopyBuffer);
     }
@@ -1382,7 +1422,7 @@ public abstract class TcpTransport<Channel> extends AbstractLifecycleComponent i
             streamIn.setVersion(version);
             threadPool.getThreadContext().readHeaders(streamIn);
             if (TransportStatus.isRequest(status)) {
-                handleRequest(channel, profileName, streamIn, requestId, messageLengthBytes, version, remoteAddress, status);
+                handleRequest(channel, profileName, streamIn, reference, requestId, messageLengthBytes, version, remoteAddress, status);
             } else {
                 final TransportResponseHandler<?> handler;
                 if (TransportStatus.isHandshake(status)) {
@@ -1471,8 +1511,9 @@ public abstract class TcpTransport<Channel> extends AbstractLifecycleComponent i
         });
     }
 
-    protected String handleRequest(Channel channel, String profileName, final StreamInput stream, long requestId, int messageLengthBytes,
-                                   Version version, InetSocketAddress remoteAddress, byte status) throws IOException {
+    protected String handleRequest(Channel channel, String profileName, final StreamInput stream, BytesReference message, long requestId,
+                                   int messageLengthBytes, Version version, InetSocketAddress remoteAddress, byte status)
+        throws IOException {
         final String action = stream.readString();
         transportServiceAdapter.onRequestReceived(requestId, action);
         TransportChannel transportChannel = null;
@@ -1495,10 +1536,20 @@ public abstract class TcpTransport<Channel> extends AbstractLifecycleComponent i
                     messageLengthBytes);
                 final TransportRequest request = reg.newRequest();
                 request.remoteAddress(new InetSocketTransportAddress(remoteAddress));
-                request.readFrom(stream);
-                // in case we throw an exception, i.e. when the limit is hit, we don't want to verify
-                validateRequest(stream, requestId, action);
-                threadPool.executor(reg.getExecutor()).execute(new RequestHandler(reg, request, transportChannel));
+                // compressed messages can't be read from an offset, and there is nothing to gain for handlers that run on this thread
+                final Releasable retainedMessage = TransportStatus.isLowPriority(status) && TransportStatus.isCompress(status) == false
+                    && ThreadPool.Names.SAME.equals(reg.getExecutor()) == false ? retainReceivedMessage(message) : null;
+                if (retainedMessage != null) {
+                    final int available = stream.available();
+                    final BytesReference body = message.slice(message.length() - available, available);
+                    threadPool.executor(reg.getExecutor()).execute(
+                        new DeferredRequestHandler(reg, request, transportChannel, body, version, requestId, retainedMessage));
+                } else {
+                    request.readFrom(stream);
+                    // in case we throw an exception, i.e. when the limit is hit, we don't want to verify
+                    validateRequest(stream, requestId, action);
+                    threadPool.executor(reg.getExecutor()).execute(new RequestHandler(reg, request, transportChannel));
+                }
             }
         } catch (Exception e) {
             // the circuit breaker tripped
@@ -1528,9 +1579,9 @@ public abstract class TcpTransport<Channel> extends AbstractLifecycleComponent i
     }
 
     class RequestHandler extends AbstractRunnable {
-        private final RequestHandlerRegistry reg;
-        private final TransportRequest request;
-        private final TransportChannel transportChannel;
+        final RequestHandlerRegistry reg;
+        final TransportRequest request;
+        final TransportChannel transportChannel;
 
         RequestHandler(RequestHandlerRegistry reg, TransportRequest request, TransportChannel transportChannel) {
             this.reg = reg;
@@ -1565,6 +1616,41 @@ public abstract class TcpTransport<Channel> extends AbstractLifecycleComponent i
         }
     }
 
+    /**
+     * A {@link RequestHandler} that reads the request from the retained bytes of its message on the executor of the handler rather than
+     * on the network thread that received it.
+     */
+    class DeferredRequestHandler extends RequestHandler {
+        private final BytesReference body;
+        private final Version version;
+        private final long requestId;
+        private final Releasable retainedMessage;
+
+        DeferredRequestHandler(RequestHandlerRegistry reg, TransportRequest request, TransportChannel transportChannel,
+                               BytesReference body, Version version, long requestId, Releasable retainedMessage) {
+            super(reg, request, transportChannel);
+            this.body = body;
+            this.version = version;
+            this.requestId = requestId;
+            this.retainedMessage = retainedMessage;
+        }
+
+        @Override
+        protected void doRun() throws Exception {
+            try (StreamInput stream = new NamedWriteableAwareStreamInput(body.streamInput(), namedWriteableRegistry)) {
+                stream.setVersion(version);
+                request.readFrom(stream);
+                validateRequest(stream, requestId, reg.getAction());
+            }
+            super.doRun();
+        }
+
+        @Override
+        public void onAfter() {
+            Releasables.close(retainedMessage);
+        }
+    }
+
     private static final class VersionHandshakeResponse extends TransportResponse {
         private Version version;
 
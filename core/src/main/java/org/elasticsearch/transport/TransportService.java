@@ -56,6 +56,7 @@ import java.io.IOException;
 import java.net.UnknownHostException;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -296,8 +297,13 @@ public class TransportService extends AbstractLifecycleComponent {
     }
 
     public TransportStats stats() {
-        return new TransportStats(
-            transport.serverOpen(), adapter.rxMetric.count(), adapter.rxMetric.sum(), adapter.txMetric.count(), adapter.txMetric.sum());
+        final Map<TransportRequestOptions.Type, TransportStats.QueueStats> requestQueues =
+            new EnumMap<>(TransportRequestOptions.Type.class);
+        for (Map.Entry<TransportRequestOptions.Type, MeanMetric> entry : adapter.requestQueueMetrics.entrySet()) {
+            requestQueues.put(entry.getKey(), new TransportStats.QueueStats(entry.getValue().count(), entry.getValue().sum()));
+        }
+        return new TransportStats(transport.serverOpen(), adapter.rxMetric.count(), adapter.rxMetric.sum(), adapter.txMetric.count(),
+            adapter.txMetric.sum(), requestQueues);
     }
 
     public BoundTransportAddress boundAddress() {
@@ -744,6 +750,13 @@ public class TransportService extends AbstractLifecycleComponent {
 
         final MeanMetric rxMetric = new MeanMetric();
         final MeanMetric txMetric = new MeanMetric();
+        final Map<TransportRequestOptions.Type, MeanMetric> requestQueueMetrics = new EnumMap<>(TransportRequestOptions.Type.class);
+
+        public Adapter() {
+            for (TransportRequestOptions.Type type : TransportRequestOptions.Type.values()) {
+                requestQueueMetrics.put(type, new MeanMetric());
+            }
+        }
 
         @Override
         public void addBytesReceived(long size) {
@@ -755,6 +768,11 @@ public class TransportService extends AbstractLifecycleComponent {
             txMetric.inc(size);
         }
 
+        @Override
+        public void addRequestQueueTime(TransportRequestOptions.Type type, long tookInNanos) {
+            requestQueueMetrics.get(type).inc(tookInNanos);
+        }
+
         @Override
         public void onRequestSent(DiscoveryNode node, long requestId, String action, TransportRequest request,
                                   TransportRequestOptions options) {
@@ -27,6 +27,9 @@ public interface TransportServiceAdapter extends TransportConnectionListener {
 
     void addBytesSent(long size);
 
+    /** called by the {@link Transport} implementation with the time a request waited between being handed over and being written */
+    void addRequestQueueTime(TransportRequestOptions.Type type, long tookInNanos);
+
     /** called by the {@link Transport} implementation once a request has been sent */
     void onRequestSent(DiscoveryNode node, long requestId, String action, TransportRequest request, TransportRequestOptions options);
 
@@ -19,6 +19,7 @@
 
 package org.elasticsearch.transport;
 
+import org.elasticsearch.Version;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.io.stream.Writeable;
@@ -27,6 +28,11 @@ import org.elasticsearch.common.xcontent.ToXContent;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 public class TransportStats implements Writeable, ToXContent {
 
@@ -35,13 +41,20 @@ public class TransportStats implements Writeable, ToXContent {
     private final long rxSize;
     private final long txCount;
     private final long txSize;
+    private final Map<TransportRequestOptions.Type, QueueStats> requestQueues;
 
     public TransportStats(long serverOpen, long rxCount, long rxSize, long txCount, long txSize) {
+        this(serverOpen, rxCount, rxSize, txCount, txSize, Collections.emptyMap());
+    }
+
+    public TransportStats(long serverOpen, long rxCount, long rxSize, long txCount, long txSize,
+                          Map<TransportRequestOptions.Type, QueueStats> requestQueues) {
         this.serverOpen = serverOpen;
         this.rxCount = rxCount;
         this.rxSize = rxSize;
         this.txCount = txCount;
         this.txSize = txSize;
+        this.requestQueues = requestQueues.isEmpty() ? Collections.emptyMap() : Collections.unmodifiableMap(new EnumMap<>(requestQueues));
     }
 
     public TransportStats(StreamInput in) throws IOException {
@@ -50,6 +63,16 @@ public class TransportStats implements Writeable, ToXContent {
         rxSize = in.readVLong();
         txCount = in.readVLong();
         txSize = in.readVLong();
+        if (in.getVersion().onOrAfter(Version.V_5_5_2_UNRELEASED)) {
+            final int size = in.readVInt();
+            final Map<TransportRequestOptions.Type, QueueStats> requestQueues = new EnumMap<>(TransportRequestOptions.Type.class);
+            for (int i = 0; i < size; i++) {
+                requestQueues.put(in.readEnum(TransportRequestOptions.Type.class), new QueueStats(in));
+            }
+            this.requestQueues = Collections.unmodifiableMap(requestQueues);
+        } else {
+            requestQueues = Collections.emptyMap();
+        }
     }
 
     @Override
@@ -59,6 +82,13 @@ public class TransportStats implements Writeable, ToXContent {
         out.writeVLong(rxSize);
         out.writeVLong(txCount);
         out.writeVLong(txSize);
+        if (out.getVersion().onOrAfter(Version.V_5_5_2_UNRELEASED)) {
+            out.writeVInt(requestQueues.size());
+            for (Map.Entry<TransportRequestOptions.Type, QueueStats> entry : requestQueues.entrySet()) {
+                out.writeEnum(entry.getKey());
+                entry.getValue().writeTo(out);
+            }
+        }
     }
 
     public long serverOpen() {
@@ -101,6 +131,13 @@ public class TransportStats implements Writeable, ToXContent {
         return txSize();
     }
 
+    /**
+     * The time outgoing requests spent waiting to be written to the network, by the type of connection they were sent on.
+     */
+    public Map<TransportRequestOptions.Type, QueueStats> getRequestQueues() {
+        return requestQueues;
+    }
+
     @Override
     public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
         builder.startObject(Fields.TRANSPORT);
@@ -109,6 +146,15 @@ public class TransportStats implements Writeable, ToXContent {
         builder.byteSizeField(Fields.RX_SIZE_IN_BYTES, Fields.RX_SIZE, rxSize);
         builder.field(Fields.TX_COUNT, txCount);
         builder.byteSizeField(Fields.TX_SIZE_IN_BYTES, Fields.TX_SIZE, txSize);
+        if (requestQueues.isEmpty() == false) {
+            builder.startObject(Fields.REQUEST_QUEUES);
+            for (Map.Entry<TransportRequestOptions.Type, QueueStats> entry : requestQueues.entrySet()) {
+                builder.startObject(entry.getKey().name().toLowerCase(Locale.ROOT));
+                entry.getValue().toXContent(builder, params);
+                builder.endObject();
+            }
+            builder.endObject();
+        }
         builder.endObject();
         return builder;
     }
@@ -122,5 +168,52 @@ public class TransportStats implements Writeable, ToXContent {
         static final String TX_COUNT = "tx_count";
         static final String TX_SIZE = "tx_size";
         static final String TX_SIZE_IN_BYTES = "tx_size_in_bytes";
+        static final String REQUEST_QUEUES = "request_queues";
+    }
+
+    public static class QueueStats implements Writeable, ToXContent {
+
+        private final long count;
+        private final long timeInNanos;
+
+        public QueueStats(long count, long timeInNanos) {
+            this.count = count;
+            this.timeInNanos = timeInNanos;
+        }
+
+        /**
+         * Read from a stream.
+         */
+        public QueueStats(StreamInput in) throws IOException {
+            count = in.readVLong();
+            timeInNanos = in.readVLong();
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            out.writeVLong(count);
+            out.writeVLong(timeInNanos);
+        }
+
+        /**
+         * @return The number of requests that were written to the network.
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return The total time requests waited between being handed to the network layer and being written, in nanoseconds.
+         */
+        public long getTimeInNanos() {
+            return timeInNanos;
+        }
+
+        @Override
+        public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+            builder.field("count", count);
+            builder.timeValueField("time_in_millis", "time", TimeUnit.NANOSECONDS.toMillis(timeInNanos), TimeUnit.MILLISECONDS);
+            return builder;
+        }
     }
 }
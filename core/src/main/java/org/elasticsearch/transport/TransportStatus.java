@@ -25,6 +25,7 @@ public final class TransportStatus {
     private static final byte STATUS_ERROR = 1 << 1;
     private static final byte STATUS_COMPRESS = 1 << 2;
     private static final byte STATUS_HANDSHAKE = 1 << 3;
+    private static final byte STATUS_LOW_PRIORITY = 1 << 4;
 
     public static boolean isRequest(byte value) {
         return (value & STATUS_REQRES) == 0;
@@ -67,5 +68,17 @@ public final class TransportStatus {
         return value;
     }
 
+    /**
+     * Whether the request was sent on a connection type that may be overtaken by others, see {@link TcpTransport#LOW_PRIORITY_TYPES}.
+     * Nodes that don't know the flag ignore it.
+     */
+    static boolean isLowPriority(byte value) { // pkg private since it's only used internally
+        return (value & STATUS_LOW_PRIORITY) != 0;
+    }
+
+    static byte setLowPriority(byte value) { // pkg private since it's only used internally
+        value |= STATUS_LOW_PRIORITY;
+        return value;
+    }
 
 }
@@ -37,11 +37,13 @@ import org.elasticsearch.script.ScriptStats;
 import org.elasticsearch.test.ESTestCase;
 import org.elasticsearch.test.VersionUtils;
 import org.elasticsearch.threadpool.ThreadPoolStats;
+import org.elasticsearch.transport.TransportRequestOptions;
 import org.elasticsearch.transport.TransportStats;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -212,12 +214,26 @@ public class NodeStatsTests extends ESTestCase {
                     assertEquals(nodeStats.getTransport().getServerOpen(), deserializedNodeStats.getTransport().getServerOpen());
                     assertEquals(nodeStats.getTransport().getTxCount(), deserializedNodeStats.getTransport().getTxCount());
                     assertEquals(nodeStats.getTransport().getTxSize(), deserializedNodeStats.getTransport().getTxSize());
+                    assertEquals(nodeStats.getTransport().getRequestQueues().keySet(),
+                            deserializedNodeStats.getTransport().getRequestQueues().keySet());
+                    for (Map.Entry<TransportRequestOptions.Type, TransportStats.QueueStats> entry
+                            : nodeStats.getTransport().getRequestQueues().entrySet()) {
+                        TransportStats.QueueStats deserialized =
+                                deserializedNodeStats.getTransport().getRequestQueues().get(entry.getKey());
+                        assertEquals(entry.getValue().getCount(), deserialized.getCount());
+                        assertEquals(entry.getValue().getTimeInNanos(), deserialized.getTimeInNanos());
+                    }
                 }
                 if (nodeStats.getHttp() == null) {
                     assertNull(deserializedNodeStats.getHttp());
                 } else {
                     assertEquals(nodeStats.getHttp().getServerOpen(), deserializedNodeStats.getHttp().getServerOpen());
                     assertEquals(nodeStats.getHttp().getTotalOpen(), deserializedNodeStats.getHttp().getTotalOpen());
+                    assertEquals(nodeStats.getHttp().getCompressionUncompressedSize(),
+                        deserializedNodeStats.getHttp().getCompressionUncompressedSize());
+                    assertEquals(nodeStats.getHttp().getCompressionCompressedSize(),
+                        deserializedNodeStats.getHttp().getCompressionCompressedSize());
+                    assertEquals(nodeStats.getHttp().getCompressionTime(), deserializedNodeStats.getHttp().getCompressionTime());
                 }
                 if (nodeStats.getBreaker() == null) {
                     assertNull(deserializedNodeStats.getBreaker());
@@ -359,9 +375,19 @@ public class NodeStatsTests extends ESTestCase {
             }
             fsInfo = new FsInfo(randomNonNegativeLong(), ioStats, paths);
         }
-        TransportStats transportStats = frequently() ? new TransportStats(randomNonNegativeLong(), randomNonNegativeLong(),
-                randomNonNegativeLong(), randomNonNegativeLong(), randomNonNegativeLong()) : null;
-        HttpStats httpStats = frequently() ? new HttpStats(randomNonNegativeLong(), randomNonNegativeLong()) : null;
+        TransportStats transportStats = null;
+        if (frequently()) {
+            Map<TransportRequestOptions.Type, TransportStats.QueueStats> requestQueues = new EnumMap<>(TransportRequestOptions.Type.class);
+            for (TransportRequestOptions.Type type : TransportRequestOptions.Type.values()) {
+                if (randomBoolean()) {
+                    requestQueues.put(type, new TransportStats.QueueStats(randomNonNegativeLong(), randomNonNegativeLong()));
+                }
+            }
+            transportStats = new TransportStats(randomNonNegativeLong(), randomNonNegativeLong(), randomNonNegativeLong(),
+                    randomNonNegativeLong(), randomNonNegativeLong(), requestQueues);
+        }
+        HttpStats httpStats = frequently() ? new HttpStats(randomNonNegativeLong(), randomNonNegativeLong(),
+            randomNonNegativeLong(), randomNonNegativeLong(), randomNonNegativeLong()) : null;
         AllCircuitBreakerStats allCircuitBreakerStats = null;
         if (frequently()) {
             int numCircuitBreakerStats = randomIntBetween(0, 10);
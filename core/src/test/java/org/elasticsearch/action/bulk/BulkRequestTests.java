@@ -49,6 +49,7 @@ import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.notNullValue;
 
@@ -279,4 +280,63 @@ public class BulkRequestTests extends ESTestCase {
         assertEquals(1, request.sourceAsMap().size());
         assertEquals("value", request.sourceAsMap().get("field"));
     }
+
+    public void testAddCompleteItems() throws Exception {
+        String bulkAction = copyToStringFromClasspath("/org/elasticsearch/action/bulk/simple-bulk4.json");
+        BytesReference data = new BytesArray(bulkAction.getBytes(StandardCharsets.UTF_8));
+        BulkRequest expected = new BulkRequest();
+        expected.add(data, null, null, XContentType.JSON);
+
+        // feed the data in random pieces, keeping what was not consumed for the next round
+        BulkRequest bulkRequest = new BulkRequest();
+        BytesReference pending = BytesArray.EMPTY;
+        int from = 0;
+        int lines = 0;
+        while (from < data.length()) {
+            int length = randomIntBetween(1, data.length() - from);
+            BytesStreamOutput out = new BytesStreamOutput();
+            pending.writeTo(out);
+            data.slice(from, length).writeTo(out);
+            from += length;
+            BytesReference available = out.bytes();
+            int consumed = bulkRequest.addCompleteItems(available, null, null, null, null, null, null, null, true, XContentType.JSON,
+                lines);
+            assertThat(consumed, lessThanOrEqualTo(available.length()));
+            for (int i = 0; i < consumed; i++) {
+                if (available.get(i) == '\n') {
+                    lines++;
+                }
+            }
+            pending = available.slice(consumed, available.length() - consumed);
+        }
+        assertEquals(0, pending.length());
+        assertEquals(expected.numberOfActions(), bulkRequest.numberOfActions());
+        assertEquals(expected.estimatedSizeInBytes(), bulkRequest.estimatedSizeInBytes());
+        for (int i = 0; i < expected.numberOfActions(); i++) {
+            DocWriteRequest expectedRequest = expected.requests().get(i);
+            DocWriteRequest request = bulkRequest.requests().get(i);
+            assertEquals(expectedRequest.getClass(), request.getClass());
+            assertEquals(expectedRequest.index(), request.index());
+            assertEquals(expectedRequest.type(), request.type());
+            assertEquals(expectedRequest.id(), request.id());
+        }
+    }
+
+    public void testAddCompleteItemsLeavesIncompleteItem() throws Exception {
+        String bulkAction = "{ \"index\":{\"_index\":\"test\",\"_type\":\"type1\",\"_id\":\"1\"} }\n{ \"field1\" : \"value1\" }\n"
+            + "{ \"index\":{\"_index\":\"test\",\"_type\":\"type1\",\"_id\":\"2\"} }\n{ \"field1\" : ";
+        BulkRequest bulkRequest = new BulkRequest();
+        int consumed = bulkRequest.addCompleteItems(new BytesArray(bulkAction), null, null, null, null, null, null, null, true,
+            XContentType.JSON, 0);
+        assertEquals(1, bulkRequest.numberOfActions());
+        assertEquals(bulkAction.indexOf("{ \"index\":{\"_index\":\"test\",\"_type\":\"type1\",\"_id\":\"2\"} }"), consumed);
+    }
+
+    public void testAddCompleteItemsReportsLinesWithOffset() throws Exception {
+        String bulkAction = "{ \"index\":{\"_index\":\"test\",\"_type\":\"type1\",\"_id\":\"1\",\"unknown\":\"x\"} }\n{}\n";
+        BulkRequest bulkRequest = new BulkRequest();
+        IllegalArgumentException e = expectThrows(IllegalArgumentException.class, () -> bulkRequest.addCompleteItems(
+            new BytesArray(bulkAction), null, null, null, null, null, null, null, true, XContentType.JSON, 10));
+        assertThat(e.getMessage(), containsString("Action/metadata line [11]"));
+    }
 }
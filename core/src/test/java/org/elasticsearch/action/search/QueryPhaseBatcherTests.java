@@ -0,0 +1,183 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.action.search;
+
+import org.elasticsearch.Version;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.OriginalIndices;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.transport.LocalTransportAddress;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.search.SearchPhaseResult;
+import org.elasticsearch.search.SearchShardTarget;
+import org.elasticsearch.search.internal.AliasFilter;
+import org.elasticsearch.search.internal.ShardSearchBatchRequest;
+import org.elasticsearch.search.internal.ShardSearchTransportRequest;
+import org.elasticsearch.search.query.QuerySearchBatchResult;
+import org.elasticsearch.search.query.QuerySearchResult;
+import org.elasticsearch.tasks.Task;
+import org.elasticsearch.test.ESTestCase;
+import org.elasticsearch.test.VersionUtils;
+import org.elasticsearch.transport.Transport;
+import org.elasticsearch.transport.TransportRequest;
+import org.elasticsearch.transport.TransportRequestOptions;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class QueryPhaseBatcherTests extends ESTestCase {
+
+    private final List<ShardSearchTransportRequest> sent = Collections.synchronizedList(new ArrayList<>());
+    private final List<ShardSearchBatchRequest> sentBatches = Collections.synchronizedList(new ArrayList<>());
+    private final List<ActionListener<QuerySearchBatchResult>> batchListeners = Collections.synchronizedList(new ArrayList<>());
+    private final Map<ShardSearchTransportRequest, Object> responses = new ConcurrentHashMap<>();
+
+    private final SearchTransportService searchTransportService = new SearchTransportService(Settings.EMPTY, null) {
+        @Override
+        public void sendExecuteQuery(Transport.Connection connection, ShardSearchTransportRequest request, SearchTask task,
+                                     SearchActionListener<SearchPhaseResult> listener) {
+            sent.add(request);
+        }
+
+        @Override
+        public void sendExecuteQueryBatch(Transport.Connection connection, ShardSearchBatchRequest request, Task parentTask,
+                                          ActionListener<QuerySearchBatchResult> listener) {
+            sentBatches.add(request);
+            batchListeners.add(listener);
+        }
+    };
+
+    public void testBatchesRequestsPerShardAndNode() {
+        final DiscoveryNode node = newNode("node", Version.CURRENT);
+        final DiscoveryNode oldNode = newNode("old_node", VersionUtils.randomVersionBetween(random(), Version.V_5_0_0, Version.V_5_5_1));
+        final ShardId shard0 = new ShardId("index", "_na_", 0);
+        final ShardId shard1 = new ShardId("index", "_na_", 1);
+        final QueryPhaseBatcher batcher = new QueryPhaseBatcher(searchTransportService, null);
+
+        final List<ShardSearchTransportRequest> batched = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            batched.add(sendExecuteQuery(batcher, node, shard0));
+        }
+        final ShardSearchTransportRequest single = sendExecuteQuery(batcher, node, shard1);
+        final ShardSearchTransportRequest old1 = sendExecuteQuery(batcher, oldNode, shard0);
+        final ShardSearchTransportRequest old2 = sendExecuteQuery(batcher, oldNode, shard0);
+        assertThat(sent, empty());
+        assertThat(sentBatches, empty());
+
+        batcher.flush();
+        assertThat(sentBatches, hasSize(1));
+        assertThat(sentBatches.get(0).requests(), equalTo(batched));
+        assertThat(sent, contains(single, old1, old2));
+
+        // the results and failures of the batch are dispatched to the listener of their request
+        final QuerySearchBatchResult result = new QuerySearchBatchResult(3);
+        final QuerySearchResult result0 = new QuerySearchResult();
+        final IllegalStateException failure1 = new IllegalStateException("boom");
+        final QuerySearchResult result2 = new QuerySearchResult();
+        result.setResult(0, result0);
+        result.setFailure(1, failure1);
+        result.setResult(2, result2);
+        batchListeners.get(0).onResponse(result);
+        assertThat(responses.get(batched.get(0)), sameInstance(result0));
+        assertThat(responses.get(batched.get(1)), sameInstance(failure1));
+        assertThat(responses.get(batched.get(2)), sameInstance(result2));
+
+        // requests sent after the flush, like retries, are not held back
+        final ShardSearchTransportRequest retry = sendExecuteQuery(batcher, node, shard0);
+        assertThat(sent, contains(single, old1, old2, retry));
+        assertThat(sentBatches, hasSize(1));
+    }
+
+    public void testBatchFailureFailsAllRequests() {
+        final DiscoveryNode node = newNode("node", Version.CURRENT);
+        final ShardId shardId = new ShardId("index", "_na_", 0);
+        final QueryPhaseBatcher batcher = new QueryPhaseBatcher(searchTransportService, null);
+        final int numRequests = randomIntBetween(2, 10);
+        final List<ShardSearchTransportRequest> requests = new ArrayList<>();
+        for (int i = 0; i < numRequests; i++) {
+            requests.add(sendExecuteQuery(batcher, node, shardId));
+        }
+        batcher.flush();
+        assertThat(sentBatches, hasSize(1));
+        final IllegalStateException failure = new IllegalStateException("node disconnected");
+        batchListeners.get(0).onFailure(failure);
+        for (ShardSearchTransportRequest request : requests) {
+            assertThat(responses.get(request), sameInstance(failure));
+        }
+    }
+
+    private ShardSearchTransportRequest sendExecuteQuery(QueryPhaseBatcher batcher, DiscoveryNode node, ShardId shardId) {
+        final SearchRequest searchRequest = new SearchRequest();
+        final ShardSearchTransportRequest request = new ShardSearchTransportRequest(new OriginalIndices(searchRequest), searchRequest,
+            shardId, 2, new AliasFilter(null, Strings.EMPTY_ARRAY), 1.0f, 0L);
+        final SearchShardTarget target = new SearchShardTarget(node.getId(), shardId, null, OriginalIndices.NONE);
+        batcher.sendExecuteQuery(new MockConnection(node), request, null, new SearchActionListener<SearchPhaseResult>(target, 0) {
+            @Override
+            protected void innerOnResponse(SearchPhaseResult response) {
+                assertNull(responses.put(request, response));
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                assertNull(responses.put(request, e));
+            }
+        });
+        return request;
+    }
+
+    private static DiscoveryNode newNode(String id, Version version) {
+        return new DiscoveryNode(id, new LocalTransportAddress(id), Collections.emptyMap(), Collections.emptySet(), version);
+    }
+
+    private static final class MockConnection implements Transport.Connection {
+
+        private final DiscoveryNode node;
+
+        MockConnection(DiscoveryNode node) {
+            this.node = node;
+        }
+
+        @Override
+        public DiscoveryNode getNode() {
+            return node;
+        }
+
+        @Override
+        public void sendRequest(long requestId, String action, TransportRequest request, TransportRequestOptions options) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
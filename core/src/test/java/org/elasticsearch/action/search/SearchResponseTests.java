@@ -24,6 +24,8 @@ import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.text.Text;
 import org.elasticsearch.common.xcontent.NamedXContentRegistry;
 import org.elasticsearch.common.xcontent.ToXContent;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
 import org.elasticsearch.common.xcontent.XContentHelper;
 import org.elasticsearch.common.xcontent.XContentParser;
 import org.elasticsearch.common.xcontent.XContentType;
@@ -46,6 +48,7 @@ import org.junit.Before;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 
 import static java.util.Collections.singletonMap;
@@ -174,4 +177,18 @@ public class SearchResponseTests extends ESTestCase {
         expectedString.append("}");
         assertEquals(expectedString.toString(), Strings.toString(response));
     }
-}
\ No newline at end of file
+
+    public void testToXContentChunked() throws IOException {
+        SearchResponse response = createTestItem();
+        XContentType xcontentType = randomFrom(XContentType.values());
+        boolean humanReadable = randomBoolean();
+        final ToXContent.Params params = new ToXContent.MapParams(singletonMap(RestSearchAction.TYPED_KEYS_PARAM, "true"));
+        BytesReference expected = XContentHelper.toXContent(response, xcontentType, params, humanReadable);
+        XContentBuilder builder = XContentFactory.contentBuilder(xcontentType);
+        builder.humanReadable(humanReadable);
+        for (Iterator<? extends ToXContent> it = response.toXContentChunked(); it.hasNext(); ) {
+            it.next().toXContent(builder, params);
+        }
+        assertToXContentEquivalent(expected, builder.bytes(), xcontentType);
+    }
+}
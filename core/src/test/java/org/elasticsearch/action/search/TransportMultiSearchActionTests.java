@@ -20,6 +20,7 @@
 package org.elasticsearch.action.search;
 
 import org.elasticsearch.Version;
+import org.elasticsearch.action.ActionFuture;
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.support.ActionFilter;
 import org.elasticsearch.action.support.ActionFilters;
@@ -34,13 +35,16 @@ import org.elasticsearch.common.Randomness;
 import org.elasticsearch.common.UUIDs;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.transport.LocalTransportAddress;
+import org.elasticsearch.tasks.TaskId;
 import org.elasticsearch.tasks.TaskManager;
 import org.elasticsearch.test.ESTestCase;
 import org.elasticsearch.threadpool.ThreadPool;
 import org.elasticsearch.transport.TransportService;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Set;
@@ -104,7 +108,8 @@ public class TransportMultiSearchActionTests extends ESTestCase {
             }
         };
         TransportMultiSearchAction action =
-                new TransportMultiSearchAction(threadPool, actionFilters, transportService, clusterService, searchAction, resolver, 10);
+                new TransportMultiSearchAction(threadPool, actionFilters, transportService, clusterService, searchAction,
+                    new SearchTransportService(Settings.EMPTY, transportService), resolver, 10);
 
         // Execute the multi search api and fail if we find an error after executing:
         try {
@@ -128,6 +133,71 @@ public class TransportMultiSearchActionTests extends ESTestCase {
         }
     }
 
+    public void testBatchShardRequests() throws Exception {
+        Settings settings = Settings.builder()
+                .put("node.name", TransportMultiSearchActionTests.class.getSimpleName())
+                .build();
+        ActionFilters actionFilters = mock(ActionFilters.class);
+        when(actionFilters.filters()).thenReturn(new ActionFilter[0]);
+        ThreadPool threadPool = new ThreadPool(settings);
+        TaskManager taskManager = new TaskManager(Settings.EMPTY);
+        TransportService transportService = new TransportService(Settings.EMPTY, null, null, TransportService.NOOP_TRANSPORT_INTERCEPTOR,
+            boundAddress -> DiscoveryNode.createLocal(settings, boundAddress.publishAddress(), UUIDs.randomBase64UUID()), null) {
+            @Override
+            public TaskManager getTaskManager() {
+                return taskManager;
+            }
+        };
+        DiscoveryNode localNode = new DiscoveryNode("local", new LocalTransportAddress("local"), Version.CURRENT);
+        ClusterService clusterService = mock(ClusterService.class);
+        when(clusterService.state()).thenReturn(ClusterState.builder(new ClusterName("test")).build());
+        when(clusterService.localNode()).thenReturn(localNode);
+        IndexNameExpressionResolver resolver = new IndexNameExpressionResolver(Settings.EMPTY);
+        SearchTransportService searchTransportService = new SearchTransportService(Settings.EMPTY, transportService);
+
+        final List<ActionListener<SearchResponse>> listeners = Collections.synchronizedList(new ArrayList<>());
+        final Set<TaskId> parentTaskIds = Collections.synchronizedSet(new HashSet<>());
+        final AtomicReference<AssertionError> errorHolder = new AtomicReference<>();
+        TransportAction<SearchRequest, SearchResponse> searchAction = new TransportAction<SearchRequest, SearchResponse>
+                (Settings.EMPTY, "action", threadPool, actionFilters, resolver, taskManager) {
+            @Override
+            protected void doExecute(SearchRequest request, ActionListener<SearchResponse> listener) {
+                parentTaskIds.add(request.getParentTask());
+                if (searchTransportService.getQueryPhaseBatcher(request.getParentTask()) == null) {
+                    errorHolder.set(new AssertionError("no batcher registered for [" + request.getParentTask() + "]"));
+                }
+                // searches are started without waiting for the previous ones to complete
+                listeners.add(listener);
+            }
+        };
+        TransportMultiSearchAction action = new TransportMultiSearchAction(threadPool, actionFilters, transportService, clusterService,
+            searchAction, searchTransportService, resolver, 10);
+
+        try {
+            int numSearchRequests = randomIntBetween(1, 100);
+            MultiSearchRequest multiSearchRequest = new MultiSearchRequest();
+            multiSearchRequest.maxConcurrentSearchRequests(1);
+            multiSearchRequest.batchShardRequests(true);
+            for (int i = 0; i < numSearchRequests; i++) {
+                multiSearchRequest.add(new SearchRequest());
+            }
+
+            ActionFuture<MultiSearchResponse> future = action.execute(multiSearchRequest);
+            assertThat(listeners.size(), equalTo(numSearchRequests));
+            assertThat(errorHolder.get(), nullValue());
+            assertThat(parentTaskIds.size(), equalTo(1));
+            TaskId parentTaskId = parentTaskIds.iterator().next();
+            assertThat(parentTaskId.getNodeId(), equalTo("local"));
+            assertThat(searchTransportService.getQueryPhaseBatcher(parentTaskId), nullValue());
+            for (ActionListener<SearchResponse> listener : listeners) {
+                listener.onResponse(new SearchResponse());
+            }
+            assertThat(future.get().getResponses().length, equalTo(numSearchRequests));
+        } finally {
+            assertTrue(ESTestCase.terminate(threadPool));
+        }
+    }
+
     public void testDefaultMaxConcurrentSearches() {
         int numDataNodes = randomIntBetween(1, 10);
         DiscoveryNodes.Builder builder = DiscoveryNodes.builder();
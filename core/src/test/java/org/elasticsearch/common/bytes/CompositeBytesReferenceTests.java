@@ -63,6 +63,7 @@ public class CompositeBytesReferenceTests extends AbstractBytesReferenceTestCase
     public void testCompositeBuffer() throws IOException {
         List<BytesReference> referenceList = newRefList(randomIntBetween(1, PAGE_SIZE * 2));
         BytesReference ref = new CompositeBytesReference(referenceList.toArray(new BytesReference[0]));
+        assertEquals(referenceList, ((CompositeBytesReference) ref).references());
         BytesRefIterator iterator = ref.iterator();
         BytesRefBuilder builder = new BytesRefBuilder();
 
@@ -0,0 +1,87 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.common.bytes;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class FileRegionBytesReferenceTests extends AbstractBytesReferenceTestCase {
+
+    @Override
+    protected BytesReference newBytesReference(int length) throws IOException {
+        return newBytesReference(length, randomInt(length));
+    }
+
+    @Override
+    protected BytesReference newBytesReferenceWithOffsetOfZero(int length) throws IOException {
+        return newBytesReference(length, 0);
+    }
+
+    private BytesReference newBytesReference(int length, int offset) throws IOException {
+        final byte[] bytes = new byte[offset + length + randomInt(length)];
+        random().nextBytes(bytes);
+        final Path file = createTempFile();
+        Files.write(file, bytes);
+        final FileRegionBytesReference ref = new FileRegionBytesReference(file, offset, length);
+        assertEquals(length, ref.length());
+        assertEquals(new BytesArray(bytes, offset, length), ref);
+        return ref;
+    }
+
+    public void testMissingFile() throws IOException {
+        final BytesReference ref = new FileRegionBytesReference(createTempDir().resolve("missing"), 0, randomIntBetween(1, 10));
+        expectThrows(UncheckedIOException.class, ref::toBytesRef);
+        expectThrows(UncheckedIOException.class, () -> ref.get(0));
+    }
+
+    public void testReadPastEndOfFile() throws IOException {
+        final Path file = createTempFile();
+        Files.write(file, new byte[randomIntBetween(0, 10)]);
+        final BytesReference ref = new FileRegionBytesReference(file, randomIntBetween(0, 10), randomIntBetween(11, 20));
+        expectThrows(UncheckedIOException.class, ref::toBytesRef);
+    }
+
+    @Override
+    public void testToBytesRefSharedPage() throws IOException {
+        // every access reads the bytes from the file, nothing is shared
+    }
+
+    @Override
+    public void testCopyBytesRefSharesBytes() throws IOException {
+        // every access reads the bytes from the file, nothing is shared
+    }
+
+    @Override
+    public void testSliceCopyBytesRef() throws IOException {
+        // every access reads the bytes from the file, nothing is shared
+    }
+
+    @Override
+    public void testSliceArrayOffset() throws IOException {
+        // slices are read into a fresh array and therefore always start at offset 0
+    }
+
+    @Override
+    public void testSliceToBytesRef() throws IOException {
+        // slices are read into a fresh array and therefore always start at offset 0
+    }
+}
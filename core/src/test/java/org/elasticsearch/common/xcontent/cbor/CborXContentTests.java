@@ -22,10 +22,17 @@ package org.elasticsearch.common.xcontent.cbor;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
 
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.xcontent.BaseXContentTestCase;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentHelper;
 import org.elasticsearch.common.xcontent.XContentType;
 
 import java.io.ByteArrayOutputStream;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.equalTo;
 
 public class CborXContentTests extends BaseXContentTestCase {
 
@@ -39,4 +46,25 @@ public class CborXContentTests extends BaseXContentTestCase {
         JsonGenerator generator = new CBORFactory().createGenerator(os);
         doTestBigInteger(generator, os);
     }
+
+    public void testRawFieldIsCopiedAsIs() throws Exception {
+        final XContentBuilder source = XContentBuilder.builder(XContentType.CBOR.xContent());
+        source.startObject().field("foo", "bar").startArray("baz").value(1).value(2.5).endArray().endObject();
+        final BytesReference rawData = source.bytes();
+
+        final XContentBuilder builder = XContentBuilder.builder(XContentType.CBOR.xContent());
+        builder.startObject().field("before", 1).rawField("raw", rawData, XContentType.CBOR).field("after", 2).endObject();
+        final byte[] bytes = BytesReference.toBytes(builder.bytes());
+        final byte[] raw = BytesReference.toBytes(rawData);
+        boolean found = false;
+        for (int i = 0; i + raw.length <= bytes.length && found == false; i++) {
+            found = new BytesArray(bytes, i, raw.length).equals(rawData);
+        }
+        assertTrue("raw bytes were transcoded", found);
+
+        final Map<String, Object> map = XContentHelper.convertToMap(builder.bytes(), true, XContentType.CBOR).v2();
+        assertThat(map.get("before"), equalTo(1));
+        assertThat(map.get("raw"), equalTo(XContentHelper.convertToMap(rawData, true, XContentType.CBOR).v2()));
+        assertThat(map.get("after"), equalTo(2));
+    }
 }
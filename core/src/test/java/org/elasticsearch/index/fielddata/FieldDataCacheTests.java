@@ -124,6 +124,11 @@ public class FieldDataCacheTests extends ESTestCase {
             return (IFD) indexFieldData.localGlobalDirect(indexReader);
         }
 
+        @Override
+        public boolean isGlobalLoaded(DirectoryReader indexReader) {
+            return false;
+        }
+
         @Override
         public void clear() {
         }
@@ -29,12 +29,20 @@ import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.RandomIndexWriter;
 import org.apache.lucene.store.BaseDirectoryWrapper;
 import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FileSwitchDirectory;
 import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.store.NIOFSDirectory;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.store.SimpleFSDirectory;
+import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.IOUtils;
 import org.elasticsearch.ExceptionsHelper;
 import org.elasticsearch.Version;
+import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.cluster.metadata.IndexMetaData;
 import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.io.FileSystemUtils;
 import org.elasticsearch.common.lease.Releasable;
 import org.elasticsearch.common.lucene.store.IndexOutputOutputStream;
@@ -55,18 +63,26 @@ import org.elasticsearch.test.DummyShardLock;
 import org.elasticsearch.test.ESTestCase;
 import org.elasticsearch.test.IndexSettingsModule;
 
+import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 import java.util.function.Supplier;
 
 import static java.util.Collections.emptyMap;
 import static java.util.Collections.emptySet;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -86,7 +102,7 @@ public class RecoverySourceHandlerTests extends ESTestCase {
             null, randomBoolean(), randomLong());
         Store store = newStore(createTempDir());
         RecoverySourceHandler handler = new RecoverySourceHandler(null, null, request, () -> 0L, e -> () -> {},
-            recoverySettings.getChunkSize().bytesAsInt(), logger);
+            recoverySettings.getChunkSize().bytesAsInt(), between(1, 8), randomBoolean(), logger);
         Directory dir = store.directory();
         RandomIndexWriter writer = new RandomIndexWriter(random(), dir, newIndexWriterConfig());
         int numDocs = randomIntBetween(10, 100);
@@ -128,6 +144,104 @@ public class RecoverySourceHandlerTests extends ESTestCase {
         IOUtils.close(reader, store, targetStore);
     }
 
+    public void testFileSystemDirectory() throws IOException {
+        final Path path = createTempDir();
+        try (Directory directory = newFSDirectory(path)) {
+            assertEquals(path, RecoverySourceHandler.fileSystemDirectory(directory));
+        }
+        try (Directory directory = new FileSwitchDirectory(Collections.singleton("cfs"), new NIOFSDirectory(path),
+                new SimpleFSDirectory(path), true)) {
+            assertEquals(path, RecoverySourceHandler.fileSystemDirectory(directory));
+        }
+        try (Directory directory = new FileSwitchDirectory(Collections.singleton("cfs"), new NIOFSDirectory(path),
+                new SimpleFSDirectory(createTempDir()), true)) {
+            assertNull(RecoverySourceHandler.fileSystemDirectory(directory));
+        }
+        try (Directory directory = new RAMDirectory()) {
+            assertNull(RecoverySourceHandler.fileSystemDirectory(directory));
+        }
+    }
+
+    public void testSendFileChunksConcurrently() throws Throwable {
+        final RecoverySettings recoverySettings = new RecoverySettings(Settings.EMPTY, service);
+        StartRecoveryRequest request = new StartRecoveryRequest(shardId, null,
+                new DiscoveryNode("b", LocalTransportAddress.buildUnique(), emptyMap(), emptySet(), Version.CURRENT),
+                new DiscoveryNode("b", LocalTransportAddress.buildUnique(), emptyMap(), emptySet(), Version.CURRENT),
+            null, randomBoolean(), randomLong());
+        Store store = newStore(createTempDir());
+        Directory dir = store.directory();
+        RandomIndexWriter writer = new RandomIndexWriter(random(), dir, newIndexWriterConfig());
+        int numDocs = randomIntBetween(10, 100);
+        for (int i = 0; i < numDocs; i++) {
+            Document document = new Document();
+            document.add(new StringField("id", Integer.toString(i), Field.Store.YES));
+            document.add(newField("field", randomUnicodeOfCodepointLengthBetween(1, 10), TextField.TYPE_STORED));
+            writer.addDocument(document);
+        }
+        writer.commit();
+        writer.close();
+
+        Store.MetadataSnapshot metadata = store.getMetadata(null);
+        List<StoreFileMetaData> metas = new ArrayList<>();
+        for (StoreFileMetaData md : metadata) {
+            metas.add(md);
+        }
+        final int maxConcurrentChunks = between(1, 8);
+        final AtomicInteger inFlight = new AtomicInteger();
+        final List<Runnable> pendingAcks = new ArrayList<>();
+        final Map<String, Map<Long, BytesReference>> receivedChunks = new HashMap<>();
+        RecoveryTargetHandler targetHandler = mock(RecoveryTargetHandler.class);
+        doAnswer(invocation -> {
+            final Object[] args = invocation.getArguments();
+            final StoreFileMetaData md = (StoreFileMetaData) args[0];
+            final boolean lastChunk = (boolean) args[3];
+            @SuppressWarnings("unchecked") final ActionListener<Void> listener = (ActionListener<Void>) args[5];
+            assertThat(inFlight.incrementAndGet(), lessThanOrEqualTo(maxConcurrentChunks));
+            receivedChunks.computeIfAbsent(md.name(), k -> new HashMap<>()).put((long) args[1], (BytesReference) args[2]);
+            pendingAcks.add(() -> {
+                inFlight.decrementAndGet();
+                listener.onResponse(null);
+            });
+            // acknowledge in random order once the window is full or a file is done
+            if (lastChunk || pendingAcks.size() == maxConcurrentChunks) {
+                Collections.shuffle(pendingAcks, random());
+                List<Runnable> acks = new ArrayList<>(pendingAcks);
+                pendingAcks.clear();
+                acks.forEach(Runnable::run);
+            }
+            return null;
+        }).when(targetHandler).writeFileChunk(any(StoreFileMetaData.class), anyLong(), any(BytesReference.class), anyBoolean(),
+            anyInt(), any());
+        IndexShard shard = mock(IndexShard.class);
+        when(shard.state()).thenReturn(IndexShardState.STARTED);
+        Translog.View translogView = mock(Translog.View.class);
+        RecoverySourceHandler handler = new RecoverySourceHandler(shard, targetHandler, request, () -> 0L, e -> () -> {},
+            recoverySettings.getChunkSize().bytesAsInt(), maxConcurrentChunks, randomBoolean(), logger);
+        final int chunkSize = between(16, 1024);
+        handler.sendFiles(store, metas.toArray(new StoreFileMetaData[0]),
+            md -> new BufferedOutputStream(handler.new RecoveryOutputStream(md, translogView), chunkSize));
+        assertEquals(0, inFlight.get());
+
+        Store targetStore = newStore(createTempDir());
+        for (StoreFileMetaData md : metas) {
+            try (IndexOutput output = targetStore.createVerifyingOutput(md.name(), md, IOContext.DEFAULT)) {
+                long position = 0;
+                while (position < md.length()) {
+                    BytesReference chunk = receivedChunks.get(md.name()).get(position);
+                    assertNotNull("missing chunk of [" + md.name() + "] at [" + position + "]", chunk);
+                    BytesRef bytes = chunk.toBytesRef();
+                    output.writeBytes(bytes.bytes, bytes.offset, bytes.length);
+                    position += bytes.length;
+                }
+                Store.verify(output);
+            }
+            targetStore.directory().sync(Collections.singleton(md.name())); // sync otherwise MDW will mess with it
+        }
+        Store.RecoveryDiff recoveryDiff = targetStore.getMetadata(null).recoveryDiff(metadata);
+        assertEquals(metas.size(), recoveryDiff.identical.size());
+        IOUtils.close(store, targetStore);
+    }
+
     public void testHandleCorruptedIndexOnSendSendFiles() throws Throwable {
         Settings settings = Settings.builder().put("indices.recovery.concurrent_streams", 1).
                 put("indices.recovery.concurrent_small_file_streams", 1).build();
@@ -140,7 +254,7 @@ public class RecoverySourceHandlerTests extends ESTestCase {
         Store store = newStore(tempDir, false);
         AtomicBoolean failedEngine = new AtomicBoolean(false);
         RecoverySourceHandler handler = new RecoverySourceHandler(null, null, request, () -> 0L, e -> () -> {},
-            recoverySettings.getChunkSize().bytesAsInt(), logger) {
+            recoverySettings.getChunkSize().bytesAsInt(), between(1, 8), randomBoolean(), logger) {
             @Override
             protected void failEngine(IOException cause) {
                 assertFalse(failedEngine.get());
@@ -204,7 +318,7 @@ public class RecoverySourceHandlerTests extends ESTestCase {
         Store store = newStore(tempDir, false);
         AtomicBoolean failedEngine = new AtomicBoolean(false);
         RecoverySourceHandler handler = new RecoverySourceHandler(null, null, request, () -> 0L, e -> () -> {},
-            recoverySettings.getChunkSize().bytesAsInt(), logger) {
+            recoverySettings.getChunkSize().bytesAsInt(), between(1, 8), randomBoolean(), logger) {
             @Override
             protected void failEngine(IOException cause) {
                 assertFalse(failedEngine.get());
@@ -266,7 +380,7 @@ public class RecoverySourceHandlerTests extends ESTestCase {
         AtomicBoolean phase1Called = new AtomicBoolean();
         AtomicBoolean phase2Called = new AtomicBoolean();
         RecoverySourceHandler handler = new RecoverySourceHandler(shard, null, request, () -> 0L, e -> () -> {},
-            recoverySettings.getChunkSize().bytesAsInt(), logger) {
+            recoverySettings.getChunkSize().bytesAsInt(), between(1, 8), randomBoolean(), logger) {
 
             @Override
             public void phase1(final IndexCommit snapshot, final Translog.View translogView) {
@@ -326,7 +440,7 @@ public class RecoverySourceHandlerTests extends ESTestCase {
         };
 
         RecoverySourceHandler handler = new RecoverySourceHandler(shard, targetHandler, request, currentClusterStateVersionSupplier,
-            delayNewRecoveries, recoverySettings.getChunkSize().bytesAsInt(), logger) {
+            delayNewRecoveries, recoverySettings.getChunkSize().bytesAsInt(), between(1, 8), randomBoolean(), logger) {
 
             @Override
             public void phase1(final IndexCommit snapshot, final Translog.View translogView) {
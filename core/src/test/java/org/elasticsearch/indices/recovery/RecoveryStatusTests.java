@@ -19,17 +19,26 @@
 package org.elasticsearch.indices.recovery;
 
 import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
 import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.store.RAMDirectory;
 import org.elasticsearch.Version;
 import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.bytes.BytesArray;
 import org.elasticsearch.common.transport.LocalTransportAddress;
 import org.elasticsearch.common.util.set.Sets;
 import org.elasticsearch.index.IndexService;
 import org.elasticsearch.index.shard.IndexShard;
+import org.elasticsearch.index.store.Store;
 import org.elasticsearch.index.store.StoreFileMetaData;
 import org.elasticsearch.test.ESSingleNodeTestCase;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.regex.Pattern;
 
@@ -85,4 +94,71 @@ public class RecoveryStatusTests extends ESSingleNodeTestCase {
         // we must fail the recovery because marking it as done will try to move the shard to POST_RECOVERY, which will fail because it's started
         status.fail(new RecoveryFailedException(status.state(), "end of test. OK.", null), false);
     }
+
+    public void testWriteFileChunksOutOfOrder() throws IOException {
+        IndexService service = createIndex("foo");
+        IndexShard indexShard = service.getShardOrNull(0);
+        DiscoveryNode node = new DiscoveryNode("foo", new LocalTransportAddress("bar"), emptyMap(), emptySet(), Version.CURRENT);
+        RecoveryTarget status = new RecoveryTarget(indexShard, node, new PeerRecoveryTargetService.RecoveryListener() {
+            @Override
+            public void onRecoveryDone(RecoveryState state) {
+            }
+
+            @Override
+            public void onRecoveryFailure(RecoveryState state, RecoveryFailedException e, boolean sendShardFailure) {
+            }
+        }, version -> {});
+
+        final byte[] bytes;
+        final StoreFileMetaData metaData;
+        try (RAMDirectory directory = new RAMDirectory()) {
+            try (IndexOutput output = directory.createOutput("foo.bar", IOContext.DEFAULT)) {
+                final byte[] randomBytes = new byte[randomIntBetween(1, 1 << 14)];
+                random().nextBytes(randomBytes);
+                output.writeBytes(randomBytes, randomBytes.length);
+                CodecUtil.writeFooter(output);
+            }
+            try (IndexInput input = directory.openInput("foo.bar", IOContext.DEFAULT)) {
+                bytes = new byte[(int) input.length()];
+                input.readBytes(bytes, 0, bytes.length);
+                metaData = new StoreFileMetaData("foo.bar", bytes.length, Store.digestToString(CodecUtil.retrieveChecksum(input)));
+            }
+        }
+        status.state().getIndex().addFileDetail("foo.bar", bytes.length, false);
+
+        final List<Integer> positions = new ArrayList<>();
+        for (int position = 0; position < bytes.length; position += randomIntBetween(1, 1024)) {
+            positions.add(position);
+        }
+        final List<Integer> order = new ArrayList<>(positions);
+        Collections.shuffle(order, random());
+        final Set<Integer> written = new HashSet<>();
+        for (int position : order) {
+            final int index = positions.indexOf(position);
+            final int end = index == positions.size() - 1 ? bytes.length : positions.get(index + 1);
+            status.writeFileChunk(metaData, position, new BytesArray(bytes, position, end - position), end == bytes.length, 0);
+            written.add(position);
+            // chunks are only written to the file once all the chunks before them arrived
+            int contiguous = 0;
+            while (contiguous < positions.size() && written.contains(positions.get(contiguous))) {
+                contiguous++;
+            }
+            final long writtenUpTo = contiguous == positions.size() ? bytes.length : positions.get(contiguous);
+            assertEquals(writtenUpTo, status.state().getIndex().getFileDetails("foo.bar").recovered());
+            if (contiguous == 0) {
+                assertNull(status.getOpenIndexOutput("foo.bar"));
+            } else if (contiguous < positions.size()) {
+                assertEquals(writtenUpTo, status.getOpenIndexOutput("foo.bar").getFilePointer());
+            }
+        }
+
+        // the last chunk completed and verified the file
+        assertNull(status.getOpenIndexOutput("foo.bar"));
+        try (IndexInput input = status.store().directory().openInput(status.getTempNameForFile("foo.bar"), IOContext.DEFAULT)) {
+            final byte[] recovered = new byte[(int) input.length()];
+            input.readBytes(recovered, 0, recovered.length);
+            assertArrayEquals(bytes, recovered);
+        }
+        status.fail(new RecoveryFailedException(status.state(), "end of test. OK.", null), false);
+    }
 }
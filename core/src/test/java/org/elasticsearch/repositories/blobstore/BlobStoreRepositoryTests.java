@@ -21,9 +21,18 @@ package org.elasticsearch.repositories.blobstore;
 
 import org.elasticsearch.action.admin.cluster.repositories.put.PutRepositoryResponse;
 import org.elasticsearch.action.admin.cluster.snapshots.create.CreateSnapshotResponse;
+import org.elasticsearch.action.admin.cluster.snapshots.restore.RestoreSnapshotResponse;
+import org.elasticsearch.action.admin.indices.recovery.RecoveryResponse;
 import org.elasticsearch.client.Client;
+import org.elasticsearch.cluster.routing.RecoverySource;
 import org.elasticsearch.common.UUIDs;
+import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.xcontent.ToXContent;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.indices.recovery.RecoveryState;
 import org.elasticsearch.repositories.IndexId;
 import org.elasticsearch.repositories.RepositoriesService;
 import org.elasticsearch.repositories.RepositoryData;
@@ -34,15 +43,21 @@ import org.elasticsearch.test.ESIntegTestCase;
 import org.elasticsearch.test.ESSingleNodeTestCase;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.elasticsearch.repositories.RepositoryDataTests.generateRandomRepoData;
+import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertHitCount;
+import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
 
 /**
  * Tests for the {@link BlobStoreRepository} and its subclasses.
@@ -102,6 +117,127 @@ public class BlobStoreRepositoryTests extends ESSingleNodeTestCase {
         assertThat(snapshotIds, equalTo(originalSnapshots));
     }
 
+    public void testSnapshotAndRestoreWithConcurrentUploads() throws Exception {
+        final Client client = client();
+        final Path location = ESIntegTestCase.randomRepoPath(node().settings());
+        final String repositoryName = "test-repo";
+        final int maxConcurrentUploads = randomIntBetween(1, 8);
+        final int maxConcurrentDownloads = randomIntBetween(1, 8);
+
+        logger.info("-->  creating repository with [{}] concurrent uploads and [{}] concurrent downloads",
+            maxConcurrentUploads, maxConcurrentDownloads);
+        PutRepositoryResponse putRepositoryResponse =
+            client.admin().cluster().preparePutRepository(repositoryName)
+                                    .setType("fs")
+                                    .setSettings(Settings.builder().put(node().settings()).put("location", location)
+                                        .put("max_concurrent_uploads", maxConcurrentUploads)
+                                        .put("max_concurrent_downloads", maxConcurrentDownloads)
+                                        .put("chunk_size", randomIntBetween(100, 1000), ByteSizeUnit.BYTES))
+                                    .get();
+        assertThat(putRepositoryResponse.isAcknowledged(), equalTo(true));
+
+        logger.info("--> creating an index and indexing documents");
+        final String indexName = "test-idx";
+        createIndex(indexName);
+        ensureGreen();
+        int numDocs = randomIntBetween(10, 100);
+        for (int i = 0; i < numDocs; i++) {
+            String id = Integer.toString(i);
+            client().prepareIndex(indexName, "type1", id).setSource("text", "sometext " + randomAlphaOfLength(20)).get();
+            if (rarely()) {
+                client().admin().indices().prepareFlush(indexName).get();
+            }
+        }
+        client().admin().indices().prepareFlush(indexName).get();
+
+        logger.info("--> create snapshot");
+        CreateSnapshotResponse createSnapshotResponse = client.admin()
+                                                              .cluster()
+                                                              .prepareCreateSnapshot(repositoryName, "test-snap")
+                                                              .setWaitForCompletion(true)
+                                                              .setIndices(indexName)
+                                                              .get();
+        assertThat(createSnapshotResponse.getSnapshotInfo().state(), equalTo(SnapshotState.SUCCESS));
+        assertThat(createSnapshotResponse.getSnapshotInfo().failedShards(), equalTo(0));
+
+        logger.info("--> delete index and restore it");
+        client.admin().indices().prepareDelete(indexName).get();
+        RestoreSnapshotResponse restoreSnapshotResponse = client.admin()
+                                                                .cluster()
+                                                                .prepareRestoreSnapshot(repositoryName, "test-snap")
+                                                                .setWaitForCompletion(true)
+                                                                .get();
+        assertThat(restoreSnapshotResponse.getRestoreInfo().failedShards(), equalTo(0));
+        ensureGreen();
+        assertHitCount(client().prepareSearch(indexName).setSize(0).get(), numDocs);
+
+        logger.info("--> make sure every restored file is reported as fully recovered");
+        RecoveryResponse recoveryResponse = client.admin().indices().prepareRecoveries(indexName).get();
+        for (RecoveryState recoveryState : recoveryResponse.shardRecoveryStates().get(indexName)) {
+            assertThat(recoveryState.getRecoverySource().getType(), equalTo(RecoverySource.Type.SNAPSHOT));
+            assertThat(recoveryState.getIndex().totalRecoverFiles(), greaterThan(0));
+            for (RecoveryState.File file : recoveryState.getIndex().fileDetails()) {
+                assertThat(file.name(), file.recovered(), equalTo(file.length()));
+            }
+        }
+    }
+
+    public void testDeleteSnapshotsWithShardIndexCache() throws Exception {
+        final Client client = client();
+        final Path location = ESIntegTestCase.randomRepoPath(node().settings());
+        final String repositoryName = "test-repo";
+
+        logger.info("-->  creating repository");
+        Settings.Builder repositorySettings = Settings.builder().put(node().settings()).put("location", location);
+        if (randomBoolean()) {
+            repositorySettings.put("shard_index_cache_size", randomFrom(0, 1, 100));
+        }
+        PutRepositoryResponse putRepositoryResponse =
+            client.admin().cluster().preparePutRepository(repositoryName).setType("fs").setSettings(repositorySettings).get();
+        assertThat(putRepositoryResponse.isAcknowledged(), equalTo(true));
+
+        logger.info("--> creating snapshots of a growing index");
+        final String indexName = "test-idx";
+        createIndex(indexName);
+        ensureGreen();
+        final int numSnapshots = randomIntBetween(2, 5);
+        final List<String> snapshotNames = new ArrayList<>();
+        int numDocs = 0;
+        for (int i = 0; i < numSnapshots; i++) {
+            final int docsToAdd = randomIntBetween(1, 10);
+            for (int j = 0; j < docsToAdd; j++) {
+                client().prepareIndex(indexName, "type1", Integer.toString(numDocs++)).setSource("text", "sometext").get();
+            }
+            client().admin().indices().prepareFlush(indexName).get();
+            final String snapshotName = "test-snap-" + i;
+            CreateSnapshotResponse createSnapshotResponse = client.admin().cluster().prepareCreateSnapshot(repositoryName, snapshotName)
+                                                                  .setWaitForCompletion(true).setIndices(indexName).get();
+            assertThat(createSnapshotResponse.getSnapshotInfo().state(), equalTo(SnapshotState.SUCCESS));
+            snapshotNames.add(snapshotName);
+        }
+
+        logger.info("--> delete all snapshots but the last one");
+        final String lastSnapshot = snapshotNames.remove(snapshotNames.size() - 1);
+        Collections.shuffle(snapshotNames, random());
+        for (String snapshotName : snapshotNames) {
+            assertTrue(client.admin().cluster().prepareDeleteSnapshot(repositoryName, snapshotName).get().isAcknowledged());
+        }
+
+        logger.info("--> delete index and restore the last snapshot");
+        client.admin().indices().prepareDelete(indexName).get();
+        RestoreSnapshotResponse restoreSnapshotResponse = client.admin().cluster().prepareRestoreSnapshot(repositoryName, lastSnapshot)
+                                                                .setWaitForCompletion(true).get();
+        assertThat(restoreSnapshotResponse.getRestoreInfo().failedShards(), equalTo(0));
+        ensureGreen();
+        assertHitCount(client().prepareSearch(indexName).setSize(0).get(), numDocs);
+
+        logger.info("--> delete the last snapshot and make sure no data blobs are left behind");
+        assertTrue(client.admin().cluster().prepareDeleteSnapshot(repositoryName, lastSnapshot).get().isAcknowledged());
+        try (Stream<Path> files = Files.walk(location.resolve("indices"))) {
+            assertThat(files.filter(file -> file.getFileName().toString().startsWith("__")).collect(Collectors.toList()), empty());
+        }
+    }
+
     public void testReadAndWriteSnapshotsThroughIndexFile() throws Exception {
         final BlobStoreRepository repository = setupRepo();
 
@@ -163,6 +299,35 @@ public class BlobStoreRepositoryTests extends ESSingleNodeTestCase {
         expectThrows(RepositoryException.class, () -> repository.writeIndexGen(repositoryData, repositoryData.getGenId()));
     }
 
+    public void testRepositoryDataWrittenElsewhere() throws Exception {
+        final BlobStoreRepository repository = setupRepo();
+
+        RepositoryData repositoryData = generateRandomRepoData();
+        repository.writeIndexGen(repositoryData, repositoryData.getGenId());
+        assertEquals(repositoryData, repository.getRepositoryData());
+
+        // another cluster that shares the repository writes the next generation
+        final RepositoryData otherRepositoryData = addRandomSnapshotsToRepoData(repository.getRepositoryData(), true);
+        final BytesReference bytes;
+        try (XContentBuilder builder = XContentFactory.jsonBuilder()) {
+            otherRepositoryData.snapshotsToXContent(builder, ToXContent.EMPTY_PARAMS);
+            bytes = builder.bytes();
+        }
+        try (InputStream stream = bytes.streamInput()) {
+            repository.blobContainer().writeBlob("index-1", stream, bytes.length());
+        }
+        // the repository data this node wrote last no longer applies
+        RepositoryData readData = repository.getRepositoryData();
+        assertEquals(otherRepositoryData, readData);
+        assertEquals(1L, readData.getGenId());
+
+        // and writing on top of it picks up from the new generation
+        readData = addRandomSnapshotsToRepoData(readData, true);
+        repository.writeIndexGen(readData, readData.getGenId());
+        assertEquals(readData, repository.getRepositoryData());
+        assertEquals(2L, repository.getRepositoryData().getGenId());
+    }
+
     public void testReadAndWriteIncompatibleSnapshots() throws Exception {
         final BlobStoreRepository repository = setupRepo();
 
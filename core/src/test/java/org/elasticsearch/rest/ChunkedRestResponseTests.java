@@ -0,0 +1,119 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.rest;
+
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.xcontent.ChunkedToXContent;
+import org.elasticsearch.common.xcontent.ToXContent;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.test.ESTestCase;
+import org.elasticsearch.test.rest.FakeRestChannel;
+import org.elasticsearch.test.rest.FakeRestRequest;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+public class ChunkedRestResponseTests extends ESTestCase {
+
+    public void testChunksMatchContent() throws IOException {
+        final ChunkedToXContent content = randomContent();
+        final RestChannel channel = new FakeRestChannel(new FakeRestRequest(), false, 1);
+
+        final ChunkedRestResponse expected = ChunkedRestResponse.fromXContent(channel, RestStatus.OK, content);
+        final BytesReference expectedContent = expected.content();
+        assertTrue(expected.isDone());
+
+        final ChunkedRestResponse response = ChunkedRestResponse.fromXContent(channel, RestStatus.OK, content);
+        assertThat(response.status(), equalTo(RestStatus.OK));
+        assertThat(response.contentType(), equalTo(expected.contentType()));
+        final int sizeHint = randomIntBetween(1, 128);
+        final BytesStreamOutput out = new BytesStreamOutput();
+        int chunks = 0;
+        while (response.isDone() == false) {
+            final long before = out.position();
+            response.writeChunk(out, sizeHint);
+            chunks++;
+            assertThat(out.position(), greaterThan(before));
+        }
+        assertThat(chunks, lessThanOrEqualTo(expectedContent.length()));
+        assertThat(out.bytes(), equalTo(expectedContent));
+        expectThrows(IllegalStateException.class, () -> response.writeChunk(new BytesStreamOutput(), sizeHint));
+    }
+
+    public void testContentAfterChunks() throws IOException {
+        final ChunkedToXContent content = randomContent();
+        final RestChannel channel = new FakeRestChannel(new FakeRestRequest(), false, 1);
+        final BytesReference expectedContent = ChunkedRestResponse.fromXContent(channel, RestStatus.OK, content).content();
+
+        final ChunkedRestResponse response = ChunkedRestResponse.fromXContent(channel, RestStatus.OK, content);
+        final BytesStreamOutput out = new BytesStreamOutput();
+        response.writeChunk(out, 1);
+        final BytesReference rest = response.content();
+        assertTrue(response.isDone());
+        final BytesStreamOutput all = new BytesStreamOutput();
+        out.bytes().writeTo(all);
+        rest.writeTo(all);
+        assertThat(all.bytes(), equalTo(expectedContent));
+    }
+
+    public void testMatchesToXContent() throws IOException {
+        final List<String> values = new ArrayList<>();
+        for (int i = randomIntBetween(0, 20); i > 0; i--) {
+            values.add(randomAlphaOfLengthBetween(1, 10));
+        }
+        final XContentBuilder builder = XContentFactory.jsonBuilder();
+        builder.startObject();
+        builder.startArray("values");
+        for (String value : values) {
+            builder.value(value);
+        }
+        builder.endArray();
+        builder.endObject();
+
+        final List<ToXContent> fragments = new ArrayList<>();
+        fragments.add((b, p) -> b.startObject().startArray("values"));
+        for (String value : values) {
+            fragments.add((b, p) -> b.value(value));
+        }
+        fragments.add((b, p) -> b.endArray().endObject());
+        final RestChannel channel = new FakeRestChannel(new FakeRestRequest(), false, 1);
+        final ChunkedRestResponse response = ChunkedRestResponse.fromXContent(channel, RestStatus.OK, fragments::iterator);
+        assertThat(response.content().utf8ToString(), equalTo(builder.string()));
+    }
+
+    private static ChunkedToXContent randomContent() {
+        final List<ToXContent> fragments = new ArrayList<>();
+        fragments.add((b, p) -> b.startObject());
+        for (int i = randomIntBetween(0, 50); i > 0; i--) {
+            final String name = "field_" + i;
+            final String value = randomAlphaOfLengthBetween(0, 20);
+            fragments.add((b, p) -> b.field(name, value));
+        }
+        fragments.add((b, p) -> b.endObject());
+        return fragments::iterator;
+    }
+}
@@ -440,6 +440,57 @@ public class RestControllerTests extends ESTestCase {
         assertWarnings("Content type detection for rest requests is deprecated. Specify the content type using the [Content-Type] header.");
     }
 
+    public void testSupportsIncrementalContent() {
+        final boolean supportsContentStream = randomBoolean();
+        restController.registerHandler(RestRequest.Method.POST, "/incremental", new RestHandler() {
+            @Override
+            public void handleRequest(RestRequest request, RestChannel channel, NodeClient client) throws Exception {
+                channel.sendResponse(new BytesRestResponse(RestStatus.OK, BytesRestResponse.TEXT_CONTENT_TYPE, BytesArray.EMPTY));
+            }
+
+            @Override
+            public boolean supportsContentStream() {
+                return supportsContentStream;
+            }
+
+            @Override
+            public boolean supportsIncrementalContent() {
+                return true;
+            }
+        });
+        restController.registerHandler(RestRequest.Method.POST, "/full", (request, channel, client) -> {});
+
+        assertTrue(restController.supportsIncrementalContent(incrementalRequest("/incremental", "application/json")));
+        assertTrue(restController.supportsIncrementalContent(incrementalRequest("/incremental", "application/smile")));
+        assertEquals(supportsContentStream,
+            restController.supportsIncrementalContent(incrementalRequest("/incremental", "application/x-ndjson")));
+        assertEquals(supportsContentStream == false,
+            restController.supportsIncrementalContent(incrementalRequest("/incremental", "application/yaml")));
+        // the content type of a body that did not arrive yet can't be detected
+        assertFalse(restController.supportsIncrementalContent(incrementalRequest("/incremental", null)));
+        assertFalse(restController.supportsIncrementalContent(incrementalRequest("/incremental", "text/plain")));
+        assertFalse(restController.supportsIncrementalContent(incrementalRequest("/full", "application/json")));
+        assertFalse(restController.supportsIncrementalContent(incrementalRequest("/unknown", "application/json")));
+        // chunked bodies of unknown length are received in full so that the in-flight requests breaker accounts for them
+        assertFalse(restController.supportsIncrementalContent(incrementalRequest("/incremental", "application/json", null)));
+    }
+
+    private static FakeRestRequest incrementalRequest(String path, String contentType) {
+        return incrementalRequest(path, contentType, "1024");
+    }
+
+    private static FakeRestRequest incrementalRequest(String path, String contentType, String contentLength) {
+        final Map<String, List<String>> headers = new HashMap<>();
+        if (contentType != null) {
+            headers.put("Content-Type", Collections.singletonList(contentType));
+        }
+        if (contentLength != null) {
+            headers.put("Content-Length", Collections.singletonList(contentLength));
+        }
+        return new FakeRestRequest.Builder(NamedXContentRegistry.EMPTY).withMethod(RestRequest.Method.POST).withPath(path)
+            .withHeaders(headers).build();
+    }
+
     public void testNonStreamingXContentCausesErrorResponse() throws IOException {
         // auto detect
         FakeRestRequest fakeRestRequest = new FakeRestRequest.Builder(NamedXContentRegistry.EMPTY)
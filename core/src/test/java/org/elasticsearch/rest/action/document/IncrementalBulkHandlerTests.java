@@ -0,0 +1,324 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.rest.action.document;
+
+import org.elasticsearch.action.Action;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.ActionRequestBuilder;
+import org.elasticsearch.action.ActionResponse;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.admin.indices.refresh.RefreshRequest;
+import org.elasticsearch.action.admin.indices.refresh.RefreshResponse;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.action.support.ActiveShardCount;
+import org.elasticsearch.action.support.WriteRequest;
+import org.elasticsearch.client.node.NodeClient;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.rest.AbstractRestChannel;
+import org.elasticsearch.rest.IncrementalRestContent;
+import org.elasticsearch.rest.RestResponse;
+import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.test.ESTestCase;
+import org.elasticsearch.test.rest.FakeRestRequest;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+public class IncrementalBulkHandlerTests extends ESTestCase {
+
+    public void testExecutesInBatches() {
+        final int numItems = randomIntBetween(1, 100);
+        final StringBuilder body = new StringBuilder();
+        for (int i = 0; i < numItems; i++) {
+            body.append("{\"index\":{\"_index\":\"test\",\"_type\":\"doc\",\"_id\":\"").append(i).append("\"}}\n");
+            body.append("{\"field\":\"").append(randomAlphaOfLengthBetween(1, 20)).append("\"}\n");
+        }
+        final TestContent content = new TestContent(body.toString());
+        final TestClient client = new TestClient();
+        final CapturingChannel channel = new CapturingChannel();
+        final long batchSize = randomIntBetween(1, 1024);
+        newHandler(client, channel, content, batchSize).start();
+
+        while (channel.response == null) {
+            final boolean canRead = content.handler != null;
+            if (client.inFlight.isEmpty() == false && (canRead == false || randomBoolean())) {
+                client.completeBatch(randomIntBetween(0, client.inFlight.size() - 1));
+            } else {
+                assertTrue("neither reading nor executing a batch", canRead);
+                content.deliverNext();
+            }
+            assertThat(client.inFlight.size(), lessThanOrEqualTo(IncrementalBulkHandler.MAX_IN_FLIGHT_BATCHES));
+            if (client.inFlight.size() == IncrementalBulkHandler.MAX_IN_FLIGHT_BATCHES) {
+                assertNull("reading while the maximum number of batches is executing", content.handler);
+            }
+        }
+        assertTrue(content.chunks.isEmpty());
+        assertThat(client.requests.size(), equalTo(numItems));
+        for (int i = 0; i < numItems; i++) {
+            assertThat(client.requests.get(i).id(), equalTo(Integer.toString(i)));
+        }
+        if (body.length() <= batchSize) {
+            assertThat(client.batches, equalTo(1));
+        } else {
+            assertThat(client.batches, greaterThan(1));
+        }
+
+        assertThat(channel.response.status(), equalTo(RestStatus.OK));
+        final Map<String, Object> response = XContentHelper.convertToMap(channel.response.content(), false, XContentType.JSON).v2();
+        assertThat(response.get("errors"), equalTo(false));
+        final List<?> items = (List<?>) response.get("items");
+        assertThat(items.size(), equalTo(numItems));
+        for (int i = 0; i < numItems; i++) {
+            final Map<?, ?> item = (Map<?, ?>) ((Map<?, ?>) items.get(i)).get("index");
+            assertThat(item.get("_id"), equalTo(Integer.toString(i)));
+        }
+    }
+
+    public void testMalformedItemFailsRequest() {
+        final StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 10; i++) {
+            body.append("{\"index\":{\"_index\":\"test\",\"_type\":\"doc\",\"_id\":\"").append(i).append("\"}}\n");
+            body.append("{\"field\":\"value\"}\n");
+        }
+        body.append("{\"index\":{\"_index\":\"test\",\"_type\":\"doc\",\"unknown\":\"x\"}}\n{}\n");
+        body.append("{\"index\":{\"_index\":\"test\",\"_type\":\"doc\",\"_id\":\"10\"}}\n{\"field\":\"value\"}\n");
+        final TestContent content = new TestContent(body.toString());
+        final TestClient client = new TestClient();
+        final CapturingChannel channel = new CapturingChannel();
+        newHandler(client, channel, content, randomIntBetween(1, 256)).start();
+
+        while (content.handler != null) {
+            content.deliverNext();
+            while (client.inFlight.isEmpty() == false && content.handler == null && channel.response == null) {
+                client.completeBatch(0);
+            }
+        }
+        assertTrue(content.discarded);
+        // the response waits for the batches that were sent off already
+        while (client.inFlight.isEmpty() == false) {
+            assertNull(channel.response);
+            client.completeBatch(0);
+        }
+        assertThat(channel.response.status(), equalTo(RestStatus.BAD_REQUEST));
+        assertThat(channel.response.content().utf8ToString(), containsString("Action/metadata line [21] contains an unknown parameter"));
+        for (DocWriteRequest request : client.requests) {
+            assertThat(Integer.parseInt(request.id()), lessThanOrEqualTo(9));
+        }
+    }
+
+    public void testEmptyBody() {
+        final TestContent content = new TestContent("");
+        final TestClient client = new TestClient();
+        final CapturingChannel channel = new CapturingChannel();
+        newHandler(client, channel, content, randomIntBetween(1, 256)).start();
+        content.deliverNext();
+        assertThat(client.batches, equalTo(0));
+        assertThat(channel.response.status(), equalTo(RestStatus.BAD_REQUEST));
+        assertThat(channel.response.content().utf8ToString(), containsString("request body is required"));
+    }
+
+    public void testRefreshesOnceAfterLastBatch() {
+        final int numItems = randomIntBetween(1, 100);
+        final StringBuilder body = new StringBuilder();
+        for (int i = 0; i < numItems; i++) {
+            body.append("{\"index\":{\"_index\":\"test").append(i % 3).append("\",\"_type\":\"doc\",\"_id\":\"").append(i)
+                .append("\"}}\n");
+            body.append("{\"field\":\"value\"}\n");
+        }
+        final TestContent content = new TestContent(body.toString());
+        final TestClient client = new TestClient();
+        final CapturingChannel channel = new CapturingChannel();
+        final long batchSize = randomIntBetween(1, 1024);
+        newHandler(client, channel, content, batchSize, WriteRequest.RefreshPolicy.IMMEDIATE).start();
+
+        while (channel.response == null) {
+            if (content.handler != null) {
+                content.deliverNext();
+            } else if (client.inFlight.isEmpty() == false) {
+                client.completeBatch(0);
+            } else {
+                // only the refresh is left
+                assertThat(client.refreshes.size(), equalTo(1));
+                client.completeRefresh();
+            }
+        }
+        assertThat(channel.response.status(), equalTo(RestStatus.OK));
+        if (client.batches == 1) {
+            // a body that fits into a single batch refreshes like a bulk request that was received in full
+            assertThat(client.refreshPolicies, equalTo(Collections.singletonList(WriteRequest.RefreshPolicy.IMMEDIATE)));
+            assertTrue(client.refreshes.isEmpty());
+        } else {
+            for (WriteRequest.RefreshPolicy refreshPolicy : client.refreshPolicies) {
+                assertThat(refreshPolicy, equalTo(WriteRequest.RefreshPolicy.NONE));
+            }
+            final Set<String> expectedIndices = new HashSet<>();
+            for (int i = 0; i < Math.min(numItems, 3); i++) {
+                expectedIndices.add("test" + i);
+            }
+            assertThat(client.refreshed, equalTo(expectedIndices));
+        }
+    }
+
+    private static IncrementalBulkHandler newHandler(NodeClient client, CapturingChannel channel, IncrementalRestContent content,
+                                                     long batchSize) {
+        return newHandler(client, channel, content, batchSize, WriteRequest.RefreshPolicy.NONE);
+    }
+
+    private static IncrementalBulkHandler newHandler(NodeClient client, CapturingChannel channel, IncrementalRestContent content,
+                                                     long batchSize, WriteRequest.RefreshPolicy refreshPolicy) {
+        return new IncrementalBulkHandler(client, channel, content, batchSize, null, null, null, null, null, null, true,
+            XContentType.JSON, ActiveShardCount.DEFAULT, TimeValue.timeValueMinutes(1), refreshPolicy);
+    }
+
+    private static class TestContent implements IncrementalRestContent {
+
+        private final Deque<BytesReference> chunks = new ArrayDeque<>();
+        private ChunkHandler handler;
+        private boolean discarded;
+
+        TestContent(String body) {
+            final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            int from = 0;
+            while (from < bytes.length) {
+                final int length = randomIntBetween(1, Math.min(64, bytes.length - from));
+                chunks.add(new BytesArray(bytes, from, length));
+                from += length;
+            }
+            if (chunks.isEmpty() || randomBoolean()) {
+                chunks.add(BytesArray.EMPTY);
+            }
+        }
+
+        @Override
+        public long contentLength() {
+            return -1;
+        }
+
+        @Override
+        public void next(ChunkHandler handler) {
+            assertFalse(discarded);
+            assertNull(this.handler);
+            this.handler = handler;
+        }
+
+        @Override
+        public void discard() {
+            discarded = true;
+            handler = null;
+        }
+
+        void deliverNext() {
+            final ChunkHandler handler = this.handler;
+            this.handler = null;
+            final BytesReference chunk = chunks.poll();
+            handler.onChunk(chunk, chunks.isEmpty());
+        }
+    }
+
+    private static class TestClient extends NodeClient {
+
+        private final List<DocWriteRequest> requests = new ArrayList<>();
+        private final List<Runnable> inFlight = new ArrayList<>();
+        private final List<WriteRequest.RefreshPolicy> refreshPolicies = new ArrayList<>();
+        private final List<Runnable> refreshes = new ArrayList<>();
+        private final Set<String> refreshed = new HashSet<>();
+        private int batches;
+
+        TestClient() {
+            super(Settings.EMPTY, null);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <Request extends ActionRequest, Response extends ActionResponse,
+                RequestBuilder extends ActionRequestBuilder<Request, Response, RequestBuilder>>
+        void doExecute(Action<Request, Response, RequestBuilder> action, Request request, ActionListener<Response> listener) {
+            if (request instanceof RefreshRequest) {
+                final ActionListener<RefreshResponse> refreshListener = (ActionListener<RefreshResponse>) listener;
+                refreshes.add(() -> {
+                    refreshed.addAll(Arrays.asList(((RefreshRequest) request).indices()));
+                    // the handler does not look at the response of the refresh
+                    refreshListener.onResponse(null);
+                });
+                return;
+            }
+            final BulkRequest bulkRequest = (BulkRequest) request;
+            final ActionListener<BulkResponse> bulkListener = (ActionListener<BulkResponse>) listener;
+            batches++;
+            refreshPolicies.add(bulkRequest.getRefreshPolicy());
+            requests.addAll(bulkRequest.requests());
+            inFlight.add(() -> {
+                final BulkItemResponse[] items = new BulkItemResponse[bulkRequest.numberOfActions()];
+                for (int i = 0; i < items.length; i++) {
+                    final DocWriteRequest item = bulkRequest.requests().get(i);
+                    items[i] = new BulkItemResponse(i, DocWriteRequest.OpType.INDEX,
+                        new IndexResponse(new ShardId(item.index(), "_na_", 0), item.type(), item.id(), 1, true));
+                }
+                bulkListener.onResponse(new BulkResponse(items, 1));
+            });
+        }
+
+        void completeBatch(int index) {
+            inFlight.remove(index).run();
+        }
+
+        void completeRefresh() {
+            refreshes.remove(0).run();
+        }
+    }
+
+    private static class CapturingChannel extends AbstractRestChannel {
+
+        private RestResponse response;
+
+        CapturingChannel() {
+            super(new FakeRestRequest(), true);
+        }
+
+        @Override
+        public void sendResponse(RestResponse response) {
+            assertNull("response was sent twice", this.response);
+            this.response = response;
+        }
+    }
+}
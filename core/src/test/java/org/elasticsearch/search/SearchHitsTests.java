@@ -29,7 +29,9 @@ import org.elasticsearch.common.xcontent.json.JsonXContent;
 import org.elasticsearch.test.ESTestCase;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 
 import static org.elasticsearch.common.xcontent.XContentHelper.toXContent;
 import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertToXContentEquivalent;
@@ -62,6 +64,24 @@ public class SearchHitsTests extends ESTestCase {
         assertToXContentEquivalent(originalBytes, toXContent(parsed, xcontentType, humanReadable), xcontentType);
     }
 
+    public void testFromXContentWithHitConsumer() throws IOException {
+        SearchHits searchHits = createTestItem();
+        XContentType xcontentType = randomFrom(XContentType.values());
+        boolean humanReadable = randomBoolean();
+        BytesReference originalBytes = toShuffledXContent(searchHits, xcontentType, ToXContent.EMPTY_PARAMS, humanReadable);
+        List<SearchHit> consumed = new ArrayList<>();
+        SearchHits parsed;
+        try (XContentParser parser = createParser(xcontentType.xContent(), originalBytes.streamInput())) {
+            parsed = SearchHits.fromXContent(parser, consumed::add);
+            assertEquals(XContentParser.Token.END_OBJECT, parser.currentToken());
+        }
+        assertEquals(0, parsed.getHits().length);
+        assertEquals(searchHits.getHits().length, consumed.size());
+        SearchHits collected = new SearchHits(consumed.toArray(new SearchHit[consumed.size()]), parsed.getTotalHits(),
+            parsed.getMaxScore());
+        assertToXContentEquivalent(originalBytes, toXContent(collected, xcontentType, humanReadable), xcontentType);
+    }
+
     public void testToXContent() throws IOException {
         SearchHit[] hits = new SearchHit[] {
                 new SearchHit(1, "id1", new Text("type"), Collections.emptyMap()),
@@ -22,13 +22,18 @@ import com.carrotsearch.hppc.IntArrayList;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.store.AlreadyClosedException;
 import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.OriginalIndices;
 import org.elasticsearch.action.index.IndexResponse;
 import org.elasticsearch.action.search.SearchPhaseExecutionException;
+import org.elasticsearch.action.search.SearchRequest;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.action.search.SearchTask;
 import org.elasticsearch.action.search.SearchType;
 import org.elasticsearch.action.support.WriteRequest;
 import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.NamedWriteableAwareStreamInput;
+import org.elasticsearch.common.io.stream.NamedWriteableRegistry;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.settings.Settings;
@@ -37,6 +42,7 @@ import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.index.IndexService;
 import org.elasticsearch.index.query.AbstractQueryBuilder;
 import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
 import org.elasticsearch.index.query.QueryRewriteContext;
 import org.elasticsearch.index.query.QueryShardContext;
 import org.elasticsearch.index.shard.IndexShard;
@@ -44,13 +50,19 @@ import org.elasticsearch.indices.IndicesService;
 import org.elasticsearch.plugins.Plugin;
 import org.elasticsearch.plugins.SearchPlugin;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.fetch.QueryFetchSearchResult;
 import org.elasticsearch.search.fetch.ShardFetchRequest;
 import org.elasticsearch.search.internal.AliasFilter;
 import org.elasticsearch.search.internal.SearchContext;
+import org.elasticsearch.search.internal.ShardSearchBatchRequest;
 import org.elasticsearch.search.internal.ShardSearchLocalRequest;
+import org.elasticsearch.search.internal.ShardSearchTransportRequest;
+import org.elasticsearch.search.query.QuerySearchBatchResult;
+import org.elasticsearch.search.query.QuerySearchResult;
 import org.elasticsearch.test.ESSingleNodeTestCase;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
@@ -63,8 +75,10 @@ import static org.elasticsearch.action.support.WriteRequest.RefreshPolicy.IMMEDI
 import static org.elasticsearch.indices.cluster.IndicesClusterStateService.AllocatedIndices.IndexRemovalReason.DELETED;
 import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertAcked;
 import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
 
 public class SearchServiceTests extends ESSingleNodeTestCase {
 
@@ -136,6 +150,57 @@ public class SearchServiceTests extends ESSingleNodeTestCase {
         assertEquals(activeRefs, indexShard.store().refCount());
     }
 
+    public void testExecuteQueryPhaseBatch() throws IOException {
+        createIndex("index");
+        final int numDocs = randomIntBetween(1, 10);
+        for (int i = 0; i < numDocs; i++) {
+            client().prepareIndex("index", "type", Integer.toString(i)).setSource("field", i % 2 == 0 ? "even" : "odd").get();
+        }
+        client().admin().indices().prepareRefresh("index").get();
+
+        SearchService service = getInstanceFromNode(SearchService.class);
+        IndicesService indicesService = getInstanceFromNode(IndicesService.class);
+        IndexService indexService = indicesService.indexServiceSafe(resolveIndex("index"));
+        IndexShard indexShard = indexService.getShard(0);
+
+        final List<SearchSourceBuilder> sources = new ArrayList<>();
+        sources.add(new SearchSourceBuilder().size(0).query(QueryBuilders.termQuery("field", "even")));
+        sources.add(new SearchSourceBuilder().size(0).query(new FailOnRewriteQueryBuilder()));
+        sources.add(new SearchSourceBuilder().size(0));
+        final int numberOfShards = randomIntBetween(1, 3);
+        final List<ShardSearchTransportRequest> requests = new ArrayList<>();
+        for (SearchSourceBuilder source : sources) {
+            SearchRequest searchRequest = new SearchRequest("index").source(source);
+            requests.add(new ShardSearchTransportRequest(new OriginalIndices(searchRequest), searchRequest, indexShard.shardId(),
+                numberOfShards, new AliasFilter(null, Strings.EMPTY_ARRAY), 1.0f, System.currentTimeMillis()));
+        }
+
+        final int activeContexts = service.getActiveContexts();
+        final int activeRefs = indexShard.store().refCount();
+        QuerySearchBatchResult result = service.executeQueryPhase(new ShardSearchBatchRequest(requests),
+            new SearchTask(123L, "", "", "", null));
+        // results survive the trip to the coordinating node
+        try (BytesStreamOutput out = new BytesStreamOutput()) {
+            result.writeTo(out);
+            try (StreamInput in = new NamedWriteableAwareStreamInput(out.bytes().streamInput(),
+                    getInstanceFromNode(NamedWriteableRegistry.class))) {
+                result = new QuerySearchBatchResult();
+                result.readFrom(in);
+            }
+        }
+        assertThat(result.size(), equalTo(3));
+        assertThat(result.getFailure(0), nullValue());
+        assertThat(result.getResult(0).queryResult().topDocs().totalHits, equalTo((numDocs + 1) / 2));
+        assertThat(result.getResult(0), instanceOf(numberOfShards == 1 ? QueryFetchSearchResult.class : QuerySearchResult.class));
+        assertThat(result.getResult(1), nullValue());
+        assertThat(result.getFailure(1), notNullValue());
+        assertThat(result.getFailure(2), nullValue());
+        assertThat(result.getResult(2).queryResult().topDocs().totalHits, equalTo(numDocs));
+        // the contexts and the shared searcher have been released
+        assertEquals(activeContexts, service.getActiveContexts());
+        assertEquals(activeRefs, indexShard.store().refCount());
+    }
+
     public void testSearchWhileIndexDeleted() throws IOException, InterruptedException {
         createIndex("index");
         client().prepareIndex("index", "type", "1").setSource("field", "value").setRefreshPolicy(IMMEDIATE).get();
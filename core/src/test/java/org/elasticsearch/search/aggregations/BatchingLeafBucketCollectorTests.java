@@ -0,0 +1,94 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.aggregations;
+
+import org.elasticsearch.test.ESTestCase;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class BatchingLeafBucketCollectorTests extends ESTestCase {
+
+    private static class RecordingCollector extends LeafBucketCollector {
+        final List<Integer> docs = new ArrayList<>();
+        final List<Long> buckets = new ArrayList<>();
+        final List<Integer> batchSizes = new ArrayList<>();
+
+        @Override
+        public void collect(int doc, long bucket) {
+            throw new AssertionError("docs should be collected in batches");
+        }
+
+        @Override
+        public void collect(int[] docs, long[] buckets, int count) {
+            batchSizes.add(count);
+            for (int i = 0; i < count; i++) {
+                this.docs.add(docs[i]);
+                this.buckets.add(buckets[i]);
+            }
+        }
+    }
+
+    public void testBatches() throws IOException {
+        final int batchSize = randomIntBetween(1, 10);
+        final BatchingLeafBucketCollector batch = new BatchingLeafBucketCollector(batchSize);
+        final List<Integer> expectedDocs = new ArrayList<>();
+        final List<Long> expectedBuckets = new ArrayList<>();
+        final RecordingCollector collector = new RecordingCollector();
+        assertSame(batch, batch.reset(collector));
+        final int numDocs = randomIntBetween(0, 100);
+        for (int doc = 0; doc < numDocs; doc++) {
+            final long bucket = randomIntBetween(0, 3);
+            batch.collect(doc, bucket);
+            expectedDocs.add(doc);
+            expectedBuckets.add(bucket);
+            // docs are only passed on once a batch is full
+            assertEquals((doc + 1) / batchSize * batchSize, collector.docs.size());
+        }
+        batch.flush();
+        assertEquals(expectedDocs, collector.docs);
+        assertEquals(expectedBuckets, collector.buckets);
+        for (int i = 0; i < collector.batchSizes.size() - 1; i++) {
+            assertEquals(batchSize, (int) collector.batchSizes.get(i));
+        }
+    }
+
+    public void testResetFlushesPendingDocs() throws IOException {
+        final BatchingLeafBucketCollector batch = new BatchingLeafBucketCollector(10);
+        final RecordingCollector first = new RecordingCollector();
+        final RecordingCollector second = new RecordingCollector();
+        batch.reset(first);
+        batch.collect(3, 1);
+        batch.collect(5, 0);
+        batch.reset(second);
+        batch.collect(2, 2);
+        batch.flush();
+        assertEquals(2, first.docs.size());
+        assertEquals(1, second.docs.size());
+        assertEquals(2, (int) second.docs.get(0));
+        assertEquals(2L, (long) second.buckets.get(0));
+    }
+
+    public void testInvalidBatchSize() {
+        IllegalArgumentException e = expectThrows(IllegalArgumentException.class, () -> new BatchingLeafBucketCollector(0));
+        assertEquals("batch size must be at least 1, got 0", e.getMessage());
+    }
+}
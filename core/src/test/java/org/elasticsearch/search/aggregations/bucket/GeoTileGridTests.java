@@ -0,0 +1,58 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.search.aggregations.bucket;
+
+import org.elasticsearch.common.geo.GeoPoint;
+import org.elasticsearch.search.aggregations.BaseAggregationTestCase;
+import org.elasticsearch.search.aggregations.bucket.geogrid.GeoGridAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.geogrid.GeoTileGridAggregationBuilder;
+
+public class GeoTileGridTests extends BaseAggregationTestCase<GeoGridAggregationBuilder> {
+
+    @Override
+    protected GeoGridAggregationBuilder createTestAggregatorBuilder() {
+        String name = randomAlphaOfLengthBetween(3, 20);
+        GeoTileGridAggregationBuilder factory = new GeoTileGridAggregationBuilder(name);
+        if (randomBoolean()) {
+            factory.precision(randomIntBetween(0, 29));
+        }
+        if (randomBoolean()) {
+            factory.size(randomIntBetween(1, Integer.MAX_VALUE));
+        }
+        if (randomBoolean()) {
+            factory.shardSize(randomIntBetween(1, Integer.MAX_VALUE));
+        }
+        if (randomBoolean()) {
+            double top = randomDoubleBetween(-90, 90, true);
+            double bottom = randomDoubleBetween(-90, top, true);
+            factory.bounds(new GeoPoint(top, randomDoubleBetween(-180, 180, true)),
+                    new GeoPoint(bottom, randomDoubleBetween(-180, 180, true)));
+        }
+        return factory;
+    }
+
+    public void testInvalidBounds() {
+        GeoTileGridAggregationBuilder factory = new GeoTileGridAggregationBuilder("tiles");
+        IllegalArgumentException e = expectThrows(IllegalArgumentException.class,
+                () -> factory.bounds(new GeoPoint(10, 0), new GeoPoint(20, 10)));
+        assertEquals("top is below bottom corner: 10.0 vs. 20.0 in [tiles]", e.getMessage());
+        e = expectThrows(IllegalArgumentException.class, () -> factory.precision(30));
+        assertEquals("Invalid geotile_grid precision of 30. Must be between 0 and 29.", e.getMessage());
+    }
+}
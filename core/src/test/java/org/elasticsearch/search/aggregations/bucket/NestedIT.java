@@ -28,6 +28,8 @@ import org.elasticsearch.common.xcontent.XContentType;
 import org.elasticsearch.search.aggregations.Aggregator.SubAggCollectionMode;
 import org.elasticsearch.search.aggregations.InternalAggregation;
 import org.elasticsearch.search.aggregations.bucket.filter.Filter;
+import org.elasticsearch.search.aggregations.bucket.filters.Filters;
+import org.elasticsearch.search.aggregations.bucket.filters.FiltersAggregator.KeyedFilter;
 import org.elasticsearch.search.aggregations.bucket.histogram.Histogram;
 import org.elasticsearch.search.aggregations.bucket.nested.Nested;
 import org.elasticsearch.search.aggregations.bucket.terms.LongTerms;
@@ -48,8 +50,10 @@ import static org.elasticsearch.cluster.metadata.IndexMetaData.SETTING_NUMBER_OF
 import static org.elasticsearch.common.xcontent.XContentFactory.jsonBuilder;
 import static org.elasticsearch.index.query.QueryBuilders.matchAllQuery;
 import static org.elasticsearch.index.query.QueryBuilders.nestedQuery;
+import static org.elasticsearch.index.query.QueryBuilders.rangeQuery;
 import static org.elasticsearch.index.query.QueryBuilders.termQuery;
 import static org.elasticsearch.search.aggregations.AggregationBuilders.filter;
+import static org.elasticsearch.search.aggregations.AggregationBuilders.filters;
 import static org.elasticsearch.search.aggregations.AggregationBuilders.histogram;
 import static org.elasticsearch.search.aggregations.AggregationBuilders.max;
 import static org.elasticsearch.search.aggregations.AggregationBuilders.nested;
@@ -295,6 +299,47 @@ public class NestedIT extends ESIntegTestCase {
         }
     }
 
+    public void testNestedInSeveralBucketsOfTheSameParent() throws Exception {
+        // overlapping filters collect the same parent docs in several buckets one after the other
+        final int maxLowValue = randomIntBetween(1, numParents);
+        SearchResponse response = client().prepareSearch("idx")
+                .addAggregation(filters("filters",
+                        new KeyedFilter("all", matchAllQuery()),
+                        new KeyedFilter("low", rangeQuery("value").lte(maxLowValue)))
+                        .subAggregation(nested("nested", "nested")
+                                .subAggregation(max("max_value").field("nested.value")))
+                        .subAggregation(nested("nested_sum", "nested")
+                                .subAggregation(sum("sum_value").field("nested.value"))))
+                .execute().actionGet();
+
+        assertSearchResponse(response);
+
+        Filters filters = response.getAggregations().get("filters");
+        for (String key : new String[] {"all", "low"}) {
+            final int numParentsInBucket = key.equals("all") ? numParents : maxLowValue;
+            long expectedDocCount = 0;
+            double expectedMax = Double.NEGATIVE_INFINITY;
+            double expectedSum = 0;
+            for (int i = 0; i < numParentsInBucket; i++) {
+                expectedDocCount += numChildren[i];
+                for (int j = 0; j < numChildren[i]; j++) {
+                    expectedMax = Math.max(expectedMax, i + 1 + j);
+                    expectedSum += i + 1 + j;
+                }
+            }
+            Filters.Bucket bucket = filters.getBucketByKey(key);
+            assertThat(bucket.getDocCount(), equalTo((long) numParentsInBucket));
+            Nested nested = bucket.getAggregations().get("nested");
+            assertThat(nested.getDocCount(), equalTo(expectedDocCount));
+            Max max = nested.getAggregations().get("max_value");
+            assertThat(max.getValue(), equalTo(expectedMax));
+            Nested nestedSum = bucket.getAggregations().get("nested_sum");
+            assertThat(nestedSum.getDocCount(), equalTo(expectedDocCount));
+            Sum sum = nestedSum.getAggregations().get("sum_value");
+            assertThat(sum.getValue(), equalTo(expectedSum));
+        }
+    }
+
     public void testNestNestedAggs() throws Exception {
         SearchResponse response = client().prepareSearch("idx_nested_nested_aggs")
                 .addAggregation(nested("level1", "nested1")
@@ -28,6 +28,7 @@ import org.elasticsearch.search.aggregations.bucket.terms.Terms;
 import org.elasticsearch.search.aggregations.bucket.terms.Terms.Bucket;
 import org.elasticsearch.search.aggregations.bucket.terms.Terms.Order;
 import org.elasticsearch.search.aggregations.bucket.terms.TermsAggregatorFactory.ExecutionMode;
+import org.elasticsearch.search.aggregations.metrics.sum.Sum;
 import org.elasticsearch.test.ESIntegTestCase;
 
 import java.util.ArrayList;
@@ -1022,4 +1023,68 @@ public class TermsDocCountErrorIT extends ESIntegTestCase {
         assertThat(bucket.getDocCountError(), equalTo(29L));
     }
 
+    public void testRefineTopTermsFixedDocs() throws Exception {
+        SearchResponse response = client().prepareSearch("idx_fixed_docs_0", "idx_fixed_docs_1", "idx_fixed_docs_2").setTypes("type")
+                .addAggregation(terms("terms")
+                        .executionHint(randomExecutionHint())
+                        .field(STRING_FIELD_NAME)
+                        .showTermDocCountError(true)
+                        .refineTopTerms(true)
+                        .size(5).shardSize(5)
+                        .collectMode(randomFrom(SubAggCollectionMode.values())))
+                .execute().actionGet();
+        assertSearchResponse(response);
+
+        // unlike in testFixedDocs, the top terms and their counts are exact
+        Terms terms = response.getAggregations().get("terms");
+        assertThat(terms, notNullValue());
+        assertThat(terms.getDocCountError(), equalTo(0L));
+        List<? extends Bucket> buckets = terms.getBuckets();
+        assertThat(buckets.size(), equalTo(5));
+        String[] expectedKeys = new String[] {"A", "C", "Z", "G", "H"};
+        long[] expectedDocCounts = new long[] {100, 54, 52, 47, 44};
+        for (int i = 0; i < buckets.size(); i++) {
+            assertThat(buckets.get(i).getKey(), equalTo(expectedKeys[i]));
+            assertThat(buckets.get(i).getDocCount(), equalTo(expectedDocCounts[i]));
+            assertThat(buckets.get(i).getDocCountError(), equalTo(0L));
+        }
+    }
+
+    public void testRefineTopTerms() throws Exception {
+        int size = randomIntBetween(1, 20);
+        String field = randomFrom(STRING_FIELD_NAME, LONG_FIELD_NAME, DOUBLE_FIELD_NAME);
+        SearchResponse accurateResponse = client().prepareSearch("idx").setTypes("type")
+                .addAggregation(terms("terms")
+                        .field(field)
+                        .size(size).shardSize(10000)
+                        .subAggregation(sum("sum").field(LONG_FIELD_NAME)))
+                .execute().actionGet();
+        assertSearchResponse(accurateResponse);
+
+        SearchResponse testResponse = client().prepareSearch("idx").setTypes("type")
+                .addAggregation(terms("terms")
+                        .executionHint(randomExecutionHint())
+                        .field(field)
+                        .refineTopTerms(true)
+                        .size(size)
+                        .collectMode(randomFrom(SubAggCollectionMode.values()))
+                        .subAggregation(sum("sum").field(LONG_FIELD_NAME)))
+                .execute().actionGet();
+        assertSearchResponse(testResponse);
+        assertThat(testResponse.getHits().getTotalHits(), equalTo(accurateResponse.getHits().getTotalHits()));
+        assertThat(testResponse.getHits().getHits().length, equalTo(accurateResponse.getHits().getHits().length));
+
+        Terms accurateTerms = accurateResponse.getAggregations().get("terms");
+        Terms testTerms = testResponse.getAggregations().get("terms");
+        assertThat(testTerms.getBuckets().size(), equalTo(accurateTerms.getBuckets().size()));
+        for (int i = 0; i < testTerms.getBuckets().size(); i++) {
+            Bucket accurateBucket = accurateTerms.getBuckets().get(i);
+            Bucket testBucket = testTerms.getBuckets().get(i);
+            assertThat(testBucket.getKeyAsString(), equalTo(accurateBucket.getKeyAsString()));
+            assertThat(testBucket.getDocCount(), equalTo(accurateBucket.getDocCount()));
+            Sum accurateSum = accurateBucket.getAggregations().get("sum");
+            Sum testSum = testBucket.getAggregations().get("sum");
+            assertThat(testSum.getValue(), equalTo(accurateSum.getValue()));
+        }
+    }
 }
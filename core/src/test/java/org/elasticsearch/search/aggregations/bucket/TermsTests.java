@@ -161,6 +161,9 @@ public class TermsTests extends BaseAggregationTestCase<TermsAggregationBuilder>
         if (randomBoolean()) {
             factory.showTermDocCountError(randomBoolean());
         }
+        if (randomBoolean()) {
+            factory.refineTopTerms(randomBoolean());
+        }
         return factory;
     }
 
@@ -20,25 +20,38 @@ package org.elasticsearch.search.aggregations.bucket.filter;
 
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.SortedNumericDocValuesField;
 import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.DocValues;
 import org.apache.lucene.index.IndexOptions;
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.MultiReader;
 import org.apache.lucene.index.RandomIndexWriter;
+import org.apache.lucene.index.SortedNumericDocValues;
 import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.MatchAllDocsQuery;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.store.Directory;
+import org.elasticsearch.common.lease.Releasables;
 import org.elasticsearch.index.mapper.KeywordFieldMapper;
 import org.elasticsearch.index.mapper.MappedFieldType;
+import org.elasticsearch.index.mapper.NumberFieldMapper;
 import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.aggregations.AggregationBuilder;
+import org.elasticsearch.search.aggregations.Aggregator;
 import org.elasticsearch.search.aggregations.AggregatorFactory;
 import org.elasticsearch.search.aggregations.AggregatorTestCase;
+import org.elasticsearch.search.aggregations.BatchingLeafBucketCollector;
+import org.elasticsearch.search.aggregations.LeafBucketCollector;
 import org.elasticsearch.search.aggregations.bucket.filter.FilterAggregationBuilder;
 import org.elasticsearch.search.aggregations.bucket.filter.FilterAggregatorFactory;
 import org.elasticsearch.search.aggregations.bucket.filter.InternalFilter;
+import org.elasticsearch.search.aggregations.metrics.sum.InternalSum;
+import org.elasticsearch.search.aggregations.metrics.sum.SumAggregationBuilder;
+import org.elasticsearch.search.aggregations.metrics.tophits.TopHitsAggregationBuilder;
 import org.hamcrest.Matchers;
 import org.junit.Before;
 
@@ -128,4 +141,123 @@ public class FilterAggregatorTests extends AggregatorTestCase {
         // be 0
         assertEquals(1, ((BooleanQuery) parsedQuery).getMinimumNumberShouldMatch());
     }
+
+    /**
+     * The filter aggregator passes its matching docs on to its sub-aggregations in batches.
+     */
+    public void testCollectBatches() throws IOException {
+        MappedFieldType numberFieldType = new NumberFieldMapper.NumberFieldType(NumberFieldMapper.NumberType.LONG);
+        numberFieldType.setName("number");
+        int numDocs = randomIntBetween(0, 3000);
+        int maxTerm = randomIntBetween(1, 5);
+        int[] terms = new int[numDocs];
+        long[] values = new long[numDocs];
+        try (Directory directory = newDirectory()) {
+            try (RandomIndexWriter indexWriter = new RandomIndexWriter(random(), directory)) {
+                for (int i = 0; i < numDocs; i++) {
+                    terms[i] = randomInt(maxTerm - 1);
+                    values[i] = randomIntBetween(-1000, 1000);
+                    Document document = new Document();
+                    document.add(new Field("field", Integer.toString(terms[i]), fieldType));
+                    // keeps track of the doc in the segment, to find out its term and value
+                    document.add(new SortedNumericDocValuesField("id", i));
+                    document.add(new SortedNumericDocValuesField("number", values[i]));
+                    indexWriter.addDocument(document);
+                    if (rarely()) {
+                        indexWriter.commit();
+                    }
+                }
+            }
+            try (IndexReader indexReader = DirectoryReader.open(directory)) {
+                IndexSearcher indexSearcher = newSearcher(indexReader, true, true);
+                int term = randomInt(maxTerm - 1);
+                FilterAggregationBuilder builder = new FilterAggregationBuilder("test",
+                        QueryBuilders.termQuery("field", Integer.toString(term)));
+                builder.subAggregation(new SumAggregationBuilder("sum").field("number"));
+
+                long expectedDocCount = 0;
+                double expectedSum = 0;
+                for (int i = 0; i < numDocs; i++) {
+                    if (terms[i] == term) {
+                        expectedDocCount++;
+                        expectedSum += values[i];
+                    }
+                }
+                InternalFilter response = search(indexSearcher, new MatchAllDocsQuery(), builder, fieldType, numberFieldType);
+                assertEquals(expectedDocCount, response.getDocCount());
+                assertEquals(expectedSum, ((InternalSum) response.getAggregations().get("sum")).getValue(), 0);
+
+                int numBuckets = randomIntBetween(1, 5);
+                long[] expectedDocCounts = new long[numBuckets];
+                double[] expectedSums = new double[numBuckets];
+                Aggregator aggregator = createAggregator(builder, indexSearcher, fieldType, numberFieldType);
+                try {
+                    aggregator.preCollection();
+                    for (LeafReaderContext ctx : indexReader.leaves()) {
+                        LeafBucketCollector collector = aggregator.getLeafCollector(ctx);
+                        SortedNumericDocValues ids = DocValues.getSortedNumeric(ctx.reader(), "id");
+                        int maxDoc = ctx.reader().maxDoc();
+                        int[] docs = new int[maxDoc];
+                        long[] buckets = new long[maxDoc];
+                        for (int doc = 0; doc < maxDoc; doc++) {
+                            docs[doc] = doc;
+                            // runs of docs that go to the same bucket
+                            buckets[doc] = doc > 0 && randomBoolean() ? buckets[doc - 1] : randomIntBetween(0, numBuckets - 1);
+                            ids.setDocument(doc);
+                            int id = (int) ids.valueAt(0);
+                            if (terms[id] == term) {
+                                expectedDocCounts[(int) buckets[doc]]++;
+                                expectedSums[(int) buckets[doc]] += values[id];
+                            }
+                        }
+                        collector.collect(docs, buckets, maxDoc);
+                    }
+                    aggregator.postCollection();
+                    for (int bucket = 0; bucket < numBuckets; bucket++) {
+                        InternalFilter result = (InternalFilter) aggregator.buildAggregation(bucket);
+                        assertEquals(expectedDocCounts[bucket], result.getDocCount());
+                        assertEquals(expectedSums[bucket], ((InternalSum) result.getAggregations().get("sum")).getValue(), 0);
+                    }
+                } finally {
+                    // aggregators don't close their sub-aggregators
+                    Releasables.close(aggregator.subAggregator("sum"), aggregator);
+                }
+            }
+        }
+    }
+
+    /**
+     * Docs are collected later than they are matched when they are batched, so batching is disabled when the sub-aggregations
+     * need the score of the doc they collect.
+     */
+    public void testNoBatchesWhenScoresAreNeeded() throws IOException {
+        MappedFieldType numberFieldType = new NumberFieldMapper.NumberFieldType(NumberFieldMapper.NumberType.LONG);
+        numberFieldType.setName("number");
+        try (Directory directory = newDirectory()) {
+            try (RandomIndexWriter indexWriter = new RandomIndexWriter(random(), directory)) {
+                Document document = new Document();
+                document.add(new Field("field", "value", fieldType));
+                document.add(new SortedNumericDocValuesField("number", randomLong()));
+                indexWriter.addDocument(document);
+            }
+            try (IndexReader indexReader = DirectoryReader.open(directory)) {
+                IndexSearcher indexSearcher = newSearcher(indexReader, true, true);
+                for (boolean needsScores : new boolean[] {true, false}) {
+                    FilterAggregationBuilder builder = new FilterAggregationBuilder("test", QueryBuilders.termQuery("field", "value"));
+                    AggregationBuilder subAggregation = needsScores ? new TopHitsAggregationBuilder("top_hits")
+                            : new SumAggregationBuilder("sum").field("number");
+                    builder.subAggregation(subAggregation);
+                    Aggregator aggregator = createAggregator(builder, indexSearcher, fieldType, numberFieldType);
+                    try {
+                        assertEquals(needsScores, aggregator.needsScores());
+                        aggregator.preCollection();
+                        LeafBucketCollector collector = aggregator.getLeafCollector(indexReader.leaves().get(0));
+                        assertEquals(needsScores == false, collector instanceof BatchingLeafBucketCollector);
+                    } finally {
+                        Releasables.close(aggregator.subAggregator(subAggregation.getName()), aggregator);
+                    }
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,140 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.search.aggregations.bucket.geogrid;
+
+import org.apache.lucene.document.LatLonDocValuesField;
+import org.apache.lucene.geo.GeoEncodingUtils;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.RandomIndexWriter;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.store.Directory;
+import org.elasticsearch.common.CheckedConsumer;
+import org.elasticsearch.common.geo.GeoPoint;
+import org.elasticsearch.index.mapper.LatLonPointFieldMapper;
+import org.elasticsearch.index.mapper.MappedFieldType;
+import org.elasticsearch.search.aggregations.AggregatorTestCase;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import static java.util.Collections.singletonList;
+
+public class GeoTileGridAggregatorTests extends AggregatorTestCase {
+
+    private static final String FIELD_NAME = "location";
+
+    public void testNoDocs() throws IOException {
+        testCase(new GeoTileGridAggregationBuilder("name").precision(7), iw -> {
+            // Intentionally not writing any docs
+        }, grid -> assertEquals(0, grid.getBuckets().size()));
+    }
+
+    public void testWithSeveralDocs() throws IOException {
+        final int precision = randomIntBetween(0, GeoTileUtils.MAX_ZOOM);
+        final int numPoints = randomIntBetween(8, 128);
+        final Map<String, Integer> expectedCountPerTile = new HashMap<>();
+        testCase(new GeoTileGridAggregationBuilder("name").precision(precision), iw -> {
+            List<LatLonDocValuesField> points = new ArrayList<>();
+            Set<String> distinctTilesPerDoc = new HashSet<>();
+            for (int pointId = 0; pointId < numPoints; pointId++) {
+                double lat = randomDoubleBetween(-85, 85, true);
+                double lon = randomDoubleBetween(-180, 180, true);
+                points.add(new LatLonDocValuesField(FIELD_NAME, lat, lon));
+                // the aggregation sees the points as they are encoded in doc values
+                double encodedLat = GeoEncodingUtils.decodeLatitude(GeoEncodingUtils.encodeLatitude(lat));
+                double encodedLon = GeoEncodingUtils.decodeLongitude(GeoEncodingUtils.encodeLongitude(lon));
+                String tile = GeoTileUtils.stringEncode(GeoTileUtils.longEncode(encodedLon, encodedLat, precision));
+                if (distinctTilesPerDoc.contains(tile) == false) {
+                    expectedCountPerTile.merge(tile, 1, Integer::sum);
+                }
+                distinctTilesPerDoc.add(tile);
+                if (usually()) {
+                    iw.addDocument(points);
+                    points.clear();
+                    distinctTilesPerDoc.clear();
+                }
+            }
+            if (points.size() != 0) {
+                iw.addDocument(points);
+            }
+        }, grid -> {
+            assertEquals(expectedCountPerTile.size(), grid.getBuckets().size());
+            for (GeoHashGrid.Bucket bucket : grid.getBuckets()) {
+                assertTrue(bucket instanceof GeoTileGrid.Bucket);
+                assertEquals((long) expectedCountPerTile.get(bucket.getKeyAsString()), bucket.getDocCount());
+            }
+        });
+    }
+
+    public void testBounds() throws IOException {
+        GeoTileGridAggregationBuilder aggregationBuilder = new GeoTileGridAggregationBuilder("name").precision(3);
+        // crosses the dateline
+        aggregationBuilder.bounds(new GeoPoint(40, 170), new GeoPoint(-40, -170));
+        testCase(aggregationBuilder, iw -> {
+            iw.addDocument(singletonList(new LatLonDocValuesField(FIELD_NAME, 10, 175)));
+            iw.addDocument(singletonList(new LatLonDocValuesField(FIELD_NAME, -10, -175)));
+            iw.addDocument(singletonList(new LatLonDocValuesField(FIELD_NAME, 0, 0)));
+            iw.addDocument(singletonList(new LatLonDocValuesField(FIELD_NAME, 50, 175)));
+            // only one of its points is in the bounds
+            List<IndexableField> doc = new ArrayList<>();
+            doc.add(new LatLonDocValuesField(FIELD_NAME, 20, 179));
+            doc.add(new LatLonDocValuesField(FIELD_NAME, 20, 0));
+            iw.addDocument(doc);
+        }, grid -> {
+            assertEquals(2, grid.getBuckets().size());
+            Map<String, Long> counts = new HashMap<>();
+            for (GeoHashGrid.Bucket bucket : grid.getBuckets()) {
+                counts.put(bucket.getKeyAsString(), bucket.getDocCount());
+            }
+            assertEquals(Long.valueOf(2), counts.get(GeoTileUtils.stringEncode(GeoTileUtils.longEncode(175, 10, 3))));
+            assertEquals(Long.valueOf(1), counts.get(GeoTileUtils.stringEncode(GeoTileUtils.longEncode(-175, -10, 3))));
+        });
+    }
+
+    private void testCase(GeoTileGridAggregationBuilder aggregationBuilder, CheckedConsumer<RandomIndexWriter, IOException> buildIndex,
+            Consumer<InternalGeoHashGrid> verify) throws IOException {
+        Directory directory = newDirectory();
+        RandomIndexWriter indexWriter = new RandomIndexWriter(random(), directory);
+        buildIndex.accept(indexWriter);
+        indexWriter.close();
+
+        IndexReader indexReader = DirectoryReader.open(directory);
+        IndexSearcher indexSearcher = newSearcher(indexReader, true, true);
+
+        aggregationBuilder.field(FIELD_NAME);
+        MappedFieldType fieldType = LatLonPointFieldMapper.Defaults.FIELD_TYPE.clone();
+        fieldType.setHasDocValues(true);
+        fieldType.setName(FIELD_NAME);
+        InternalGeoHashGrid grid = search(indexSearcher, new MatchAllDocsQuery(), aggregationBuilder, fieldType);
+        assertTrue(grid instanceof InternalGeoTileGrid);
+        verify.accept(grid);
+
+        indexReader.close();
+        directory.close();
+    }
+}
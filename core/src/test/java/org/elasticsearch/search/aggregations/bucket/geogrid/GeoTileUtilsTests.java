@@ -0,0 +1,78 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.search.aggregations.bucket.geogrid;
+
+import org.elasticsearch.common.geo.GeoPoint;
+import org.elasticsearch.test.ESTestCase;
+
+import static org.elasticsearch.search.aggregations.bucket.geogrid.GeoTileUtils.MAX_ZOOM;
+import static org.elasticsearch.search.aggregations.bucket.geogrid.GeoTileUtils.checkPrecisionRange;
+import static org.elasticsearch.search.aggregations.bucket.geogrid.GeoTileUtils.longEncode;
+import static org.elasticsearch.search.aggregations.bucket.geogrid.GeoTileUtils.stringEncode;
+import static org.elasticsearch.search.aggregations.bucket.geogrid.GeoTileUtils.toGeoPoint;
+
+public class GeoTileUtilsTests extends ESTestCase {
+
+    public void testCheckPrecisionRange() {
+        for (int i = 0; i <= MAX_ZOOM; i++) {
+            assertEquals(i, checkPrecisionRange(i));
+        }
+        IllegalArgumentException e = expectThrows(IllegalArgumentException.class, () -> checkPrecisionRange(-1));
+        assertEquals("Invalid geotile_grid precision of -1. Must be between 0 and 29.", e.getMessage());
+        e = expectThrows(IllegalArgumentException.class, () -> checkPrecisionRange(MAX_ZOOM + 1));
+        assertEquals("Invalid geotile_grid precision of 30. Must be between 0 and 29.", e.getMessage());
+    }
+
+    public void testLongEncode() {
+        assertEquals("0/0/0", stringEncode(longEncode(0, 0, 0)));
+        assertEquals("1/0/0", stringEncode(longEncode(-1, 1, 1)));
+        assertEquals("1/1/1", stringEncode(longEncode(1, -1, 1)));
+        assertEquals("3/4/3", stringEncode(longEncode(13, 22, 3)));
+        // the edges of the map belong to the tiles next to them
+        assertEquals("2/3/0", stringEncode(longEncode(180, 90, 2)));
+        assertEquals("2/0/3", stringEncode(longEncode(-180, -90, 2)));
+        assertEquals("29/536870911/0", stringEncode(longEncode(180, 90, MAX_ZOOM)));
+    }
+
+    public void testStringRoundTrip() {
+        final int zoom = randomIntBetween(0, MAX_ZOOM);
+        final long tile = longEncode(randomDoubleBetween(-180, 180, true), randomDoubleBetween(-90, 90, true), zoom);
+        assertEquals(tile, longEncode(stringEncode(tile)));
+    }
+
+    public void testInvalidKeys() {
+        IllegalArgumentException e = expectThrows(IllegalArgumentException.class, () -> longEncode("1/2"));
+        assertEquals("Invalid geotile_grid key [1/2], expected [zoom/x/y]", e.getMessage());
+        e = expectThrows(IllegalArgumentException.class, () -> longEncode("2/4/0"));
+        assertEquals("Invalid geotile_grid key [2/4/0], x and y must be between 0 and 3", e.getMessage());
+        expectThrows(IllegalArgumentException.class, () -> longEncode("30/0/0"));
+        expectThrows(NumberFormatException.class, () -> longEncode("a/0/0"));
+    }
+
+    public void testToGeoPoint() {
+        GeoPoint center = toGeoPoint(longEncode(0, 0, 0));
+        assertEquals(0, center.getLat(), 1e-9);
+        assertEquals(0, center.getLon(), 1e-9);
+        // the center of a tile is in the tile
+        final int zoom = randomIntBetween(0, MAX_ZOOM);
+        final long tile = longEncode(randomDoubleBetween(-180, 180, true), randomDoubleBetween(-85, 85, true), zoom);
+        center = toGeoPoint(tile);
+        assertEquals(tile, longEncode(center.getLon(), center.getLat(), zoom));
+    }
+}
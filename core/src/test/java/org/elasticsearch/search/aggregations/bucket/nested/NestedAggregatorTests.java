@@ -21,7 +21,10 @@ package org.elasticsearch.search.aggregations.bucket.nested;
 
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.SortedNumericDocValuesField;
 import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.NoMergePolicy;
 import org.apache.lucene.index.RandomIndexWriter;
@@ -32,117 +35,363 @@ import org.apache.lucene.search.ConstantScoreQuery;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.store.Directory;
-import org.elasticsearch.action.admin.indices.mapping.put.PutMappingRequest;
-import org.elasticsearch.common.compress.CompressedXContent;
-import org.elasticsearch.common.lucene.index.ElasticsearchDirectoryReader;
 import org.elasticsearch.common.lucene.search.Queries;
-import org.elasticsearch.index.IndexService;
-import org.elasticsearch.index.mapper.MapperService;
+import org.elasticsearch.index.mapper.MappedFieldType;
+import org.elasticsearch.index.mapper.NumberFieldMapper;
 import org.elasticsearch.index.mapper.TypeFieldMapper;
 import org.elasticsearch.index.mapper.UidFieldMapper;
-import org.elasticsearch.index.shard.ShardId;
-import org.elasticsearch.search.aggregations.Aggregator;
-import org.elasticsearch.search.aggregations.AggregatorFactories;
-import org.elasticsearch.search.aggregations.BucketCollector;
-import org.elasticsearch.search.aggregations.SearchContextAggregations;
-import org.elasticsearch.search.internal.SearchContext;
-import org.elasticsearch.test.ESSingleNodeTestCase;
+import org.elasticsearch.search.aggregations.Aggregator.SubAggCollectionMode;
+import org.elasticsearch.search.aggregations.AggregatorTestCase;
+import org.elasticsearch.search.aggregations.LeafBucketCollector;
+import org.elasticsearch.search.aggregations.bucket.sampler.Sampler;
+import org.elasticsearch.search.aggregations.bucket.sampler.SamplerAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.terms.Terms;
+import org.elasticsearch.search.aggregations.bucket.terms.TermsAggregationBuilder;
+import org.elasticsearch.search.aggregations.metrics.max.Max;
+import org.elasticsearch.search.aggregations.metrics.max.MaxAggregationBuilder;
+import org.elasticsearch.search.aggregations.metrics.tophits.TopHits;
+import org.elasticsearch.search.aggregations.metrics.tophits.TopHitsAggregationBuilder;
+import org.elasticsearch.search.aggregations.support.ValueType;
+import org.elasticsearch.search.fetch.StoredFieldsContext;
 
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
-import static org.hamcrest.Matchers.equalTo;
+public class NestedAggregatorTests extends AggregatorTestCase {
+
+    private static final String VALUE_FIELD_NAME = "number";
+    private static final String CATEGORY_FIELD_NAME = "category";
+    private static final String NESTED_OBJECT = "nested_object";
+    private static final String NESTED_AGG = "nestedAgg";
+    private static final String MAX_AGG_NAME = "maxAgg";
+    private static final String TERMS_AGG_NAME = "termsAgg";
+    private static final String SAMPLER_AGG_NAME = "samplerAgg";
+    private static final String TOP_HITS_AGG_NAME = "topHitsAgg";
+    private static final int NUM_CATEGORIES = 5;
 
-/**
- */
-public class NestedAggregatorTests extends ESSingleNodeTestCase {
     public void testResetRootDocId() throws Exception {
-        Directory directory = newDirectory();
         IndexWriterConfig iwc = new IndexWriterConfig(null);
         iwc.setMergePolicy(NoMergePolicy.INSTANCE);
-        RandomIndexWriter indexWriter = new RandomIndexWriter(random(), directory, iwc);
+        try (Directory directory = newDirectory()) {
+            try (RandomIndexWriter iw = new RandomIndexWriter(random(), directory, iwc)) {
+                List<Document> documents = new ArrayList<>();
 
-        List<Document> documents = new ArrayList<>();
+                // 1 segment with, 1 root document, with 3 nested sub docs
+                Document document = new Document();
+                document.add(new Field(UidFieldMapper.NAME, "type#1", UidFieldMapper.Defaults.NESTED_FIELD_TYPE));
+                document.add(new Field(TypeFieldMapper.NAME, "__nested_field", TypeFieldMapper.Defaults.FIELD_TYPE));
+                documents.add(document);
+                document = new Document();
+                document.add(new Field(UidFieldMapper.NAME, "type#1", UidFieldMapper.Defaults.NESTED_FIELD_TYPE));
+                document.add(new Field(TypeFieldMapper.NAME, "__nested_field", TypeFieldMapper.Defaults.FIELD_TYPE));
+                documents.add(document);
+                document = new Document();
+                document.add(new Field(UidFieldMapper.NAME, "type#1", UidFieldMapper.Defaults.NESTED_FIELD_TYPE));
+                document.add(new Field(TypeFieldMapper.NAME, "__nested_field", TypeFieldMapper.Defaults.FIELD_TYPE));
+                documents.add(document);
+                document = new Document();
+                document.add(new Field(UidFieldMapper.NAME, "type#1", UidFieldMapper.Defaults.FIELD_TYPE));
+                document.add(new Field(TypeFieldMapper.NAME, "test", TypeFieldMapper.Defaults.FIELD_TYPE));
+                documents.add(document);
+                iw.addDocuments(documents);
+                iw.commit();
+
+                documents.clear();
+                // 1 segment with:
+                // 1 document, with 1 nested subdoc
+                document = new Document();
+                document.add(new Field(UidFieldMapper.NAME, "type#2", UidFieldMapper.Defaults.NESTED_FIELD_TYPE));
+                document.add(new Field(TypeFieldMapper.NAME, "__nested_field", TypeFieldMapper.Defaults.FIELD_TYPE));
+                documents.add(document);
+                document = new Document();
+                document.add(new Field(UidFieldMapper.NAME, "type#2", UidFieldMapper.Defaults.FIELD_TYPE));
+                document.add(new Field(TypeFieldMapper.NAME, "test", TypeFieldMapper.Defaults.FIELD_TYPE));
+                documents.add(document);
+                iw.addDocuments(documents);
+                documents.clear();
+                // and 1 document, with 1 nested subdoc
+                document = new Document();
+                document.add(new Field(UidFieldMapper.NAME, "type#3", UidFieldMapper.Defaults.NESTED_FIELD_TYPE));
+                document.add(new Field(TypeFieldMapper.NAME, "__nested_field", TypeFieldMapper.Defaults.FIELD_TYPE));
+                documents.add(document);
+                document = new Document();
+                document.add(new Field(UidFieldMapper.NAME, "type#3", UidFieldMapper.Defaults.FIELD_TYPE));
+                document.add(new Field(TypeFieldMapper.NAME, "test", TypeFieldMapper.Defaults.FIELD_TYPE));
+                documents.add(document);
+                iw.addDocuments(documents);
+
+                iw.commit();
+            }
+            try (IndexReader indexReader = wrap(DirectoryReader.open(directory))) {
+                NestedAggregationBuilder nestedBuilder = new NestedAggregationBuilder(NESTED_AGG, "nested_field");
+                // A regular search always exclude nested docs, so we use NonNestedDocsFilter.INSTANCE here (otherwise
+                // MatchAllDocsQuery would be sufficient). We exclude root doc with uid type#2, this will trigger the bug if we
+                // don't reset the root doc when we process a new segment, because root doc type#3 and root doc type#1 have the
+                // same segment docid
+                BooleanQuery.Builder bq = new BooleanQuery.Builder();
+                bq.add(Queries.newNonNestedFilter(), Occur.MUST);
+                bq.add(new TermQuery(new Term(UidFieldMapper.NAME, "type#2")), Occur.MUST_NOT);
+
+                Nested nested = search(newSearcher(indexReader, false, true), new ConstantScoreQuery(bq.build()), nestedBuilder);
+                // The bug manifests if 6 docs are returned, because currentRootDoc isn't reset the previous child docs from the
+                // first segment are emitted as hits.
+                assertEquals(4L, nested.getDocCount());
+            }
+        }
+    }
+
+    /**
+     * Parents that fall in several buckets pass their buckets to the nested aggregator one after the other.
+     */
+    public void testMultiBucketParents() throws IOException {
+        assertNestedPerCategory(SubAggCollectionMode.DEPTH_FIRST, NUM_CATEGORIES, false);
+    }
+
+    /**
+     * Sub-aggregations that need scores are not buffered, so the children of a parent are collected for each of its buckets.
+     */
+    public void testMultiBucketParentsNeedingScores() throws IOException {
+        assertNestedPerCategory(SubAggCollectionMode.DEPTH_FIRST, NUM_CATEGORIES, true);
+    }
+
+    /**
+     * The nested aggregator is replayed by the terms aggregation, on the top buckets only.
+     */
+    public void testDeferredBreadthFirst() throws IOException {
+        assertNestedPerCategory(SubAggCollectionMode.BREADTH_FIRST, randomIntBetween(1, NUM_CATEGORIES), randomBoolean());
+    }
+
+    /**
+     * The sampler replays the parents of all its buckets once the top docs of each bucket are known.
+     */
+    public void testUnderSampler() throws IOException {
+        long[][] categories = randomCategories(randomIntBetween(1, 50));
+        long[][] childValues = randomChildValues(categories.length);
+        try (Directory directory = newDirectory()) {
+            indexParents(directory, categories, childValues, randomBoolean());
+            try (IndexReader indexReader = wrap(DirectoryReader.open(directory))) {
+                TermsAggregationBuilder termsBuilder = new TermsAggregationBuilder(TERMS_AGG_NAME, ValueType.LONG)
+                        .field(CATEGORY_FIELD_NAME);
+                SamplerAggregationBuilder samplerBuilder = new SamplerAggregationBuilder(SAMPLER_AGG_NAME)
+                        .shardSize(categories.length);
+                NestedAggregationBuilder nestedBuilder = new NestedAggregationBuilder(NESTED_AGG, NESTED_OBJECT);
+                termsBuilder.subAggregation(samplerBuilder);
+                samplerBuilder.subAggregation(nestedBuilder);
+                nestedBuilder.subAggregation(new MaxAggregationBuilder(MAX_AGG_NAME).field(VALUE_FIELD_NAME));
+
+                Terms terms = search(newSearcher(indexReader, false, true), Queries.newNonNestedFilter(), termsBuilder,
+                        categoryFieldType(), valueFieldType());
+                assertFalse(terms.getBuckets().isEmpty());
+                for (Terms.Bucket bucket : terms.getBuckets()) {
+                    Sampler sampler = bucket.getAggregations().get(SAMPLER_AGG_NAME);
+                    // the shard size covers all parents, so the sample is the whole bucket
+                    assertEquals(bucket.getDocCount(), sampler.getDocCount());
+                    assertNested(categories, childValues, bucket.getKeyAsNumber().longValue(), sampler.getAggregations().get(NESTED_AGG));
+                }
+            }
+        }
+    }
+
+    /**
+     * The leaf collector of the nested aggregator must not skip the children of parents that come before the previous one.
+     */
+    public void testOutOfOrderParents() throws IOException {
+        long[][] childValues = randomChildValues(randomIntBetween(1, 50));
+        IndexWriterConfig iwc = newIndexWriterConfig();
+        iwc.setMaxBufferedDocs(10000);
+        iwc.setRAMBufferSizeMB(100); // flush on open to have a single segment with predictable docIds
+        iwc.setMergePolicy(NoMergePolicy.INSTANCE);
+        try (Directory directory = newDirectory();
+             IndexWriter iw = new IndexWriter(directory, iwc)) {
+            List<Integer> parentDocs = new ArrayList<>();
+            int expectedNestedDocs = 0;
+            for (int i = 0; i < childValues.length; i++) {
+                iw.addDocuments(parentDocuments(i, new long[0], childValues[i]));
+                expectedNestedDocs += childValues[i].length;
+                parentDocs.add(expectedNestedDocs + i);
+            }
+            try (IndexReader indexReader = wrap(DirectoryReader.open(iw))) {
+                assertEquals("test expects a single segment", 1, indexReader.leaves().size());
+                NestedAggregator aggregator = createAggregator(new NestedAggregationBuilder(NESTED_AGG, NESTED_OBJECT),
+                        newSearcher(indexReader, false, true));
+                try {
+                    aggregator.preCollection();
+                    LeafBucketCollector leafCollector = aggregator.getLeafCollector(indexReader.leaves().get(0));
+                    Collections.shuffle(parentDocs, random());
+                    for (int parentDoc : parentDocs) {
+                        leafCollector.collect(parentDoc, 0);
+                    }
+                    aggregator.postCollection();
+                    Nested nested = (Nested) aggregator.buildAggregation(0);
+                    assertEquals(expectedNestedDocs, nested.getDocCount());
+                } finally {
+                    aggregator.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Parents are buffered until the next parent comes, the last parent of a segment must be collected before the
+     * sub-aggregations move on to the next segment.
+     */
+    public void testSegmentBoundaries() throws IOException {
+        long[][] childValues = randomChildValues(randomIntBetween(1, 50));
+        long[][] categories = new long[childValues.length][];
+        for (int i = 0; i < categories.length; i++) {
+            categories[i] = new long[0];
+        }
+        long expectedNestedDocs = 0;
+        double expectedMaxValue = Double.NEGATIVE_INFINITY;
+        for (long[] values : childValues) {
+            for (long value : values) {
+                expectedNestedDocs++;
+                expectedMaxValue = Math.max(expectedMaxValue, value);
+            }
+        }
+        try (Directory directory = newDirectory()) {
+            indexParents(directory, categories, childValues, true);
+            try (IndexReader indexReader = wrap(DirectoryReader.open(directory))) {
+                NestedAggregationBuilder nestedBuilder = new NestedAggregationBuilder(NESTED_AGG, NESTED_OBJECT);
+                nestedBuilder.subAggregation(new MaxAggregationBuilder(MAX_AGG_NAME).field(VALUE_FIELD_NAME));
+
+                Nested nested = search(newSearcher(indexReader, false, true), Queries.newNonNestedFilter(), nestedBuilder,
+                        valueFieldType());
+                assertEquals(expectedNestedDocs, nested.getDocCount());
+                Max max = nested.getAggregations().get(MAX_AGG_NAME);
+                assertEquals(expectedMaxValue, max.getValue(), Double.MIN_VALUE);
+            }
+        }
+    }
+
+    private void assertNestedPerCategory(SubAggCollectionMode collectMode, int size, boolean needsScores) throws IOException {
+        long[][] categories = randomCategories(randomIntBetween(1, 50));
+        long[][] childValues = randomChildValues(categories.length);
+        try (Directory directory = newDirectory()) {
+            indexParents(directory, categories, childValues, randomBoolean());
+            try (IndexReader indexReader = wrap(DirectoryReader.open(directory))) {
+                TermsAggregationBuilder termsBuilder = new TermsAggregationBuilder(TERMS_AGG_NAME, ValueType.LONG)
+                        .field(CATEGORY_FIELD_NAME)
+                        .collectMode(collectMode)
+                        .size(size);
+                NestedAggregationBuilder nestedBuilder = new NestedAggregationBuilder(NESTED_AGG, NESTED_OBJECT);
+                termsBuilder.subAggregation(nestedBuilder);
+                nestedBuilder.subAggregation(new MaxAggregationBuilder(MAX_AGG_NAME).field(VALUE_FIELD_NAME));
+                if (needsScores) {
+                    // the nested docs have no stored uid to fetch
+                    nestedBuilder.subAggregation(new TopHitsAggregationBuilder(TOP_HITS_AGG_NAME).size(1)
+                            .storedField(StoredFieldsContext._NONE_));
+                }
 
-        // 1 segment with, 1 root document, with 3 nested sub docs
+                Terms terms = search(newSearcher(indexReader, false, true), Queries.newNonNestedFilter(), termsBuilder,
+                        categoryFieldType(), valueFieldType());
+                assertFalse(terms.getBuckets().isEmpty());
+                assertTrue(terms.getBuckets().size() <= size);
+                for (Terms.Bucket bucket : terms.getBuckets()) {
+                    Nested nested = bucket.getAggregations().get(NESTED_AGG);
+                    assertNested(categories, childValues, bucket.getKeyAsNumber().longValue(), nested);
+                    if (needsScores) {
+                        TopHits topHits = nested.getAggregations().get(TOP_HITS_AGG_NAME);
+                        assertEquals(nested.getDocCount(), topHits.getHits().getTotalHits());
+                    }
+                }
+            }
+        }
+    }
+
+    private static void assertNested(long[][] categories, long[][] childValues, long category, Nested nested) {
+        long expectedNestedDocs = 0;
+        double expectedMaxValue = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < categories.length; i++) {
+            for (long parentCategory : categories[i]) {
+                if (parentCategory == category) {
+                    for (long value : childValues[i]) {
+                        expectedNestedDocs++;
+                        expectedMaxValue = Math.max(expectedMaxValue, value);
+                    }
+                }
+            }
+        }
+        assertEquals(expectedNestedDocs, nested.getDocCount());
+        Max max = nested.getAggregations().get(MAX_AGG_NAME);
+        assertEquals(expectedMaxValue, max.getValue(), Double.MIN_VALUE);
+    }
+
+    /**
+     * Returns distinct categories for each parent, at least one.
+     */
+    private static long[][] randomCategories(int numParents) {
+        long[][] categories = new long[numParents][];
+        for (int i = 0; i < numParents; i++) {
+            List<Long> parentCategories = new ArrayList<>();
+            for (long category = 0; category < NUM_CATEGORIES; category++) {
+                parentCategories.add(category);
+            }
+            Collections.shuffle(parentCategories, random());
+            categories[i] = new long[randomIntBetween(1, NUM_CATEGORIES)];
+            for (int j = 0; j < categories[i].length; j++) {
+                categories[i][j] = parentCategories.get(j);
+            }
+        }
+        return categories;
+    }
+
+    private static long[][] randomChildValues(int numParents) {
+        long[][] childValues = new long[numParents][];
+        for (int i = 0; i < numParents; i++) {
+            childValues[i] = new long[randomIntBetween(0, 50)];
+            for (int j = 0; j < childValues[i].length; j++) {
+                childValues[i][j] = randomNonNegativeLong() % 10000;
+            }
+        }
+        return childValues;
+    }
+
+    private static void indexParents(Directory directory, long[][] categories, long[][] childValues, boolean segmentPerParent)
+            throws IOException {
+        IndexWriterConfig iwc = newIndexWriterConfig();
+        iwc.setMergePolicy(NoMergePolicy.INSTANCE);
+        try (RandomIndexWriter iw = new RandomIndexWriter(random(), directory, iwc)) {
+            for (int i = 0; i < categories.length; i++) {
+                iw.addDocuments(parentDocuments(i, categories[i], childValues[i]));
+                if (segmentPerParent) {
+                    iw.commit();
+                }
+            }
+            iw.commit();
+        }
+    }
+
+    private static List<Document> parentDocuments(int id, long[] categories, long[] childValues) {
+        List<Document> documents = new ArrayList<>();
+        for (long value : childValues) {
+            Document document = new Document();
+            document.add(new Field(UidFieldMapper.NAME, "type#" + id, UidFieldMapper.Defaults.NESTED_FIELD_TYPE));
+            document.add(new Field(TypeFieldMapper.NAME, "__" + NESTED_OBJECT, TypeFieldMapper.Defaults.FIELD_TYPE));
+            document.add(new SortedNumericDocValuesField(VALUE_FIELD_NAME, value));
+            documents.add(document);
+        }
         Document document = new Document();
-        document.add(new Field(UidFieldMapper.NAME, "type#1", UidFieldMapper.Defaults.NESTED_FIELD_TYPE));
-        document.add(new Field(TypeFieldMapper.NAME, "__nested_field", TypeFieldMapper.Defaults.FIELD_TYPE));
-        documents.add(document);
-        document = new Document();
-        document.add(new Field(UidFieldMapper.NAME, "type#1", UidFieldMapper.Defaults.NESTED_FIELD_TYPE));
-        document.add(new Field(TypeFieldMapper.NAME, "__nested_field", TypeFieldMapper.Defaults.FIELD_TYPE));
-        documents.add(document);
-        document = new Document();
-        document.add(new Field(UidFieldMapper.NAME, "type#1", UidFieldMapper.Defaults.NESTED_FIELD_TYPE));
-        document.add(new Field(TypeFieldMapper.NAME, "__nested_field", TypeFieldMapper.Defaults.FIELD_TYPE));
-        documents.add(document);
-        document = new Document();
-        document.add(new Field(UidFieldMapper.NAME, "type#1", UidFieldMapper.Defaults.FIELD_TYPE));
-        document.add(new Field(TypeFieldMapper.NAME, "test", TypeFieldMapper.Defaults.FIELD_TYPE));
-        documents.add(document);
-        indexWriter.addDocuments(documents);
-        indexWriter.commit();
-
-        documents.clear();
-        // 1 segment with:
-        // 1 document, with 1 nested subdoc
-        document = new Document();
-        document.add(new Field(UidFieldMapper.NAME, "type#2", UidFieldMapper.Defaults.NESTED_FIELD_TYPE));
-        document.add(new Field(TypeFieldMapper.NAME, "__nested_field", TypeFieldMapper.Defaults.FIELD_TYPE));
-        documents.add(document);
-        document = new Document();
-        document.add(new Field(UidFieldMapper.NAME, "type#2", UidFieldMapper.Defaults.FIELD_TYPE));
+        document.add(new Field(UidFieldMapper.NAME, "type#" + id, UidFieldMapper.Defaults.FIELD_TYPE));
         document.add(new Field(TypeFieldMapper.NAME, "test", TypeFieldMapper.Defaults.FIELD_TYPE));
+        for (long category : categories) {
+            document.add(new SortedNumericDocValuesField(CATEGORY_FIELD_NAME, category));
+        }
         documents.add(document);
-        indexWriter.addDocuments(documents);
-        documents.clear();
-        // and 1 document, with 1 nested subdoc
-        document = new Document();
-        document.add(new Field(UidFieldMapper.NAME, "type#3", UidFieldMapper.Defaults.NESTED_FIELD_TYPE));
-        document.add(new Field(TypeFieldMapper.NAME, "__nested_field", TypeFieldMapper.Defaults.FIELD_TYPE));
-        documents.add(document);
-        document = new Document();
-        document.add(new Field(UidFieldMapper.NAME, "type#3", UidFieldMapper.Defaults.FIELD_TYPE));
-        document.add(new Field(TypeFieldMapper.NAME, "test", TypeFieldMapper.Defaults.FIELD_TYPE));
-        documents.add(document);
-        indexWriter.addDocuments(documents);
-
-        indexWriter.commit();
-        indexWriter.close();
-
-        IndexService indexService = createIndex("test");
-        DirectoryReader directoryReader = DirectoryReader.open(directory);
-        directoryReader = ElasticsearchDirectoryReader.wrap(directoryReader, new ShardId(indexService.index(), 0));
-        IndexSearcher searcher = new IndexSearcher(directoryReader);
-
-        indexService.mapperService().merge("test", new CompressedXContent(PutMappingRequest.buildFromSimplifiedDef("test", "nested_field", "type=nested").string()), MapperService.MergeReason.MAPPING_UPDATE, false);
-        SearchContext context = createSearchContext(indexService);
-
-        AggregatorFactories.Builder builder = AggregatorFactories.builder();
-        NestedAggregationBuilder factory = new NestedAggregationBuilder("test", "nested_field");
-        builder.addAggregator(factory);
-        AggregatorFactories factories = builder.build(context, null);
-        context.aggregations(new SearchContextAggregations(factories));
-        Aggregator[] aggs = factories.createTopLevelAggregators();
-        BucketCollector collector = BucketCollector.wrap(Arrays.asList(aggs));
-        collector.preCollection();
-        // A regular search always exclude nested docs, so we use NonNestedDocsFilter.INSTANCE here (otherwise MatchAllDocsQuery would be sufficient)
-        // We exclude root doc with uid type#2, this will trigger the bug if we don't reset the root doc when we process a new segment, because
-        // root doc type#3 and root doc type#1 have the same segment docid
-        BooleanQuery.Builder bq = new BooleanQuery.Builder();
-        bq.add(Queries.newNonNestedFilter(), Occur.MUST);
-        bq.add(new TermQuery(new Term(UidFieldMapper.NAME, "type#2")), Occur.MUST_NOT);
-        searcher.search(new ConstantScoreQuery(bq.build()), collector);
-        collector.postCollection();
-
-        Nested nested = (Nested) aggs[0].buildAggregation(0);
-        // The bug manifests if 6 docs are returned, because currentRootDoc isn't reset the previous child docs from the first segment are emitted as hits.
-        assertThat(nested.getDocCount(), equalTo(4L));
-
-        directoryReader.close();
-        directory.close();
+        return documents;
     }
 
+    private static MappedFieldType valueFieldType() {
+        MappedFieldType fieldType = new NumberFieldMapper.NumberFieldType(NumberFieldMapper.NumberType.LONG);
+        fieldType.setName(VALUE_FIELD_NAME);
+        return fieldType;
+    }
+
+    private static MappedFieldType categoryFieldType() {
+        MappedFieldType fieldType = new NumberFieldMapper.NumberFieldType(NumberFieldMapper.NumberType.LONG);
+        fieldType.setName(CATEGORY_FIELD_NAME);
+        return fieldType;
+    }
 }
@@ -24,17 +24,25 @@ import org.apache.lucene.document.Field;
 import org.apache.lucene.document.SortedNumericDocValuesField;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.NoMergePolicy;
 import org.apache.lucene.index.RandomIndexWriter;
 import org.apache.lucene.search.MatchAllDocsQuery;
 import org.apache.lucene.store.Directory;
+import org.elasticsearch.common.lucene.search.Queries;
 import org.elasticsearch.index.mapper.MappedFieldType;
 import org.elasticsearch.index.mapper.NumberFieldMapper;
 import org.elasticsearch.index.mapper.TypeFieldMapper;
 import org.elasticsearch.index.mapper.UidFieldMapper;
+import org.elasticsearch.search.aggregations.Aggregator.SubAggCollectionMode;
 import org.elasticsearch.search.aggregations.AggregatorTestCase;
 import org.elasticsearch.search.aggregations.InternalAggregation;
+import org.elasticsearch.search.aggregations.bucket.terms.Terms;
+import org.elasticsearch.search.aggregations.bucket.terms.TermsAggregationBuilder;
 import org.elasticsearch.search.aggregations.metrics.max.InternalMax;
+import org.elasticsearch.search.aggregations.metrics.max.Max;
 import org.elasticsearch.search.aggregations.metrics.max.MaxAggregationBuilder;
+import org.elasticsearch.search.aggregations.support.ValueType;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -47,6 +55,8 @@ public class ReverseNestedAggregatorTests extends AggregatorTestCase {
     private static final String NESTED_AGG = "nestedAgg";
     private static final String REVERSE_AGG_NAME = "reverseNestedAgg";
     private static final String MAX_AGG_NAME = "maxAgg";
+    private static final String TERMS_AGG_NAME = "termsAgg";
+    private static final String CATEGORY_FIELD_NAME = "category";
 
 
     public void testNoDocs() throws IOException {
@@ -147,4 +157,90 @@ public class ReverseNestedAggregatorTests extends AggregatorTestCase {
         }
     }
 
+    /**
+     * Collects the parents of the children of each term, with the children spread over several buckets and segments, and
+     * possibly replayed by the terms aggregation.
+     */
+    public void testMaxFromParentDocsPerChildTerm() throws IOException {
+        int numParentDocs = randomIntBetween(1, 50);
+        int numCategories = randomIntBetween(1, 5);
+        long[] parentValues = new long[numParentDocs];
+        long[][] childCategories = new long[numParentDocs][];
+        IndexWriterConfig iwc = newIndexWriterConfig();
+        iwc.setMergePolicy(NoMergePolicy.INSTANCE);
+        try (Directory directory = newDirectory()) {
+            try (RandomIndexWriter iw = new RandomIndexWriter(random(), directory, iwc)) {
+                for (int i = 0; i < numParentDocs; i++) {
+                    List<Document> documents = new ArrayList<>();
+                    childCategories[i] = new long[randomIntBetween(0, 20)];
+                    for (int nested = 0; nested < childCategories[i].length; nested++) {
+                        childCategories[i][nested] = randomIntBetween(0, numCategories - 1);
+                        Document document = new Document();
+                        document.add(new Field(UidFieldMapper.NAME, "type#" + i,
+                                UidFieldMapper.Defaults.NESTED_FIELD_TYPE));
+                        document.add(new Field(TypeFieldMapper.NAME, "__" + NESTED_OBJECT,
+                                TypeFieldMapper.Defaults.FIELD_TYPE));
+                        document.add(new SortedNumericDocValuesField(CATEGORY_FIELD_NAME, childCategories[i][nested]));
+                        documents.add(document);
+                    }
+                    Document document = new Document();
+                    document.add(new Field(UidFieldMapper.NAME, "type#" + i,
+                            UidFieldMapper.Defaults.FIELD_TYPE));
+                    document.add(new Field(TypeFieldMapper.NAME, "test",
+                            TypeFieldMapper.Defaults.FIELD_TYPE));
+                    parentValues[i] = randomNonNegativeLong() % 10000;
+                    document.add(new SortedNumericDocValuesField(VALUE_FIELD_NAME, parentValues[i]));
+                    documents.add(document);
+                    iw.addDocuments(documents);
+                    if (randomBoolean()) {
+                        iw.commit();
+                    }
+                }
+                iw.commit();
+            }
+            try (IndexReader indexReader = wrap(DirectoryReader.open(directory))) {
+                NestedAggregationBuilder nestedBuilder = new NestedAggregationBuilder(NESTED_AGG,
+                        NESTED_OBJECT);
+                TermsAggregationBuilder termsBuilder = new TermsAggregationBuilder(TERMS_AGG_NAME, ValueType.LONG)
+                        .field(CATEGORY_FIELD_NAME)
+                        .collectMode(randomFrom(SubAggCollectionMode.values()));
+                nestedBuilder.subAggregation(termsBuilder);
+                ReverseNestedAggregationBuilder reverseNestedBuilder
+                    = new ReverseNestedAggregationBuilder(REVERSE_AGG_NAME);
+                termsBuilder.subAggregation(reverseNestedBuilder);
+                MaxAggregationBuilder maxAgg = new MaxAggregationBuilder(MAX_AGG_NAME)
+                        .field(VALUE_FIELD_NAME);
+                reverseNestedBuilder.subAggregation(maxAgg);
+                MappedFieldType fieldType = new NumberFieldMapper.NumberFieldType(
+                        NumberFieldMapper.NumberType.LONG);
+                fieldType.setName(VALUE_FIELD_NAME);
+                MappedFieldType categoryFieldType = new NumberFieldMapper.NumberFieldType(
+                        NumberFieldMapper.NumberType.LONG);
+                categoryFieldType.setName(CATEGORY_FIELD_NAME);
+
+                Nested nested = search(newSearcher(indexReader, false, true),
+                        Queries.newNonNestedFilter(), nestedBuilder, fieldType, categoryFieldType);
+                Terms terms = nested.getAggregations().get(TERMS_AGG_NAME);
+                for (Terms.Bucket bucket : terms.getBuckets()) {
+                    long category = bucket.getKeyAsNumber().longValue();
+                    int expectedParentDocs = 0;
+                    double expectedMaxValue = Double.NEGATIVE_INFINITY;
+                    for (int i = 0; i < numParentDocs; i++) {
+                        for (long childCategory : childCategories[i]) {
+                            if (childCategory == category) {
+                                expectedParentDocs++;
+                                expectedMaxValue = Math.max(expectedMaxValue, parentValues[i]);
+                                break;
+                            }
+                        }
+                    }
+                    ReverseNested reverseNested = bucket.getAggregations().get(REVERSE_AGG_NAME);
+                    assertEquals(expectedParentDocs, reverseNested.getDocCount());
+                    Max max = reverseNested.getAggregations().get(MAX_AGG_NAME);
+                    assertEquals(expectedMaxValue, max.getValue(), Double.MIN_VALUE);
+                }
+            }
+        }
+    }
+
 }
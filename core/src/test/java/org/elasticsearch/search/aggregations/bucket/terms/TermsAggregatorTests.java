@@ -19,12 +19,19 @@
 package org.elasticsearch.search.aggregations.bucket.terms;
 
 import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
 import org.apache.lucene.document.SortedSetDocValuesField;
+import org.apache.lucene.document.StringField;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.NoMergePolicy;
 import org.apache.lucene.index.RandomIndexWriter;
+import org.apache.lucene.index.Term;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.util.BytesRef;
 import org.elasticsearch.index.mapper.KeywordFieldMapper;
@@ -35,7 +42,10 @@ import org.elasticsearch.search.aggregations.Aggregator;
 import org.elasticsearch.search.aggregations.AggregatorTestCase;
 import org.elasticsearch.search.aggregations.support.ValueType;
 
+import java.util.HashMap;
+import java.util.Map;
 
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.instanceOf;
 
 public class TermsAggregatorTests extends AggregatorTestCase {
@@ -141,4 +151,64 @@ public class TermsAggregatorTests extends AggregatorTestCase {
         indexReader.close();
         directory.close();
     }
+
+    public void testExecutionModeSelection() throws Exception {
+        final int numDocs = randomIntBetween(20, 100);
+        final int matchingDoc = randomInt(numDocs - 1);
+        try (Directory directory = newDirectory()) {
+            // several segments, so that global ordinals would need to be built
+            try (IndexWriter indexWriter = new IndexWriter(directory, newIndexWriterConfig().setMergePolicy(NoMergePolicy.INSTANCE))) {
+                for (int i = 0; i < numDocs; i++) {
+                    Document document = new Document();
+                    document.add(new SortedSetDocValuesField("string", new BytesRef("term" + i)));
+                    document.add(new StringField("filter", i == matchingDoc ? "match" : "other", Field.Store.NO));
+                    indexWriter.addDocument(document);
+                    if (i == numDocs / 2) {
+                        indexWriter.commit();
+                    }
+                }
+            }
+            try (IndexReader indexReader = DirectoryReader.open(directory)) {
+                IndexSearcher indexSearcher = new IndexSearcher(indexReader);
+                MappedFieldType fieldType = new KeywordFieldMapper.KeywordFieldType();
+                fieldType.setName("string");
+                fieldType.setHasDocValues(true);
+                TermsAggregationBuilder aggregationBuilder = new TermsAggregationBuilder("_name", ValueType.STRING).field("string");
+
+                // hashing the terms of a single document is cheaper than building global ordinals
+                Query query = new TermQuery(new Term("filter", "match"));
+                Aggregator aggregator = createAggregator(query, aggregationBuilder, indexSearcher, fieldType);
+                assertThat(aggregator, instanceOf(StringTermsAggregator.class));
+                Map<String, Object> debug = debugInfo(aggregator);
+                assertEquals("map", debug.get("execution_hint"));
+                assertThat((String) debug.get("execution_hint_reason"), containsString("global ordinals are not loaded"));
+                assertEquals("depth_first", debug.get("collect_mode"));
+
+                // but not when all documents match
+                aggregator = createAggregator(new MatchAllDocsQuery(), aggregationBuilder, indexSearcher, fieldType);
+                assertThat(aggregator, instanceOf(GlobalOrdinalsStringTermsAggregator.class));
+                assertEquals("global_ordinals", debugInfo(aggregator).get("execution_hint"));
+
+                // the hint wins
+                aggregationBuilder.executionHint("global_ordinals_hash");
+                aggregator = createAggregator(query, aggregationBuilder, indexSearcher, fieldType);
+                assertThat(aggregator, instanceOf(GlobalOrdinalsStringTermsAggregator.class));
+                debug = debugInfo(aggregator);
+                assertEquals("global_ordinals_hash", debug.get("execution_hint"));
+                assertEquals("requested", debug.get("execution_hint_reason"));
+
+                // the aggregators that have been created so far are released by search
+                aggregationBuilder.executionHint(null);
+                Terms result = search(indexSearcher, query, aggregationBuilder, fieldType);
+                assertEquals(1, result.getBuckets().size());
+                assertEquals("term" + matchingDoc, result.getBuckets().get(0).getKeyAsString());
+            }
+        }
+    }
+
+    private static Map<String, Object> debugInfo(Aggregator aggregator) {
+        Map<String, Object> debug = new HashMap<>();
+        aggregator.collectDebugInfo(debug::put);
+        return debug;
+    }
 }
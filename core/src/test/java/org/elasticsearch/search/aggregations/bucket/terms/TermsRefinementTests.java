@@ -0,0 +1,183 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.aggregations.bucket.terms;
+
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.search.DocValueFormat;
+import org.elasticsearch.search.aggregations.AggregationBuilders;
+import org.elasticsearch.search.aggregations.InternalAggregations;
+import org.elasticsearch.search.aggregations.bucket.terms.support.IncludeExclude;
+import org.elasticsearch.search.aggregations.pipeline.PipelineAggregatorBuilders;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.test.ESTestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+public class TermsRefinementTests extends ESTestCase {
+
+    public void testCreate() {
+        assertNull(TermsRefinement.create(null));
+        assertNull(TermsRefinement.create(new SearchSourceBuilder()));
+        assertNull(TermsRefinement.create(new SearchSourceBuilder().aggregation(AggregationBuilders.terms("terms").field("f"))));
+        assertNull(TermsRefinement.create(new SearchSourceBuilder().aggregation(
+            AggregationBuilders.terms("terms").field("f").refineTopTerms(true).order(Terms.Order.term(true)))));
+        assertNull(TermsRefinement.create(new SearchSourceBuilder().aggregation(
+            AggregationBuilders.terms("terms").field("f").refineTopTerms(true).minDocCount(0))));
+        assertNull(TermsRefinement.create(new SearchSourceBuilder()
+            .aggregation(AggregationBuilders.terms("terms").field("f").refineTopTerms(true))
+            .aggregation(PipelineAggregatorBuilders.maxBucket("max", "terms._count"))));
+        assertNotNull(TermsRefinement.create(new SearchSourceBuilder().aggregation(
+            AggregationBuilders.terms("terms").field("f").refineTopTerms(true))));
+    }
+
+    public void testRounds() {
+        final int size = randomIntBetween(1, 10);
+        SearchSourceBuilder source = new SearchSourceBuilder()
+            .size(randomIntBetween(1, 10))
+            .aggregation(AggregationBuilders.avg("avg").field("g"))
+            .aggregation(AggregationBuilders.terms("terms").field("f").size(size).refineTopTerms(true)
+                .subAggregation(AggregationBuilders.max("max").field("g")));
+        TermsRefinement refinement = TermsRefinement.create(source);
+
+        // the first round runs everything, but only counts the terms
+        SearchSourceBuilder firstRound = refinement.firstRound();
+        assertEquals(source.size(), firstRound.size());
+        assertEquals(2, firstRound.aggregations().count());
+        assertEquals("avg", firstRound.aggregations().getAggregatorFactories().get(0).getName());
+        assertEquals(AggregationBuilders.terms("terms").field("f").size(size).shardSize(size).showTermDocCountError(true),
+            firstRound.aggregations().getAggregatorFactories().get(1));
+
+        // a shard may have returned its top terms only, so counting starts over with a larger shard size
+        refinement.onCountingRound(aggregations(terms(size, 2 * size, bucket("a", 10, 0))));
+        assertTrue(refinement.needsCountingRound());
+        SearchSourceBuilder countingRound = refinement.countingRound();
+        assertEquals(0, countingRound.size());
+        assertEquals(1, countingRound.aggregations().count());
+        assertEquals(AggregationBuilders.terms("terms").field("f").size(2 * size).shardSize(2 * size).showTermDocCountError(true),
+            countingRound.aggregations().getAggregatorFactories().get(0));
+
+        // all terms are known now
+        List<StringTerms.Bucket> buckets = new ArrayList<>();
+        for (int i = 0; i < size + 1; i++) {
+            buckets.add(bucket("term" + i, 100 - i, 0));
+        }
+        refinement.onCountingRound(aggregations(terms(2 * size, 0, buckets.toArray(new StringTerms.Bucket[0]))));
+        assertFalse(refinement.needsCountingRound());
+        SearchSourceBuilder lastRound = refinement.lastRound();
+        assertEquals(0, lastRound.size());
+        SortedSet<BytesRef> candidates = new TreeSet<>();
+        for (int i = 0; i < size; i++) {
+            candidates.add(new BytesRef("term" + i));
+        }
+        // the shard size is one more than the number of candidates, so that the shards do not report any error
+        assertEquals(AggregationBuilders.terms("terms").field("f").size(size).shardSize(size + 1)
+                .includeExclude(new IncludeExclude(candidates, null))
+                .subAggregation(AggregationBuilders.max("max").field("g")),
+            lastRound.aggregations().getAggregatorFactories().get(0));
+    }
+
+    public void testGivesUpAfterMaxCountingRounds() {
+        TermsRefinement refinement = TermsRefinement.create(new SearchSourceBuilder().aggregation(
+            AggregationBuilders.terms("terms").field("f").size(1).refineTopTerms(true)));
+        refinement.firstRound();
+        int shardSize = 1;
+        for (int i = 1; i < TermsRefinement.MAX_COUNTING_ROUNDS; i++) {
+            refinement.onCountingRound(aggregations(terms(shardSize, 10, bucket("a", 10, 0))));
+            assertTrue(refinement.needsCountingRound());
+            refinement.countingRound();
+            shardSize *= 2;
+        }
+        refinement.onCountingRound(aggregations(terms(shardSize, 10, bucket("a", 10, 0))));
+        assertFalse(refinement.needsCountingRound());
+        // the aggregation runs as usual with the last shard size
+        assertEquals(AggregationBuilders.terms("terms").field("f").size(1).shardSize(shardSize),
+            refinement.lastRound().aggregations().getAggregatorFactories().get(0));
+    }
+
+    public void testLastRoundReturnsRareTerms() {
+        final boolean exact = randomBoolean();
+        TermsRefinement refinement = TermsRefinement.create(new SearchSourceBuilder().aggregation(
+            AggregationBuilders.terms("terms").field("f").size(1).minDocCount(5).shardMinDocCount(5).refineTopTerms(true)));
+        refinement.firstRound();
+        int shardSize = 1;
+        if (exact) {
+            refinement.onCountingRound(aggregations(terms(shardSize, 0, bucket("a", 10, 0), bucket("b", 5, 0))));
+        } else {
+            for (int i = 1; i < TermsRefinement.MAX_COUNTING_ROUNDS; i++) {
+                refinement.onCountingRound(aggregations(terms(shardSize, 10, bucket("a", 10, 0))));
+                refinement.countingRound();
+                shardSize *= 2;
+            }
+            refinement.onCountingRound(aggregations(terms(shardSize, 10, bucket("a", 10, 0))));
+        }
+        assertFalse(refinement.needsCountingRound());
+        // a term with less than shard_min_doc_count documents on a shard still counts towards its total
+        TermsAggregationBuilder expected = AggregationBuilders.terms("terms").field("f").size(1).minDocCount(5).shardMinDocCount(0);
+        if (exact) {
+            expected.shardSize(2).includeExclude(new IncludeExclude(new TreeSet<>(Collections.singleton(new BytesRef("a"))), null));
+        } else {
+            expected.shardSize(shardSize);
+        }
+        assertEquals(expected, refinement.lastRound().aggregations().getAggregatorFactories().get(0));
+    }
+
+    public void testCandidates() {
+        // a term that no shard returned has at most 5 documents, less than the 6 of the second term
+        StringTerms terms = terms(3, 5, bucket("a", 20, 0), bucket("b", 6, 0), bucket("c", 3, 3), bucket("d", 2, 5));
+        assertEquals(new TreeSet<>(Arrays.asList(new BytesRef("a"), new BytesRef("b"), new BytesRef("c"), new BytesRef("d"))),
+            TermsRefinement.candidates(terms, 2, 10));
+        terms = terms(3, 5, bucket("a", 20, 0), bucket("b", 6, 0), bucket("c", 3, 2), bucket("d", 2, 5));
+        assertEquals(new TreeSet<>(Arrays.asList(new BytesRef("a"), new BytesRef("b"), new BytesRef("d"))),
+            TermsRefinement.candidates(terms, 2, 10));
+
+        // but it may have as many documents as the second term
+        terms = terms(3, 6, bucket("a", 20, 0), bucket("b", 6, 0));
+        assertNull(TermsRefinement.candidates(terms, 2, 10));
+
+        // the reduction may have dropped terms with up to 1 + 3 documents
+        terms = terms(3, 3, bucket("a", 20, 0), bucket("b", 4, 0), bucket("c", 1, 0));
+        assertNull(TermsRefinement.candidates(terms, 2, 3));
+        assertNotNull(TermsRefinement.candidates(terms, 2, 4));
+
+        // fewer terms than requested
+        terms = terms(3, 0, bucket("a", 20, 0));
+        assertEquals(Collections.singleton(new BytesRef("a")), TermsRefinement.candidates(terms, 2, 10));
+        terms = terms(3, 1, bucket("a", 20, 0));
+        assertNull(TermsRefinement.candidates(terms, 2, 10));
+    }
+
+    private static StringTerms.Bucket bucket(String term, long docCount, long docCountError) {
+        return new StringTerms.Bucket(new BytesRef(term), docCount, InternalAggregations.EMPTY, true, docCountError, DocValueFormat.RAW);
+    }
+
+    private static StringTerms terms(int requiredSize, long docCountError, StringTerms.Bucket... buckets) {
+        return new StringTerms("terms", Terms.Order.count(false), requiredSize, 1, Collections.emptyList(), null, DocValueFormat.RAW,
+            requiredSize, true, 0, Arrays.asList(buckets), docCountError);
+    }
+
+    private static InternalAggregations aggregations(StringTerms terms) {
+        return new InternalAggregations(Collections.singletonList(terms));
+    }
+}
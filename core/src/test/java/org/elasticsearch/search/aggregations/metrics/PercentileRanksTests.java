@@ -22,6 +22,7 @@ package org.elasticsearch.search.aggregations.metrics;
 import org.elasticsearch.script.Script;
 import org.elasticsearch.search.aggregations.BaseAggregationTestCase;
 import org.elasticsearch.search.aggregations.metrics.percentiles.PercentileRanksAggregationBuilder;
+import org.elasticsearch.search.aggregations.metrics.percentiles.PercentilesMethod;
 
 public class PercentileRanksTests extends BaseAggregationTestCase<PercentileRanksAggregationBuilder> {
 
@@ -43,6 +44,9 @@ public class PercentileRanksTests extends BaseAggregationTestCase<PercentileRank
         if (randomBoolean()) {
             factory.compression(randomIntBetween(1, 50000));
         }
+        if (randomBoolean()) {
+            factory.method(randomFrom(PercentilesMethod.values()));
+        }
         String field = randomNumericField();
         randomFieldOrScript(factory, field);
         if (randomBoolean()) {
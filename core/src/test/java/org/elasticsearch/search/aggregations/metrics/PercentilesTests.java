@@ -21,6 +21,7 @@ package org.elasticsearch.search.aggregations.metrics;
 
 import org.elasticsearch.search.aggregations.BaseAggregationTestCase;
 import org.elasticsearch.search.aggregations.metrics.percentiles.PercentilesAggregationBuilder;
+import org.elasticsearch.search.aggregations.metrics.percentiles.PercentilesMethod;
 
 public class PercentilesTests extends BaseAggregationTestCase<PercentilesAggregationBuilder> {
 
@@ -44,6 +45,9 @@ public class PercentilesTests extends BaseAggregationTestCase<PercentilesAggrega
         if (randomBoolean()) {
             factory.compression(randomIntBetween(1, 50000));
         }
+        if (randomBoolean()) {
+            factory.method(randomFrom(PercentilesMethod.values()));
+        }
         String field = randomNumericField();
         randomFieldOrScript(factory, field);
         if (randomBoolean()) {
@@ -94,6 +94,9 @@ public class TDigestPercentileRanksIT extends AbstractNumericTestCase {
         if (randomBoolean()) {
             builder.compression(randomIntBetween(20, 120) + randomDouble());
         }
+        if (randomBoolean()) {
+            builder.method(PercentilesMethod.MERGING_TDIGEST);
+        }
         return builder;
     }
 
@@ -93,6 +93,9 @@ public class TDigestPercentilesIT extends AbstractNumericTestCase {
         if (randomBoolean()) {
             builder.compression(randomIntBetween(20, 120) + randomDouble());
         }
+        if (randomBoolean()) {
+            builder.method(PercentilesMethod.MERGING_TDIGEST);
+        }
         return builder;
     }
 
@@ -1048,6 +1048,55 @@ public class TopHitsIT extends ESIntegTestCase {
         }
     }
 
+    /**
+     * Make sure that the hits of top_hits aggregations that multiple shards defer to the fetch phase are fetched when the query
+     * results come from the request cache.
+     */
+    public void testDeferredFetchWithRequestCache() throws Exception {
+        try {
+            assertAcked(prepareCreate("deferred_cache_idx").addMapping("type", "group", "type=keyword")
+                .setSettings(Settings.builder().put("requests.cache.enable", true).put("number_of_shards", between(2, 5))
+                    .put("number_of_replicas", 0))
+                .get());
+            List<IndexRequestBuilder> builders = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                builders.add(client().prepareIndex("deferred_cache_idx", "type", Integer.toString(i))
+                    .setSource("group", "g" + (i % 3), "value", i));
+            }
+            indexRandom(true, builders);
+            ensureSearchable("deferred_cache_idx");
+
+            for (int round = 0; round < 2; round++) {
+                // only query_then_fetch searches are cached
+                SearchResponse response = client().prepareSearch("deferred_cache_idx").setSearchType(SearchType.QUERY_THEN_FETCH)
+                    .setSize(0)
+                    .addAggregation(terms("groups").field("group")
+                        .subAggregation(topHits("hits").size(2).sort("value", SortOrder.DESC)))
+                    .get();
+                assertSearchResponse(response);
+                Terms groups = response.getAggregations().get("groups");
+                assertThat(groups.getBuckets().size(), equalTo(3));
+                for (Terms.Bucket bucket : groups.getBuckets()) {
+                    TopHits topHits = bucket.getAggregations().get("hits");
+                    SearchHit[] hits = topHits.getHits().getHits();
+                    assertThat(hits.length, equalTo(2));
+                    for (SearchHit hit : hits) {
+                        assertThat(hit.getId(), notNullValue());
+                        assertThat(hit.getSourceAsMap().get("group"), equalTo(bucket.getKeyAsString()));
+                    }
+                    assertThat(((Number) hits[0].getSourceAsMap().get("value")).intValue(),
+                        greaterThan(((Number) hits[1].getSourceAsMap().get("value")).intValue()));
+                }
+            }
+
+            // the second search was served by the request cache
+            assertThat(client().admin().indices().prepareStats("deferred_cache_idx").setRequestCache(true).get().getTotal()
+                .getRequestCache().getHitCount(), greaterThan(0L));
+        } finally {
+            assertAcked(client().admin().indices().prepareDelete("deferred_cache_idx"));
+        }
+    }
+
     public void testWithRescore() {
         // Rescore with default sort on relevancy (score)
         {
@@ -0,0 +1,168 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.aggregations.metrics.cardinality;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.document.SortedSetDocValuesField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.RandomIndexWriter;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.lease.Releasables;
+import org.elasticsearch.index.mapper.KeywordFieldMapper;
+import org.elasticsearch.index.mapper.MappedFieldType;
+import org.elasticsearch.search.aggregations.Aggregator;
+import org.elasticsearch.search.aggregations.AggregatorTestCase;
+import org.elasticsearch.search.aggregations.bucket.terms.Terms;
+import org.elasticsearch.search.aggregations.bucket.terms.TermsAggregationBuilder;
+import org.elasticsearch.search.aggregations.support.ValueType;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+public class GlobalOrdCardinalityAggregatorTests extends AggregatorTestCase {
+
+    public void testUseGlobalOrdinals() {
+        assertFalse(GlobalOrdCardinalityAggregator.useGlobalOrdinals(0, 14));
+        // the bit set of 1000 ordinals takes 125 bytes, much less than the 16KB of the registers
+        assertTrue(GlobalOrdCardinalityAggregator.useGlobalOrdinals(1000, 14));
+        assertFalse(GlobalOrdCardinalityAggregator.useGlobalOrdinals(1000, 4));
+        assertFalse(GlobalOrdCardinalityAggregator.useGlobalOrdinals(1L << 20, 14));
+        assertFalse(GlobalOrdCardinalityAggregator.useGlobalOrdinals(Integer.MAX_VALUE + 1L, 18));
+    }
+
+    public void testPicksGlobalOrdinalsUnderBuckets() throws IOException {
+        try (Directory directory = newDirectory()) {
+            try (RandomIndexWriter indexWriter = new RandomIndexWriter(random(), directory)) {
+                Document document = new Document();
+                document.add(new SortedDocValuesField("group", new BytesRef("a")));
+                document.add(new SortedSetDocValuesField("value", new BytesRef("foo")));
+                indexWriter.addDocument(document);
+            }
+            try (IndexReader indexReader = DirectoryReader.open(directory)) {
+                // global ordinals need a DirectoryReader, so LuceneTestCase.newSearcher cannot be used
+                IndexSearcher indexSearcher = new IndexSearcher(indexReader);
+                CardinalityAggregationBuilder cardinality = new CardinalityAggregationBuilder("cardinality", ValueType.STRING)
+                    .field("value");
+                Aggregator aggregator = createAggregator(cardinality, indexSearcher, keywordField("value"));
+                assertThat(aggregator, instanceOf(CardinalityAggregator.class));
+                aggregator.close();
+
+                TermsAggregationBuilder terms = new TermsAggregationBuilder("terms", ValueType.STRING).field("group")
+                    .subAggregation(cardinality);
+                aggregator = createAggregator(terms, indexSearcher, keywordField("group"), keywordField("value"));
+                Aggregator subAggregator = aggregator.subAggregator("cardinality");
+                assertThat(subAggregator, instanceOf(GlobalOrdCardinalityAggregator.class));
+                // aggregators do not close their sub-aggregators
+                Releasables.close(aggregator, subAggregator);
+            }
+        }
+    }
+
+    public void testCardinalityPerBucket() throws IOException {
+        final int numDocs = randomIntBetween(1, 500);
+        final int numGroups = randomIntBetween(1, 20);
+        final int numValues = randomIntBetween(1, 200);
+        final boolean singleValued = randomBoolean();
+        final Map<String, Set<String>> expected = new HashMap<>();
+        try (Directory directory = newDirectory()) {
+            try (RandomIndexWriter indexWriter = new RandomIndexWriter(random(), directory)) {
+                for (int i = 0; i < numDocs; i++) {
+                    final String group = "group" + randomInt(numGroups - 1);
+                    final Set<String> groupValues = expected.computeIfAbsent(group, k -> new HashSet<>());
+                    Document document = new Document();
+                    document.add(new SortedDocValuesField("group", new BytesRef(group)));
+                    final int numDocValues = singleValued ? randomInt(1) : randomIntBetween(0, 5);
+                    for (int j = 0; j < numDocValues; j++) {
+                        final String value = "value" + randomInt(numValues - 1);
+                        groupValues.add(value);
+                        document.add(new SortedSetDocValuesField("value", new BytesRef(value)));
+                    }
+                    indexWriter.addDocument(document);
+                }
+            }
+            try (IndexReader indexReader = DirectoryReader.open(directory)) {
+                IndexSearcher indexSearcher = new IndexSearcher(indexReader);
+                TermsAggregationBuilder terms = new TermsAggregationBuilder("terms", ValueType.STRING).field("group")
+                    .size(numGroups)
+                    .subAggregation(new CardinalityAggregationBuilder("cardinality", ValueType.STRING).field("value"));
+                Terms result = search(indexSearcher, new MatchAllDocsQuery(), terms, keywordField("group"), keywordField("value"));
+                assertThat(result.getBuckets().size(), equalTo(expected.size()));
+                for (Map.Entry<String, Set<String>> entry : expected.entrySet()) {
+                    Cardinality cardinality = result.getBucketByKey(entry.getKey()).getAggregations().get("cardinality");
+                    // so few values are counted exactly by the HyperLogLog++ linear counting
+                    assertThat(entry.getKey(), cardinality.getValue(), equalTo((long) entry.getValue().size()));
+                }
+            }
+        }
+    }
+
+    public void testOrderByCardinality() throws IOException {
+        final int numDocs = randomIntBetween(1, 2000);
+        final int numGroups = randomIntBetween(1, 20);
+        // enough values for the ordinals of some buckets to move from their hash table to a bit set
+        final int numValues = randomIntBetween(1, 1000);
+        try (Directory directory = newDirectory()) {
+            try (RandomIndexWriter indexWriter = new RandomIndexWriter(random(), directory)) {
+                for (int i = 0; i < numDocs; i++) {
+                    // skew the groups so that their cardinalities differ
+                    final int group = randomInt(randomInt(numGroups - 1));
+                    Document document = new Document();
+                    document.add(new SortedDocValuesField("group", new BytesRef("group" + group)));
+                    document.add(new SortedSetDocValuesField("value", new BytesRef("value" + randomInt(numValues - 1))));
+                    indexWriter.addDocument(document);
+                }
+            }
+            try (IndexReader indexReader = DirectoryReader.open(directory)) {
+                IndexSearcher indexSearcher = new IndexSearcher(indexReader);
+                TermsAggregationBuilder terms = new TermsAggregationBuilder("terms", ValueType.STRING).field("group")
+                    .size(numGroups)
+                    .order(Terms.Order.aggregation("cardinality", false))
+                    .subAggregation(new CardinalityAggregationBuilder("cardinality", ValueType.STRING).field("value"));
+                Terms result = search(indexSearcher, new MatchAllDocsQuery(), terms, keywordField("group"), keywordField("value"));
+                long previous = Long.MAX_VALUE;
+                for (Terms.Bucket bucket : result.getBuckets()) {
+                    // buckets are ordered by the values that they report
+                    final long value = ((Cardinality) bucket.getAggregations().get("cardinality")).getValue();
+                    assertThat(bucket.getKeyAsString(), value, lessThanOrEqualTo(previous));
+                    previous = value;
+                }
+            }
+        }
+    }
+
+    private static MappedFieldType keywordField(String name) {
+        MappedFieldType fieldType = new KeywordFieldMapper.KeywordFieldType();
+        fieldType.setName(name);
+        fieldType.setHasDocValues(true);
+        return fieldType;
+    }
+}
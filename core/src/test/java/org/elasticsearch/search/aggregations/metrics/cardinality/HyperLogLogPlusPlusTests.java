@@ -21,12 +21,23 @@ package org.elasticsearch.search.aggregations.metrics.cardinality;
 
 import com.carrotsearch.hppc.BitMixer;
 import com.carrotsearch.hppc.IntHashSet;
+import org.elasticsearch.Version;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.settings.ClusterSettings;
+import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.indices.breaker.HierarchyCircuitBreakerService;
 import org.elasticsearch.test.ESTestCase;
+import org.elasticsearch.test.VersionUtils;
+
+import java.io.IOException;
 
 import static org.elasticsearch.search.aggregations.metrics.cardinality.HyperLogLogPlusPlus.MAX_PRECISION;
 import static org.elasticsearch.search.aggregations.metrics.cardinality.HyperLogLogPlusPlus.MIN_PRECISION;
 import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.lessThan;
 
 public class HyperLogLogPlusPlusTests extends ESTestCase {
     public void testEncodeDecode() {
@@ -117,6 +128,52 @@ public class HyperLogLogPlusPlusTests extends ESTestCase {
         assertEquals(1, counts.cardinality(0));
     }
 
+    public void testSerialization() throws IOException {
+        final int p = randomIntBetween(MIN_PRECISION, MAX_PRECISION);
+        final HyperLogLogPlusPlus counts = new HyperLogLogPlusPlus(p, BigArrays.NON_RECYCLING_INSTANCE, 0);
+        final long bucket = randomInt(10);
+        // enough values to use either algorithm
+        final int numValues = randomIntBetween(1, 1 << (p - randomIntBetween(0, 3)));
+        for (int i = 0; i < numValues; ++i) {
+            counts.collect(bucket, BitMixer.mix64(randomInt()));
+        }
+        final Version version = randomBoolean() ? Version.CURRENT : VersionUtils.randomVersionBetween(random(), Version.V_5_0_0,
+            Version.V_5_5_1);
+        try (BytesStreamOutput out = new BytesStreamOutput()) {
+            out.setVersion(version);
+            counts.writeTo(bucket, out);
+            try (StreamInput in = out.bytes().streamInput()) {
+                in.setVersion(version);
+                final HyperLogLogPlusPlus read = HyperLogLogPlusPlus.readFrom(in, BigArrays.NON_RECYCLING_INSTANCE);
+                assertEquals(counts.cardinality(bucket), read.cardinality(0));
+                // the registers are the same too
+                final HyperLogLogPlusPlus merged = new HyperLogLogPlusPlus(p, BigArrays.NON_RECYCLING_INSTANCE, 0);
+                merged.merge(0, read, 0);
+                merged.merge(0, counts, bucket);
+                assertEquals(counts.cardinality(bucket), merged.cardinality(0));
+                assertEquals(0, in.available());
+            }
+        }
+    }
+
+    public void testFewValuesPerBucketUseLittleMemory() {
+        final HierarchyCircuitBreakerService breakerService = new HierarchyCircuitBreakerService(Settings.EMPTY,
+            new ClusterSettings(Settings.EMPTY, ClusterSettings.BUILT_IN_CLUSTER_SETTINGS));
+        final BigArrays bigArrays = new BigArrays(null, breakerService, false).withCircuitBreaking();
+        final int numBuckets = randomIntBetween(1000, 10000);
+        try (HyperLogLogPlusPlus counts = new HyperLogLogPlusPlus(MAX_PRECISION, bigArrays, 1)) {
+            for (int bucket = 0; bucket < numBuckets; ++bucket) {
+                for (int i = 0; i < 5; ++i) {
+                    counts.collect(bucket, BitMixer.mix64(randomInt()));
+                }
+            }
+            // dense registers would take 256kb per bucket
+            final long used = breakerService.getBreaker(CircuitBreaker.REQUEST).getUsed();
+            assertThat(used, lessThan(numBuckets * 256L));
+        }
+        assertEquals(0, breakerService.getBreaker(CircuitBreaker.REQUEST).getUsed());
+    }
+
     public void testPrecisionFromThreshold() {
         assertEquals(4, HyperLogLogPlusPlus.precisionFromThreshold(0));
         assertEquals(6, HyperLogLogPlusPlus.precisionFromThreshold(10));
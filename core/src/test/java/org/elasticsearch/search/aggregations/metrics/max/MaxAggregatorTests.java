@@ -0,0 +1,40 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.search.aggregations.metrics.max;
+
+import org.elasticsearch.index.mapper.MappedFieldType;
+import org.elasticsearch.index.mapper.NumberFieldMapper;
+import org.elasticsearch.search.aggregations.AggregatorTestCase;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+public class MaxAggregatorTests extends AggregatorTestCase {
+
+    public void testCollectBatches() throws IOException {
+        MappedFieldType fieldType = new NumberFieldMapper.NumberFieldType(NumberFieldMapper.NumberType.LONG);
+        fieldType.setName("number");
+        final int numBuckets = randomIntBetween(1, 5);
+        final double[] maxes = new double[numBuckets + 1];
+        Arrays.fill(maxes, Double.NEGATIVE_INFINITY);
+        checkBatchCollection(new MaxAggregationBuilder("_name").field("number"), fieldType, numBuckets,
+                (bucket, value) -> maxes[bucket] = Math.max(maxes[bucket], value),
+                (Integer bucket, InternalMax result) -> assertEquals(maxes[bucket], result.getValue(), 0));
+    }
+}
@@ -19,9 +19,11 @@
 
 package org.elasticsearch.search.aggregations.metrics.percentiles;
 
+import org.elasticsearch.Version;
 import org.elasticsearch.common.io.stream.BytesStreamOutput;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.test.ESTestCase;
+import org.elasticsearch.test.VersionUtils;
 
 import java.io.IOException;
 
@@ -33,6 +35,7 @@ public class PercentilesMethodTests extends ESTestCase {
     public void testValidOrdinals() {
         assertThat(PercentilesMethod.TDIGEST.ordinal(), equalTo(0));
         assertThat(PercentilesMethod.HDR.ordinal(), equalTo(1));
+        assertThat(PercentilesMethod.MERGING_TDIGEST.ordinal(), equalTo(2));
     }
 
     public void testwriteTo() throws Exception {
@@ -49,6 +52,22 @@ public class PercentilesMethodTests extends ESTestCase {
                 assertThat(in.readVInt(), equalTo(1));
             }
         }
+
+        try (BytesStreamOutput out = new BytesStreamOutput()) {
+            PercentilesMethod.MERGING_TDIGEST.writeTo(out);
+            try (StreamInput in = out.bytes().streamInput()) {
+                assertThat(in.readVInt(), equalTo(2));
+            }
+        }
+    }
+
+    public void testWriteMergingTDigestToOldNode() throws Exception {
+        try (BytesStreamOutput out = new BytesStreamOutput()) {
+            out.setVersion(VersionUtils.randomVersionBetween(random(), Version.V_5_0_0, Version.V_5_5_1));
+            IllegalArgumentException e = expectThrows(IllegalArgumentException.class,
+                    () -> PercentilesMethod.MERGING_TDIGEST.writeTo(out));
+            assertThat(e.getMessage(), containsString("method [merging_tdigest] is not supported by nodes before version"));
+        }
     }
 
     public void testReadFrom() throws Exception {
@@ -64,11 +83,17 @@ public class PercentilesMethodTests extends ESTestCase {
                 assertThat(PercentilesMethod.readFromStream(in), equalTo(PercentilesMethod.HDR));
             }
         }
+        try (BytesStreamOutput out = new BytesStreamOutput()) {
+            out.writeVInt(2);
+            try (StreamInput in = out.bytes().streamInput()) {
+                assertThat(PercentilesMethod.readFromStream(in), equalTo(PercentilesMethod.MERGING_TDIGEST));
+            }
+        }
     }
 
     public void testInvalidReadFrom() throws Exception {
         try (BytesStreamOutput out = new BytesStreamOutput()) {
-            out.writeVInt(randomIntBetween(2, Integer.MAX_VALUE));
+            out.writeVInt(randomIntBetween(3, Integer.MAX_VALUE));
             try (StreamInput in = out.bytes().streamInput()) {
                 PercentilesMethod.readFromStream(in);
                 fail("Expected IOException");
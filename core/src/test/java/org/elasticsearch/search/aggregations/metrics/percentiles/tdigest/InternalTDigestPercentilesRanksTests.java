@@ -30,11 +30,20 @@ import java.util.Map;
 
 public class InternalTDigestPercentilesRanksTests extends InternalPercentilesRanksTestCase<InternalTDigestPercentileRanks> {
 
+    private boolean merging;
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        // the digests of all the shards are of the same kind
+        merging = randomBoolean();
+    }
+
     @Override
     protected InternalTDigestPercentileRanks createTestInstance(String name, List<PipelineAggregator> aggregators,
                                                                 Map<String, Object> metadata,
                                                                 boolean keyed, DocValueFormat format, double[] percents, double[] values) {
-        final TDigestState state = new TDigestState(100);
+        final TDigestState state = TDigestState.create(100, merging);
         Arrays.stream(values).forEach(state::add);
 
         assertEquals(state.centroidCount(), values.length);
@@ -31,12 +31,21 @@ import java.util.Map;
 
 public class InternalTDigestPercentilesTests extends InternalPercentilesTestCase<InternalTDigestPercentiles> {
 
+    private boolean merging;
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        // the digests of all the shards are of the same kind
+        merging = randomBoolean();
+    }
+
     @Override
     protected InternalTDigestPercentiles createTestInstance(String name,
                                                             List<PipelineAggregator> pipelineAggregators,
                                                             Map<String, Object> metaData,
                                                             boolean keyed, DocValueFormat format, double[] percents, double[] values) {
-        final TDigestState state = new TDigestState(100);
+        final TDigestState state = TDigestState.create(100, merging);
         Arrays.stream(values).forEach(state::add);
 
         assertEquals(state.centroidCount(), values.length);
@@ -0,0 +1,139 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.aggregations.metrics.percentiles.tdigest;
+
+import org.elasticsearch.Version;
+import org.elasticsearch.test.ESTestCase;
+import org.elasticsearch.test.VersionUtils;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+public class MergingTDigestStateTests extends ESTestCase {
+
+    public void testEmpty() {
+        final MergingTDigestState state = new MergingTDigestState(100);
+        assertEquals(0, state.size());
+        assertEquals(0, state.centroidCount());
+        assertTrue(Double.isNaN(state.quantile(0.5)));
+        assertTrue(Double.isNaN(state.cdf(0)));
+    }
+
+    public void testFewValuesAreExact() {
+        final double compression = randomIntBetween(20, 500);
+        final double[] values = new double[randomIntBetween(1, (int) compression)];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = randomDoubleBetween(-1000, 1000, true);
+        }
+        final MergingTDigestState state = new MergingTDigestState(compression);
+        Arrays.stream(values).forEach(state::add);
+        Arrays.sort(values);
+        assertEquals(values.length, state.centroidCount());
+        assertEquals(values.length, state.size());
+        assertEquals(values[0], state.quantile(0), 0);
+        assertEquals(values[values.length - 1], state.quantile(1), 0);
+        assertEquals(values[0], state.getMin(), 0);
+        assertEquals(values[values.length - 1], state.getMax(), 0);
+        for (double value : values) {
+            final double cdf = state.cdf(value);
+            assertEquals(value, state.quantile(cdf), 1e-6);
+        }
+    }
+
+    public void testAccuracy() {
+        final int numValues = randomIntBetween(10000, 100000);
+        final double[] values = new double[numValues];
+        final boolean sorted = randomBoolean();
+        for (int i = 0; i < numValues; i++) {
+            values[i] = randomDouble();
+        }
+        if (sorted) {
+            // sorted input is the worst case of t-digests
+            Arrays.sort(values);
+        }
+        final MergingTDigestState state = new MergingTDigestState(100);
+        Arrays.stream(values).forEach(state::add);
+        if (sorted == false) {
+            Arrays.sort(values);
+        }
+        assertEquals(numValues, state.size());
+        // the number of centroids only grows logarithmically with the number of values
+        assertThat(state.centroidCount(), lessThanOrEqualTo(20 * 100));
+        for (double q : new double[] {0.001, 0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.99, 0.999}) {
+            final double expected = values[(int) (q * numValues)];
+            assertEquals("quantile " + q, expected, state.quantile(q), 0.01);
+            assertEquals("cdf " + expected, q, state.cdf(expected), 0.01);
+        }
+        assertEquals(values[0], state.quantile(0), 0);
+        assertEquals(values[numValues - 1], state.quantile(1), 0);
+    }
+
+    public void testMerge() {
+        final int numDigests = randomIntBetween(2, 10);
+        final MergingTDigestState merged = new MergingTDigestState(100);
+        final MergingTDigestState all = new MergingTDigestState(100);
+        for (int i = 0; i < numDigests; i++) {
+            final MergingTDigestState state = new MergingTDigestState(100);
+            final int numValues = randomIntBetween(0, 5000);
+            for (int j = 0; j < numValues; j++) {
+                final double value = randomDouble();
+                state.add(value);
+                all.add(value);
+            }
+            merged.add(state);
+        }
+        assertEquals(all.size(), merged.size());
+        assertEquals(all.getMin(), merged.getMin(), 0);
+        assertEquals(all.getMax(), merged.getMax(), 0);
+        if (all.size() > 0) {
+            for (double q = 0; q <= 1; q += 0.125) {
+                assertEquals(all.quantile(q), merged.quantile(q), 0.02);
+            }
+        }
+    }
+
+    public void testSerialization() throws IOException {
+        final MergingTDigestState state = new MergingTDigestState(randomIntBetween(10, 500));
+        final int numValues = randomIntBetween(0, 10000);
+        for (int i = 0; i < numValues; i++) {
+            state.add(randomDoubleBetween(-100, 100, true), randomIntBetween(1, 3));
+        }
+        final MergingTDigestState read = (MergingTDigestState) TDigestStateTests.copy(state, Version.CURRENT);
+        assertEquals(state.compression(), read.compression(), 0);
+        assertEquals(state.size(), read.size());
+        assertEquals(state.centroidCount(), read.centroidCount());
+        assertEquals(state.getMin(), read.getMin(), 0);
+        assertEquals(state.getMax(), read.getMax(), 0);
+        for (double q = 0; q <= 1; q += 0.1) {
+            assertEquals(state.quantile(q), read.quantile(q), 0);
+        }
+
+        // older nodes only know about digests backed by an AVL tree, which have no extreme values
+        final Version version = VersionUtils.randomVersionBetween(random(), Version.V_5_0_0, Version.V_5_5_1);
+        final TDigestState readFromOld = TDigestStateTests.copy(state, version);
+        assertFalse(readFromOld.isMerging());
+        assertEquals(state.size(), readFromOld.size());
+        if (numValues > 0) {
+            assertEquals(state.quantile(0.5), readFromOld.quantile(0.5), 1);
+        }
+    }
+}
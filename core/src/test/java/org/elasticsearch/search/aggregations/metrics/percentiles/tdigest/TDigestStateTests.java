@@ -0,0 +1,93 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.search.aggregations.metrics.percentiles.tdigest;
+
+import org.elasticsearch.Version;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.test.ESTestCase;
+import org.elasticsearch.test.VersionUtils;
+
+import java.io.IOException;
+
+public class TDigestStateTests extends ESTestCase {
+
+    public void testCreate() {
+        final double compression = randomIntBetween(10, 500);
+        final TDigestState avlTree = TDigestState.create(compression, false);
+        assertFalse(avlTree.isMerging());
+        assertEquals(compression, avlTree.compression(), 0);
+        final TDigestState merging = TDigestState.create(compression, true);
+        assertTrue(merging.isMerging());
+        assertEquals(compression, merging.compression(), 0);
+    }
+
+    public void testSerialization() throws IOException {
+        final boolean merging = randomBoolean();
+        final TDigestState state = TDigestState.create(randomIntBetween(10, 500), merging);
+        final int numValues = randomIntBetween(0, 10000);
+        for (int i = 0; i < numValues; i++) {
+            state.add(randomDoubleBetween(-100, 100, true));
+        }
+        final TDigestState read = copy(state, Version.CURRENT);
+        assertEquals(merging, read.isMerging());
+        assertEquals(state.compression(), read.compression(), 0);
+        assertEquals(state.size(), read.size());
+        if (numValues > 0) {
+            assertEquals(state.quantile(0.5), read.quantile(0.5), 1);
+        }
+
+        // digests backed by an AVL tree are sent to older nodes in the format they always had
+        final TDigestState avlTree = TDigestState.create(state.compression(), false);
+        avlTree.add(state.size() > 0 ? state.quantile(0.5) : 0);
+        final Version version = VersionUtils.randomVersionBetween(random(), Version.V_5_0_0, Version.V_5_5_1);
+        try (BytesStreamOutput out = new BytesStreamOutput()) {
+            out.setVersion(version);
+            TDigestState.write(avlTree, out);
+            try (StreamInput in = out.bytes().streamInput()) {
+                assertEquals(avlTree.compression(), in.readDouble(), 0);
+                assertEquals(1, in.readVInt());
+                assertEquals(avlTree.quantile(0.5), in.readDouble(), 0);
+                assertEquals(1, in.readVLong());
+                assertEquals(0, in.available());
+            }
+        }
+        final TDigestState readFromOld = copy(avlTree, version);
+        assertFalse(readFromOld.isMerging());
+        assertEquals(1, readFromOld.size());
+    }
+
+    public void testMergeDigestsOfDifferentKinds() {
+        final TDigestState avlTree = TDigestState.create(100, false);
+        final TDigestState merging = TDigestState.create(100, true);
+        expectThrows(IllegalArgumentException.class, () -> avlTree.add(merging));
+        expectThrows(IllegalArgumentException.class, () -> merging.add(avlTree));
+    }
+
+    static TDigestState copy(TDigestState state, Version version) throws IOException {
+        try (BytesStreamOutput out = new BytesStreamOutput()) {
+            out.setVersion(version);
+            TDigestState.write(state, out);
+            try (StreamInput in = out.bytes().streamInput()) {
+                in.setVersion(version);
+                return TDigestState.read(in);
+            }
+        }
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.aggregations.metrics.tophits;
+
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.text.Text;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.index.Index;
+import org.elasticsearch.index.query.MatchAllQueryBuilder;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.SearchHits;
+import org.elasticsearch.search.SearchShardTarget;
+import org.elasticsearch.search.aggregations.HasAggregations;
+import org.elasticsearch.search.aggregations.InternalAggregation;
+import org.elasticsearch.search.aggregations.InternalAggregations;
+import org.elasticsearch.search.aggregations.bucket.filter.FilterAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.terms.TermsAggregationBuilder;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.fetch.FetchSearchResult;
+import org.elasticsearch.search.query.QuerySearchResult;
+import org.elasticsearch.test.ESTestCase;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static java.util.Collections.singletonMap;
+
+public class DeferredTopHitsTests extends ESTestCase {
+
+    private final Index index = new Index("test", "_na_");
+    private final SearchShardTarget deferredShard = new SearchShardTarget("node", index, 0);
+    private final SearchShardTarget fetchedShard = new SearchShardTarget("node", index, 1);
+
+    private List<QuerySearchResult> queryResults() {
+        QuerySearchResult deferred = new QuerySearchResult(0, deferredShard);
+        deferred.setShardIndex(0);
+        deferred.hasDeferredTopHits(true);
+        QuerySearchResult fetched = new QuerySearchResult(1, fetchedShard);
+        fetched.setShardIndex(1);
+        return Arrays.asList(deferred, fetched);
+    }
+
+    /**
+     * Top hits whose first and last hits come from the shard that deferred them, and the one in the middle from the other shard.
+     */
+    private InternalTopHits topHits() {
+        ScoreDoc[] scoreDocs = new ScoreDoc[] {new ScoreDoc(3, 3f, 0), new ScoreDoc(1, 2f, 1), new ScoreDoc(7, 1f, 0)};
+        SearchHit[] hits = new SearchHit[3];
+        hits[0] = new SearchHit(3);
+        hits[0].shard(deferredShard);
+        hits[1] = new SearchHit(1, "fetched", new Text("type"), Collections.emptyMap());
+        hits[1].shard(fetchedShard);
+        hits[2] = new SearchHit(7);
+        hits[2].shard(deferredShard);
+        return new InternalTopHits("top", 0, 3, new TopDocs(10, scoreDocs, 3f), new SearchHits(hits, 10, 3f),
+            Collections.emptyList(), null);
+    }
+
+    private static FetchSearchResult fetchResult(String path, String... ids) {
+        SearchHit[] hits = new SearchHit[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            hits[i] = new SearchHit(i, ids[i], new Text("type"), Collections.emptyMap());
+        }
+        FetchSearchResult fetchResult = new FetchSearchResult();
+        fetchResult.topHits(singletonMap(path, new SearchHits(hits, ids.length, 1f)));
+        return fetchResult;
+    }
+
+    public void testFill() {
+        InternalTopHits topHits = topHits();
+        DeferredTopHits deferred = DeferredTopHits.collect(
+            new InternalAggregations(Collections.<InternalAggregation>singletonList(topHits)), queryResults());
+        assertFalse(deferred.isEmpty());
+        assertEquals(Collections.emptyMap(), deferred.docs(1));
+        ScoreDoc[] docs = deferred.docs(0).get("top");
+        assertEquals(1, deferred.docs(0).size());
+        assertEquals(2, docs.length);
+        assertEquals(3, docs[0].doc);
+        assertEquals(7, docs[1].doc);
+
+        FetchSearchResult fetchResult = fetchResult("top", "first", "last");
+        deferred.fill(shardIndex -> shardIndex == 0 ? fetchResult : null);
+        SearchHits hits = topHits.getHits();
+        assertEquals(3, hits.getHits().length);
+        assertEquals("first", hits.getAt(0).getId());
+        assertEquals("fetched", hits.getAt(1).getId());
+        assertEquals("last", hits.getAt(2).getId());
+    }
+
+    public void testFailedFetchRemovesHits() {
+        InternalTopHits topHits = topHits();
+        DeferredTopHits deferred = DeferredTopHits.collect(
+            new InternalAggregations(Collections.<InternalAggregation>singletonList(topHits)), queryResults());
+        deferred.fill(shardIndex -> null);
+        SearchHits hits = topHits.getHits();
+        assertEquals(1, hits.getHits().length);
+        assertEquals("fetched", hits.getAt(0).getId());
+    }
+
+    public void testNothingDeferred() {
+        List<QuerySearchResult> queryResults = queryResults();
+        queryResults.get(0).hasDeferredTopHits(false);
+        DeferredTopHits deferred = DeferredTopHits.collect(
+            new InternalAggregations(Collections.<InternalAggregation>singletonList(topHits())), queryResults);
+        assertTrue(deferred.isEmpty());
+        assertEquals(Collections.emptyMap(), deferred.docs(0));
+    }
+
+    public void testUnknownParentFailsCollect() {
+        InternalAggregation parent = new UnknownBucketAggregation("parent", topHits());
+        IllegalStateException e = expectThrows(IllegalStateException.class, () -> DeferredTopHits.collect(
+            new InternalAggregations(Collections.singletonList(parent)), queryResults()));
+        assertEquals("top_hits aggregation [parent>top] has deferred hits under an aggregation that they cannot be fetched for",
+            e.getMessage());
+
+        List<QuerySearchResult> queryResults = queryResults();
+        queryResults.get(0).hasDeferredTopHits(false);
+        assertTrue(DeferredTopHits.collect(new InternalAggregations(Collections.singletonList(parent)), queryResults).isEmpty());
+    }
+
+    public void testCanDefer() {
+        assertTrue(DeferredTopHits.canDefer(null));
+        assertTrue(DeferredTopHits.canDefer(new SearchSourceBuilder()));
+        assertTrue(DeferredTopHits.canDefer(new SearchSourceBuilder().aggregation(new TopHitsAggregationBuilder("top"))));
+        assertTrue(DeferredTopHits.canDefer(new SearchSourceBuilder().aggregation(
+            new TermsAggregationBuilder("terms", null).subAggregation(
+                new FilterAggregationBuilder("filter", new MatchAllQueryBuilder()).subAggregation(
+                    new TopHitsAggregationBuilder("top"))))));
+        // an unknown bucket aggregation is fine as long as there is no top_hits aggregation below it
+        assertTrue(DeferredTopHits.canDefer(new SearchSourceBuilder()
+            .aggregation(new UnknownAggregationBuilder("unknown").subAggregation(new TermsAggregationBuilder("terms", null)))
+            .aggregation(new TermsAggregationBuilder("terms", null).subAggregation(new TopHitsAggregationBuilder("top")))));
+
+        assertFalse(DeferredTopHits.canDefer(new SearchSourceBuilder().aggregation(
+            new UnknownAggregationBuilder("unknown").subAggregation(new TopHitsAggregationBuilder("top")))));
+        assertFalse(DeferredTopHits.canDefer(new SearchSourceBuilder().aggregation(
+            new TermsAggregationBuilder("terms", null).subAggregation(
+                new UnknownAggregationBuilder("unknown").subAggregation(
+                    new TermsAggregationBuilder("terms", null).subAggregation(
+                        new TopHitsAggregationBuilder("top")))))));
+    }
+
+    /**
+     * A bucket aggregation that is not known to {@link DeferredTopHits}, like the ones of plugins.
+     */
+    private static class UnknownAggregationBuilder extends FilterAggregationBuilder {
+        UnknownAggregationBuilder(String name) {
+            super(name, new MatchAllQueryBuilder());
+        }
+    }
+
+    /**
+     * The result of a bucket aggregation that is not known to {@link DeferredTopHits}.
+     */
+    private static class UnknownBucketAggregation extends InternalAggregation implements HasAggregations {
+        private final InternalAggregations aggregations;
+
+        UnknownBucketAggregation(String name, InternalAggregation aggregation) {
+            super(name, Collections.emptyList(), null);
+            this.aggregations = new InternalAggregations(Collections.singletonList(aggregation));
+        }
+
+        @Override
+        public InternalAggregations getAggregations() {
+            return aggregations;
+        }
+
+        @Override
+        public String getWriteableName() {
+            return "unknown";
+        }
+
+        @Override
+        protected void doWriteTo(StreamOutput out) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public InternalAggregation doReduce(List<InternalAggregation> aggregations, ReduceContext reduceContext) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Object getProperty(List<String> path) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public XContentBuilder doXContentBody(XContentBuilder builder, Params params) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
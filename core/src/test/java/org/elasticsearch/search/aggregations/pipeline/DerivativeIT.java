@@ -49,7 +49,9 @@ import static org.elasticsearch.search.aggregations.AggregationBuilders.histogra
 import static org.elasticsearch.search.aggregations.AggregationBuilders.stats;
 import static org.elasticsearch.search.aggregations.AggregationBuilders.sum;
 import static org.elasticsearch.search.aggregations.AggregationBuilders.avg;
+import static org.elasticsearch.search.aggregations.pipeline.PipelineAggregatorBuilders.cumulativeSum;
 import static org.elasticsearch.search.aggregations.pipeline.PipelineAggregatorBuilders.derivative;
+import static org.elasticsearch.search.aggregations.pipeline.PipelineAggregatorBuilders.diff;
 import static org.elasticsearch.search.aggregations.pipeline.PipelineAggregatorBuilders.movingAvg;
 import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertAcked;
 import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertSearchResponse;
@@ -247,6 +249,54 @@ public class DerivativeIT extends ESIntegTestCase {
         }
     }
 
+    /**
+     * test a chain of pipelines that read each other's values, and a derivative of the normalized value of another one
+     */
+    public void testChainedPipelines() {
+        SearchResponse response = client()
+                .prepareSearch("idx")
+                .addAggregation(
+                        histogram("histo").field(SINGLE_VALUED_FIELD_NAME).interval(interval)
+                                .subAggregation(derivative("deriv", "_count").unit("1ms"))
+                                .subAggregation(cumulativeSum("deriv_sum", "deriv"))
+                                .subAggregation(diff("sum_diff", "deriv_sum").lag(1))
+                                .subAggregation(derivative("2nd_deriv", "deriv.normalized_value"))).execute().actionGet();
+
+        assertSearchResponse(response);
+
+        Histogram histo = response.getAggregations().get("histo");
+        assertThat(histo, notNullValue());
+        List<? extends Bucket> buckets = histo.getBuckets();
+        assertThat(buckets.size(), equalTo(numValueBuckets));
+
+        for (int i = 0; i < numValueBuckets; ++i) {
+            Histogram.Bucket bucket = buckets.get(i);
+            checkBucketKeyAndDocCount("InternalBucket " + i, bucket, i * interval, valueCounts[i]);
+            Derivative docCountDeriv = bucket.getAggregations().get("deriv");
+            SimpleValue sumDiff = bucket.getAggregations().get("sum_diff");
+            if (i > 0) {
+                assertThat(docCountDeriv, notNullValue());
+                assertThat(docCountDeriv.value(), equalTo((double) firstDerivValueCounts[i - 1]));
+                assertThat(sumDiff, notNullValue());
+                assertThat(sumDiff.value(), closeTo(firstDerivValueCounts[i - 1], 0.00001));
+            } else {
+                assertThat(docCountDeriv, nullValue());
+                assertThat(sumDiff, nullValue());
+            }
+            // the first bucket has no derivative, and counts as zero
+            SimpleValue derivSum = bucket.getAggregations().get("deriv_sum");
+            assertThat(derivSum, notNullValue());
+            assertThat(derivSum.value(), closeTo(valueCounts[i] - valueCounts[0], 0.00001));
+            SimpleValue docCount2ndDeriv = bucket.getAggregations().get("2nd_deriv");
+            if (i > 1) {
+                assertThat(docCount2ndDeriv, notNullValue());
+                assertThat(docCount2ndDeriv.value(), closeTo((double) secondDerivValueCounts[i - 2] / interval, 0.00001));
+            } else {
+                assertThat(docCount2ndDeriv, nullValue());
+            }
+        }
+    }
+
     public void testSingleValueAggDerivative() throws Exception {
         SearchResponse response = client()
                 .prepareSearch("idx")
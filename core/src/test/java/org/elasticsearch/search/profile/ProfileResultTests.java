@@ -53,12 +53,17 @@ public class ProfileResultTests extends ESTestCase {
             }
             timings.put(randomAlphaOfLengthBetween(5, 10), time); // don't overflow Long.MAX_VALUE;
         }
+        int debugSize = randomIntBetween(0, 2);
+        Map<String, Object> debug = new HashMap<>(debugSize);
+        for (int i = 0; i < debugSize; i++) {
+            debug.put(randomAlphaOfLengthBetween(5, 10), randomAlphaOfLengthBetween(5, 10));
+        }
         int childrenSize = depth > 0 ? randomIntBetween(0, 1) : 0;
         List<ProfileResult> children = new ArrayList<>(childrenSize);
         for (int i = 0; i < childrenSize; i++) {
             children.add(createTestItem(depth - 1));
         }
-        return new ProfileResult(type, description, timings, children);
+        return new ProfileResult(type, description, timings, debug, children);
     }
 
     public void testFromXContent() throws IOException {
@@ -80,7 +85,8 @@ public class ProfileResultTests extends ESTestCase {
     public void testToXContent() throws IOException {
         List<ProfileResult> children = new ArrayList<>();
         children.add(new ProfileResult("child1", "desc1", Collections.singletonMap("key1", 100L), Collections.emptyList()));
-        children.add(new ProfileResult("child2", "desc2", Collections.singletonMap("key1", 123356L), Collections.emptyList()));
+        children.add(new ProfileResult("child2", "desc2", Collections.singletonMap("key1", 123356L),
+            Collections.singletonMap("strategy", "map"), Collections.emptyList()));
         Map<String, Long> timings = new HashMap<>();
         timings.put("key1", 123456L);
         timings.put("key2", 100000L);
@@ -113,6 +119,9 @@ public class ProfileResultTests extends ESTestCase {
                 "      \"time_in_nanos\" : 123356,\n" +
                 "      \"breakdown\" : {\n" +
                 "        \"key1\" : 123356\n" +
+                "      },\n" +
+                "      \"debug\" : {\n" +
+                "        \"strategy\" : \"map\"\n" +
                 "      }\n" +
                 "    }\n" +
                 "  ]\n" +
@@ -146,6 +155,9 @@ public class ProfileResultTests extends ESTestCase {
                 "      \"time_in_nanos\" : 123356,\n" +
                 "      \"breakdown\" : {\n" +
                 "        \"key1\" : 123356\n" +
+                "      },\n" +
+                "      \"debug\" : {\n" +
+                "        \"strategy\" : \"map\"\n" +
                 "      }\n" +
                 "    }\n" +
                 "  ]\n" +
@@ -167,6 +167,9 @@ public class AggregationProfilerIT extends ESIntegTestCase {
             assertThat(termsBreakdown.get(AggregationTimingType.BUILD_AGGREGATION.toString()), greaterThan(0L));
             assertThat(termsBreakdown.get(AggregationTimingType.REDUCE.toString()), notNullValue());
             assertThat(termsBreakdown.get(AggregationTimingType.REDUCE.toString()), equalTo(0L));
+            Map<String, Object> termsDebug = termsAggResult.getDebugInfo();
+            assertThat(termsDebug.get("execution_hint"), equalTo("global_ordinals_hash"));
+            assertThat(termsDebug.get("execution_hint_reason"), equalTo("under a bucket aggregation"));
             assertThat(termsAggResult.getProfiledChildren().size(), equalTo(1));
 
             ProfileResult avgAggResult = termsAggResult.getProfiledChildren().get(0);
@@ -0,0 +1,92 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.transport;
+
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.bytes.CompositeBytesReference;
+import org.elasticsearch.common.bytes.FileRegionBytesReference;
+import org.elasticsearch.common.io.Streams;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.test.ESTestCase;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class SplicingStreamOutputTests extends ESTestCase {
+
+    public void testSplice() throws IOException {
+        final byte[] fileContent = new byte[randomIntBetween(0, 1 << 16)];
+        random().nextBytes(fileContent);
+        final Path file = createTempFile();
+        Files.write(file, fileContent);
+
+        final List<BytesReference> values = new ArrayList<>();
+        final List<FileRegionBytesReference> regions = new ArrayList<>();
+        for (int i = randomIntBetween(0, 10); i > 0; i--) {
+            if (randomBoolean()) {
+                final int offset = randomIntBetween(0, fileContent.length);
+                final FileRegionBytesReference region =
+                    new FileRegionBytesReference(file, offset, randomIntBetween(0, fileContent.length - offset));
+                values.add(region);
+                regions.add(region);
+            } else {
+                values.add(new BytesArray(randomAlphaOfLengthBetween(0, 100)));
+            }
+        }
+
+        final BytesStreamOutput expected = new BytesStreamOutput();
+        writeValues(expected, values);
+
+        final BytesStreamOutput written = new BytesStreamOutput();
+        final SplicingStreamOutput out = new SplicingStreamOutput(Streams.flushOnCloseStream(written), written);
+        writeValues(out, values);
+        out.close();
+        final BytesReference spliced = out.splice(written.bytes());
+        assertThat(spliced, equalTo(expected.bytes()));
+        assertThat(written.size(), equalTo(expected.size() - regions.stream().mapToInt(BytesReference::length).sum()));
+        if (regions.isEmpty()) {
+            assertThat(spliced, sameInstance(written.bytes()));
+        } else {
+            assertThat(spliced, instanceOf(CompositeBytesReference.class));
+            final List<BytesReference> references = ((CompositeBytesReference) spliced).references();
+            for (FileRegionBytesReference region : regions) {
+                assertThat(references, hasItem(sameInstance(region)));
+            }
+        }
+    }
+
+    private static void writeValues(StreamOutput out, List<BytesReference> values) throws IOException {
+        for (BytesReference value : values) {
+            out.writeString("value");
+            out.writeBytesReference(value);
+        }
+        out.writeString("end");
+    }
+}
@@ -20,22 +20,31 @@
 package org.elasticsearch.http.netty4;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufOutputStream;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelPromise;
 import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.DefaultHttpResponse;
 import io.netty.handler.codec.http.FullHttpRequest;
 import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpChunkedInput;
 import io.netty.handler.codec.http.HttpHeaderNames;
 import io.netty.handler.codec.http.HttpHeaderValues;
 import io.netty.handler.codec.http.HttpHeaders;
 import io.netty.handler.codec.http.HttpMethod;
 import io.netty.handler.codec.http.HttpResponse;
 import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
 import io.netty.handler.codec.http.HttpVersion;
 import io.netty.handler.codec.http.cookie.ServerCookieDecoder;
 import io.netty.handler.codec.http.cookie.ServerCookieEncoder;
+import io.netty.handler.stream.ChunkedInput;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.bytes.BytesArray;
 import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.io.stream.BytesStreamOutput;
 import org.elasticsearch.common.io.stream.ReleasableBytesStreamOutput;
@@ -44,10 +53,14 @@ import org.elasticsearch.common.util.concurrent.ThreadContext;
 import org.elasticsearch.http.netty4.cors.Netty4CorsHandler;
 import org.elasticsearch.http.netty4.pipelining.HttpPipelinedRequest;
 import org.elasticsearch.rest.AbstractRestChannel;
+import org.elasticsearch.rest.BytesRestResponse;
+import org.elasticsearch.rest.ChunkedRestResponse;
+import org.elasticsearch.rest.IncrementalRestContent;
 import org.elasticsearch.rest.RestResponse;
 import org.elasticsearch.rest.RestStatus;
 import org.elasticsearch.transport.netty4.Netty4Utils;
 
+import java.io.IOException;
 import java.util.Collections;
 import java.util.EnumMap;
 import java.util.List;
@@ -91,39 +104,57 @@ final class Netty4HttpChannel extends AbstractRestChannel {
 
     @Override
     public void sendResponse(RestResponse response) {
-        // if the response object was created upstream, then use it;
-        // otherwise, create a new one
-        ByteBuf buffer = Netty4Utils.toByteBuf(response.content());
+        final IncrementalRestContent incrementalContent = request.incrementalContent();
+        if (incrementalContent != null) {
+            // the part of the body the handler did not read is of no use anymore
+            incrementalContent.discard();
+        }
+        if (response instanceof ChunkedRestResponse && HttpMethod.HEAD.equals(nettyRequest.method()) == false && isHttp10() == false) {
+            final ChunkedRestResponse chunkedResponse = (ChunkedRestResponse) response;
+            final ByteBuf firstChunk = channel.alloc().buffer();
+            try {
+                chunkedResponse.writeChunk(new ByteBufOutputStream(firstChunk), ChunkedRestResponse.DEFAULT_CHUNK_SIZE_IN_BYTES);
+            } catch (Exception e) {
+                firstChunk.release();
+                final RestResponse errorResponse = buildErrorResponse(e);
+                sendFullResponse(errorResponse, Netty4Utils.toByteBuf(errorResponse.content()), errorResponse.content());
+                return;
+            }
+            if (chunkedResponse.isDone()) {
+                // the whole content fit into the first chunk, send it at once with a content length
+                sendFullResponse(response, firstChunk, null);
+            } else {
+                sendChunkedResponse(chunkedResponse, firstChunk);
+            }
+        } else {
+            sendFullResponse(response, Netty4Utils.toByteBuf(response.content()), response.content());
+        }
+    }
+
+    private RestResponse buildErrorResponse(Exception e) {
+        try {
+            return new BytesRestResponse(this, e);
+        } catch (IOException inner) {
+            inner.addSuppressed(e);
+            return new BytesRestResponse(RestStatus.INTERNAL_SERVER_ERROR, BytesRestResponse.TEXT_CONTENT_TYPE, BytesArray.EMPTY);
+        }
+    }
+
+    private void sendFullResponse(RestResponse response, ByteBuf buffer, @Nullable BytesReference content) {
         final FullHttpResponse resp;
         if (HttpMethod.HEAD.equals(nettyRequest.method())) {
             resp = newResponse(Unpooled.EMPTY_BUFFER);
         } else {
             resp = newResponse(buffer);
         }
-        resp.setStatus(getStatus(response.status()));
-
-        Netty4CorsHandler.setCorsResponseHeaders(nettyRequest, resp, transport.getCorsConfig());
-
-        String opaque = nettyRequest.headers().get("X-Opaque-Id");
-        if (opaque != null) {
-            setHeaderField(resp, "X-Opaque-Id", opaque);
-        }
-
-        // Add all custom headers
-        addCustomHeaders(resp, response.getHeaders());
-        addCustomHeaders(resp, threadContext.getResponseHeaders());
+        setResponseHeaders(resp, response);
 
-        BytesReference content = response.content();
         boolean releaseContent = content instanceof Releasable;
         boolean releaseBytesStreamOutput = bytesOutputOrNull() instanceof ReleasableBytesStreamOutput;
         try {
-            // If our response doesn't specify a content-type header, set one
-            setHeaderField(resp, HttpHeaderNames.CONTENT_TYPE.toString(), response.contentType(), false);
             // If our response has no content-length, calculate and set one
             setHeaderField(resp, HttpHeaderNames.CONTENT_LENGTH.toString(), String.valueOf(buffer.readableBytes()), false);
 
-            addCookies(resp);
-
             final ChannelPromise promise = channel.newPromise();
 
             if (releaseContent) {
@@ -160,6 +191,68 @@ final class Netty4HttpChannel extends AbstractRestChannel {
         }
     }
 
+    /**
+     * Sends the response with chunked transfer encoding. The chunks are rendered one at a time, on the network thread, whenever
+     * the channel is writable again, so a slow client holds back the rendering instead of piling up rendered content on heap.
+     */
+    private void sendChunkedResponse(ChunkedRestResponse response, ByteBuf firstChunk) {
+        final HttpChunkedInput content = new HttpChunkedInput(new ChunkedRestResponseInput(response, firstChunk));
+        final HttpResponse resp = new DefaultHttpResponse(HttpVersion.HTTP_1_1, getStatus(response.status()));
+        setResponseHeaders(resp, response);
+        HttpUtil.setTransferEncodingChunked(resp, true);
+
+        boolean releaseBytesStreamOutput = bytesOutputOrNull() instanceof ReleasableBytesStreamOutput;
+        try {
+            final ChannelPromise promise = channel.newPromise();
+
+            if (releaseBytesStreamOutput) {
+                promise.addListener(f -> bytesOutputOrNull().close());
+            }
+
+            if (isCloseConnection()) {
+                promise.addListener(ChannelFutureListener.CLOSE);
+            } else {
+                // the client cannot tell a response that failed half way through from a complete one unless we close the connection
+                promise.addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
+            }
+
+            if (pipelinedRequest != null) {
+                channel.writeAndFlush(pipelinedRequest.createHttpResponse(resp, content, promise), promise);
+            } else {
+                channel.write(resp);
+                channel.writeAndFlush(content, promise);
+            }
+            releaseBytesStreamOutput = false;
+        } finally {
+            if (releaseBytesStreamOutput) {
+                bytesOutputOrNull().close();
+            }
+            if (pipelinedRequest != null) {
+                pipelinedRequest.release();
+            }
+        }
+    }
+
+    private void setResponseHeaders(HttpResponse resp, RestResponse response) {
+        resp.setStatus(getStatus(response.status()));
+
+        Netty4CorsHandler.setCorsResponseHeaders(nettyRequest, resp, transport.getCorsConfig());
+
+        String opaque = nettyRequest.headers().get("X-Opaque-Id");
+        if (opaque != null) {
+            setHeaderField(resp, "X-Opaque-Id", opaque);
+        }
+
+        // Add all custom headers
+        addCustomHeaders(resp, response.getHeaders());
+        addCustomHeaders(resp, threadContext.getResponseHeaders());
+
+        // If our response doesn't specify a content-type header, set one
+        setHeaderField(resp, HttpHeaderNames.CONTENT_TYPE.toString(), response.contentType(), false);
+
+        addCookies(resp);
+    }
+
     private void setHeaderField(HttpResponse resp, String headerField, String value) {
         setHeaderField(resp, headerField, value, true);
     }
@@ -223,6 +316,73 @@ final class Netty4HttpChannel extends AbstractRestChannel {
         return response;
     }
 
+    /**
+     * Pulls the chunks of a {@link ChunkedRestResponse} into pooled buffers, one chunk whenever the channel asks for more.
+     */
+    private static final class ChunkedRestResponseInput implements ChunkedInput<ByteBuf> {
+
+        private final ChunkedRestResponse response;
+        private ByteBuf firstChunk;
+        private long progress;
+
+        ChunkedRestResponseInput(ChunkedRestResponse response, ByteBuf firstChunk) {
+            this.response = response;
+            this.firstChunk = firstChunk;
+        }
+
+        @Override
+        public boolean isEndOfInput() {
+            return firstChunk == null && response.isDone();
+        }
+
+        @Override
+        public ByteBuf readChunk(ChannelHandlerContext ctx) throws Exception {
+            return readChunk(ctx.alloc());
+        }
+
+        @Override
+        public ByteBuf readChunk(ByteBufAllocator allocator) throws Exception {
+            final ByteBuf chunk;
+            if (firstChunk != null) {
+                chunk = firstChunk;
+                firstChunk = null;
+            } else if (response.isDone()) {
+                return null;
+            } else {
+                chunk = allocator.buffer();
+                boolean success = false;
+                try {
+                    response.writeChunk(new ByteBufOutputStream(chunk), ChunkedRestResponse.DEFAULT_CHUNK_SIZE_IN_BYTES);
+                    success = true;
+                } finally {
+                    if (success == false) {
+                        chunk.release();
+                    }
+                }
+            }
+            progress += chunk.readableBytes();
+            return chunk;
+        }
+
+        @Override
+        public long length() {
+            return -1;
+        }
+
+        @Override
+        public long progress() {
+            return progress;
+        }
+
+        @Override
+        public void close() {
+            if (firstChunk != null) {
+                firstChunk.release();
+                firstChunk = null;
+            }
+        }
+    }
+
     private static final HttpResponseStatus TOO_MANY_REQUESTS = new HttpResponseStatus(429, "Too Many Requests");
 
     private static Map<RestStatus, HttpResponseStatus> MAP;
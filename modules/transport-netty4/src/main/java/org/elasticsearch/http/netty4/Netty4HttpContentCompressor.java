@@ -0,0 +1,287 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.http.netty4;
+
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.compression.SnappyFrameEncoder;
+import io.netty.handler.codec.compression.ZlibCodecFactory;
+import io.netty.handler.codec.compression.ZlibWrapper;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpContentEncoder;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpObject;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+import org.elasticsearch.common.metrics.CounterMetric;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * Compresses HTTP responses with the best codec that both the client, through the {@code Accept-Encoding} header of the request,
+ * and the node accept. Unlike Netty's {@link io.netty.handler.codec.http.HttpContentCompressor}, responses whose content is smaller
+ * than a minimum size are sent as they are, the compression level can be overridden per endpoint, and the work done is recorded
+ * in {@link CompressionStats}.
+ */
+class Netty4HttpContentCompressor extends HttpContentEncoder {
+
+    /**
+     * The content codings responses can be compressed with.
+     */
+    enum Codec {
+        GZIP("gzip") {
+            @Override
+            ChannelHandler newEncoder(int level) {
+                return ZlibCodecFactory.newZlibEncoder(ZlibWrapper.GZIP, level, 15, 8);
+            }
+        },
+        DEFLATE("deflate") {
+            @Override
+            ChannelHandler newEncoder(int level) {
+                return ZlibCodecFactory.newZlibEncoder(ZlibWrapper.ZLIB, level, 15, 8);
+            }
+        },
+        // much faster than zlib but compresses less, the level is ignored
+        SNAPPY("x-snappy-framed") {
+            @Override
+            ChannelHandler newEncoder(int level) {
+                return new SnappyFrameEncoder();
+            }
+        };
+
+        private final String contentCoding;
+
+        Codec(String contentCoding) {
+            this.contentCoding = contentCoding;
+        }
+
+        String contentCoding() {
+            return contentCoding;
+        }
+
+        abstract ChannelHandler newEncoder(int level);
+
+        static Codec fromContentCoding(String contentCoding) {
+            for (Codec codec : values()) {
+                if (codec.contentCoding.equals(contentCoding)) {
+                    return codec;
+                }
+            }
+            throw new IllegalArgumentException("unknown compression codec [" + contentCoding + "], must be one of [gzip, deflate, "
+                + "x-snappy-framed]");
+        }
+    }
+
+    /**
+     * Counts the bytes that went in and out of the compressors and the time spent compressing, shared by all channels.
+     */
+    static final class CompressionStats {
+        private final CounterMetric uncompressedBytes = new CounterMetric();
+        private final CounterMetric compressedBytes = new CounterMetric();
+        private final CounterMetric timeInNanos = new CounterMetric();
+
+        void onCompressed(long uncompressed, long compressed, long tookInNanos) {
+            uncompressedBytes.inc(uncompressed);
+            compressedBytes.inc(compressed);
+            timeInNanos.inc(tookInNanos);
+        }
+
+        long getUncompressedBytes() {
+            return uncompressedBytes.count();
+        }
+
+        long getCompressedBytes() {
+            return compressedBytes.count();
+        }
+
+        long getTimeInNanos() {
+            return timeInNanos.count();
+        }
+    }
+
+    private final int defaultLevel;
+    private final Map<String, Integer> endpointLevels;
+    private final long minSizeInBytes;
+    private final List<Codec> codecs;
+    private final CompressionStats stats;
+    // the uris of the requests whose responses have not been sent yet, in the same order as the encoder's accept encoding queue
+    private final Queue<String> uris = new ArrayDeque<>();
+    private ChannelHandlerContext ctx;
+    private String uri;
+    private boolean compressing;
+
+    /**
+     * @param defaultLevel   the compression level of endpoints without override
+     * @param endpointLevels the compression level per endpoint, {@code 0} disables compression
+     * @param minSizeInBytes responses whose content length is known and smaller than this are not compressed
+     * @param codecs         the codecs that may be used, in order of preference
+     * @param stats          the stats to record compressed responses in
+     */
+    Netty4HttpContentCompressor(int defaultLevel, Map<String, Integer> endpointLevels, long minSizeInBytes, List<Codec> codecs,
+                                CompressionStats stats) {
+        this.defaultLevel = defaultLevel;
+        this.endpointLevels = endpointLevels;
+        this.minSizeInBytes = minSizeInBytes;
+        this.codecs = codecs;
+        this.stats = stats;
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        this.ctx = ctx;
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, HttpRequest msg, List<Object> out) throws Exception {
+        uris.add(msg.uri());
+        super.decode(ctx, msg, out);
+    }
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, HttpObject msg, List<Object> out) throws Exception {
+        if (msg instanceof HttpResponse) {
+            compressing = false;
+            // the encoder does not consume an accept encoding for interim responses either
+            if (((HttpResponse) msg).status().code() != HttpResponseStatus.CONTINUE.code()) {
+                uri = uris.poll();
+            }
+        }
+        final int uncompressed = msg instanceof HttpContent ? ((HttpContent) msg).content().readableBytes() : 0;
+        final int firstOutput = out.size();
+        final long startTime = System.nanoTime();
+        super.encode(ctx, msg, out);
+        if (compressing) {
+            final long took = System.nanoTime() - startTime;
+            long compressed = 0;
+            for (int i = firstOutput; i < out.size(); i++) {
+                if (out.get(i) instanceof HttpContent) {
+                    compressed += ((HttpContent) out.get(i)).content().readableBytes();
+                }
+            }
+            stats.onCompressed(uncompressed, compressed, took);
+        }
+    }
+
+    @Override
+    protected Result beginEncode(HttpResponse headers, String acceptEncoding) throws Exception {
+        final String contentEncoding = headers.headers().get(HttpHeaderNames.CONTENT_ENCODING);
+        if (contentEncoding != null && HttpHeaderValues.IDENTITY.contentEqualsIgnoreCase(contentEncoding) == false) {
+            // already encoded
+            return null;
+        }
+        final int level = level(uri);
+        if (level == 0) {
+            return null;
+        }
+        final long contentLength = HttpUtil.getContentLength(headers, -1L);
+        if (contentLength >= 0 && contentLength < minSizeInBytes) {
+            return null;
+        }
+        final Codec codec = selectCodec(acceptEncoding, codecs);
+        if (codec == null) {
+            return null;
+        }
+        compressing = true;
+        return new Result(codec.contentCoding(), new EmbeddedChannel(ctx.channel().id(), ctx.channel().metadata().hasDisconnect(),
+            ctx.channel().config(), codec.newEncoder(level)));
+    }
+
+    private int level(String uri) {
+        final String endpoint = endpoint(uri);
+        if (endpoint != null) {
+            final Integer level = endpointLevels.get(endpoint);
+            if (level != null) {
+                return level;
+            }
+        }
+        return defaultLevel;
+    }
+
+    /**
+     * Returns the first element of the path of the given uri that starts with an underscore, eg. {@code _search} for
+     * {@code /index/_search?q=foo}, or {@code null} if there is none.
+     */
+    static String endpoint(String uri) {
+        if (uri == null) {
+            return null;
+        }
+        final int queryStart = uri.indexOf('?');
+        final String path = queryStart >= 0 ? uri.substring(0, queryStart) : uri;
+        for (String element : path.split("/")) {
+            if (element.startsWith("_")) {
+                return element;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Selects the codec the client prefers according to the quality values of the given {@code Accept-Encoding} header, breaking
+     * ties with the order of the given codecs. Returns {@code null} if the client accepts none of them.
+     */
+    static Codec selectCodec(String acceptEncoding, List<Codec> codecs) {
+        float[] qualities = new float[codecs.size()];
+        boolean[] listed = new boolean[codecs.size()];
+        float wildcardQuality = -1.0f;
+        for (String element : acceptEncoding.split(",")) {
+            final String[] parts = element.split(";");
+            final String coding = parts[0].trim().toLowerCase(Locale.ROOT);
+            float quality = 1.0f;
+            for (int i = 1; i < parts.length; i++) {
+                final String parameter = parts[i].trim();
+                if (parameter.startsWith("q=")) {
+                    try {
+                        quality = Float.parseFloat(parameter.substring(2));
+                    } catch (NumberFormatException e) {
+                        quality = 0.0f;
+                    }
+                }
+            }
+            if (coding.equals("*")) {
+                wildcardQuality = quality;
+            } else {
+                for (int i = 0; i < codecs.size(); i++) {
+                    if (codecs.get(i).contentCoding().equals(coding)) {
+                        qualities[i] = quality;
+                        listed[i] = true;
+                    }
+                }
+            }
+        }
+        Codec selected = null;
+        float selectedQuality = 0.0f;
+        for (int i = 0; i < codecs.size(); i++) {
+            final float quality = listed[i] ? qualities[i] : wildcardQuality;
+            if (quality > selectedQuality) {
+                selected = codecs.get(i);
+                selectedQuality = quality;
+            }
+        }
+        return selected;
+    }
+}
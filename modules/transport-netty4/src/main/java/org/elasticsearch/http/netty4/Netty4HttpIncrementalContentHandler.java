@@ -0,0 +1,217 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.http.netty4;
+
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.TooLongFrameException;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.EmptyHttpHeaders;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.LastHttpContent;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.rest.IncrementalRestContent;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
+
+/**
+ * Hands the body of requests whose handler supports it to the handler while it is still being received, see
+ * {@link org.elasticsearch.rest.RestHandler#supportsIncrementalContent()}. Such requests skip the aggregator: they are
+ * passed on as an empty {@link Netty4IncrementalHttpRequest} as soon as their headers arrived, and the chunks of their
+ * body are held here until the handler asks for them. Reading from the channel stops while a chunk is waiting for the
+ * handler, so a slow handler pushes back on the client.
+ */
+class Netty4HttpIncrementalContentHandler extends ChannelInboundHandlerAdapter {
+
+    private final Netty4HttpServerTransport transport;
+    private final long maxContentLength;
+    private Content current;
+
+    Netty4HttpIncrementalContentHandler(Netty4HttpServerTransport transport) {
+        this.transport = transport;
+        this.maxContentLength = transport.maxContentLength.getBytes();
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (current != null && msg instanceof HttpContent) {
+            final Content content = current;
+            if (msg instanceof LastHttpContent) {
+                current = null;
+            }
+            content.onContent((HttpContent) msg);
+        } else if (msg instanceof HttpRequest && msg instanceof FullHttpRequest == false && isIncremental(ctx, (HttpRequest) msg)) {
+            final HttpRequest request = (HttpRequest) msg;
+            if (HttpUtil.is100ContinueExpected(request)) {
+                ctx.writeAndFlush(new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.CONTINUE, Unpooled.EMPTY_BUFFER));
+                request.headers().remove(HttpHeaderNames.EXPECT);
+            }
+            current = new Content(ctx, HttpUtil.getContentLength(request, -1L));
+            ctx.fireChannelRead(new Netty4IncrementalHttpRequest(request, current));
+        } else {
+            ctx.fireChannelRead(msg);
+        }
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        if (current != null) {
+            current.fail(new ClosedChannelException());
+            current = null;
+        }
+        super.channelInactive(ctx);
+    }
+
+    private boolean isIncremental(ChannelHandlerContext ctx, HttpRequest request) {
+        if (request.decoderResult().isSuccess() == false) {
+            return false;
+        }
+        // leave unsupported expectations and bodies that are too large to be rejected by the aggregator
+        if (request.headers().contains(HttpHeaderNames.EXPECT) && HttpUtil.is100ContinueExpected(request) == false) {
+            return false;
+        }
+        final long contentLength = HttpUtil.getContentLength(request, -1L);
+        if (contentLength > maxContentLength) {
+            return false;
+        }
+        if (contentLength <= 0 && HttpUtil.isTransferEncodingChunked(request) == false) {
+            return false;
+        }
+        final FullHttpRequest headers = new DefaultFullHttpRequest(request.protocolVersion(), request.method(), request.uri(),
+            Unpooled.EMPTY_BUFFER, request.headers(), EmptyHttpHeaders.INSTANCE);
+        try {
+            return transport.supportsIncrementalContent(new Netty4HttpRequest(transport.xContentRegistry, headers, ctx.channel()));
+        } catch (Exception e) {
+            // a request that can't be parsed is left for the regular path to reject
+            return false;
+        }
+    }
+
+    /**
+     * The body of a request that is being received. Its state is only ever touched on the event loop of the channel.
+     */
+    private final class Content implements IncrementalRestContent {
+
+        private final ChannelHandlerContext ctx;
+        private final long contentLength;
+        private final ArrayDeque<BytesReference> chunks = new ArrayDeque<>();
+        private ChunkHandler handler;
+        private long receivedBytes;
+        private boolean lastReceived;
+        private boolean discarded;
+        private Exception failure;
+
+        Content(ChannelHandlerContext ctx, long contentLength) {
+            this.ctx = ctx;
+            this.contentLength = contentLength;
+        }
+
+        @Override
+        public long contentLength() {
+            return contentLength;
+        }
+
+        @Override
+        public void next(ChunkHandler handler) {
+            ctx.channel().eventLoop().execute(() -> {
+                if (discarded == false) {
+                    assert this.handler == null : "only one chunk can be asked for at a time";
+                    this.handler = handler;
+                    deliver();
+                }
+            });
+        }
+
+        @Override
+        public void discard() {
+            ctx.channel().eventLoop().execute(() -> {
+                discarded = true;
+                handler = null;
+                chunks.clear();
+                updateAutoRead();
+            });
+        }
+
+        void onContent(HttpContent content) {
+            try {
+                if (discarded || failure != null) {
+                    return;
+                }
+                if (content.decoderResult().isSuccess() == false) {
+                    fail(new IllegalArgumentException("invalid request body", content.decoderResult().cause()));
+                    ctx.close();
+                    return;
+                }
+                receivedBytes += content.content().readableBytes();
+                if (receivedBytes > maxContentLength) {
+                    // the same as the aggregator does for a chunked body that is too large
+                    fail(new TooLongFrameException("HTTP content length exceeded " + maxContentLength + " bytes."));
+                    ctx.writeAndFlush(new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.REQUEST_ENTITY_TOO_LARGE,
+                        Unpooled.EMPTY_BUFFER)).addListener(ChannelFutureListener.CLOSE);
+                    return;
+                }
+                // copied so that the handler can hold on to the chunk for as long as it needs
+                chunks.add(new BytesArray(ByteBufUtil.getBytes(content.content())));
+                lastReceived = content instanceof LastHttpContent;
+                deliver();
+            } finally {
+                content.release();
+            }
+        }
+
+        void fail(Exception e) {
+            if (discarded == false && failure == null) {
+                failure = e;
+                chunks.clear();
+                deliver();
+            }
+        }
+
+        private void deliver() {
+            final ChunkHandler handler = this.handler;
+            if (handler != null && chunks.isEmpty() == false) {
+                this.handler = null;
+                final BytesReference chunk = chunks.poll();
+                handler.onChunk(chunk, lastReceived && chunks.isEmpty());
+            } else if (handler != null && failure != null) {
+                this.handler = null;
+                handler.onFailure(failure);
+            }
+            updateAutoRead();
+        }
+
+        private void updateAutoRead() {
+            final boolean waitingForHandler = chunks.isEmpty() == false && lastReceived == false && discarded == false;
+            ctx.channel().config().setAutoRead(waitingForHandler == false);
+        }
+    }
+}
@@ -24,9 +24,11 @@ import io.netty.handler.codec.http.FullHttpRequest;
 import io.netty.handler.codec.http.HttpHeaders;
 import io.netty.handler.codec.http.HttpMethod;
 
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.bytes.BytesArray;
 import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.xcontent.NamedXContentRegistry;
+import org.elasticsearch.rest.IncrementalRestContent;
 import org.elasticsearch.rest.RestRequest;
 import org.elasticsearch.transport.netty4.Netty4Utils;
 
@@ -44,11 +46,18 @@ public class Netty4HttpRequest extends RestRequest {
     private final FullHttpRequest request;
     private final Channel channel;
     private final BytesReference content;
+    private final IncrementalRestContent incrementalContent;
 
     Netty4HttpRequest(NamedXContentRegistry xContentRegistry, FullHttpRequest request, Channel channel) {
+        this(xContentRegistry, request, channel, null);
+    }
+
+    Netty4HttpRequest(NamedXContentRegistry xContentRegistry, FullHttpRequest request, Channel channel,
+                      @Nullable IncrementalRestContent incrementalContent) {
         super(xContentRegistry, request.uri(), new HttpHeadersMap(request.headers()));
         this.request = request;
         this.channel = channel;
+        this.incrementalContent = incrementalContent;
         if (request.content().isReadable()) {
             this.content = Netty4Utils.toBytesReference(request.content());
         } else {
@@ -101,6 +110,11 @@ public class Netty4HttpRequest extends RestRequest {
         return content;
     }
 
+    @Override
+    public IncrementalRestContent incrementalContent() {
+        return incrementalContent;
+    }
+
     /**
      * Returns the remote address where this rest request channel is "connected to".  The
      * returned {@link SocketAddress} is supposed to be down-cast into more
@@ -27,6 +27,7 @@ import io.netty.handler.codec.http.DefaultFullHttpRequest;
 import io.netty.handler.codec.http.FullHttpRequest;
 import org.elasticsearch.common.util.concurrent.ThreadContext;
 import org.elasticsearch.http.netty4.pipelining.HttpPipelinedRequest;
+import org.elasticsearch.rest.IncrementalRestContent;
 import org.elasticsearch.transport.netty4.Netty4Utils;
 
 @ChannelHandler.Sharable
@@ -64,7 +65,10 @@ class Netty4HttpRequestHandler extends SimpleChannelInboundHandler<Object> {
                         Unpooled.copiedBuffer(request.content()),
                         request.headers(),
                         request.trailingHeaders());
-        final Netty4HttpRequest httpRequest = new Netty4HttpRequest(serverTransport.xContentRegistry, copy, ctx.channel());
+        final IncrementalRestContent incrementalContent = request instanceof Netty4IncrementalHttpRequest ?
+                ((Netty4IncrementalHttpRequest) request).incrementalContent() : null;
+        final Netty4HttpRequest httpRequest =
+                new Netty4HttpRequest(serverTransport.xContentRegistry, copy, ctx.channel(), incrementalContent);
         final Netty4HttpChannel channel =
                 new Netty4HttpChannel(serverTransport, httpRequest, pipelinedRequest, detailedErrorsEnabled, threadContext);
 
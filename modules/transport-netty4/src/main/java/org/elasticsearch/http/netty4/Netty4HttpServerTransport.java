@@ -36,12 +36,12 @@ import io.netty.channel.oio.OioEventLoopGroup;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.channel.socket.oio.OioServerSocketChannel;
 import io.netty.handler.codec.ByteToMessageDecoder;
-import io.netty.handler.codec.http.HttpContentCompressor;
 import io.netty.handler.codec.http.HttpContentDecompressor;
 import io.netty.handler.codec.http.HttpMethod;
 import io.netty.handler.codec.http.HttpObjectAggregator;
 import io.netty.handler.codec.http.HttpRequestDecoder;
 import io.netty.handler.codec.http.HttpResponseEncoder;
+import io.netty.handler.stream.ChunkedWriteHandler;
 import io.netty.handler.timeout.ReadTimeoutException;
 import org.apache.logging.log4j.message.ParameterizedMessage;
 import org.apache.logging.log4j.util.Supplier;
@@ -85,7 +85,10 @@ import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.regex.Pattern;
@@ -101,7 +104,10 @@ import static org.elasticsearch.http.HttpTransportSettings.SETTING_CORS_ENABLED;
 import static org.elasticsearch.http.HttpTransportSettings.SETTING_CORS_MAX_AGE;
 import static org.elasticsearch.http.HttpTransportSettings.SETTING_HTTP_BIND_HOST;
 import static org.elasticsearch.http.HttpTransportSettings.SETTING_HTTP_COMPRESSION;
+import static org.elasticsearch.http.HttpTransportSettings.SETTING_HTTP_COMPRESSION_CODECS;
 import static org.elasticsearch.http.HttpTransportSettings.SETTING_HTTP_COMPRESSION_LEVEL;
+import static org.elasticsearch.http.HttpTransportSettings.SETTING_HTTP_COMPRESSION_LEVELS;
+import static org.elasticsearch.http.HttpTransportSettings.SETTING_HTTP_COMPRESSION_MIN_SIZE;
 import static org.elasticsearch.http.HttpTransportSettings.SETTING_HTTP_DETAILED_ERRORS_ENABLED;
 import static org.elasticsearch.http.HttpTransportSettings.SETTING_HTTP_MAX_CHUNK_SIZE;
 import static org.elasticsearch.http.HttpTransportSettings.SETTING_HTTP_MAX_CONTENT_LENGTH;
@@ -174,6 +180,14 @@ public class Netty4HttpServerTransport extends AbstractLifecycleComponent implem
 
     protected final int compressionLevel;
 
+    protected final Map<String, Integer> compressionLevels;
+
+    protected final ByteSizeValue compressionMinSize;
+
+    protected final List<Netty4HttpContentCompressor.Codec> compressionCodecs;
+
+    private final Netty4HttpContentCompressor.CompressionStats compressionStats = new Netty4HttpContentCompressor.CompressionStats();
+
     protected final boolean resetCookies;
 
     protected final PortsRange port;
@@ -256,6 +270,17 @@ public class Netty4HttpServerTransport extends AbstractLifecycleComponent implem
 
         this.compression = SETTING_HTTP_COMPRESSION.get(settings);
         this.compressionLevel = SETTING_HTTP_COMPRESSION_LEVEL.get(settings);
+        final Map<String, Integer> compressionLevels = new HashMap<>();
+        for (Map.Entry<String, String> entry : SETTING_HTTP_COMPRESSION_LEVELS.get(settings).getAsMap().entrySet()) {
+            compressionLevels.put(entry.getKey(), Integer.parseInt(entry.getValue()));
+        }
+        this.compressionLevels = Collections.unmodifiableMap(compressionLevels);
+        this.compressionMinSize = SETTING_HTTP_COMPRESSION_MIN_SIZE.get(settings);
+        final List<Netty4HttpContentCompressor.Codec> compressionCodecs = new ArrayList<>();
+        for (String codec : SETTING_HTTP_COMPRESSION_CODECS.get(settings)) {
+            compressionCodecs.add(Netty4HttpContentCompressor.Codec.fromContentCoding(codec));
+        }
+        this.compressionCodecs = Collections.unmodifiableList(compressionCodecs);
         this.pipelining = SETTING_PIPELINING.get(settings);
         this.pipeliningMaxEvents = SETTING_PIPELINING_MAX_EVENTS.get(settings);
         this.corsConfig = buildCorsConfig(settings);
@@ -492,7 +517,8 @@ public class Netty4HttpServerTransport extends AbstractLifecycleComponent implem
     @Override
     public HttpStats stats() {
         Netty4OpenChannelsHandler channels = serverOpenChannels;
-        return new HttpStats(channels == null ? 0 : channels.numberOfOpenChannels(), channels == null ? 0 : channels.totalChannels());
+        return new HttpStats(channels == null ? 0 : channels.numberOfOpenChannels(), channels == null ? 0 : channels.totalChannels(),
+            compressionStats.getUncompressedBytes(), compressionStats.getCompressedBytes(), compressionStats.getTimeInNanos());
     }
 
     public Netty4CorsConfig getCorsConfig() {
@@ -506,6 +532,10 @@ public class Netty4HttpServerTransport extends AbstractLifecycleComponent implem
         }
     }
 
+    boolean supportsIncrementalContent(final RestRequest request) {
+        return dispatcher.supportsIncrementalContent(request);
+    }
+
     void dispatchBadRequest(final RestRequest request, final RestChannel channel, final Throwable cause) {
         final ThreadContext threadContext = threadPool.getThreadContext();
         try (ThreadContext.StoredContext ignore = threadContext.stashContext()) {
@@ -568,14 +598,18 @@ public class Netty4HttpServerTransport extends AbstractLifecycleComponent implem
             ch.pipeline().addLast("decoder", decoder);
             ch.pipeline().addLast("decoder_compress", new HttpContentDecompressor());
             ch.pipeline().addLast("encoder", new HttpResponseEncoder());
+            ch.pipeline().addLast("incremental_content", new Netty4HttpIncrementalContentHandler(transport));
             final HttpObjectAggregator aggregator = new HttpObjectAggregator(Math.toIntExact(transport.maxContentLength.getBytes()));
             if (transport.maxCompositeBufferComponents != -1) {
                 aggregator.setMaxCumulationBufferComponents(transport.maxCompositeBufferComponents);
             }
             ch.pipeline().addLast("aggregator", aggregator);
             if (transport.compression) {
-                ch.pipeline().addLast("encoder_compress", new HttpContentCompressor(transport.compressionLevel));
+                ch.pipeline().addLast("encoder_compress", new Netty4HttpContentCompressor(transport.compressionLevel,
+                    transport.compressionLevels, transport.compressionMinSize.getBytes(), transport.compressionCodecs,
+                    transport.compressionStats));
             }
+            ch.pipeline().addLast("chunked_writer", new ChunkedWriteHandler());
             if (SETTING_CORS_ENABLED.get(transport.settings())) {
                 ch.pipeline().addLast("cors", new Netty4CorsHandler(transport.getCorsConfig()));
             }
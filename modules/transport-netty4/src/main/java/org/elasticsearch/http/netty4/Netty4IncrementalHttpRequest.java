@@ -0,0 +1,45 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.http.netty4;
+
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.EmptyHttpHeaders;
+import io.netty.handler.codec.http.HttpRequest;
+import org.elasticsearch.rest.IncrementalRestContent;
+
+/**
+ * A request whose body is handed to its handler while it is still being received. It only carries the headers of the
+ * request, the body arrives through {@link #incrementalContent()}.
+ */
+class Netty4IncrementalHttpRequest extends DefaultFullHttpRequest {
+
+    private final IncrementalRestContent incrementalContent;
+
+    Netty4IncrementalHttpRequest(HttpRequest request, IncrementalRestContent incrementalContent) {
+        super(request.protocolVersion(), request.method(), request.uri(), Unpooled.EMPTY_BUFFER, request.headers(),
+            EmptyHttpHeaders.INSTANCE);
+        this.incrementalContent = incrementalContent;
+    }
+
+    IncrementalRestContent incrementalContent() {
+        return incrementalContent;
+    }
+}
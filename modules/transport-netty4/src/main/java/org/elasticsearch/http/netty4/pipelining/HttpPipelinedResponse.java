@@ -21,24 +21,62 @@ package org.elasticsearch.http.netty4.pipelining;
 
 import io.netty.channel.ChannelPromise;
 import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpChunkedInput;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.util.AbstractReferenceCounted;
 import io.netty.util.ReferenceCounted;
+import org.elasticsearch.common.Nullable;
 
 class HttpPipelinedResponse implements Comparable<HttpPipelinedResponse>, ReferenceCounted {
 
-    private final FullHttpResponse response;
+    private final HttpResponse response;
+    private final HttpChunkedInput content;
+    private final ReferenceCounted resources;
     private final ChannelPromise promise;
     private final int sequence;
 
     HttpPipelinedResponse(FullHttpResponse response, ChannelPromise promise, int sequence) {
         this.response = response;
+        this.content = null;
+        this.resources = response;
         this.promise = promise;
         this.sequence = sequence;
     }
 
-    public FullHttpResponse response() {
+    HttpPipelinedResponse(HttpResponse response, HttpChunkedInput content, ChannelPromise promise, int sequence) {
+        this.response = response;
+        this.content = content;
+        this.resources = new AbstractReferenceCounted() {
+            @Override
+            protected void deallocate() {
+                try {
+                    content.close();
+                } catch (Exception e) {
+                    // nothing was sent yet, there is nobody to report to
+                }
+            }
+
+            @Override
+            public ReferenceCounted touch(Object hint) {
+                return this;
+            }
+        };
+        this.promise = promise;
+        this.sequence = sequence;
+    }
+
+    public HttpResponse response() {
         return response;
     }
 
+    /**
+     * The content to write after the response, or {@code null} if the response is a {@link FullHttpResponse}.
+     */
+    @Nullable
+    public HttpChunkedInput content() {
+        return content;
+    }
+
     public ChannelPromise promise() {
         return promise;
     }
@@ -54,41 +92,41 @@ class HttpPipelinedResponse implements Comparable<HttpPipelinedResponse>, Refere
 
     @Override
     public int refCnt() {
-        return response.refCnt();
+        return resources.refCnt();
     }
 
     @Override
     public ReferenceCounted retain() {
-        response.retain();
+        resources.retain();
         return this;
     }
 
     @Override
     public ReferenceCounted retain(int increment) {
-        response.retain(increment);
+        resources.retain(increment);
         return this;
     }
 
     @Override
     public ReferenceCounted touch() {
-        response.touch();
+        resources.touch();
         return this;
     }
 
     @Override
     public ReferenceCounted touch(Object hint) {
-        response.touch(hint);
+        resources.touch(hint);
         return this;
     }
 
     @Override
     public boolean release() {
-        return response.release();
+        return resources.release();
     }
 
     @Override
     public boolean release(int decrement) {
-        return response.release(decrement);
+        return resources.release(decrement);
     }
 
 }
@@ -0,0 +1,116 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.transport.netty4;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.CompositeByteBuf;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.io.stream.BytesStream;
+import org.elasticsearch.common.util.BigArrays;
+
+/**
+ * A {@link BytesStream} that writes into pages of direct memory taken from a {@link ByteBufAllocator} so that serialized
+ * messages can be written to the socket without copying them off-heap first. The pages are accounted for in the given
+ * circuit breaker and are released, together with the breaker reservation, when the stream is closed.
+ */
+final class ByteBufStreamOutput extends BytesStream {
+
+    static final int PAGE_SIZE = BigArrays.PAGE_SIZE_IN_BYTES;
+
+    private final ByteBufAllocator allocator;
+    private final CircuitBreaker breaker;
+    private final CompositeByteBuf buffer;
+    private long reservedBytes;
+    private boolean closed;
+
+    ByteBufStreamOutput(ByteBufAllocator allocator, CircuitBreaker breaker) {
+        this.allocator = allocator;
+        this.breaker = breaker;
+        this.buffer = allocator.compositeDirectBuffer(Integer.MAX_VALUE);
+    }
+
+    @Override
+    public void writeByte(byte b) {
+        ensureWritable(1);
+        buffer.writeByte(b);
+    }
+
+    @Override
+    public void writeBytes(byte[] b, int offset, int length) {
+        ensureWritable(length);
+        buffer.writeBytes(b, offset, length);
+    }
+
+    private void ensureWritable(int length) {
+        ensureOpen();
+        while (buffer.writableBytes() < length) {
+            breaker.addEstimateBytesAndMaybeBreak(PAGE_SIZE, "<transport_outbound>");
+            reservedBytes += PAGE_SIZE;
+            final ByteBuf page = allocator.directBuffer(PAGE_SIZE, PAGE_SIZE);
+            // the composite only exposes the readable part of its components
+            page.writerIndex(PAGE_SIZE);
+            buffer.addComponent(false, page);
+        }
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("stream is already closed");
+        }
+    }
+
+    @Override
+    public long position() {
+        return buffer.writerIndex();
+    }
+
+    /**
+     * Returns the bytes written so far. The returned reference shares the pages of this stream and must not be used after
+     * the stream is closed.
+     */
+    @Override
+    public BytesReference bytes() {
+        ensureOpen();
+        return Netty4Utils.toBytesReference(buffer);
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void reset() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void close() {
+        if (closed == false) {
+            closed = true;
+            try {
+                buffer.release();
+            } finally {
+                breaker.addWithoutBreaking(-reservedBytes);
+            }
+        }
+    }
+}
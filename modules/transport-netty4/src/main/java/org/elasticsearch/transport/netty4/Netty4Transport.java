@@ -21,6 +21,8 @@ package org.elasticsearch.transport.netty4;
 
 import io.netty.bootstrap.Bootstrap;
 import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.channel.AdaptiveRecvByteBufAllocator;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
@@ -29,6 +31,7 @@ import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelPromise;
 import io.netty.channel.FixedRecvByteBufAllocator;
 import io.netty.channel.RecvByteBufAllocator;
 import io.netty.channel.nio.NioEventLoopGroup;
@@ -37,6 +40,7 @@ import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.channel.socket.nio.NioSocketChannel;
 import io.netty.channel.socket.oio.OioServerSocketChannel;
 import io.netty.channel.socket.oio.OioSocketChannel;
+import io.netty.util.ReferenceCountUtil;
 import io.netty.util.concurrent.Future;
 import org.apache.logging.log4j.message.ParameterizedMessage;
 import org.apache.logging.log4j.util.Supplier;
@@ -46,7 +50,9 @@ import org.elasticsearch.cluster.node.DiscoveryNode;
 import org.elasticsearch.common.SuppressForbidden;
 import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.collect.Tuple;
+import org.elasticsearch.common.io.stream.BytesStream;
 import org.elasticsearch.common.io.stream.NamedWriteableRegistry;
+import org.elasticsearch.common.lease.Releasable;
 import org.elasticsearch.common.lease.Releasables;
 import org.elasticsearch.common.network.NetworkService;
 import org.elasticsearch.common.network.NetworkService.TcpSettings;
@@ -76,6 +82,7 @@ import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
@@ -119,6 +126,12 @@ public class Netty4Transport extends TcpTransport<Channel> {
         byteSizeSetting("transport.netty.receive_predictor_max", NETTY_RECEIVE_PREDICTOR_SIZE, Property.NodeScope, Property.Shared);
     public static final Setting<Integer> NETTY_BOSS_COUNT =
         intSetting("transport.netty.boss_count", 1, 1, Property.NodeScope, Property.Shared);
+    /**
+     * If enabled, outgoing messages are serialized straight into pooled direct buffers instead of heap pages that netty would
+     * otherwise copy into direct memory before writing them to the socket.
+     */
+    public static final Setting<Boolean> NETTY_DIRECT_OUTBOUND_BUFFERS =
+        Setting.boolSetting("transport.netty.direct_outbound_buffers", false, Property.NodeScope);
 
 
     protected final ByteSizeValue maxCumulationBufferCapacity;
@@ -127,6 +140,7 @@ public class Netty4Transport extends TcpTransport<Channel> {
     protected final int workerCount;
     protected final ByteSizeValue receivePredictorMin;
     protected final ByteSizeValue receivePredictorMax;
+    protected final boolean directOutboundBuffers;
     // package private for testing
     volatile Netty4OpenChannelsHandler serverOpenChannels;
     protected volatile Bootstrap bootstrap;
@@ -139,6 +153,7 @@ public class Netty4Transport extends TcpTransport<Channel> {
         this.workerCount = WORKER_COUNT.get(settings);
         this.maxCumulationBufferCapacity = NETTY_MAX_CUMULATION_BUFFER_CAPACITY.get(settings);
         this.maxCompositeBufferComponents = NETTY_MAX_COMPOSITE_BUFFER_COMPONENTS.get(settings);
+        this.directOutboundBuffers = NETTY_DIRECT_OUTBOUND_BUFFERS.get(settings);
 
         // See AdaptiveReceiveBufferSizePredictor#DEFAULT_XXX for default values in netty..., we can use higher ones for us, even fixed one
         this.receivePredictorMin = NETTY_RECEIVE_PREDICTOR_MIN.get(settings);
@@ -391,9 +406,52 @@ public class Netty4Transport extends TcpTransport<Channel> {
     }
 
     @Override
-    protected void sendMessage(Channel channel, BytesReference reference, Runnable sendListener) {
-        final ChannelFuture future = channel.writeAndFlush(Netty4Utils.toByteBuf(reference));
-        future.addListener(f -> sendListener.run());
+    protected BytesStream newOutboundStream() {
+        if (directOutboundBuffers) {
+            return new ByteBufStreamOutput(PooledByteBufAllocator.DEFAULT, getInFlightRequestBreaker());
+        }
+        return super.newOutboundStream();
+    }
+
+    @Override
+    protected Releasable retainReceivedMessage(BytesReference message) {
+        if (message instanceof ByteBufBytesReference) {
+            // the frame decoder neither compacts nor reuses its cumulation buffer while someone else holds a reference to it
+            final ByteBuf buffer = ((ByteBufBytesReference) message).toByteBuf().retain();
+            return buffer::release;
+        }
+        return null;
+    }
+
+    @Override
+    protected void sendMessage(Channel channel, BytesReference reference, Runnable sendListener) throws IOException {
+        if (Netty4Utils.containsFileRegion(reference) && Netty4Utils.supportsFileRegions(channel)) {
+            sendMessageWithFileRegions(channel, reference, sendListener);
+        } else {
+            final ChannelFuture future = channel.writeAndFlush(Netty4Utils.toByteBuf(reference));
+            future.addListener(f -> sendListener.run());
+        }
+    }
+
+    /**
+     * Writes the buffers and file regions that make up the message on the event loop of the channel. This keeps the parts of the
+     * message together since no other message can be written to the channel in between.
+     */
+    private void sendMessageWithFileRegions(Channel channel, BytesReference reference, Runnable sendListener) throws IOException {
+        final List<Object> messages = Netty4Utils.toMessages(reference);
+        final ChannelPromise promise = channel.newPromise();
+        promise.addListener(f -> sendListener.run());
+        try {
+            channel.eventLoop().execute(() -> {
+                for (int i = 0; i < messages.size() - 1; i++) {
+                    channel.write(messages.get(i));
+                }
+                channel.writeAndFlush(messages.get(messages.size() - 1), promise);
+            });
+        } catch (RejectedExecutionException e) {
+            messages.forEach(ReferenceCountUtil::release);
+            throw e;
+        }
     }
 
     @Override
@@ -24,16 +24,24 @@ import io.netty.buffer.CompositeByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
+import io.netty.channel.DefaultFileRegion;
+import io.netty.channel.FileRegion;
+import io.netty.handler.ssl.SslHandler;
 import io.netty.util.NettyRuntime;
+import io.netty.util.ReferenceCountUtil;
 import io.netty.util.internal.logging.InternalLogger;
 import io.netty.util.internal.logging.InternalLoggerFactory;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.BytesRefIterator;
 import org.elasticsearch.common.Booleans;
 import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.bytes.CompositeBytesReference;
+import org.elasticsearch.common.bytes.FileRegionBytesReference;
 import org.elasticsearch.common.logging.ESLoggerFactory;
 
 import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -105,23 +113,112 @@ public class Netty4Utils {
         if (reference instanceof ByteBufBytesReference) {
             return ((ByteBufBytesReference) reference).toByteBuf();
         } else {
-            final BytesRefIterator iterator = reference.iterator();
             // usually we have one, two, or three components from the header, the message, and a buffer
             final List<ByteBuf> buffers = new ArrayList<>(3);
+            addBuffers(reference, buffers);
+            final CompositeByteBuf composite = Unpooled.compositeBuffer(buffers.size());
+            composite.addComponents(true, buffers);
+            return composite;
+        }
+    }
+
+    private static void addBuffers(final BytesReference reference, final List<ByteBuf> buffers) {
+        if (reference instanceof CompositeBytesReference) {
+            // unwrap the components so that buffers which are already netty buffers, like direct outbound messages, are not copied
+            for (BytesReference component : ((CompositeBytesReference) reference).references()) {
+                addBuffers(component, buffers);
+            }
+        } else if (reference instanceof ByteBufBytesReference) {
+            if (reference.length() > 0) {
+                // the composite releases its components once written, the buffer itself is released by its owner
+                buffers.add(((ByteBufBytesReference) reference).toByteBuf().retain());
+            }
+        } else {
+            final BytesRefIterator iterator = reference.iterator();
             try {
                 BytesRef slice;
                 while ((slice = iterator.next()) != null) {
                     buffers.add(Unpooled.wrappedBuffer(slice.bytes, slice.offset, slice.length));
                 }
-                final CompositeByteBuf composite = Unpooled.compositeBuffer(buffers.size());
-                composite.addComponents(true, buffers);
-                return composite;
             } catch (IOException ex) {
                 throw new AssertionError("no IO happens here", ex);
             }
         }
     }
 
+    /**
+     * Returns <code>true</code> if the given reference contains {@link FileRegionBytesReference}s.
+     */
+    static boolean containsFileRegion(final BytesReference reference) {
+        if (reference instanceof FileRegionBytesReference) {
+            return true;
+        } else if (reference instanceof CompositeBytesReference) {
+            for (BytesReference component : ((CompositeBytesReference) reference).references()) {
+                if (containsFileRegion(component)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns <code>true</code> if {@link FileRegion}s can be written to the given channel. They bypass the handlers that transform
+     * bytes, so channels that encrypt what they write, like the ones of a transport secured with TLS, need the bytes to be copied.
+     */
+    static boolean supportsFileRegions(final Channel channel) {
+        return channel.pipeline().get(SslHandler.class) == null;
+    }
+
+    /**
+     * Turns the given BytesReference into the messages to write to a channel, in order. In contrast to {@link #toByteBuf(BytesReference)}
+     * the {@link FileRegionBytesReference}s of the reference become {@link FileRegion}s that are written straight from the file.
+     */
+    static List<Object> toMessages(final BytesReference reference) throws IOException {
+        final List<Object> messages = new ArrayList<>();
+        final List<ByteBuf> buffers = new ArrayList<>();
+        boolean success = false;
+        try {
+            addMessages(reference, messages, buffers);
+            addBuffersAsMessage(messages, buffers);
+            success = true;
+            return messages;
+        } finally {
+            if (success == false) {
+                messages.forEach(ReferenceCountUtil::release);
+                buffers.forEach(ReferenceCountUtil::release);
+            }
+        }
+    }
+
+    private static void addMessages(final BytesReference reference, final List<Object> messages, final List<ByteBuf> buffers)
+            throws IOException {
+        if (reference instanceof CompositeBytesReference) {
+            for (BytesReference component : ((CompositeBytesReference) reference).references()) {
+                addMessages(component, messages, buffers);
+            }
+        } else if (reference instanceof FileRegionBytesReference) {
+            final FileRegionBytesReference region = (FileRegionBytesReference) reference;
+            if (region.length() > 0) {
+                addBuffersAsMessage(messages, buffers);
+                // the file region closes the channel once it has been written
+                final FileChannel channel = FileChannel.open(region.path(), StandardOpenOption.READ);
+                messages.add(new DefaultFileRegion(channel, region.position(), region.length()));
+            }
+        } else {
+            addBuffers(reference, buffers);
+        }
+    }
+
+    private static void addBuffersAsMessage(final List<Object> messages, final List<ByteBuf> buffers) {
+        if (buffers.isEmpty() == false) {
+            final CompositeByteBuf composite = Unpooled.compositeBuffer(buffers.size());
+            composite.addComponents(true, buffers);
+            buffers.clear();
+            messages.add(composite);
+        }
+    }
+
     /**
      * Wraps the given ChannelBuffer with a BytesReference
      */
@@ -20,6 +20,7 @@
 package org.elasticsearch.http.netty4;
 
 import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelConfig;
@@ -34,11 +35,16 @@ import io.netty.channel.embedded.EmbeddedChannel;
 import io.netty.handler.codec.http.DefaultFullHttpRequest;
 import io.netty.handler.codec.http.FullHttpRequest;
 import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpContent;
 import io.netty.handler.codec.http.HttpHeaderNames;
 import io.netty.handler.codec.http.HttpHeaderValues;
 import io.netty.handler.codec.http.HttpMethod;
 import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
 import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.handler.stream.ChunkedWriteHandler;
 import io.netty.util.Attribute;
 import io.netty.util.AttributeKey;
 import org.elasticsearch.common.bytes.BytesReference;
@@ -53,6 +59,7 @@ import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.common.util.ByteArray;
 import org.elasticsearch.common.util.MockBigArrays;
 import org.elasticsearch.common.xcontent.NamedXContentRegistry;
+import org.elasticsearch.common.xcontent.ToXContent;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.json.JsonXContent;
 import org.elasticsearch.http.HttpTransportSettings;
@@ -61,6 +68,7 @@ import org.elasticsearch.http.netty4.cors.Netty4CorsHandler;
 import org.elasticsearch.http.netty4.pipelining.HttpPipelinedRequest;
 import org.elasticsearch.indices.breaker.NoneCircuitBreakerService;
 import org.elasticsearch.rest.BytesRestResponse;
+import org.elasticsearch.rest.ChunkedRestResponse;
 import org.elasticsearch.rest.RestResponse;
 import org.elasticsearch.rest.RestStatus;
 import org.elasticsearch.test.ESTestCase;
@@ -83,6 +91,7 @@ import static org.elasticsearch.http.HttpTransportSettings.SETTING_CORS_ALLOW_ME
 import static org.elasticsearch.http.HttpTransportSettings.SETTING_CORS_ALLOW_ORIGIN;
 import static org.elasticsearch.http.HttpTransportSettings.SETTING_CORS_ENABLED;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.not;
@@ -313,6 +322,86 @@ public class Netty4HttpChannelTests extends ESTestCase {
         }
     }
 
+    public void testChunkedResponse() throws IOException {
+        final Settings settings = Settings.builder().build();
+        try (Netty4HttpServerTransport httpServerTransport =
+                 new Netty4HttpServerTransport(settings, networkService, bigArrays, threadPool, xContentRegistry(), new NullDispatcher())) {
+            final FullHttpRequest httpRequest = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/");
+            final EmbeddedChannel embeddedChannel = new EmbeddedChannel(new ChunkedWriteHandler());
+            final Netty4HttpRequest request = new Netty4HttpRequest(xContentRegistry(), httpRequest, embeddedChannel);
+            final Netty4HttpChannel channel =
+                new Netty4HttpChannel(httpServerTransport, request, null, randomBoolean(), threadPool.getThreadContext());
+
+            final List<ToXContent> fragments = randomFragments(ChunkedRestResponse.DEFAULT_CHUNK_SIZE_IN_BYTES * 3);
+            final BytesReference expected = ChunkedRestResponse.fromXContent(channel, RestStatus.OK, fragments::iterator).content();
+            channel.sendResponse(ChunkedRestResponse.fromXContent(channel, RestStatus.OK, fragments::iterator));
+
+            final HttpResponse response = embeddedChannel.readOutbound();
+            assertThat(response, not(instanceOf(FullHttpResponse.class)));
+            assertThat(response.status(), equalTo(HttpResponseStatus.OK));
+            assertTrue(HttpUtil.isTransferEncodingChunked(response));
+            assertThat(response.headers().get(HttpHeaderNames.CONTENT_LENGTH), nullValue());
+            assertThat(response.headers().get(HttpHeaderNames.CONTENT_TYPE), equalTo("application/json; charset=UTF-8"));
+
+            final BytesStreamOutput content = new BytesStreamOutput();
+            int chunks = 0;
+            while (true) {
+                final HttpContent chunk = embeddedChannel.readOutbound();
+                assertThat(chunk, notNullValue());
+                try {
+                    content.write(ByteBufUtil.getBytes(chunk.content()));
+                } finally {
+                    chunk.release();
+                }
+                if (chunk instanceof LastHttpContent) {
+                    break;
+                }
+                chunks++;
+            }
+            assertThat(chunks, greaterThan(1));
+            assertThat(content.bytes(), equalTo(expected));
+            assertThat(embeddedChannel.readOutbound(), nullValue());
+        }
+    }
+
+    public void testSmallChunkedResponseIsSentInFull() throws IOException {
+        final Settings settings = Settings.builder().build();
+        try (Netty4HttpServerTransport httpServerTransport =
+                 new Netty4HttpServerTransport(settings, networkService, bigArrays, threadPool, xContentRegistry(), new NullDispatcher())) {
+            final FullHttpRequest httpRequest = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/");
+            final EmbeddedChannel embeddedChannel = new EmbeddedChannel(new ChunkedWriteHandler());
+            final Netty4HttpRequest request = new Netty4HttpRequest(xContentRegistry(), httpRequest, embeddedChannel);
+            final Netty4HttpChannel channel =
+                new Netty4HttpChannel(httpServerTransport, request, null, randomBoolean(), threadPool.getThreadContext());
+
+            final List<ToXContent> fragments = randomFragments(randomIntBetween(0, 1024));
+            final BytesReference expected = ChunkedRestResponse.fromXContent(channel, RestStatus.OK, fragments::iterator).content();
+            channel.sendResponse(ChunkedRestResponse.fromXContent(channel, RestStatus.OK, fragments::iterator));
+
+            final FullHttpResponse response = embeddedChannel.readOutbound();
+            try {
+                assertThat(response.status(), equalTo(HttpResponseStatus.OK));
+                assertFalse(HttpUtil.isTransferEncodingChunked(response));
+                assertThat(response.headers().get(HttpHeaderNames.CONTENT_LENGTH), equalTo(Integer.toString(expected.length())));
+                assertThat(Netty4Utils.toBytesReference(response.content()), equalTo(expected));
+            } finally {
+                response.release();
+            }
+        }
+    }
+
+    private static List<ToXContent> randomFragments(int minSize) {
+        final List<ToXContent> fragments = new ArrayList<>();
+        fragments.add((builder, params) -> builder.startObject().startArray("values"));
+        for (int size = 0; size < minSize; ) {
+            final String value = randomAlphaOfLengthBetween(1, 512);
+            fragments.add((builder, params) -> builder.value(value));
+            size += value.length() + 3;
+        }
+        fragments.add((builder, params) -> builder.endArray().endObject());
+        return fragments;
+    }
+
     private FullHttpResponse executeRequest(final Settings settings, final String host) {
         return executeRequest(settings, null, host);
     }
@@ -0,0 +1,200 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.http.netty4;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.compression.SnappyFrameDecoder;
+import io.netty.handler.codec.compression.ZlibCodecFactory;
+import io.netty.handler.codec.compression.ZlibWrapper;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpObject;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import org.elasticsearch.http.netty4.Netty4HttpContentCompressor.Codec;
+import org.elasticsearch.http.netty4.Netty4HttpContentCompressor.CompressionStats;
+import org.elasticsearch.test.ESTestCase;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.nullValue;
+
+public class Netty4HttpContentCompressorTests extends ESTestCase {
+
+    private static final List<Codec> ALL_CODECS = Arrays.asList(Codec.GZIP, Codec.DEFLATE, Codec.SNAPPY);
+
+    public void testSelectCodec() {
+        assertThat(Netty4HttpContentCompressor.selectCodec("gzip", ALL_CODECS), equalTo(Codec.GZIP));
+        assertThat(Netty4HttpContentCompressor.selectCodec("deflate, gzip", ALL_CODECS), equalTo(Codec.GZIP));
+        assertThat(Netty4HttpContentCompressor.selectCodec("gzip;q=0.5, x-snappy-framed", ALL_CODECS), equalTo(Codec.SNAPPY));
+        assertThat(Netty4HttpContentCompressor.selectCodec("GZIP;q=0.2, deflate;q=0.8", ALL_CODECS), equalTo(Codec.DEFLATE));
+        assertThat(Netty4HttpContentCompressor.selectCodec("*", ALL_CODECS), equalTo(Codec.GZIP));
+        assertThat(Netty4HttpContentCompressor.selectCodec("gzip;q=0, *", ALL_CODECS), equalTo(Codec.DEFLATE));
+        assertThat(Netty4HttpContentCompressor.selectCodec("gzip;q=0, deflate;q=0", Arrays.asList(Codec.GZIP, Codec.DEFLATE)),
+            nullValue());
+        assertThat(Netty4HttpContentCompressor.selectCodec("x-snappy-framed", Arrays.asList(Codec.GZIP, Codec.DEFLATE)), nullValue());
+        assertThat(Netty4HttpContentCompressor.selectCodec("br, identity", ALL_CODECS), nullValue());
+        assertThat(Netty4HttpContentCompressor.selectCodec("", ALL_CODECS), nullValue());
+    }
+
+    public void testEndpoint() {
+        assertThat(Netty4HttpContentCompressor.endpoint("/"), nullValue());
+        assertThat(Netty4HttpContentCompressor.endpoint("/index/type/1"), nullValue());
+        assertThat(Netty4HttpContentCompressor.endpoint("/_search"), equalTo("_search"));
+        assertThat(Netty4HttpContentCompressor.endpoint("/index/_search?q=_all"), equalTo("_search"));
+        assertThat(Netty4HttpContentCompressor.endpoint("/_cat/indices"), equalTo("_cat"));
+        assertThat(Netty4HttpContentCompressor.endpoint("/index/type/1?_source=false"), nullValue());
+    }
+
+    public void testUnknownCodec() {
+        IllegalArgumentException e = expectThrows(IllegalArgumentException.class, () -> Codec.fromContentCoding("br"));
+        assertThat(e.getMessage(), equalTo("unknown compression codec [br], must be one of [gzip, deflate, x-snappy-framed]"));
+    }
+
+    public void testCompress() {
+        final Codec codec = randomFrom(ALL_CODECS);
+        final CompressionStats stats = new CompressionStats();
+        final EmbeddedChannel channel = newChannel(Collections.emptyMap(), 100, stats);
+        final byte[] content = randomContent(between(1000, 10000));
+        final HttpResponse response = exchange(channel, "/_search", codec.contentCoding(), content);
+        assertThat(response.headers().get(HttpHeaderNames.CONTENT_ENCODING), equalTo(codec.contentCoding()));
+        final byte[] compressed = readContent(channel);
+        assertArrayEquals(content, decompress(codec, compressed));
+        assertThat(stats.getUncompressedBytes(), equalTo((long) content.length));
+        assertThat(stats.getCompressedBytes(), equalTo((long) compressed.length));
+        assertThat(stats.getCompressedBytes(), lessThan(stats.getUncompressedBytes()));
+        assertThat(stats.getTimeInNanos(), greaterThan(0L));
+        channel.finishAndReleaseAll();
+    }
+
+    public void testDoesNotCompressSmallResponses() {
+        final CompressionStats stats = new CompressionStats();
+        final EmbeddedChannel channel = newChannel(Collections.emptyMap(), 100, stats);
+        final byte[] content = randomContent(between(1, 99));
+        final HttpResponse response = exchange(channel, "/", "gzip", content);
+        assertThat(response.headers().get(HttpHeaderNames.CONTENT_ENCODING), nullValue());
+        assertArrayEquals(content, readContent(channel));
+        assertThat(stats.getUncompressedBytes(), equalTo(0L));
+        channel.finishAndReleaseAll();
+    }
+
+    public void testEndpointLevels() {
+        final CompressionStats stats = new CompressionStats();
+        final EmbeddedChannel channel = newChannel(Collections.singletonMap("_cat", 0), 0, stats);
+        final byte[] content = randomContent(between(100, 1000));
+
+        HttpResponse response = exchange(channel, "/_cat/indices", "gzip", content);
+        assertThat(response.headers().get(HttpHeaderNames.CONTENT_ENCODING), nullValue());
+        assertArrayEquals(content, readContent(channel));
+
+        response = exchange(channel, "/index/_search", "gzip", content);
+        assertThat(response.headers().get(HttpHeaderNames.CONTENT_ENCODING), equalTo("gzip"));
+        assertArrayEquals(content, decompress(Codec.GZIP, readContent(channel)));
+        assertThat(stats.getUncompressedBytes(), equalTo((long) content.length));
+        channel.finishAndReleaseAll();
+    }
+
+    private static EmbeddedChannel newChannel(Map<String, Integer> levels, long minSize, CompressionStats stats) {
+        return new EmbeddedChannel(new Netty4HttpContentCompressor(3, levels, minSize, ALL_CODECS, stats));
+    }
+
+    private static byte[] randomContent(int length) {
+        // compressible content
+        final StringBuilder builder = new StringBuilder();
+        while (builder.length() < length) {
+            builder.append(randomFrom("{\"field\":", "\"value\"", "42", "}", ","));
+        }
+        return builder.substring(0, length).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static HttpResponse exchange(EmbeddedChannel channel, String uri, String acceptEncoding, byte[] content) {
+        final FullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, uri);
+        request.headers().set(HttpHeaderNames.ACCEPT_ENCODING, acceptEncoding);
+        assertTrue(channel.writeInbound(request));
+        ((FullHttpRequest) channel.readInbound()).release();
+
+        final FullHttpResponse response =
+            new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK, Unpooled.wrappedBuffer(content));
+        HttpUtil.setContentLength(response, content.length);
+        assertTrue(channel.writeOutbound(response));
+        return (HttpResponse) channel.outboundMessages().element();
+    }
+
+    /**
+     * Reads the content of the response the last call to {@link #exchange} wrote, which may or may not be a full response.
+     */
+    private static byte[] readContent(EmbeddedChannel channel) {
+        final ByteBuf content = Unpooled.buffer();
+        HttpObject message;
+        while ((message = channel.readOutbound()) != null) {
+            if (message instanceof HttpContent) {
+                content.writeBytes(((HttpContent) message).content());
+                ((HttpContent) message).release();
+            }
+        }
+        final byte[] bytes = new byte[content.readableBytes()];
+        content.readBytes(bytes);
+        return bytes;
+    }
+
+    private static byte[] decompress(Codec codec, byte[] compressed) {
+        final EmbeddedChannel decoder;
+        switch (codec) {
+            case GZIP:
+                decoder = new EmbeddedChannel(ZlibCodecFactory.newZlibDecoder(ZlibWrapper.GZIP));
+                break;
+            case DEFLATE:
+                decoder = new EmbeddedChannel(ZlibCodecFactory.newZlibDecoder(ZlibWrapper.ZLIB));
+                break;
+            case SNAPPY:
+                decoder = new EmbeddedChannel(new SnappyFrameDecoder());
+                break;
+            default:
+                throw new AssertionError("unknown codec " + codec);
+        }
+        decoder.writeInbound(Unpooled.wrappedBuffer(compressed));
+        decoder.finish();
+        final ByteBuf content = Unpooled.buffer();
+        ByteBuf chunk;
+        while ((chunk = decoder.readInbound()) != null) {
+            content.writeBytes(chunk);
+            chunk.release();
+        }
+        final byte[] bytes = new byte[content.readableBytes()];
+        content.readBytes(bytes);
+        return bytes;
+    }
+}
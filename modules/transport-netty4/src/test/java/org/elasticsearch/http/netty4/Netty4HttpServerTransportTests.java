@@ -31,9 +31,13 @@ import io.netty.handler.codec.http.HttpMethod;
 import io.netty.handler.codec.http.HttpResponseStatus;
 import io.netty.handler.codec.http.HttpUtil;
 import io.netty.handler.codec.http.HttpVersion;
+import io.netty.util.ReferenceCounted;
 import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.common.Strings;
 import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.collect.Tuple;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
 import org.elasticsearch.common.network.NetworkService;
 import org.elasticsearch.common.settings.Setting;
 import org.elasticsearch.common.settings.Settings;
@@ -49,6 +53,7 @@ import org.elasticsearch.http.NullDispatcher;
 import org.elasticsearch.http.netty4.cors.Netty4CorsConfig;
 import org.elasticsearch.indices.breaker.NoneCircuitBreakerService;
 import org.elasticsearch.rest.BytesRestResponse;
+import org.elasticsearch.rest.IncrementalRestContent;
 import org.elasticsearch.rest.RestChannel;
 import org.elasticsearch.rest.RestRequest;
 import org.elasticsearch.test.ESTestCase;
@@ -61,9 +66,11 @@ import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
@@ -78,6 +85,7 @@ import static org.elasticsearch.rest.RestStatus.BAD_REQUEST;
 import static org.elasticsearch.rest.RestStatus.OK;
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
 
@@ -211,6 +219,84 @@ public class Netty4HttpServerTransportTests extends ESTestCase {
         }
     }
 
+    public void testIncrementalContent() throws InterruptedException {
+        final AtomicInteger maxChunks = new AtomicInteger();
+        final HttpServerTransport.Dispatcher dispatcher = new HttpServerTransport.Dispatcher() {
+            @Override
+            public void dispatchRequest(RestRequest request, RestChannel channel, ThreadContext threadContext) {
+                final IncrementalRestContent content = request.incrementalContent();
+                if (request.path().equals("/full")) {
+                    assertNull(content);
+                    channel.sendResponse(new BytesRestResponse(OK, BytesRestResponse.TEXT_CONTENT_TYPE, request.content()));
+                } else if (request.path().equals("/discard")) {
+                    assertNotNull(content);
+                    channel.sendResponse(new BytesRestResponse(OK, BytesRestResponse.TEXT_CONTENT_TYPE, "discarded"));
+                } else {
+                    assertNotNull(content);
+                    assertFalse(request.hasContent());
+                    assertThat(content.contentLength(), greaterThan(0L));
+                    final BytesStreamOutput received = new BytesStreamOutput();
+                    content.next(new IncrementalRestContent.ChunkHandler() {
+                        int chunks = 0;
+
+                        @Override
+                        public void onChunk(BytesReference chunk, boolean last) {
+                            chunks++;
+                            try {
+                                chunk.writeTo(received);
+                            } catch (IOException e) {
+                                throw new AssertionError(e);
+                            }
+                            if (last) {
+                                maxChunks.accumulateAndGet(chunks, Math::max);
+                                channel.sendResponse(new BytesRestResponse(OK, BytesRestResponse.TEXT_CONTENT_TYPE, received.bytes()));
+                            } else {
+                                content.next(this);
+                            }
+                        }
+
+                        @Override
+                        public void onFailure(Exception e) {
+                            throw new AssertionError(e);
+                        }
+                    });
+                }
+            }
+
+            @Override
+            public void dispatchBadRequest(RestRequest request, RestChannel channel, ThreadContext threadContext, Throwable cause) {
+                throw new AssertionError();
+            }
+
+            @Override
+            public boolean supportsIncrementalContent(RestRequest request) {
+                return request.path().equals("/full") == false;
+            }
+        };
+        try (Netty4HttpServerTransport transport = new Netty4HttpServerTransport(Settings.EMPTY, networkService, bigArrays, threadPool,
+                xContentRegistry(), dispatcher)) {
+            transport.start();
+            final InetSocketTransportAddress remoteAddress =
+                    (InetSocketTransportAddress) randomFrom(transport.boundAddress().boundAddresses());
+            final String body = randomAlphaOfLength(randomIntBetween(64 * 1024, 256 * 1024));
+            final String otherBody = randomAlphaOfLength(randomIntBetween(1, 1024));
+            try (Netty4HttpClient client = new Netty4HttpClient()) {
+                final Collection<FullHttpResponse> responses = client.post(remoteAddress.address(),
+                    Tuple.tuple("/incremental", body), Tuple.tuple("/discard", body), Tuple.tuple("/full", otherBody),
+                    Tuple.tuple("/incremental", otherBody));
+                try {
+                    assertThat(responses.stream().map(r -> r.status()).collect(Collectors.toList()),
+                        equalTo(Arrays.asList(HttpResponseStatus.OK, HttpResponseStatus.OK, HttpResponseStatus.OK, HttpResponseStatus.OK)));
+                    assertThat(Netty4HttpClient.returnHttpResponseBodies(responses),
+                        equalTo(Arrays.asList(body, "discarded", otherBody, otherBody)));
+                } finally {
+                    responses.forEach(ReferenceCounted::release);
+                }
+            }
+        }
+        assertThat(maxChunks.get(), greaterThan(1));
+    }
+
     public void testBindUnavailableAddress() {
         try (Netty4HttpServerTransport transport = new Netty4HttpServerTransport(Settings.EMPTY, networkService, bigArrays, threadPool,
                 xContentRegistry(), new NullDispatcher())) {
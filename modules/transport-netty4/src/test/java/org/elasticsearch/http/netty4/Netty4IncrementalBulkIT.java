@@ -0,0 +1,116 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.http.netty4;
+
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import org.elasticsearch.ESNetty4IntegTestCase;
+import org.elasticsearch.common.collect.Tuple;
+import org.elasticsearch.common.network.NetworkModule;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.transport.InetSocketTransportAddress;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.http.HttpServerTransport;
+import org.elasticsearch.rest.action.document.RestBulkAction;
+import org.elasticsearch.test.ESIntegTestCase.ClusterScope;
+import org.elasticsearch.test.ESIntegTestCase.Scope;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+
+import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertHitCount;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+
+/**
+ * Checks that bulk requests whose body is larger than a batch are executed while their body is being received.
+ */
+@ClusterScope(scope = Scope.TEST, supportsDedicatedMasters = false, numClientNodes = 0, numDataNodes = 1)
+public class Netty4IncrementalBulkIT extends ESNetty4IntegTestCase {
+
+    @Override
+    protected Settings nodeSettings(int nodeOrdinal) {
+        return Settings.builder()
+            .put(super.nodeSettings(nodeOrdinal))
+            .put(NetworkModule.HTTP_ENABLED.getKey(), true)
+            .put(RestBulkAction.INCREMENTAL_BATCH_SIZE.getKey(), new ByteSizeValue(1, ByteSizeUnit.KB))
+            .build();
+    }
+
+    public void testBulkInBatches() throws Exception {
+        createIndex("index");
+        ensureGreen();
+
+        final int numDocs = randomIntBetween(200, 1000);
+        final StringBuilder bulkRequest = new StringBuilder();
+        for (int i = 0; i < numDocs; i++) {
+            bulkRequest.append("{\"index\": {\"_id\": \"").append(i).append("\"}}\n");
+            bulkRequest.append("{\"field\": \"").append(randomAlphaOfLengthBetween(10, 100)).append("\"}\n");
+        }
+
+        final Collection<FullHttpResponse> responses = post(Tuple.tuple("/index/type/_bulk", bulkRequest));
+        assertThat(responses, hasSize(1));
+        final FullHttpResponse response = responses.iterator().next();
+        assertThat(response.status(), equalTo(HttpResponseStatus.OK));
+        final String body = response.content().toString(StandardCharsets.UTF_8);
+        assertThat(body, containsString("\"errors\":false"));
+
+        refresh();
+        assertHitCount(client().prepareSearch("index").setSize(0).get(), numDocs);
+    }
+
+    public void testMalformedBulkInBatches() throws Exception {
+        createIndex("index");
+        ensureGreen();
+
+        final StringBuilder bulkRequest = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            bulkRequest.append("{\"index\": {\"_id\": \"").append(i).append("\"}}\n");
+            bulkRequest.append("{\"field\": \"").append(randomAlphaOfLength(20)).append("\"}\n");
+        }
+        bulkRequest.append("{\"index\": {\"unknown\": \"x\"}}\n{}\n");
+        bulkRequest.append("{\"index\": {\"_id\": \"100\"}}\n{}\n");
+
+        final Collection<FullHttpResponse> responses =
+            post(Tuple.tuple("/index/type/_bulk", bulkRequest), Tuple.tuple("/index/type/_bulk", "{\"index\": {\"_id\": \"101\"}}\n{}\n"));
+        assertThat(responses, hasSize(2));
+        final FullHttpResponse[] ordered = responses.toArray(new FullHttpResponse[2]);
+        assertThat(ordered[0].status(), equalTo(HttpResponseStatus.BAD_REQUEST));
+        assertThat(ordered[0].content().toString(StandardCharsets.UTF_8), containsString("unknown parameter [unknown]"));
+        // the connection is still usable for the following request
+        assertThat(ordered[1].status(), equalTo(HttpResponseStatus.OK));
+
+        refresh();
+        assertThat(client().prepareGet("index", "type", "100").get().isExists(), equalTo(false));
+        assertThat(client().prepareGet("index", "type", "101").get().isExists(), equalTo(true));
+    }
+
+    @SafeVarargs
+    private final Collection<FullHttpResponse> post(Tuple<String, CharSequence>... urisAndBodies) throws InterruptedException {
+        final HttpServerTransport httpServerTransport = internalCluster().getInstance(HttpServerTransport.class);
+        final InetSocketTransportAddress address =
+            (InetSocketTransportAddress) randomFrom(httpServerTransport.boundAddress().boundAddresses());
+        try (Netty4HttpClient nettyHttpClient = new Netty4HttpClient()) {
+            return nettyHttpClient.post(address.address(), urisAndBodies);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.transport.netty4;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.elasticsearch.common.breaker.CircuitBreakingException;
+import org.elasticsearch.common.breaker.MemoryCircuitBreaker;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.bytes.CompositeBytesReference;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.test.ESTestCase;
+
+import java.io.IOException;
+
+import static org.hamcrest.Matchers.equalTo;
+
+public class ByteBufStreamOutputTests extends ESTestCase {
+
+    public void testWriteAndRelease() throws IOException {
+        final MemoryCircuitBreaker breaker = new MemoryCircuitBreaker(new ByteSizeValue(Long.MAX_VALUE), 1.0, logger);
+        final ByteBufStreamOutput out = new ByteBufStreamOutput(PooledByteBufAllocator.DEFAULT, breaker);
+        final byte[] expected = new byte[randomIntBetween(0, 5 * ByteBufStreamOutput.PAGE_SIZE)];
+        random().nextBytes(expected);
+        int written = 0;
+        while (written < expected.length) {
+            if (randomBoolean()) {
+                out.writeByte(expected[written++]);
+            } else {
+                final int length = randomIntBetween(0, expected.length - written);
+                out.writeBytes(expected, written, length);
+                written += length;
+            }
+            assertThat(out.position(), equalTo((long) written));
+        }
+        final int pages = (expected.length + ByteBufStreamOutput.PAGE_SIZE - 1) / ByteBufStreamOutput.PAGE_SIZE;
+        assertThat(breaker.getUsed(), equalTo((long) pages * ByteBufStreamOutput.PAGE_SIZE));
+
+        final BytesReference bytes = out.bytes();
+        assertThat(bytes, equalTo(new BytesArray(expected)));
+        final ByteBuf buffer = Netty4Utils.toByteBuf(new CompositeBytesReference(new BytesArray(new byte[0]), bytes));
+        assertThat(Netty4Utils.toBytesReference(buffer), equalTo(new BytesArray(expected)));
+
+        out.close();
+        if (expected.length > 0) {
+            // the buffer handed to netty keeps the pages alive until it is written
+            assertThat(buffer.refCnt(), equalTo(1));
+        }
+        buffer.release();
+        assertThat(breaker.getUsed(), equalTo(0L));
+        expectThrows(IllegalStateException.class, () -> out.writeByte((byte) 1));
+        out.close();
+        assertThat(breaker.getUsed(), equalTo(0L));
+    }
+
+    public void testBreaks() throws IOException {
+        final int limit = randomIntBetween(1, 4) * ByteBufStreamOutput.PAGE_SIZE;
+        final MemoryCircuitBreaker breaker = new MemoryCircuitBreaker(new ByteSizeValue(limit), 1.0, logger);
+        final ByteBufStreamOutput out = new ByteBufStreamOutput(PooledByteBufAllocator.DEFAULT, breaker);
+        out.writeBytes(new byte[limit]);
+        expectThrows(CircuitBreakingException.class, () -> out.writeByte((byte) 1));
+        assertThat(out.position(), equalTo((long) limit));
+        assertThat(breaker.getUsed(), equalTo((long) limit));
+        out.close();
+        assertThat(breaker.getUsed(), equalTo(0L));
+    }
+}
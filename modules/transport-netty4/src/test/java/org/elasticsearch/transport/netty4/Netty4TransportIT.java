@@ -25,6 +25,7 @@ import org.elasticsearch.Version;
 import org.elasticsearch.action.admin.cluster.health.ClusterHealthResponse;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.cluster.health.ClusterHealthStatus;
+import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.io.stream.NamedWriteableRegistry;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.network.NetworkModule;
@@ -110,9 +111,9 @@ public class Netty4TransportIT extends ESNetty4IntegTestCase {
         }
 
         protected String handleRequest(Channel channel, String profileName,
-                                       StreamInput stream, long requestId, int messageLengthBytes, Version version,
-                                       InetSocketAddress remoteAddress, byte status) throws IOException {
-            String action = super.handleRequest(channel, profileName, stream, requestId, messageLengthBytes, version,
+                                       StreamInput stream, BytesReference message, long requestId, int messageLengthBytes,
+                                       Version version, InetSocketAddress remoteAddress, byte status) throws IOException {
+            String action = super.handleRequest(channel, profileName, stream, message, requestId, messageLengthBytes, version,
                     remoteAddress, status);
             channelProfileName = TransportSettings.DEFAULT_PROFILE;
             return action;
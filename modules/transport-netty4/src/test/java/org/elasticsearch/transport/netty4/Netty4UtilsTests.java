@@ -22,16 +22,27 @@ package org.elasticsearch.transport.netty4;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.CompositeByteBuf;
 import io.netty.buffer.Unpooled;
+import io.netty.channel.FileRegion;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.util.ReferenceCountUtil;
 import org.apache.lucene.util.BytesRef;
 import org.elasticsearch.common.bytes.AbstractBytesReferenceTestCase;
 import org.elasticsearch.common.bytes.BytesArray;
 import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.bytes.CompositeBytesReference;
+import org.elasticsearch.common.bytes.FileRegionBytesReference;
 import org.elasticsearch.common.io.stream.ReleasableBytesStreamOutput;
 import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.indices.breaker.NoneCircuitBreakerService;
 import org.elasticsearch.test.ESTestCase;
 
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
 
 public class Netty4UtilsTests extends ESTestCase {
 
@@ -75,6 +86,46 @@ public class Netty4UtilsTests extends ESTestCase {
         assertArrayEquals(BytesReference.toBytes(ref), BytesReference.toBytes(bytesReference));
     }
 
+    public void testToMessages() throws IOException {
+        final byte[] fileContent = new byte[randomIntBetween(1, 3 * PAGE_SIZE)];
+        random().nextBytes(fileContent);
+        final Path file = createTempFile();
+        Files.write(file, fileContent);
+        final BytesReference head = getRandomizedBytesReference(randomIntBetween(1, 3 * PAGE_SIZE));
+        final BytesReference region = new FileRegionBytesReference(file, 0, fileContent.length);
+        final BytesReference tail = getRandomizedBytesReference(randomIntBetween(0, 3 * PAGE_SIZE));
+        final BytesReference reference = new CompositeBytesReference(head, region, tail);
+        assertTrue(Netty4Utils.containsFileRegion(reference));
+        assertFalse(Netty4Utils.containsFileRegion(head));
+
+        final List<Object> messages = Netty4Utils.toMessages(reference);
+        try {
+            assertEquals(tail.length() > 0 ? 3 : 2, messages.size());
+            assertEquals(head, Netty4Utils.toBytesReference((ByteBuf) messages.get(0)));
+            final FileRegion fileRegion = (FileRegion) messages.get(1);
+            assertEquals(0, fileRegion.position());
+            assertEquals(fileContent.length, fileRegion.count());
+            if (tail.length() > 0) {
+                assertEquals(tail, Netty4Utils.toBytesReference((ByteBuf) messages.get(2)));
+            }
+        } finally {
+            messages.forEach(ReferenceCountUtil::release);
+        }
+    }
+
+    public void testSupportsFileRegions() throws Exception {
+        final EmbeddedChannel channel = new EmbeddedChannel();
+        try {
+            assertTrue(Netty4Utils.supportsFileRegions(channel));
+            final SSLEngine engine = SSLContext.getDefault().createSSLEngine();
+            engine.setUseClientMode(true);
+            channel.pipeline().addFirst(new SslHandler(engine));
+            assertFalse(Netty4Utils.supportsFileRegions(channel));
+        } finally {
+            channel.finishAndReleaseAll();
+        }
+    }
+
     private BytesReference getRandomizedBytesReference(int length) throws IOException {
         // we know bytes stream output always creates a paged bytes reference, we use it to create randomized content
         ReleasableBytesStreamOutput out = new ReleasableBytesStreamOutput(length, bigarrays);
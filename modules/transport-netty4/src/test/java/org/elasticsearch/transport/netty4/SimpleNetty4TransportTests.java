@@ -80,7 +80,8 @@ public class SimpleNetty4TransportTests extends AbstractSimpleTransportTestCase
 
     @Override
     protected MockTransportService build(Settings settings, Version version, ClusterSettings clusterSettings, boolean doHandshake) {
-        settings = Settings.builder().put(settings).put(TransportSettings.PORT.getKey(), "0").build();
+        settings = Settings.builder().put(settings).put(TransportSettings.PORT.getKey(), "0")
+            .put(Netty4Transport.NETTY_DIRECT_OUTBOUND_BUFFERS.getKey(), randomBoolean()).build();
         MockTransportService transportService = nettyFromThreadPool(settings, threadPool, version, clusterSettings, doHandshake);
         transportService.start();
         return transportService;
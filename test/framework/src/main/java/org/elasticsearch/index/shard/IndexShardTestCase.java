@@ -386,7 +386,7 @@ public abstract class IndexShardTestCase extends ESTestCase {
         StartRecoveryRequest request = new StartRecoveryRequest(replica.shardId(), targetAllocationId, pNode, rNode,
             getMetadataSnapshotOrEmpty(replica), false, 0);
         RecoverySourceHandler recovery = new RecoverySourceHandler(primary, recoveryTarget, request, () -> 0L, e -> () -> {},
-            (int) ByteSizeUnit.MB.toKB(1), logger);
+            (int) ByteSizeUnit.MB.toKB(1), between(1, 4), randomBoolean(), logger);
         recovery.recoverToTarget();
         recoveryTarget.markAsDone();
         replica.updateRoutingEntry(ShardRoutingHelper.moveToStarted(replica.routingEntry()));
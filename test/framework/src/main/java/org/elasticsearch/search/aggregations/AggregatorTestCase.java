@@ -18,16 +18,24 @@
  */
 package org.elasticsearch.search.aggregations;
 
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.SortedNumericDocValuesField;
 import org.apache.lucene.index.CompositeReaderContext;
 import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexReaderContext;
 import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.RandomIndexWriter;
+import org.apache.lucene.index.SortedNumericDocValues;
 import org.apache.lucene.search.Collector;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.QueryCache;
 import org.apache.lucene.search.QueryCachingPolicy;
 import org.apache.lucene.search.Weight;
+import org.apache.lucene.store.Directory;
 import org.elasticsearch.Version;
 import org.elasticsearch.cluster.metadata.IndexMetaData;
 import org.elasticsearch.common.lease.Releasable;
@@ -71,6 +79,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.BiConsumer;
 
 import static org.mockito.Matchers.anyObject;
 import static org.mockito.Matchers.anyString;
@@ -90,6 +99,16 @@ public abstract class AggregatorTestCase extends ESTestCase {
     protected <B extends AggregationBuilder> AggregatorFactory<?> createAggregatorFactory(B aggregationBuilder,
             IndexSearcher indexSearcher,
             MappedFieldType... fieldTypes) throws IOException {
+        return createAggregatorFactory(null, aggregationBuilder, indexSearcher, fieldTypes);
+    }
+
+    /**
+     * Creates the factory of an aggregation that runs under the provided {@link Query}, or under no query if it is {@code null}.
+     */
+    protected <B extends AggregationBuilder> AggregatorFactory<?> createAggregatorFactory(Query query,
+            B aggregationBuilder,
+            IndexSearcher indexSearcher,
+            MappedFieldType... fieldTypes) throws IOException {
 
         IndexSettings indexSettings = new IndexSettings(
             IndexMetaData.builder("_index").settings(Settings.builder().put(IndexMetaData.SETTING_VERSION_CREATED, Version.CURRENT))
@@ -118,6 +137,7 @@ public abstract class AggregatorTestCase extends ESTestCase {
         CircuitBreakerService circuitBreakerService = new NoneCircuitBreakerService();
         SearchContext searchContext = mock(SearchContext.class);
         when(searchContext.numberOfShards()).thenReturn(1);
+        when(searchContext.query()).thenReturn(query);
         when(searchContext.searcher()).thenReturn(contextIndexSearcher);
         when(searchContext.bigArrays()).thenReturn(new MockBigArrays(Settings.EMPTY, circuitBreakerService));
         when(searchContext.fetchPhase())
@@ -159,7 +179,14 @@ public abstract class AggregatorTestCase extends ESTestCase {
     protected <A extends Aggregator, B extends AggregationBuilder> A createAggregator(B aggregationBuilder,
             IndexSearcher indexSearcher,
             MappedFieldType... fieldTypes) throws IOException {
-        AggregatorFactory<?> factory = createAggregatorFactory(aggregationBuilder, indexSearcher, fieldTypes);
+        return createAggregator(null, aggregationBuilder, indexSearcher, fieldTypes);
+    }
+
+    protected <A extends Aggregator, B extends AggregationBuilder> A createAggregator(Query query,
+            B aggregationBuilder,
+            IndexSearcher indexSearcher,
+            MappedFieldType... fieldTypes) throws IOException {
+        AggregatorFactory<?> factory = createAggregatorFactory(query, aggregationBuilder, indexSearcher, fieldTypes);
         @SuppressWarnings("unchecked")
         A aggregator = (A) factory.create(null, true);
         return aggregator;
@@ -196,7 +223,7 @@ public abstract class AggregatorTestCase extends ESTestCase {
                                                                              Query query,
                                                                              AggregationBuilder builder,
                                                                              MappedFieldType... fieldTypes) throws IOException {
-        C a = createAggregator(builder, searcher, fieldTypes);
+        C a = createAggregator(query, builder, searcher, fieldTypes);
         try {
             a.preCollection();
             searcher.search(query, a);
@@ -270,6 +297,80 @@ public abstract class AggregatorTestCase extends ESTestCase {
         }
     }
 
+    /**
+     * Receives every value that is collected by {@link #checkBatchCollection} along with its bucket.
+     */
+    @FunctionalInterface
+    protected interface BucketValueConsumer {
+        void accept(int bucket, long value);
+    }
+
+    /**
+     * Checks that an aggregation on a long field gets the same results whether its docs are collected one by one or in batches.
+     * Docs with up to three random values are indexed over several segments, then they are:
+     * <ul>
+     * <li>collected by a regular {@link #search}, which buffers them in a {@link BatchingLeafBucketCollector} across segments
+     * for aggregations that collect in batches. Their values go to bucket {@code numBuckets} of {@code collect}.</li>
+     * <li>collected through {@link LeafBucketCollector#collect(int[], long[], int)}, in one batch per segment, into
+     * {@code numBuckets} random buckets that often come in runs.</li>
+     * </ul>
+     * {@code verify} is passed the aggregation that was built for each bucket.
+     */
+    protected <A extends InternalAggregation> void checkBatchCollection(AggregationBuilder aggregationBuilder, MappedFieldType fieldType,
+            int numBuckets, BucketValueConsumer collect, BiConsumer<Integer, A> verify) throws IOException {
+        try (Directory directory = newDirectory()) {
+            RandomIndexWriter indexWriter = new RandomIndexWriter(random(), directory);
+            final int numDocs = randomIntBetween(0, 3000);
+            for (int i = 0; i < numDocs; i++) {
+                Document document = new Document();
+                final int numValues = randomIntBetween(0, 3);
+                for (int j = 0; j < numValues; j++) {
+                    final long value = randomIntBetween(-1000, 1000);
+                    document.add(new SortedNumericDocValuesField(fieldType.name(), value));
+                    collect.accept(numBuckets, value);
+                }
+                indexWriter.addDocument(document);
+                if (rarely()) {
+                    indexWriter.commit();
+                }
+            }
+            indexWriter.close();
+
+            try (IndexReader indexReader = DirectoryReader.open(directory)) {
+                IndexSearcher indexSearcher = newSearcher(indexReader, true, true);
+                A searchResult = search(indexSearcher, new MatchAllDocsQuery(), aggregationBuilder, fieldType);
+                verify.accept(numBuckets, searchResult);
+
+                try (Aggregator aggregator = createAggregator(aggregationBuilder, indexSearcher, fieldType)) {
+                    aggregator.preCollection();
+                    for (LeafReaderContext ctx : indexReader.leaves()) {
+                        final LeafBucketCollector collector = aggregator.getLeafCollector(ctx);
+                        final SortedNumericDocValues values = DocValues.getSortedNumeric(ctx.reader(), fieldType.name());
+                        final int maxDoc = ctx.reader().maxDoc();
+                        final int[] docs = new int[maxDoc];
+                        final long[] buckets = new long[maxDoc];
+                        for (int doc = 0; doc < maxDoc; doc++) {
+                            docs[doc] = doc;
+                            // runs of docs that go to the same bucket
+                            buckets[doc] = doc > 0 && randomBoolean() ? buckets[doc - 1] : randomIntBetween(0, numBuckets - 1);
+                            values.setDocument(doc);
+                            for (int i = 0; i < values.count(); i++) {
+                                collect.accept((int) buckets[doc], values.valueAt(i));
+                            }
+                        }
+                        collector.collect(docs, buckets, maxDoc);
+                    }
+                    aggregator.postCollection();
+                    for (int bucket = 0; bucket < numBuckets; bucket++) {
+                        @SuppressWarnings("unchecked")
+                        A result = (A) aggregator.buildAggregation(bucket);
+                        verify.accept(bucket, result);
+                    }
+                }
+            }
+        }
+    }
+
     private static class ShardSearcher extends IndexSearcher {
         private final List<LeafReaderContext> ctx;
 
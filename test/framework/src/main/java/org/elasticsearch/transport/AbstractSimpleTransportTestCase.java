@@ -30,6 +30,9 @@ import org.elasticsearch.Version;
 import org.elasticsearch.action.ActionListenerResponseHandler;
 import org.elasticsearch.action.support.PlainActionFuture;
 import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.bytes.FileRegionBytesReference;
 import org.elasticsearch.common.io.stream.NamedWriteableRegistry;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
@@ -42,6 +45,7 @@ import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.common.util.concurrent.AbstractRunnable;
 import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
+import org.elasticsearch.common.util.concurrent.ThreadContext;
 import org.elasticsearch.indices.breaker.NoneCircuitBreakerService;
 import org.elasticsearch.node.Node;
 import org.elasticsearch.test.ESTestCase;
@@ -59,6 +63,8 @@ import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -81,6 +87,7 @@ import static java.util.Collections.emptyMap;
 import static java.util.Collections.emptySet;
 import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.hamcrest.Matchers.startsWith;
@@ -572,6 +579,91 @@ public abstract class AbstractSimpleTransportTestCase extends ESTestCase {
         }
     }
 
+    public void testFileRegion() throws Exception {
+        final byte[] bytes = new byte[randomIntBetween(0, 1 << 20)];
+        random().nextBytes(bytes);
+        final Path file = createTempFile();
+        Files.write(file, bytes);
+        final int offset = randomIntBetween(0, bytes.length);
+        final BytesReference region = new FileRegionBytesReference(file, offset, randomIntBetween(0, bytes.length - offset));
+        final AtomicReference<BytesMessageRequest> received = new AtomicReference<>();
+        serviceA.registerRequestHandler("fileRegion", BytesMessageRequest::new, ThreadPool.Names.GENERIC,
+            (request, channel) -> {
+                received.set(request);
+                channel.sendResponse(TransportResponse.Empty.INSTANCE);
+            });
+
+        final TransportRequestOptions options = TransportRequestOptions.builder().withCompress(randomBoolean()).build();
+        final TransportFuture<TransportResponse.Empty> future = serviceB.submitRequest(nodeA, "fileRegion",
+            new BytesMessageRequest(region, "trailer"), options, new EmptyTransportResponseHandler(ThreadPool.Names.GENERIC));
+        future.txGet();
+        assertThat(received.get().bytes, equalTo(new BytesArray(bytes, offset, region.length())));
+        assertThat(received.get().message, equalTo("trailer"));
+    }
+
+    public void testRequestTypes() throws Exception {
+        final String executor = randomFrom(ThreadPool.Names.SAME, ThreadPool.Names.GENERIC);
+        final AtomicReference<BytesMessageRequest> received = new AtomicReference<>();
+        final AtomicReference<String> receivedHeader = new AtomicReference<>();
+        serviceA.registerRequestHandler("requestTypes", BytesMessageRequest::new, executor,
+            (request, channel) -> {
+                received.set(request);
+                receivedHeader.set(threadPool.getThreadContext().getHeader("test"));
+                channel.sendResponse(TransportResponse.Empty.INSTANCE);
+            });
+
+        for (TransportRequestOptions.Type type : TransportRequestOptions.Type.values()) {
+            final byte[] bytes = new byte[randomIntBetween(0, 1 << 16)];
+            random().nextBytes(bytes);
+            final TransportRequestOptions options = TransportRequestOptions.builder().withType(type).withCompress(randomBoolean()).build();
+            try (ThreadContext.StoredContext ignored = threadPool.getThreadContext().stashContext()) {
+                threadPool.getThreadContext().putHeader("test", type.name());
+                serviceB.submitRequest(nodeA, "requestTypes", new BytesMessageRequest(new BytesArray(bytes), type.name()), options,
+                    new EmptyTransportResponseHandler(ThreadPool.Names.GENERIC)).txGet();
+            }
+            assertThat(received.get().bytes, equalTo(new BytesArray(bytes)));
+            assertThat(received.get().message, equalTo(type.name()));
+            assertThat(receivedHeader.get(), equalTo(type.name()));
+        }
+
+        if (serviceB.getOriginalTransport() instanceof TcpTransport) {
+            assertBusy(() -> {
+                final Map<TransportRequestOptions.Type, TransportStats.QueueStats> requestQueues = serviceB.stats().getRequestQueues();
+                for (TransportRequestOptions.Type type : TransportRequestOptions.Type.values()) {
+                    assertThat(requestQueues.get(type).getCount(), greaterThanOrEqualTo(1L));
+                }
+            });
+        }
+    }
+
+    public static class BytesMessageRequest extends TransportRequest {
+
+        private BytesReference bytes;
+        private String message;
+
+        BytesMessageRequest(BytesReference bytes, String message) {
+            this.bytes = bytes;
+            this.message = message;
+        }
+
+        public BytesMessageRequest() {
+        }
+
+        @Override
+        public void readFrom(StreamInput in) throws IOException {
+            super.readFrom(in);
+            bytes = in.readBytesReference();
+            message = in.readString();
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            super.writeTo(out);
+            out.writeBytesReference(bytes);
+            out.writeString(message);
+        }
+    }
+
     public void testErrorMessage() {
         serviceA.registerRequestHandler("sayHelloException", StringMessageRequest::new, ThreadPool.Names.GENERIC,
             new TransportRequestHandler<StringMessageRequest>() {
@@ -1970,11 +2062,11 @@ public abstract class AbstractSimpleTransportTestCase extends ESTestCase {
         try (MockTcpTransport transport = new MockTcpTransport(Settings.EMPTY, threadPool, BigArrays.NON_RECYCLING_INSTANCE,
             new NoneCircuitBreakerService(), namedWriteableRegistry,  new NetworkService(Settings.EMPTY, Collections.emptyList())){
             @Override
-            protected String handleRequest(MockChannel mockChannel, String profileName, StreamInput stream, long requestId,
-                                           int messageLengthBytes, Version version, InetSocketAddress remoteAddress, byte status)
-                throws IOException {
-                return super.handleRequest(mockChannel, profileName, stream, requestId, messageLengthBytes, version, remoteAddress,
-                    (byte)(status & ~(1<<3))); // we flip the isHandshake bit back and act like the handler is not found
+            protected String handleRequest(MockChannel mockChannel, String profileName, StreamInput stream, BytesReference message,
+                                           long requestId, int messageLengthBytes, Version version, InetSocketAddress remoteAddress,
+                                           byte status) throws IOException {
+                return super.handleRequest(mockChannel, profileName, stream, message, requestId, messageLengthBytes, version,
+                    remoteAddress, (byte)(status & ~(1<<3))); // we flip the isHandshake bit back and act like the handler is not found
             }
         }) {
             transport.transportServiceAdapter(serviceA.new Adapter());